@@ -1,18 +1,27 @@
 package org.hackystat.sensor.xmldata;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.hackystat.sensor.xmldata.option.Options;
+import org.hackystat.sensor.xmldata.util.AsyncMessageWriter;
 
 /**
  * The class which is delegated to by options and the controller when displaying
  * informative messages to the user. This class wraps the way information is
  * displayed to allow the extension of messaging if the mutliple views are added
- * to this sensor, which is currently command-line only.
+ * to this sensor, which is currently command-line only. Messages are written
+ * to standard output by a background thread, so a thread sending data does not
+ * wait for the console, and are all written once flush returns.
  * @author aito
  * 
  */
 public class MessageDelegate {
   /** The controller which stores this message delegate. */
   private XmlDataController controller = null;
+  /** The number of verbose entries offered to isVerboseEntry. */
+  private AtomicLong verboseEntryCount = new AtomicLong();
+  /** The writer shared by all delegates, since they all write to standard output. */
+  private static final AsyncMessageWriter OUTPUT = new AsyncMessageWriter(System.out);
 
   /**
    * Constructs this delegate class with the specified controller.
@@ -22,13 +31,41 @@ public class MessageDelegate {
     this.controller = controller;
   }
 
+  /**
+   * Returns true if verbose mode is enabled. Callers can check this before
+   * building a verbose message that is costly to render.
+   * @return true if verbose messages are displayed.
+   */
+  public boolean isVerbose() {
+    return Boolean.TRUE.equals(this.controller.getOptionObject(Options.VERBOSE));
+  }
+
+  /**
+   * Returns true if the verbose message of the next entry should be displayed,
+   * which is every entry in verbose mode, or every Nth entry if the
+   * -verboseSample option is used.
+   * @return true if the entry's verbose message should be built and fired.
+   */
+  public boolean isVerboseEntry() {
+    if (!this.isVerbose()) {
+      return false;
+    }
+    Integer interval = (Integer) this.controller.getOptionObject(Options.VERBOSE_SAMPLE);
+    return interval == null || this.verboseEntryCount.getAndIncrement() % interval == 0;
+  }
+
+  /** Waits until every fired message has been written to standard output. */
+  public void flush() {
+    OUTPUT.flush();
+  }
+
   /**
    * Displays the specified message. The same message is displayed even if the
    * verbose option is enabled.
    * @param message the specified message to display.
    */
   public void fireMessage(String message) {
-    System.out.println(message);
+    OUTPUT.write(message);
   }
 
   /**
@@ -36,8 +73,8 @@ public class MessageDelegate {
    * @param message the specified message to display.
    */
   public void fireVerboseMessage(String message) {
-    if (Boolean.TRUE.equals(this.controller.getOptionObject(Options.VERBOSE))) {
-      System.out.println(message);
+    if (this.isVerbose()) {
+      OUTPUT.write(message);
     }
   }
 
@@ -48,11 +85,11 @@ public class MessageDelegate {
    * @param verboseMessage the specified verbose message.
    */
   public void fireMessage(String message, String verboseMessage) {
-    if (Boolean.TRUE.equals(this.controller.getOptionObject(Options.VERBOSE))) {
-      System.out.println(verboseMessage);
+    if (this.isVerbose()) {
+      OUTPUT.write(verboseMessage);
     }
     else {
-      System.out.println(message);
+      OUTPUT.write(message);
     }
   }
 }
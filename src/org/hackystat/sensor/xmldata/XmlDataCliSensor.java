@@ -12,9 +12,19 @@ import java.util.Arrays;
  */
 public class XmlDataCliSensor {
   /** A summary usage message. */
-  private static final String[] USAGE_MSG = { "\nUsage:\n " + "[-verbose]\n " + "[-sdt <name>]\n"
-      + " -file <filename> [filename]... \n -argList <filename>\n "
-      + "-migration <v7 directory> <v7 account> <v8 username> <v8 password>"
+  private static final String[] USAGE_MSG = { "\nUsage:\n " + "[-verbose]\n "
+      + "[-verboseSample <N>]\n " + "[-sdt <name>]\n "
+      + "[-sdtPolicy abort|skip|quarantine <file>]\n " + "[-threads <count>]\n "
+      + "[-pipeline [depth]] [-multishell [count] [key]]\n "
+      + "[-checkpoint <journal> [-resume]]\n " + "[-validate full|sample:<N>|off]\n "
+      + "[-tstampWindow <milliseconds>]\n " + "[-tstampIndex <file>]\n "
+      + "[-spool <directory>]\n " + "[-sink null|jsonl <file>|shell]\n "
+      + "[-rateLimit <entries per second> [adaptive [milliseconds]]]\n"
+      + " -file <filename|directory|pattern> [filename]... \n"
+      + " -argList <filename>\n "
+      + "-migration <v7 directory> <v7 account> <v8 username> <v8 password>\n "
+      + "-watch <directory> [flush seconds]\n "
+      + "-replay <spool directory>"
       + "\n\nNote: optional arguments are within square brackets. "
       + "Arguments can be used in any order." };
 
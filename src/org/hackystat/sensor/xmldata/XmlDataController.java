@@ -119,13 +119,43 @@ public class XmlDataController {
     this.processArguments();
   }
 
-  /** Executes all of the options specified by the user. */
+  /**
+   * Executes all of the options specified by the user. The messages fired are
+   * all written to standard output when this method returns.
+   */
   public void execute() {
     if (this.hasParsed && this.optionHandler.isOptionsValid()
         && this.optionHandler.hasRequiredOptions()) {
-      this.optionHandler.processOptions();
-      this.optionHandler.execute();
+      try {
+        this.optionHandler.processOptions();
+        this.optionHandler.execute();
+      }
+      finally {
+        this.messageDelegate.flush();
+      }
     }
+    else {
+      this.messageDelegate.flush();
+    }
+  }
+
+  /**
+   * Returns true if verbose mode is enabled. Callers can check this before
+   * building a verbose message that is costly to render.
+   * @return true if verbose messages are displayed.
+   */
+  public boolean isVerbose() {
+    return this.messageDelegate.isVerbose();
+  }
+
+  /**
+   * Returns true if the verbose message of the next entry should be displayed,
+   * which is every entry in verbose mode, or every Nth entry if the
+   * -verboseSample option is used.
+   * @return true if the entry's verbose message should be built and fired.
+   */
+  public boolean isVerboseEntry() {
+    return this.messageDelegate.isVerboseEntry();
   }
 
   /**
@@ -0,0 +1,233 @@
+package org.hackystat.sensor.xmldata.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.namespace.QName;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.jaxb.Entry;
+import org.hackystat.sensor.xmldata.util.LatencyRecorder;
+import org.hackystat.sensor.xmldata.util.XmlDataEntryWriter;
+import org.hackystat.sensorshell.SensorShellProperties;
+
+/**
+ * The load harness that measures the throughput and send latency of this
+ * sensor against an in-process StubSensorBase, so that changes can be
+ * benchmarked on a machine without a sensorbase. The harness generates sensor
+ * data, runs the -file and -migration options on it with any further xmldata
+ * options, and reports for each run the entries received per second and the
+ * median and 99th percentile latencies of the sensor data requests.
+ * <p>
+ * The shells find the stub through the sensorshell host, user, and password
+ * system properties, which the harness sets before the runs.
+ *
+ * <pre>
+ * Usage: [-entries &lt;count&gt;] [-delay &lt;milliseconds&gt;] [-mode file|migration|both]
+ *        [xmldata options]...
+ * Ex:    -entries 100000 -delay 20 -mode file -multishell 4 -pipeline
+ * </pre>
+ *
+ * @author aito
+ *
+ */
+public class LoadHarness {
+  /** The number of entries generated if no count is specified. */
+  private static final int DEFAULT_ENTRIES = 50000;
+  /** The number of distinct resources of the generated entries. */
+  private static final int RESOURCE_COUNT = 100;
+  /** The account used for the stub sensorbase. */
+  private static final String ACCOUNT = "harness@hackystat.org";
+  /** The version 7 account of the generated migration data. */
+  private static final String V7_ACCOUNT = "harness";
+
+  /** The number of entries generated for each run. */
+  private int entries = DEFAULT_ENTRIES;
+  /** The response delay of the stub sensorbase in milliseconds. */
+  private long delay = 0;
+  /** True if the -file option is measured. */
+  private boolean isFileRun = true;
+  /** True if the -migration option is measured. */
+  private boolean isMigrationRun = true;
+  /** The xmldata options added to each run. */
+  private List<String> options = new ArrayList<String>();
+
+  /**
+   * Runs the harness with the specified arguments.
+   * @param args the harness arguments, followed by any xmldata options.
+   */
+  public static void main(String[] args) {
+    try {
+      LoadHarness harness = new LoadHarness();
+      if (harness.parseArguments(Arrays.asList(args))) {
+        harness.run();
+      }
+      else {
+        System.err.println("Usage: [-entries <count>] [-delay <milliseconds>] "
+            + "[-mode file|migration|both] [xmldata options]...");
+      }
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Sets the settings of this harness from the specified arguments. The
+   * arguments that are not harness settings are added to each run.
+   * @param args the arguments.
+   * @return true if the arguments are valid, false if not.
+   */
+  boolean parseArguments(List<String> args) {
+    for (int i = 0; i < args.size(); i++) {
+      String arg = args.get(i);
+      boolean hasValue = i + 1 < args.size();
+      if ("-entries".equals(arg) && hasValue) {
+        this.entries = Integer.parseInt(args.get(++i));
+      }
+      else if ("-delay".equals(arg) && hasValue) {
+        this.delay = Long.parseLong(args.get(++i));
+      }
+      else if ("-mode".equals(arg) && hasValue) {
+        String mode = args.get(++i);
+        this.isFileRun = "file".equals(mode) || "both".equals(mode);
+        this.isMigrationRun = "migration".equals(mode) || "both".equals(mode);
+        if (!this.isFileRun && !this.isMigrationRun) {
+          return false;
+        }
+      }
+      else {
+        this.options.add(arg);
+      }
+    }
+    return this.entries > 0 && this.delay >= 0;
+  }
+
+  /**
+   * Starts the stub sensorbase, and generates and sends the data of each run.
+   * @throws Exception thrown if the data could not be generated.
+   */
+  void run() throws Exception {
+    StubSensorBase sensorBase = new StubSensorBase(0);
+    sensorBase.setResponseDelay(this.delay);
+    sensorBase.start();
+    System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_HOST_KEY, sensorBase
+        .getHost());
+    System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_USER_KEY, ACCOUNT);
+    System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_PASSWORD_KEY, ACCOUNT);
+    File dataDir = File.createTempFile("xmldata-harness", "");
+    try {
+      dataDir.delete();
+      dataDir.mkdirs();
+      if (this.isFileRun) {
+        File dataFile = new File(dataDir, "harness.xml");
+        this.writeXmlData(dataFile);
+        this.measure(sensorBase, "-file", Arrays.asList("-file", dataFile.toString()));
+      }
+      if (this.isMigrationRun) {
+        File sdtDir = new File(dataDir, V7_ACCOUNT + "/data/Build");
+        sdtDir.mkdirs();
+        this.writeV7Data(new File(sdtDir, "harness.xml"));
+        this.measure(sensorBase, "-migration", Arrays.asList("-migration", dataDir
+            .toString(), V7_ACCOUNT, sensorBase.getHost(), ACCOUNT, ACCOUNT));
+      }
+    }
+    finally {
+      sensorBase.stop();
+      delete(dataDir);
+    }
+  }
+
+  /**
+   * Runs the xmldata sensor with the specified option and the options of this
+   * harness, and reports the throughput and latencies seen by the stub.
+   * @param sensorBase the stub sensorbase the data is sent to.
+   * @param name the name of the run.
+   * @param runOptions the options of the run.
+   */
+  private void measure(StubSensorBase sensorBase, String name, List<String> runOptions) {
+    List<String> arguments = new ArrayList<String>(runOptions);
+    arguments.addAll(this.options);
+    sensorBase.reset();
+    long start = System.nanoTime();
+    XmlDataController controller = new XmlDataController();
+    controller.processArguments(arguments);
+    controller.execute();
+    long elapsed = System.nanoTime() - start;
+
+    LatencyRecorder latencies = sensorBase.getLatencies();
+    long received = sensorBase.getEntryCount();
+    System.out.println(String.format(Locale.US, "%s: %d entries received in %d requests, "
+        + "%.0f entries/sec, send latency p50 %.2f ms, p99 %.2f ms, run %.2f s", name,
+        received, sensorBase.getRequestCount(), received * 1e9 / elapsed, latencies
+            .getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6, elapsed / 1e9));
+  }
+
+  /**
+   * Writes the generated entries as an xmldata file.
+   * @param file the file written.
+   * @throws Exception thrown if the file could not be written.
+   */
+  private void writeXmlData(File file) throws Exception {
+    XmlDataEntryWriter writer = new XmlDataEntryWriter(new FileOutputStream(file));
+    try {
+      for (int i = 0; i < this.entries; i++) {
+        Entry entry = new Entry();
+        entry.setTool("Ant");
+        entry.setResource("file://harness/Resource" + (i % RESOURCE_COUNT) + ".java");
+        entry.getOtherAttributes().put(new QName("SensorDataType"), "Build");
+        entry.getOtherAttributes().put(new QName("Result"), "Success");
+        entry.getOtherAttributes().put(new QName("Sequence"), String.valueOf(i));
+        writer.write(entry);
+      }
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the generated entries as a version 7 data file.
+   * @param file the file written.
+   * @throws IOException thrown if the file could not be written.
+   */
+  private void writeV7Data(File file) throws IOException {
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+        "UTF-8"));
+    try {
+      writer.write("<?xml version=\"1.0\"?>\n<sensor>\n");
+      long tstamp = System.currentTimeMillis() - this.entries * 1000L;
+      for (int i = 0; i < this.entries; i++) {
+        writer.write("<entry tstamp=\"" + (tstamp + i * 1000L) + "\" tool=\"Ant\" "
+            + "file=\"file://harness/Resource" + (i % RESOURCE_COUNT) + ".java\" "
+            + "result=\"Success\"/>\n");
+      }
+      writer.write("</sensor>\n");
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Deletes the specified file, or the specified directory and its contents.
+   * @param file the file or directory.
+   */
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,302 @@
+package org.hackystat.sensor.xmldata.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.hackystat.sensor.xmldata.util.LatencyRecorder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The in-process stand-in for a Hackystat sensorbase, which accepts the
+ * traffic of SensorShell instances over HTTP on the local host. Pings succeed
+ * for any account, and sensor data sent with PUT or POST is counted and then
+ * discarded. Each sensor data request is timed from its arrival until its
+ * response is sent, and a response delay can be set to model a slow or distant
+ * sensorbase. The resources of the sensor data can also be kept, in the order
+ * the requests arrived, which lets tests check the order the shells sent in,
+ * and a limit on the sensor data accepted models a sensorbase that fails
+ * partway through a run.
+ * <p>
+ * The stub implements only what the shells need to send data, and is meant for
+ * measuring this sensor on a machine without a sensorbase.
+ * @author aito
+ *
+ */
+public class StubSensorBase {
+  /** The path of the sensorbase on the server. */
+  public static final String CONTEXT = "/sensorbase/";
+  /** The reply to a ping without an account. */
+  private static final String PING_REPLY = "SensorBase";
+  /** The reply to a ping with an account. */
+  private static final String AUTHENTICATED_PING_REPLY = "SensorBase authenticated";
+  /** The element that starts each sensor data instance in a request. */
+  private static final String SENSOR_DATA_TAG = "<SensorData>";
+  /** The element that starts the resource of a sensor data instance. */
+  private static final String RESOURCE_TAG = "<Resource>";
+  /** The element that ends the resource of a sensor data instance. */
+  private static final String RESOURCE_END_TAG = "</Resource>";
+
+  /** The HTTP server. */
+  private HttpServer server = null;
+  /** The threads handling the requests. */
+  private ExecutorService executor = Executors.newCachedThreadPool();
+  /** The milliseconds each sensor data request waits before its response. */
+  private volatile long responseDelay = 0;
+  /** The latencies of the sensor data requests. */
+  private LatencyRecorder latencies = new LatencyRecorder();
+  /** The number of sensor data instances received. */
+  private long entryCount = 0;
+  /** The number of sensor data requests received. */
+  private long requestCount = 0;
+  /** The arrival time in nanoseconds of the first sensor data request. */
+  private long firstArrival = 0;
+  /** The arrival time in nanoseconds of the last sensor data request. */
+  private long lastArrival = 0;
+  /** The resources of the sensor data received, or null if they are not kept. */
+  private List<String> resources = null;
+  /** The number of sensor data instances accepted before requests are refused. */
+  private long entryLimit = Long.MAX_VALUE;
+
+  /**
+   * Creates the stub sensorbase on the specified port of the local host. The
+   * stub does not accept requests until it is started.
+   * @param port the port, or 0 to use any free port.
+   * @throws IOException thrown if the port could not be bound.
+   */
+  public StubSensorBase(int port) throws IOException {
+    this.server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+    this.server.createContext(CONTEXT, new HttpHandler() {
+      public void handle(HttpExchange exchange) throws IOException {
+        handleRequest(exchange);
+      }
+    });
+    this.server.setExecutor(this.executor);
+  }
+
+  /** Starts accepting requests. */
+  public void start() {
+    this.server.start();
+  }
+
+  /** Stops accepting requests, and stops the threads handling them. */
+  public void stop() {
+    this.server.stop(0);
+    this.executor.shutdownNow();
+  }
+
+  /**
+   * Returns the host URL the shells use to reach this stub.
+   * @return the host, which ends with a slash.
+   */
+  public String getHost() {
+    return "http://localhost:" + this.server.getAddress().getPort() + CONTEXT;
+  }
+
+  /**
+   * Sets the time each sensor data request waits before it is answered.
+   * @param millis the delay in milliseconds.
+   */
+  public void setResponseDelay(long millis) {
+    this.responseDelay = millis;
+  }
+
+  /**
+   * Returns the latencies of the sensor data requests, from their arrival until
+   * their response is sent.
+   * @return the recorder of the latencies.
+   */
+  public LatencyRecorder getLatencies() {
+    return this.latencies;
+  }
+
+  /**
+   * Sets whether the resources of the sensor data received are kept, which
+   * uses memory for every instance and is meant for tests.
+   * @param isKept true to keep the resources, false to drop them.
+   */
+  public synchronized void setResourcesKept(boolean isKept) {
+    this.resources = isKept ? new ArrayList<String>() : null;
+  }
+
+  /**
+   * Returns the resources of the sensor data received since the resources were
+   * kept or the stub was reset, in the order the requests arrived.
+   * @return the resources, which are empty if they are not kept.
+   */
+  public synchronized List<String> getResources() {
+    return (this.resources == null) ? new ArrayList<String>() : new ArrayList<String>(
+        this.resources);
+  }
+
+  /**
+   * Sets the number of sensor data instances accepted. A sensor data request
+   * that would exceed it is refused with a server error and is not counted.
+   * @param entryLimit the number of instances accepted.
+   */
+  public synchronized void setEntryLimit(long entryLimit) {
+    this.entryLimit = entryLimit;
+  }
+
+  /**
+   * Returns the number of sensor data instances received.
+   * @return the number of entries.
+   */
+  public synchronized long getEntryCount() {
+    return this.entryCount;
+  }
+
+  /**
+   * Returns the number of sensor data requests received.
+   * @return the number of requests.
+   */
+  public synchronized long getRequestCount() {
+    return this.requestCount;
+  }
+
+  /**
+   * Returns the time between the arrivals of the first and the last sensor
+   * data requests.
+   * @return the time in nanoseconds, or 0 if fewer than two arrived.
+   */
+  public synchronized long getArrivalSpan() {
+    return this.lastArrival - this.firstArrival;
+  }
+
+  /** Starts the counts and latencies again. */
+  public synchronized void reset() {
+    this.latencies.clear();
+    this.entryCount = 0;
+    this.requestCount = 0;
+    this.firstArrival = 0;
+    this.lastArrival = 0;
+    if (this.resources != null) {
+      this.resources.clear();
+    }
+  }
+
+  /**
+   * Answers the specified request. Pings are answered as the sensorbase
+   * answers them, sensor data is counted unless it exceeds the entry limit,
+   * and every other request succeeds without a body.
+   * @param exchange the request and its response.
+   * @throws IOException thrown if the request could not be read or answered.
+   */
+  private void handleRequest(HttpExchange exchange) throws IOException {
+    long arrival = System.nanoTime();
+    try {
+      String path = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+      String method = exchange.getRequestMethod();
+      String body = readBody(exchange.getRequestBody());
+      if ("ping".equals(path)) {
+        String query = exchange.getRequestURI().getQuery();
+        boolean isAccount = query != null && query.contains("user=");
+        this.sendReply(exchange, isAccount ? AUTHENTICATED_PING_REPLY : PING_REPLY);
+      }
+      else if (path.startsWith("sensordata") && ("PUT".equals(method)
+          || "POST".equals(method))) {
+        if (!this.recordArrival(arrival, countEntries(body), body)) {
+          exchange.sendResponseHeaders(500, -1);
+        }
+        else {
+          if (this.responseDelay > 0) {
+            Thread.sleep(this.responseDelay);
+          }
+          this.latencies.record(System.nanoTime() - arrival);
+          exchange.sendResponseHeaders(201, -1);
+        }
+      }
+      else {
+        exchange.sendResponseHeaders(200, -1);
+      }
+    }
+    catch (InterruptedException e) {
+      exchange.sendResponseHeaders(503, -1);
+    }
+    finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Counts the specified sensor data request, and keeps its resources if they
+   * are kept, unless the request exceeds the entry limit.
+   * @param arrival the arrival time of the request in nanoseconds.
+   * @param entries the number of sensor data instances in the request.
+   * @param body the body of the request.
+   * @return true if the request was accepted, false if it was refused.
+   */
+  private synchronized boolean recordArrival(long arrival, int entries, String body) {
+    if (this.entryCount + entries > this.entryLimit) {
+      return false;
+    }
+    if (this.requestCount == 0) {
+      this.firstArrival = arrival;
+    }
+    this.lastArrival = arrival;
+    this.requestCount++;
+    this.entryCount += entries;
+    if (this.resources != null) {
+      for (int index = body.indexOf(RESOURCE_TAG); index != -1; index = body.indexOf(
+          RESOURCE_TAG, index)) {
+        index += RESOURCE_TAG.length();
+        this.resources.add(body.substring(index, body.indexOf(RESOURCE_END_TAG, index)));
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Sends the specified text as the successful response of a request.
+   * @param exchange the request and its response.
+   * @param reply the text of the response.
+   * @throws IOException thrown if the response could not be sent.
+   */
+  private void sendReply(HttpExchange exchange, String reply) throws IOException {
+    byte[] bytes = reply.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+    exchange.sendResponseHeaders(200, bytes.length);
+    OutputStream stream = exchange.getResponseBody();
+    stream.write(bytes);
+    stream.close();
+  }
+
+  /**
+   * Returns the body of a request as a string.
+   * @param stream the stream of the body, which is read to its end.
+   * @return the body.
+   * @throws IOException thrown if the body could not be read.
+   */
+  private static String readBody(InputStream stream) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    for (int length = stream.read(buffer); length != -1; length = stream.read(buffer)) {
+      body.write(buffer, 0, length);
+    }
+    return body.toString("UTF-8");
+  }
+
+  /**
+   * Returns the number of sensor data instances in the specified request body,
+   * which holds one instance or a batch of them.
+   * @param body the request body.
+   * @return the number of instances.
+   */
+  static int countEntries(String body) {
+    int entries = 0;
+    for (int index = body.indexOf(SENSOR_DATA_TAG); index != -1; index = body.indexOf(
+        SENSOR_DATA_TAG, index + SENSOR_DATA_TAG.length())) {
+      entries++;
+    }
+    return entries;
+  }
+}
@@ -0,0 +1,144 @@
+package org.hackystat.sensor.xmldata.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the StubSensorBase answers pings and counts the sensor data it
+ * receives.
+ * @author aito
+ *
+ */
+public class TestStubSensorBase {
+  /** The stub sensorbase tested. */
+  private StubSensorBase sensorBase = null;
+
+  /**
+   * Starts the stub sensorbase on a free port.
+   * @throws Exception thrown if the stub could not be started.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.sensorBase = new StubSensorBase(0);
+    this.sensorBase.start();
+  }
+
+  /** Stops the stub sensorbase. */
+  @After
+  public void tearDown() {
+    this.sensorBase.stop();
+  }
+
+  /**
+   * Tests if pings are answered as the sensorbase answers them.
+   * @throws Exception thrown if the stub could not be reached.
+   */
+  @Test
+  public void testPing() throws Exception {
+    Assert.assertEquals("The ping reply is incorrect.", "SensorBase", this.request("GET",
+        "ping", null));
+    Assert.assertEquals("The authenticated ping reply is incorrect.",
+        "SensorBase authenticated", this.request("GET", "ping?user=a&password=b", null));
+  }
+
+  /**
+   * Tests if the sensor data of single and batch requests is counted.
+   * @throws Exception thrown if the stub could not be reached.
+   */
+  @Test
+  public void testSensorData() throws Exception {
+    this.request("PUT", "sensordata/batch", "<SensorDatas><SensorData></SensorData>"
+        + "<SensorData></SensorData></SensorDatas>");
+    this.request("PUT", "sensordata/a/2008-01-01", "<SensorData></SensorData>");
+    Assert.assertEquals("The entry count is incorrect.", 3, this.sensorBase.getEntryCount());
+    Assert.assertEquals("The request count is incorrect.", 2, this.sensorBase
+        .getRequestCount());
+    Assert.assertEquals("The latencies were not recorded.", 2, this.sensorBase
+        .getLatencies().getCount());
+
+    this.sensorBase.reset();
+    Assert.assertEquals("The entry count was not reset.", 0, this.sensorBase.getEntryCount());
+  }
+
+  /**
+   * Tests if the resources of the sensor data are kept in the order they
+   * arrived, and only when they are asked for.
+   * @throws Exception thrown if the stub could not be reached.
+   */
+  @Test
+  public void testResources() throws Exception {
+    this.request("PUT", "sensordata/a/2008-01-01", "<SensorData><Resource>a</Resource>"
+        + "</SensorData>");
+    Assert.assertTrue("The resources should not be kept.", this.sensorBase.getResources()
+        .isEmpty());
+    this.sensorBase.setResourcesKept(true);
+    this.request("PUT", "sensordata/batch", "<SensorDatas><SensorData><Resource>b</Resource>"
+        + "</SensorData><SensorData><Resource>c</Resource></SensorData></SensorDatas>");
+    this.request("PUT", "sensordata/a/2008-01-01", "<SensorData><Resource>d</Resource>"
+        + "</SensorData>");
+    Assert.assertEquals("The resources are incorrect.", Arrays.asList("b", "c", "d"),
+        this.sensorBase.getResources());
+  }
+
+  /**
+   * Tests if sensor data beyond the entry limit is refused and not counted.
+   * @throws Exception thrown if the stub could not be reached.
+   */
+  @Test
+  public void testEntryLimit() throws Exception {
+    this.sensorBase.setEntryLimit(2);
+    this.request("PUT", "sensordata/batch", "<SensorDatas><SensorData></SensorData>"
+        + "<SensorData></SensorData></SensorDatas>");
+    HttpURLConnection connection = (HttpURLConnection) new URL(this.sensorBase.getHost()
+        + "sensordata/a/2008-01-01").openConnection();
+    connection.setRequestMethod("PUT");
+    connection.setDoOutput(true);
+    OutputStream stream = connection.getOutputStream();
+    stream.write("<SensorData></SensorData>".getBytes("UTF-8"));
+    stream.close();
+    Assert.assertEquals("The request should be refused.", 500, connection.getResponseCode());
+    Assert.assertEquals("The refused entry should not be counted.", 2, this.sensorBase
+        .getEntryCount());
+  }
+
+  /**
+   * Sends the specified request to the stub and returns its response.
+   * @param method the HTTP method.
+   * @param path the path of the request relative to the host.
+   * @param body the body of the request, or null.
+   * @return the body of the response.
+   * @throws Exception thrown if the request failed.
+   */
+  private String request(String method, String path, String body) throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL(this.sensorBase.getHost()
+        + path).openConnection();
+    connection.setRequestMethod(method);
+    if (body != null) {
+      connection.setDoOutput(true);
+      OutputStream stream = connection.getOutputStream();
+      stream.write(body.getBytes("UTF-8"));
+      stream.close();
+    }
+    Assert.assertTrue("The request failed.", connection.getResponseCode() / 100 == 2);
+    ByteArrayOutputStream response = new ByteArrayOutputStream();
+    InputStream stream = connection.getInputStream();
+    try {
+      for (int b = stream.read(); b != -1; b = stream.read()) {
+        response.write(b);
+      }
+    }
+    finally {
+      stream.close();
+    }
+    return response.toString("UTF-8");
+  }
+}
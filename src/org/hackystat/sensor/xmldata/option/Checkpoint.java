@@ -0,0 +1,281 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.util.CheckpointJournal;
+import org.hackystat.sensorshell.SensorShellException;
+
+/**
+ * The tracker of a run's progress through its documents, which are files or
+ * archive entries, that is shared by the options that send files. If the
+ * -checkpoint option is used, the shell is flushed every
+ * ENTRIES_PER_CHECKPOINT entries and the progress is then written to the
+ * checkpoint journal, so the journal never claims entries the shell has not
+ * sent. If the -resume option is also used, the documents completed by an
+ * earlier run are skipped, as are the leading entries of the document it
+ * stopped in. A run that sends documents again when they change, such as
+ * -watch, also keeps how far it has sent each document, so that only the
+ * entries after those are sent again.
+ * @author aito
+ *
+ */
+public class Checkpoint {
+  /** The number of entries added between checkpoints. */
+  private static final int ENTRIES_PER_CHECKPOINT = 10000;
+  /** The number of completed documents kept in memory between checkpoints. */
+  private static final int DOCUMENTS_PER_CHECKPOINT = 1000;
+
+  /** The shell the entries are added to. */
+  private ShardedShell shell = null;
+  /** The journal the progress is written to, or null if none is kept. */
+  private CheckpointJournal journal = null;
+  /** The name of the document being sent, or null. */
+  private String document = null;
+  /** The number of entries of the current document that have been read. */
+  private int documentEntries = 0;
+  /** The number of leading entries of the current document that are skipped. */
+  private int skippedEntries = 0;
+  /** The number of leading entries of the current document skipped or added. */
+  private int sentDocumentEntries = 0;
+  /** The number of entries added since the last checkpoint. */
+  private int uncheckpointedEntries = 0;
+  /** The mapping of document name -> entries, completed since the last checkpoint. */
+  private Map<String, Integer> completedDocuments = new LinkedHashMap<String, Integer>();
+  /**
+   * The mapping of document name -> number of leading entries sent by this run,
+   * or null if this run sends each document only once.
+   */
+  private Map<String, Integer> runEntries = null;
+
+  /**
+   * Constructs this checkpoint with the specified shell and journal.
+   * @param shell the shell the entries are added to.
+   * @param journal the journal the progress is written to, or null.
+   */
+  public Checkpoint(ShardedShell shell, CheckpointJournal journal) {
+    this.shell = shell;
+    this.journal = journal;
+  }
+
+  /**
+   * Returns the checkpoint set up by the -checkpoint and -resume options of the
+   * specified controller. A checkpoint without a journal is returned if the
+   * -checkpoint option is not used.
+   * @param controller the controller containing the option objects.
+   * @param shell the shell the entries are added to.
+   * @return the checkpoint instance.
+   * @throws IOException thrown if the journal could not be read or opened, or
+   * if -resume is used without -checkpoint.
+   */
+  public static Checkpoint getInstance(XmlDataController controller, ShardedShell shell)
+    throws IOException {
+    String journalName = (String) controller.getOptionObject(Options.CHECKPOINT);
+    boolean isResumed = Boolean.TRUE.equals(controller.getOptionObject(Options.RESUME));
+    if (journalName == null) {
+      if (isResumed) {
+        throw new IOException("The -resume option requires the -checkpoint option.");
+      }
+      return new Checkpoint(shell, null);
+    }
+    return new Checkpoint(shell, new CheckpointJournal(new File(journalName), isResumed));
+  }
+
+  /**
+   * Keeps how far this run has sent each document, so that a document sent
+   * again skips the entries this run already sent instead of those an earlier
+   * run sent.
+   */
+  public void keepRunEntries() {
+    this.runEntries = new HashMap<String, Integer>();
+  }
+
+  /**
+   * Returns true if every entry of the specified document was sent by an
+   * earlier run and this run has not sent the document. If this run keeps how
+   * far it sent each document, the skipped document is kept as sent by this
+   * run, so that it is sent again once it changes.
+   * @param document the name of the document.
+   * @return true if the document can be skipped, false if not.
+   */
+  public boolean isCompleted(String document) {
+    if (this.runEntries != null && this.runEntries.containsKey(document)) {
+      return false;
+    }
+    boolean isCompleted = this.journal != null && this.journal.isCompleted(document);
+    if (isCompleted && this.runEntries != null) {
+      this.runEntries.put(document, Integer.valueOf(this.journal
+          .getCompletedEntries(document)));
+    }
+    return isCompleted;
+  }
+
+  /**
+   * Returns the number of leading entries of the specified document that this
+   * run, or else an earlier run, already sent.
+   * @param document the name of the document.
+   * @return the number of entries to skip, which is 0 if none were sent.
+   */
+  public int getSentEntries(String document) {
+    if (this.runEntries != null) {
+      Integer count = this.runEntries.get(document);
+      if (count != null) {
+        return count.intValue();
+      }
+    }
+    return (this.journal == null) ? 0 : this.journal.getSentEntries(document);
+  }
+
+  /**
+   * Forgets how far this run has sent the documents of the specified file,
+   * which are the file itself and the entries of an archive, so that they are
+   * sent from their first entry again.
+   * @param file the name of the file.
+   */
+  public void forgetDocuments(String file) {
+    if (this.runEntries == null) {
+      return;
+    }
+    for (Iterator<String> i = this.runEntries.keySet().iterator(); i.hasNext();) {
+      String name = i.next();
+      if (name.equals(file) || name.startsWith(file + "!")) {
+        i.remove();
+      }
+    }
+    if (this.journal != null
+        && (this.journal.isCompleted(file) || this.journal.getSentEntries(file) > 0)) {
+      // Hides the progress an earlier run recorded for an earlier version of the file.
+      this.runEntries.put(file, Integer.valueOf(0));
+    }
+  }
+
+  /**
+   * Starts tracking the entries of the specified document.
+   * @param document the name of the document.
+   */
+  public void startDocument(String document) {
+    this.document = document;
+    this.documentEntries = 0;
+    this.skippedEntries = this.getSentEntries(document);
+    this.sentDocumentEntries = 0;
+  }
+
+  /**
+   * Counts the next entry of the current document and returns true if an
+   * earlier run already sent it.
+   * @return true if the entry should not be added to the shell, false if not.
+   */
+  public boolean skipEntry() {
+    this.documentEntries++;
+    if (this.documentEntries <= this.skippedEntries) {
+      this.sentDocumentEntries = this.documentEntries;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Counts the entries of the current document that an earlier run already
+   * sent, which is used when they were skipped before being converted.
+   */
+  public void skipSentEntries() {
+    this.documentEntries = this.skippedEntries;
+    this.sentDocumentEntries = this.skippedEntries;
+  }
+
+  /**
+   * Counts an entry added to the shell, which flushes the shell and writes a
+   * checkpoint every ENTRIES_PER_CHECKPOINT entries.
+   * @throws SensorShellException thrown if the shell could not send.
+   * @throws IOException thrown if the checkpoint could not be written.
+   */
+  public void entryAdded() throws SensorShellException, IOException {
+    this.sentDocumentEntries = this.documentEntries;
+    this.uncheckpointedEntries++;
+    if (this.journal != null && this.uncheckpointedEntries >= ENTRIES_PER_CHECKPOINT) {
+      this.flush();
+    }
+  }
+
+  /**
+   * Marks the current document as completed.
+   * @throws SensorShellException thrown if the shell could not send.
+   * @throws IOException thrown if a checkpoint could not be written.
+   */
+  public void endDocument() throws SensorShellException, IOException {
+    this.keepDocumentEntries(this.documentEntries);
+    if (this.journal != null) {
+      this.completedDocuments.put(this.document, Integer.valueOf(this.documentEntries));
+      if (this.completedDocuments.size() >= DOCUMENTS_PER_CHECKPOINT) {
+        this.flush();
+      }
+    }
+    this.document = null;
+  }
+
+  /**
+   * Keeps how far the current document was sent when sending it failed, which
+   * is the entries before the one that failed.
+   */
+  public void failDocument() {
+    if (this.document != null) {
+      this.keepDocumentEntries(this.sentDocumentEntries);
+    }
+  }
+
+  /**
+   * Keeps the specified number of leading entries of the current document as
+   * sent by this run, if this run keeps them.
+   * @param count the number of entries sent.
+   */
+  private void keepDocumentEntries(int count) {
+    if (this.runEntries != null) {
+      this.runEntries.put(this.document, Integer.valueOf(count));
+    }
+  }
+
+  /**
+   * Sends the entries added to the shell and then records the progress in the
+   * journal, if one is kept.
+   * @throws SensorShellException thrown if the shell could not send.
+   * @throws IOException thrown if the checkpoint could not be written.
+   */
+  public void flush() throws SensorShellException, IOException {
+    this.shell.send();
+    if (this.journal != null) {
+      for (Map.Entry<String, Integer> completed : this.completedDocuments.entrySet()) {
+        this.journal.recordCompleted(completed.getKey(), completed.getValue().intValue());
+      }
+      this.completedDocuments.clear();
+      if (this.document != null && this.sentDocumentEntries > 0) {
+        this.journal.recordEntries(this.document, this.sentDocumentEntries);
+      }
+      this.journal.sync();
+    }
+    this.uncheckpointedEntries = 0;
+  }
+
+  /**
+   * Writes the final checkpoint, after flushing the shell, and closes the
+   * journal, which is closed even if the flush fails. Nothing is done if no
+   * journal is kept or the journal is already closed.
+   * @throws SensorShellException thrown if the shell could not send.
+   * @throws IOException thrown if the checkpoint could not be written.
+   */
+  public void close() throws SensorShellException, IOException {
+    if (this.journal != null) {
+      try {
+        this.flush();
+      }
+      finally {
+        this.journal.close();
+        this.journal = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to specify the journal that records the progress of a -file,
+ * -migration or -watch run. If the run stops early, it can be started again
+ * with the same journal and the -resume option, which skips the data already
+ * sent.
+ * @author aito
+ *
+ */
+public class CheckpointOption extends AbstractOption {
+  /** This option's name, which is "-checkpoint". */
+  public static final String OPTION_NAME = "-checkpoint";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public CheckpointOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the name of the journal file. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.CHECKPOINT, this.getParameters().get(0));
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * a file that is not a directory.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() != 1) {
+      String msg = "The " + OPTION_NAME
+          + " option must have only one argument.  Ex: -checkpoint migration.journal";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    if (new File(this.getParameters().get(0)).isDirectory()) {
+      String msg = "The checkpoint journal '" + this.getParameters().get(0)
+          + "' is a directory.";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    return true;
+  }
+}
@@ -1,37 +1,93 @@
 package org.hackystat.sensor.xmldata.option;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
 
 import org.hackystat.sensor.xmldata.XmlDataController;
-import org.hackystat.sensor.xmldata.jaxb.Entries;
 import org.hackystat.sensor.xmldata.jaxb.Entry;
 import org.hackystat.sensor.xmldata.jaxb.ObjectFactory;
-import org.hackystat.sensor.xmldata.jaxb.XmlData;
+import org.hackystat.sensor.xmldata.util.AttributeNameTable;
+import org.hackystat.sensor.xmldata.util.CompactEntry;
+import org.hackystat.sensor.xmldata.util.CompressedInput;
+import org.hackystat.sensor.xmldata.util.InputFileWalker;
+import org.hackystat.sensor.xmldata.util.MappedXmlDataFile;
+import org.hackystat.sensor.xmldata.util.StringDictionary;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensor.xmldata.util.TstampIndex;
+import org.hackystat.sensor.xmldata.util.UniqueTstampSet;
+import org.hackystat.sensor.xmldata.util.XmlDataEntryReader;
+import org.hackystat.sensor.xmldata.util.XmlDataEntryWriter;
 import org.hackystat.sensorshell.SensorShellException;
-import org.hackystat.sensorshell.SensorShellProperties;
-import org.hackystat.sensorshell.Shell;
-import org.hackystat.utilities.tstamp.Tstamp;
-import org.hackystat.utilities.tstamp.TstampSet;
 import org.xml.sax.SAXException;
 
 /**
  * The option used to send generic sensor data, via the sensorshell, to the
- * sensorbase. This option accepts a list of files that contain the generic
- * sensor information.
+ * sensorbase. This option accepts a list of files, directories and glob
+ * patterns naming the files that contain the generic sensor information.
  * @author aito
  * 
  */
 public class FileOption extends AbstractOption {
   /** The name of this option, which is "-file". */
   public static final String OPTION_NAME = "-file";
+  /** The number of entries added to the shell during execution. */
+  private int entriesAdded = 0;
+  /** The progress of the execution, which is recorded if -checkpoint is used. */
+  private Checkpoint checkpoint = null;
+  /** The number of entries without a SensorDataType that were not sent. */
+  private AtomicInteger rejectedEntries = new AtomicInteger();
+  /** The writer of the quarantined entries, which is created when first used. */
+  private XmlDataEntryWriter quarantineWriter = null;
+  /** The index of the timestamps sent by every run, or null if none is kept. */
+  private TstampIndex tstampIndex = null;
+  /** The dictionary of the repeated strings of the entries queued by segments. */
+  private StringDictionary entryDictionary = null;
+  /** The builder reused to render each sent entry in verbose mode. */
+  private StringBuilder verboseBuilder = new StringBuilder();
+
+  /** The size in bytes at which a file is split across the worker threads. */
+  private static final long SPLIT_SIZE = 64L * 1024 * 1024;
+  /** The number of converted entries each segment queues by default. */
+  private static final int SEGMENT_QUEUE_SIZE = PipelineOption.DEFAULT_DEPTH;
+  /** The marker queued after the last entry of a segment. */
+  private static final CompactEntry END_OF_SEGMENT = new CompactEntry(
+      new HashMap<String, String>(), new StringDictionary());
+  /** The name of the SensorDataType attribute. */
+  private static final QName SDT_ATTRIBUTE = new QName("SensorDataType");
+  /** The number of keys every entry has besides its other attributes. */
+  private static final int REQUIRED_KEY_COUNT = 5;
+
+  /** The receiver of the key-value mappings converted from a file's entries. */
+  private interface EntryHandler {
+    /**
+     * Handles the specified converted entry.
+     * @param keyValMap the key-value mapping of an entry.
+     * @throws Exception thrown if the entry could not be handled.
+     */
+    void handle(Map<String, String> keyValMap) throws Exception;
+  }
 
   /**
    * Creates this option with the specified controller and parameters.
@@ -43,20 +99,43 @@ public class FileOption extends AbstractOption {
   }
 
   /**
-   * Returns true if the the list of parameters contains 1 or more files that
-   * exist.
+   * Creates this option with the specified name, which allows options that
+   * find their files in other ways to send them like this option.
+   * @param controller the specified controller.
+   * @param name the name of the option.
+   * @param parameters the specified parameters.
+   */
+  protected FileOption(XmlDataController controller, String name, List<String> parameters) {
+    super(controller, name, parameters);
+  }
+
+  /**
+   * Returns true if the the list of parameters contains 1 or more files,
+   * directories or glob patterns, such as reports/**&#47;*.xml, that exist. The
+   * base directory of a glob pattern must exist, but the files it matches are
+   * only found when this option is executed.
    * @return true if this option's parameters are valid.
    */
   @Override
   public boolean isValid() {
     if (this.getParameters().size() == 0) {
       String msg = "The number of parameters must include at least 1 file. "
-          + "Ex: -file foo.xml foo2.xml";
+          + "Ex: -file foo.xml foo2.xml reports/**/*.xml";
       this.getController().fireMessage(msg);
       return false;
     }
 
     for (String parameter : this.getParameters()) {
+      if (InputFileWalker.isGlob(parameter)) {
+        File baseDirectory = InputFileWalker.getBaseDirectory(parameter);
+        if (!baseDirectory.isDirectory()) {
+          String msg = "The directory '" + baseDirectory + "' of the pattern '" + parameter
+              + "' does not exist.";
+          this.getController().fireMessage(msg);
+          return false;
+        }
+        continue;
+      }
       File file = new File(parameter);
       if (!file.exists()) {
         String msg = "The file '" + file + "' does not exist.";
@@ -69,74 +148,51 @@ public class FileOption extends AbstractOption {
 
   /**
    * Executes this option by grabbing all information stored in the specified
-   * files, and sending them to the sensorbase.
+   * files, and sending them to the sensorbase. Each file is streamed one entry
+   * at a time, so the memory used does not depend on the size of the files.
+   * Directories and glob patterns are walked in the background while the files
+   * already found are sent, and the progress is recorded if the -checkpoint
+   * option is used. If the -threads option is set, files are instead converted
+   * by a pool of worker threads and handed to the shell in order. The -pipeline
+   * option does the same with one worker thread if -threads is not set, and
+   * sets the depth of the queues between the workers and the shell.
    */
   @Override
   public void execute() {
+    ShardedShell shell = null;
     try {
       // First, lets get the correct shell instance.
-      Shell shell = OptionUtil.createShell(new SensorShellProperties(), this.getController());
+      shell = OptionUtil.createShardedShell(this.getController());
 
       // Then, send data from each file.
-      XMLGregorianCalendar runtime = Tstamp.makeTimestamp();
-      int entriesAdded = 0;
-      for (String filePath : this.getParameters()) {
-        this.getController().fireVerboseMessage("Sending data from: " + filePath);
-        Unmarshaller unmarshaller = OptionUtil.createUnmarshaller(ObjectFactory.class,
-            "xmldata.xsd");
-        XmlData xmlData = (XmlData) unmarshaller.unmarshal(new File(filePath));
-        Entries entries = xmlData.getEntries();
-
-        // Only send data if the SDT is set or all entries have SDT attributes.
-        TstampSet tstampSet = new TstampSet();
-        Object sdtName = this.getController().getOptionObject(Options.SDT);
-        if (sdtName != null || this.hasSdtAttributes(entries.getEntry())) {
-          for (Entry entry : entries.getEntry()) {
-            // Then, lets set the "required" attributes.
-            Map<String, String> keyValMap = new HashMap<String, String>();
-            keyValMap.put("Tool", entry.getTool());
-            keyValMap.put("Resource", this.getResource(entry));
-            keyValMap.put("SensorDataType", (String) sdtName);
-            keyValMap.put("Timestamp", OptionUtil.getCurrentTimestamp(true, tstampSet)
-                .toString());
-
-            // If the SetRuntimeOption is set, use the same runtime.
-            if (Boolean.TRUE.equals(this.getController().getOptionObject(Options.SET_RUNTIME))) {
-              keyValMap.put("Runtime", runtime.toString());
-            }
-
-            // Next, add the optional attributes.
-            Map<QName, String> map = entry.getOtherAttributes();
-            for (Map.Entry<QName, String> attributeEntry : map.entrySet()) {
-              String entryName = attributeEntry.getKey().toString();
-              String entryValue = attributeEntry.getValue();
-
-              // If entries contain tstamps, override the current tstamp.
-              if ("Timestamp".equals(entryName)) {
-                long timestamp = OptionUtil.getTimestampInMillis(entryValue);
-                Boolean isUnique = (Boolean) this.getController().getOptionObject(
-                    Options.UNIQUE_TSTAMP);
-                entryValue = OptionUtil.massageTimestamp(isUnique, tstampSet, timestamp)
-                    .toString();
-              }
-              keyValMap.put(entryName, entryValue);
-            }
-            // Finally, add the mapping and send the data.
-            this.getController().fireVerboseMessage(OptionUtil.getMapVerboseString(keyValMap));
-            shell.add(keyValMap);
-            entriesAdded++;
+      this.entriesAdded = 0;
+      this.startCheckpoint(shell);
+      this.openTstampIndex();
+      String runtime = TstampFormatter.format(System.currentTimeMillis());
+      String sdtName = (String) this.getController().getOptionObject(Options.SDT);
+      Integer threads = (Integer) this.getController().getOptionObject(Options.THREADS);
+      if (threads != null && threads.intValue() > 1) {
+        this.executeParallel(shell, sdtName, runtime, threads.intValue());
+      }
+      else if (this.getController().getOptionObject(Options.PIPELINE) != null) {
+        this.executeParallel(shell, sdtName, runtime, 1);
+      }
+      else {
+        InputFileWalker walker = new InputFileWalker(this.getParameters());
+        try {
+          for (File file = walker.nextFile(); file != null; file = walker.nextFile()) {
+            this.sendFile(shell, file, sdtName, runtime);
           }
         }
-        else {
-          String msg = "The -sdt flag must be specified for all entries or each "
-              + "xml entry must have the 'SensorDataType' attribute.";
-          throw new Exception(msg);
+        finally {
+          walker.close();
         }
       }
 
-      // Fires the send message and quits the sensorshell.
-      OptionUtil.fireSendMessage(this.getController(), shell, entriesAdded);
-      shell.quit();
+      // Fires the send message. The sensorshell is quit even if the files failed.
+      this.checkpoint.close();
+      this.closeRejectedEntries();
+      OptionUtil.fireSendMessage(this.getController(), shell, this.entriesAdded);
     }
     catch (JAXBException e) {
       String msg = "There was a problem unmarshalling the data.  File(s) "
@@ -147,6 +203,10 @@ public class FileOption extends AbstractOption {
       String msg = "The specified file(s) could not be parsed.";
       this.getController().fireMessage(msg, e.toString());
     }
+    catch (XMLStreamException e) {
+      String msg = "The specified file(s) could not be parsed.";
+      this.getController().fireMessage(msg, e.toString());
+    }
     catch (SensorShellException e) {
       String msg = "The sensorshell.properties file in your userdir/.hackystat "
           + "directory is invalid or does not exist.";
@@ -156,6 +216,377 @@ public class FileOption extends AbstractOption {
       String msg = "The specified file(s) failed to load.";
       this.getController().fireMessage(msg, e.toString());
     }
+    finally {
+      OptionUtil.quitShell(this.getController(), shell);
+      this.closeQuarantineWriter();
+      this.closeTstampIndex();
+    }
+  }
+
+  /**
+   * Converts the specified files on a pool of worker threads while this thread
+   * hands the converted entries to the shell in the order of the files. Files
+   * of at least SPLIT_SIZE bytes are memory-mapped and cut at Entry boundaries
+   * into one segment per thread, and every other file is a single segment.
+   * Each segment is converted into its own bounded queue and at most twice as
+   * many segments as there are threads are converted ahead of the segment being
+   * sent, which bounds the memory used by converted entries. The entries are
+   * queued as compact entries sharing the repeated strings of one dictionary.
+   * If a segment or the walk of the parameters fails, the segments before it
+   * have been sent and the failure is rethrown as if the files were processed
+   * one at a time.
+   * @param shell the shell the entries are sent to.
+   * @param sdtName the SensorDataType specified by the -sdt option, or null.
+   * @param runtime the runtime shared by all entries.
+   * @param threads the number of worker threads.
+   * @throws Exception thrown if a file could not be converted or sent.
+   */
+  private void executeParallel(ShardedShell shell, final String sdtName,
+      final String runtime, int threads) throws Exception {
+    this.entryDictionary = new StringDictionary();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    LinkedList<Segment> pendingSegments = new LinkedList<Segment>();
+    InputFileWalker walker = new InputFileWalker(this.getParameters());
+    IOException walkError = null;
+    try {
+      boolean isWalked = false;
+      while (true) {
+        // Keeps the workers busy with the segments of the next files.
+        while (!isWalked && pendingSegments.size() < 2 * threads) {
+          File file = null;
+          try {
+            file = walker.nextFile();
+          }
+          catch (IOException e) {
+            walkError = e;
+          }
+          if (file == null) {
+            isWalked = true;
+            break;
+          }
+          for (final Segment segment : this.createSegments(file, threads)) {
+            pendingSegments.add(segment);
+            executor.execute(new Runnable() {
+              public void run() {
+                segment.convert(sdtName, runtime);
+              }
+            });
+          }
+        }
+        if (pendingSegments.isEmpty()) {
+          break;
+        }
+
+        // Then, send the oldest segment's entries.
+        Segment segment = pendingSegments.poll();
+        if (segment.isFirst) {
+          this.getController().fireVerboseMessage("Sending data from: " + segment.name);
+          this.checkpoint.startDocument(segment.name);
+        }
+        for (CompactEntry entry = segment.entries.take(); entry != END_OF_SEGMENT; entry =
+            segment.entries.take()) {
+          this.sendEntry(shell, entry.toKeyValMap(this.entryDictionary));
+        }
+        segment.close();
+        if (segment.error != null) {
+          throw segment.error;
+        }
+        if (segment.isDocumentEnd) {
+          this.checkpoint.endDocument();
+        }
+      }
+    }
+    finally {
+      walker.close();
+      executor.shutdownNow();
+      for (Segment segment : pendingSegments) {
+        segment.close();
+      }
+    }
+    if (walkError != null) {
+      throw walkError;
+    }
+  }
+
+  /**
+   * Returns the segments of the specified file. Each document of a zip archive
+   * is its own segment, plain files of at least SPLIT_SIZE bytes are split into
+   * one segment per thread, and every other file, including gzip files and
+   * large files that cannot be split, is one segment that is read as a stream.
+   * The documents a resumed run has already sent are left out.
+   * @param file the xmldata file.
+   * @param threads the number of worker threads, which is the number of
+   * segments a large file is split into.
+   * @return the list of segments in file order.
+   * @throws IOException thrown if the file could not be opened or mapped.
+   */
+  private List<Segment> createSegments(File file, int threads) throws IOException {
+    List<Segment> segments = new ArrayList<Segment>();
+    String filePath = file.getPath();
+    CompressedInput.Format format = CompressedInput.getFormat(file);
+    MappedXmlDataFile mappedFile = null;
+    if (format == CompressedInput.Format.PLAIN && threads > 1
+        && file.length() >= SPLIT_SIZE) {
+      mappedFile = new MappedXmlDataFile(file);
+      if (mappedFile.split(threads) == 1) {
+        mappedFile.close();
+        mappedFile = null;
+      }
+    }
+    if (format == CompressedInput.Format.ZIP) {
+      ZipFile zipFile = new ZipFile(file);
+      Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        if (!zipEntry.isDirectory()) {
+          Segment segment = new Segment(filePath + "!" + zipEntry.getName(), file,
+              OptionUtil.createTstampSet(this.getController()));
+          segment.zipFile = zipFile;
+          segment.zipEntry = zipEntry;
+          segment.isDocumentEnd = true;
+          segments.add(segment);
+        }
+      }
+      if (segments.isEmpty()) {
+        zipFile.close();
+        throw new IOException("The zip archive, " + filePath + ", contains no files.");
+      }
+    }
+    else if (mappedFile != null) {
+      int rangeCount = mappedFile.getRangeCount();
+      UniqueTstampSet tstampSet = OptionUtil.createTstampSet(this.getController());
+      for (int i = 0; i < rangeCount; i++) {
+        Segment segment = new Segment(filePath, file, tstampSet);
+        segment.mappedFile = mappedFile;
+        segment.rangeIndex = i;
+        segment.isFirst = (i == 0);
+        segment.isDocumentEnd = (i == rangeCount - 1);
+        segments.add(segment);
+      }
+    }
+    else {
+      Segment segment = new Segment(filePath, file, OptionUtil.createTstampSet(this
+          .getController()));
+      segment.isDocumentEnd = true;
+      segments.add(segment);
+    }
+
+    // The last segment closes the resources shared by the file's segments.
+    Segment lastSegment = segments.get(segments.size() - 1);
+    lastSegment.isLast = true;
+    for (Iterator<Segment> i = segments.iterator(); i.hasNext();) {
+      if (this.checkpoint.isCompleted(i.next().name)) {
+        i.remove();
+      }
+    }
+    if (segments.isEmpty()) {
+      lastSegment.close();
+    }
+    else {
+      segments.get(segments.size() - 1).isLast = true;
+    }
+    return segments;
+  }
+
+  /**
+   * Reads each entry of the specified segment and passes its key-value mapping
+   * to the specified handler. If the -sdt option is not used, each entry
+   * without a SensorDataType attribute is handled by the -sdtPolicy option in
+   * the same pass. The entries are validated as set by the -validate option.
+   * @param segment the segment of an xmldata file.
+   * @param sdtName the SensorDataType specified by the -sdt option, or null if
+   * each entry must provide its own SensorDataType attribute.
+   * @param runtime the runtime shared by all entries if the -setRuntime option
+   * is used.
+   * @param handler the handler receiving each converted entry.
+   * @throws Exception thrown if the segment could not be read, parsed or
+   * converted.
+   */
+  private void readSegment(Segment segment, String sdtName, String runtime,
+      EntryHandler handler) throws Exception {
+    UnmarshallerPool pool = UnmarshallerPool.getInstance(ObjectFactory.class, "xmldata.xsd");
+    Unmarshaller unmarshaller = pool.borrow();
+    XmlDataEntryReader reader = new XmlDataEntryReader(segment.openStream(), unmarshaller);
+    reader.setValidationInterval(OptionUtil.getValidationInterval(this.getController()));
+    try {
+      for (Entry entry = reader.nextEntry(); entry != null; entry = reader.nextEntry()) {
+        // Only send data if the SDT is set or the entry has the SDT attribute.
+        if (sdtName == null && !entry.getOtherAttributes().containsKey(SDT_ATTRIBUTE)) {
+          this.rejectEntry(entry, segment.name);
+        }
+        else {
+          handler.handle(this.createKeyValMap(entry, sdtName, runtime, segment.tstampSet,
+              reader.getNameTable()));
+        }
+      }
+    }
+    finally {
+      reader.close();
+      pool.release(unmarshaller);
+    }
+  }
+
+  /**
+   * Sends each entry of the specified file to the specified shell, one entry at
+   * a time.
+   * @param shell the shell the entries are added to.
+   * @param file the xmldata file, which may be compressed.
+   * @param sdtName the SensorDataType specified by the -sdt option, or null.
+   * @param runtime the runtime shared by all entries if the -setRuntime option
+   * is used.
+   * @return the number of entries added to the shell.
+   * @throws Exception thrown if the file could not be read, parsed or sent.
+   */
+  int sendFile(final ShardedShell shell, File file, String sdtName, String runtime)
+    throws Exception {
+    int entriesBefore = this.entriesAdded;
+    EntryHandler sender = new EntryHandler() {
+      public void handle(Map<String, String> keyValMap) throws Exception {
+        sendEntry(shell, keyValMap);
+      }
+    };
+    for (Segment segment : this.createSegments(file, 1)) {
+      if (segment.isFirst) {
+        this.getController().fireVerboseMessage("Sending data from: " + segment.name);
+        this.checkpoint.startDocument(segment.name);
+      }
+      try {
+        this.readSegment(segment, sdtName, runtime, sender);
+      }
+      finally {
+        segment.close();
+      }
+      if (segment.isDocumentEnd) {
+        this.checkpoint.endDocument();
+      }
+    }
+    return this.entriesAdded - entriesBefore;
+  }
+
+  /**
+   * Returns the number of entries this option has added to the shell.
+   * @return the number of entries added.
+   */
+  int getEntriesAdded() {
+    return this.entriesAdded;
+  }
+
+  /**
+   * Returns the checkpoint of this option's execution, which is created from
+   * the -checkpoint and -resume options.
+   * @param shell the shell the entries are added to.
+   * @return the checkpoint instance.
+   * @throws IOException thrown if the checkpoint journal could not be opened.
+   */
+  Checkpoint startCheckpoint(ShardedShell shell) throws IOException {
+    this.checkpoint = Checkpoint.getInstance(this.getController(), shell);
+    return this.checkpoint;
+  }
+
+  /**
+   * Opens the timestamp index named by the -tstampIndex option, if it is used.
+   * @throws IOException thrown if the index could not be opened.
+   */
+  void openTstampIndex() throws IOException {
+    this.tstampIndex = OptionUtil.openTstampIndex(this.getController());
+  }
+
+  /** Forces the timestamp index to the disk if one was opened. */
+  void closeTstampIndex() {
+    if (this.tstampIndex != null) {
+      this.tstampIndex.close();
+      this.tstampIndex = null;
+    }
+  }
+
+  /**
+   * Returns the number of converted entries each segment queues ahead of the
+   * shell, which is set by the -pipeline option.
+   * @return the queue size.
+   */
+  private int getSegmentQueueSize() {
+    Integer depth = (Integer) this.getController().getOptionObject(Options.PIPELINE);
+    return (depth == null) ? SEGMENT_QUEUE_SIZE : depth.intValue();
+  }
+
+  /**
+   * Adds the specified key-value mapping to the specified shell, unless a
+   * resumed run skips it because it has already been sent. The timestamp of an
+   * entry that is added is recorded in the timestamp index first, if one is
+   * used.
+   * @param shell the shell the entry is added to.
+   * @param keyValMap the converted entry.
+   * @throws SensorShellException thrown if the shell could not add the entry.
+   * @throws IOException thrown if a checkpoint could not be written.
+   */
+  private void sendEntry(ShardedShell shell, Map<String, String> keyValMap)
+    throws SensorShellException, IOException {
+    if (this.checkpoint.skipEntry()) {
+      return;
+    }
+    OptionUtil.recordTstamp(this.tstampIndex, keyValMap);
+    if (this.getController().isVerboseEntry()) {
+      this.verboseBuilder.setLength(0);
+      this.getController().fireVerboseMessage(OptionUtil.appendMapVerboseString(
+          this.verboseBuilder, keyValMap).toString());
+    }
+    shell.add(keyValMap);
+    this.entriesAdded++;
+    this.checkpoint.entryAdded();
+  }
+
+  /**
+   * Returns the key-value mapping of sensor data created from the specified
+   * entry.
+   * @param entry the entry containing the sensor data attributes.
+   * @param sdtName the SensorDataType specified by the -sdt option, or null if
+   * each entry provides its own SensorDataType attribute.
+   * @param runtime the runtime shared by all entries if the -setRuntime option
+   * is used.
+   * @param tstampSet the set of timestamps used to generate unique timestamps.
+   * @param nameTable the table of the canonical attribute keys of the file.
+   * @return the key-value mapping sent to the shell.
+   * @throws Exception thrown if the entry's timestamp is not in a valid format.
+   */
+  Map<String, String> createKeyValMap(Entry entry, String sdtName,
+      String runtime, UniqueTstampSet tstampSet, AttributeNameTable nameTable)
+    throws Exception {
+    // First, lets set the "required" attributes.
+    Map<QName, String> map = entry.getOtherAttributes();
+    Map<String, String> keyValMap = OptionUtil.createKeyValMap(REQUIRED_KEY_COUNT
+        + map.size());
+    keyValMap.put("Tool", entry.getTool());
+    keyValMap.put("Resource", this.getResource(entry));
+    keyValMap.put("SensorDataType", sdtName);
+
+    // If the SetRuntimeOption is set, use the same runtime.
+    if (Boolean.TRUE.equals(this.getController().getOptionObject(Options.SET_RUNTIME))) {
+      keyValMap.put("Runtime", runtime);
+    }
+
+    // Next, add the optional attributes.
+    for (Map.Entry<QName, String> attributeEntry : map.entrySet()) {
+      String entryName = nameTable.getKey(attributeEntry.getKey());
+      String entryValue = attributeEntry.getValue();
+
+      // If entries contain tstamps, they are used instead of the current tstamp.
+      if ("Timestamp".equals(entryName)) {
+        long timestamp = OptionUtil.getTimestampInMillis(entryValue);
+        Boolean isUnique = (Boolean) this.getController().getOptionObject(
+            Options.UNIQUE_TSTAMP);
+        entryValue = TstampFormatter.format(OptionUtil.massageTstamp(isUnique, tstampSet,
+            timestamp));
+      }
+      keyValMap.put(entryName, entryValue);
+    }
+
+    // Only an entry without a tstamp takes the current tstamp, which keeps a
+    // windowed tstamp set at the entries' own tstamps.
+    if (!keyValMap.containsKey("Timestamp")) {
+      keyValMap.put("Timestamp", TstampFormatter.format(OptionUtil.getCurrentTstamp(true,
+          tstampSet)));
+    }
+    return keyValMap;
   }
 
   /**
@@ -173,32 +604,186 @@ public class FileOption extends AbstractOption {
   }
   
   /**
-   * Returns true if the list of JAXB Entry object's each contain the sensor
-   * data type attribute.
-   * @param entries the list of entries to search.
-   * @return true if each entry has the sdt attribute, false if not.
+   * Handles the specified entry, which has no SensorDataType, by the policy of
+   * the -sdtPolicy option. By default, the entry stops the execution.
+   * @param entry the entry without a SensorDataType attribute.
+   * @param document the name of the document containing the entry.
+   * @throws Exception thrown if the policy is abort or if the entry could not
+   * be quarantined.
    */
-  private boolean hasSdtAttributes(List<Entry> entries) {
-    for (Entry entry : entries) {
-      if (!this.hasSdtInAttributes(entry.getOtherAttributes())) {
-        return false;
+  private void rejectEntry(Entry entry, String document) throws Exception {
+    Object policy = this.getController().getOptionObject(Options.SDT_POLICY);
+    if (SdtPolicyOption.SKIP.equals(policy)) {
+      this.getController().fireVerboseMessage(
+          "Skipped an entry without a SensorDataType in: " + document);
+    }
+    else if (SdtPolicyOption.QUARANTINE.equals(policy)) {
+      this.getQuarantineWriter().write(entry);
+    }
+    else {
+      String msg = "The -sdt flag must be specified for all entries or each "
+          + "xml entry must have the 'SensorDataType' attribute.";
+      throw new Exception(msg);
+    }
+    this.rejectedEntries.incrementAndGet();
+  }
+
+  /**
+   * Returns the writer of the file specified by the -sdtPolicy option, which is
+   * created when the first entry is quarantined.
+   * @return the writer instance.
+   * @throws IOException thrown if the file could not be created.
+   * @throws XMLStreamException thrown if the start of the file could not be
+   * written.
+   */
+  private synchronized XmlDataEntryWriter getQuarantineWriter() throws IOException,
+      XMLStreamException {
+    if (this.quarantineWriter == null) {
+      String fileName = (String) this.getController().getOptionObject(Options.SDT_QUARANTINE);
+      this.quarantineWriter = new XmlDataEntryWriter(new BufferedOutputStream(
+          new FileOutputStream(fileName)));
+    }
+    return this.quarantineWriter;
+  }
+
+  /**
+   * Closes the quarantine file and fires a message with the number of entries
+   * that were not sent because they have no SensorDataType.
+   */
+  void closeRejectedEntries() {
+    this.closeQuarantineWriter();
+    int count = this.rejectedEntries.getAndSet(0);
+    if (count > 0) {
+      Object fileName = this.getController().getOptionObject(Options.SDT_QUARANTINE);
+      String msg = count + " entries without a SensorDataType were "
+          + (SdtPolicyOption.QUARANTINE.equals(this.getController().getOptionObject(
+              Options.SDT_POLICY)) ? "written to " + fileName + "." : "skipped.");
+      this.getController().fireMessage(msg);
+    }
+  }
+
+  /** Closes the quarantine file if it was created. */
+  private synchronized void closeQuarantineWriter() {
+    if (this.quarantineWriter != null) {
+      try {
+        this.quarantineWriter.close();
+      }
+      catch (Exception e) {
+        this.getController().fireMessage("The quarantine file could not be closed.",
+            e.toString());
       }
+      this.quarantineWriter = null;
     }
-    return true;
   }
 
   /**
-   * Returns true if the specified map contains the sensor data type attribute.
-   * If the mapping does not have the sdt attribute, false is returned.
-   * @param attributeMap the map to search.
-   * @return true if the map has the sdt attribute, false if not.
+   * The part of a file that is converted by a worker thread. A segment is a
+   * whole plain or gzip file, one memory-mapped range of a large file, or one
+   * document of a zip archive. The segments of one document share the
+   * document's set of timestamps.
    */
-  private boolean hasSdtInAttributes(Map<QName, String> attributeMap) {
-    for (QName name : attributeMap.keySet()) {
-      if ("SensorDataType".equals(name.toString())) {
-        return true;
+  private class Segment {
+    /** The name of this segment's document, which is used in messages. */
+    private String name = null;
+    /** The file containing this segment. */
+    private File file = null;
+    /** The mapped file if this segment is a range, or null. */
+    private MappedXmlDataFile mappedFile = null;
+    /** The index of this segment's range in the mapped file. */
+    private int rangeIndex = 0;
+    /** The zip archive if this segment is an archive entry, or null. */
+    private ZipFile zipFile = null;
+    /** The archive entry containing this segment's document, or null. */
+    private ZipEntry zipEntry = null;
+    /** True if this segment starts a document. */
+    private boolean isFirst = true;
+    /** True if this segment is the last segment of its file. */
+    private boolean isLast = false;
+    /** True if this segment ends a document. */
+    private boolean isDocumentEnd = false;
+    /** The timestamps used by all segments of the document. */
+    private UniqueTstampSet tstampSet = null;
+    /** The converted entries waiting to be sent, followed by END_OF_SEGMENT. */
+    private BlockingQueue<CompactEntry> entries =
+      new ArrayBlockingQueue<CompactEntry>(getSegmentQueueSize());
+    /** The exception that stopped the conversion of this segment, if any. */
+    private volatile Exception error = null;
+
+    /**
+     * Constructs this segment as a whole file.
+     * @param name the name of this segment's document.
+     * @param file the file containing this segment.
+     * @param tstampSet the timestamps shared by the segments of the document.
+     */
+    Segment(String name, File file, UniqueTstampSet tstampSet) {
+      this.name = name;
+      this.file = file;
+      this.tstampSet = tstampSet;
+    }
+
+    /**
+     * Returns a new stream over this segment as a complete xmldata document.
+     * @return the stream instance.
+     * @throws IOException thrown if the file could not be opened or mapped.
+     */
+    InputStream openStream() throws IOException {
+      if (this.zipFile != null) {
+        return CompressedInput.open(this.zipFile.getInputStream(this.zipEntry), this.name);
+      }
+      if (this.mappedFile != null) {
+        return this.mappedFile.openRange(this.rangeIndex);
+      }
+      return CompressedInput.open(this.file);
+    }
+
+    /**
+     * Converts the entries of this segment into the queue of this segment,
+     * which ends with END_OF_SEGMENT. A failure is stored for the sending
+     * thread. The conversion stops silently if the worker is interrupted.
+     * @param sdtName the SensorDataType specified by the -sdt option, or null.
+     * @param runtime the runtime shared by all entries.
+     */
+    void convert(String sdtName, String runtime) {
+      try {
+        readSegment(this, sdtName, runtime, new EntryHandler() {
+          public void handle(Map<String, String> keyValMap) throws InterruptedException {
+            entries.put(new CompactEntry(keyValMap, entryDictionary));
+          }
+        });
+      }
+      catch (InterruptedException e) {
+        return;
+      }
+      catch (Exception e) {
+        this.error = e;
+      }
+      catch (Error e) {
+        this.error = new Exception("The conversion of " + this.name + " failed.", e);
+      }
+      try {
+        this.entries.put(END_OF_SEGMENT);
+      }
+      catch (InterruptedException e) { //NOPMD
+        // The sending thread has stopped and no longer reads this queue.
+      }
+    }
+
+    /** Closes the mapped file or zip archive once its last segment is done. */
+    void close() {
+      if (!this.isLast) {
+        return;
+      }
+      if (this.mappedFile != null) {
+        this.mappedFile.close();
+      }
+      if (this.zipFile != null) {
+        try {
+          this.zipFile.close();
+        }
+        catch (IOException e) { //NOPMD
+          // Nothing else can be done with an archive that fails to close.
+        }
       }
     }
-    return false;
   }
 }
@@ -1,25 +1,41 @@
 package org.hackystat.sensor.xmldata.option;
 
 import java.io.File;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
+import javax.xml.validation.Schema;
 
 import org.hackystat.sensor.xmldata.XmlDataController;
 import org.hackystat.sensor.xmldata.jaxb.v7.Entry;
 import org.hackystat.sensor.xmldata.jaxb.v7.ObjectFactory;
 import org.hackystat.sensor.xmldata.jaxb.v7.Sensor;
+import org.hackystat.sensor.xmldata.util.CompressedInput;
 import org.hackystat.sensor.xmldata.util.SensorDataPropertyMap;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensor.xmldata.util.TstampIndex;
+import org.hackystat.sensor.xmldata.util.UniqueTstampSet;
 import org.hackystat.sensorshell.SensorShellException;
 import org.hackystat.sensorshell.SensorShellProperties;
 import org.hackystat.sensorshell.SensorShell;
-import org.hackystat.sensorshell.Shell;
-import org.hackystat.utilities.tstamp.Tstamp;
-import org.hackystat.utilities.tstamp.TstampSet;
 import org.xml.sax.SAXException;
 
 /**
@@ -40,8 +56,27 @@ import org.xml.sax.SAXException;
 public class MigrationOption extends AbstractOption {
   /** The name of this option, which is "-migration". */
   public static final String OPTION_NAME = "-migration";
+  /** The item that follows the items of the last data file in the pipeline. */
+  private static final ConvertedItem END_OF_FILES = new ConvertedItem(null, null);
+  /**
+   * The longest time the sending thread waits for a converted entry before it
+   * checks whether the conversion has ended.
+   */
+  private static final long POLL_MILLIS = 250;
   /** The version 7 data directory specified to convert to version 8 data. */
   private File v7DataDir = null;
+  /** The zip archive of the version 7 user directory, if one was specified. */
+  private File v7Archive = null;
+  /** The schema the version 7 data files are validated against. */
+  private Schema schema = null;
+  /** The number of files between validated files, or 0 if none are validated. */
+  private int validationInterval = 1;
+  /** The number of files read during execution. */
+  private int fileCount = 0;
+  /** The index of the timestamps sent by every run, or null if none is kept. */
+  private TstampIndex tstampIndex = null;
+  /** The builder reused to render each sent entry in verbose mode. */
+  private StringBuilder verboseBuilder = new StringBuilder();
   /**
    * The sensor properties file containing the version 8 host and account
    * information.
@@ -65,6 +100,7 @@ public class MigrationOption extends AbstractOption {
    * 
    * Ex:  -migration C:\foo ABCDEF http://localhost:9876/sensorbase austen@hawaii.edu fooPassword
    * Note that the v7 directory does not include the v7 account name.
+   * The v7 directory may also be a zip archive of the v7 user directory.
    * </pre>
    * 
    * @return true if the option parameters are correct, false if not.
@@ -80,10 +116,11 @@ public class MigrationOption extends AbstractOption {
       return false;
     }
 
-    // Verify that the version 7 directory exists.
+    // Verify that the version 7 directory, or a zip archive of it, exists.
     File v7Dir = new File(this.getParameters().get(0));
     String v7Account = this.getParameters().get(1);
-    if (!new File(v7Dir.getAbsolutePath() + "/" + v7Account).exists()) {
+    if (!this.isZipArchive(v7Dir)
+        && !new File(v7Dir.getAbsolutePath() + "/" + v7Account).exists()) {
       String msg = "The version 7 user directory, " + this.getParameters().get(0) + "/"
           + this.getParameters().get(1) + ", does not exist.";
       this.getController().fireMessage(msg);
@@ -118,7 +155,12 @@ public class MigrationOption extends AbstractOption {
       // Sets the version 7 information.
       File v7Dir = new File(this.getParameters().get(0));
       String v7Account = this.getParameters().get(1);
-      this.v7DataDir = new File(v7Dir.getAbsolutePath() + "/" + v7Account + "/data");
+      if (this.isZipArchive(v7Dir)) {
+        this.v7Archive = v7Dir;
+      }
+      else {
+        this.v7DataDir = new File(v7Dir.getAbsolutePath() + "/" + v7Account + "/data");
+      }
 
       // Sets the version 8 information.
       try {
@@ -133,47 +175,56 @@ public class MigrationOption extends AbstractOption {
 
   /**
    * Executes this option by converting all version 7 data found in the
-   * specified directory to version 8 compatiable data. The converted data is
-   * sent to the Hackystat 8 sensorbase.
+   * specified directory or zip archive to version 8 compatiable data. The
+   * converted data is sent to the Hackystat 8 sensorbase. Gzip compressed data
+   * files and archive entries are decompressed while they are read, without
+   * writing anything to disk. If the -checkpoint option is used, the progress
+   * is recorded so that a failed migration can be resumed with -resume. If the
+   * -pipeline option is used, the data files are read and converted by another
+   * thread while the converted entries are added to the shell.
    */
   @Override
   public void execute() {
+    ShardedShell shell = null;
+    Checkpoint checkpoint = null;
     try {
       // First, lets create a Shell and an Unmarshaller.
-      Shell shell = OptionUtil.createShell(this.properties, this.getController());
+      shell = OptionUtil.createShardedShell(this.properties, this.getController());
       Unmarshaller unmarshaller = OptionUtil.createUnmarshaller(ObjectFactory.class,
           "v7data.xsd");
 
-      // Then iterate over each file in the version 7 data directory.
+      // Then iterate over each file in the version 7 data directory or archive.
+      this.schema = unmarshaller.getSchema();
+      this.validationInterval = OptionUtil.getValidationInterval(this.getController());
+      this.fileCount = 0;
       int entriesAdded = 0;
-      TstampSet tstampSet = new TstampSet();
-      for (File sdtDir : this.v7DataDir.listFiles()) {
-        for (File sensorDataFile : sdtDir.listFiles()) {
-          this.getController().fireMessage(
-              Tstamp.makeTimestamp().toString() + " Processing " + sensorDataFile);
-
-          Sensor sensor = (Sensor) unmarshaller.unmarshal(sensorDataFile);
-          for (Entry entry : sensor.getEntry()) {
-            Map<String, String> keyValMap = new HashMap<String, String>();
-            keyValMap.put("SensorDataType", sdtDir.getName());
-            keyValMap.put("Timestamp", OptionUtil.getCurrentTimestamp(true, tstampSet)
-                .toString());
-
-            // Add an entry for each key-value attribute in the data file.
-            for (Map.Entry<QName, String> attribute : entry.getOtherAttributes().entrySet()) {
-              this.addEntry(keyValMap, attribute, tstampSet);
-            }
-
-            shell.add(keyValMap);
-            this.getController().fireVerboseMessage(OptionUtil.getMapVerboseString(keyValMap));
-            entriesAdded++;
+      UniqueTstampSet tstampSet = OptionUtil.createTstampSet(this.getController());
+      checkpoint = Checkpoint.getInstance(this.getController(), shell);
+      this.tstampIndex = OptionUtil.openTstampIndex(this.getController());
+      ZipFile zipFile = (this.v7Archive == null) ? null : new ZipFile(this.v7Archive);
+      try {
+        List<DataFile> dataFiles = this.getDataFiles(zipFile, checkpoint);
+        Integer depth = (Integer) this.getController().getOptionObject(Options.PIPELINE);
+        if (depth == null) {
+          for (DataFile dataFile : dataFiles) {
+            entriesAdded += this.migrateFile(shell, checkpoint, unmarshaller, dataFile
+                .getSdtName(), dataFile.getName(), dataFile.open(zipFile), tstampSet);
           }
         }
+        else {
+          entriesAdded = this.migratePipelined(shell, checkpoint, unmarshaller, zipFile,
+              dataFiles, tstampSet, depth.intValue());
+        }
+      }
+      finally {
+        if (zipFile != null) {
+          zipFile.close();
+        }
       }
 
-      // Fires the send message and quits the sensorshell.
+      // Fires the send message. The sensorshell is quit even if the migration failed.
+      checkpoint.close();
       OptionUtil.fireSendMessage(this.getController(), shell, entriesAdded);
-      shell.quit();
     }
     catch (JAXBException e) {
       String msg = "There was a problem unmarshalling the data. The v7 data file(s) "
@@ -189,6 +240,322 @@ public class MigrationOption extends AbstractOption {
           + "specified directory has version 7 data.";
       this.getController().fireMessage(msg, e.toString());
     }
+    finally {
+      this.closeCheckpoint(checkpoint);
+      OptionUtil.quitShell(this.getController(), shell);
+      if (this.tstampIndex != null) {
+        this.tstampIndex.close();
+        this.tstampIndex = null;
+      }
+    }
+  }
+
+  /**
+   * Closes the specified checkpoint if the migration stopped before closing
+   * it, which records the entries that were sent before the failure.
+   * @param checkpoint the checkpoint of the migration, or null if it was not
+   * created.
+   */
+  private void closeCheckpoint(Checkpoint checkpoint) {
+    if (checkpoint != null) {
+      try {
+        checkpoint.close();
+      }
+      catch (Exception e) {
+        String msg = "The checkpoint of the migration could not be written.";
+        this.getController().fireMessage(msg, e.toString());
+      }
+    }
+  }
+
+  /**
+   * Converts the entries of the specified version 7 data file and adds them to
+   * the specified shell. The entries a resumed run has already sent are skipped.
+   * @param shell the shell the converted entries are added to.
+   * @param checkpoint the checkpoint tracking the progress of the migration.
+   * @param unmarshaller the unmarshaller used to read the data file.
+   * @param sdtName the SensorDataType of the data file's entries.
+   * @param fileName the name of the data file, which is used in messages.
+   * @param stream the stream containing the data file, which is closed by this
+   * method.
+   * @param tstampSet the set of timestamps used to generate unique timestamps.
+   * @return the number of entries added to the shell.
+   * @throws Exception thrown if the file could not be read or sent.
+   */
+  private int migrateFile(ShardedShell shell, Checkpoint checkpoint, Unmarshaller unmarshaller,
+      String sdtName, String fileName, InputStream stream, UniqueTstampSet tstampSet)
+    throws Exception {
+    Sensor sensor = this.readFile(unmarshaller, fileName, stream);
+    int entriesAdded = 0;
+    checkpoint.startDocument(fileName);
+    for (Entry entry : sensor.getEntry()) {
+      if (checkpoint.skipEntry()) {
+        continue;
+      }
+      this.sendEntry(shell, checkpoint, this.convertEntry(entry, sdtName, tstampSet));
+      entriesAdded++;
+    }
+    checkpoint.endDocument();
+    return entriesAdded;
+  }
+
+  /**
+   * Migrates the specified data files with a pipeline of two threads. Another
+   * thread reads and converts the entries of the files into a queue of the
+   * specified depth, while this thread adds the converted entries to the shell.
+   * The other thread waits while the queue is full, so a slow sensorbase holds
+   * at most depth converted entries in memory. The entries a resumed run has
+   * already sent are skipped before they are converted. The conversion is
+   * checked while this thread waits, so a conversion that ends without queuing
+   * its end, such as after an Error, does not leave this thread waiting.
+   * @param shell the shell the converted entries are added to.
+   * @param checkpoint the checkpoint tracking the progress of the migration.
+   * @param unmarshaller the unmarshaller used to read the data files.
+   * @param zipFile the archive containing the data files, or null.
+   * @param dataFiles the data files to migrate.
+   * @param tstampSet the set of timestamps used to generate unique timestamps.
+   * @param depth the number of converted entries queued ahead of the shell.
+   * @return the number of entries added to the shell.
+   * @throws Exception thrown if a file could not be read or sent.
+   */
+  private int migratePipelined(ShardedShell shell, final Checkpoint checkpoint,
+      final Unmarshaller unmarshaller, final ZipFile zipFile, final List<DataFile> dataFiles,
+      final UniqueTstampSet tstampSet, int depth) throws Exception {
+    final BlockingQueue<ConvertedItem> items = new ArrayBlockingQueue<ConvertedItem>(depth);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<Object> conversion = executor.submit(new Callable<Object>() {
+      public Object call() throws Exception {
+        try {
+          convertFiles(unmarshaller, zipFile, dataFiles, tstampSet, checkpoint, items);
+        }
+        catch (InterruptedException e) {
+          // The sending thread has stopped, so it no longer waits for the end.
+          return null;
+        }
+        finally {
+          // A full queue is left to the sending thread, which finds the conversion done.
+          items.offer(END_OF_FILES);
+        }
+        return null;
+      }
+    });
+    int entriesAdded = 0;
+    try {
+      while (true) {
+        ConvertedItem item = items.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (item == null && conversion.isDone()) {
+          // Takes the items queued before the conversion ended, if any are left.
+          item = items.poll();
+        }
+        if (item == END_OF_FILES || (item == null && conversion.isDone())) {
+          break;
+        }
+        else if (item == null) {
+          continue;
+        }
+        else if (item.getDocument() != null) {
+          checkpoint.startDocument(item.getDocument());
+          checkpoint.skipSentEntries();
+        }
+        else if (item.getKeyValMap() == null) {
+          checkpoint.endDocument();
+        }
+        else {
+          checkpoint.skipEntry();
+          this.sendEntry(shell, checkpoint, item.getKeyValMap());
+          entriesAdded++;
+        }
+      }
+      conversion.get();
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+    finally {
+      executor.shutdownNow();
+    }
+    return entriesAdded;
+  }
+
+  /**
+   * Reads and converts the entries of the specified data files, and queues
+   * them between the start and end of each file's document. The leading
+   * entries a resumed run has already sent are not converted.
+   * @param unmarshaller the unmarshaller used to read the data files.
+   * @param zipFile the archive containing the data files, or null.
+   * @param dataFiles the data files to convert.
+   * @param tstampSet the set of timestamps used to generate unique timestamps.
+   * @param checkpoint the checkpoint providing the entries already sent.
+   * @param items the queue of the converted items.
+   * @throws Exception thrown if a file could not be read, or if the thread was
+   * interrupted.
+   */
+  private void convertFiles(Unmarshaller unmarshaller, ZipFile zipFile,
+      List<DataFile> dataFiles, UniqueTstampSet tstampSet, Checkpoint checkpoint,
+      BlockingQueue<ConvertedItem> items) throws Exception {
+    for (DataFile dataFile : dataFiles) {
+      Sensor sensor = this.readFile(unmarshaller, dataFile.getName(), dataFile.open(zipFile));
+      items.put(new ConvertedItem(dataFile.getName(), null));
+      int skippedEntries = checkpoint.getSentEntries(dataFile.getName());
+      for (Entry entry : sensor.getEntry()) {
+        if (skippedEntries > 0) {
+          skippedEntries--;
+          continue;
+        }
+        items.put(new ConvertedItem(null, this.convertEntry(entry, dataFile.getSdtName(),
+            tstampSet)));
+      }
+      items.put(new ConvertedItem(null, null));
+    }
+  }
+
+  /**
+   * Returns the data files to migrate, which are those of the version 7 data
+   * directory or archive that no earlier run has completed.
+   * @param zipFile the archive of the version 7 user directory, or null if the
+   * data directory is migrated.
+   * @param checkpoint the checkpoint providing the completed documents.
+   * @return the list of data files.
+   */
+  private List<DataFile> getDataFiles(ZipFile zipFile, Checkpoint checkpoint) {
+    List<DataFile> dataFiles = new ArrayList<DataFile>();
+    if (zipFile == null) {
+      for (File sdtDir : this.v7DataDir.listFiles()) {
+        for (File sensorDataFile : sdtDir.listFiles()) {
+          if (!checkpoint.isCompleted(sensorDataFile.toString())) {
+            dataFiles.add(new DataFile(sdtDir.getName(), sensorDataFile.toString(),
+                sensorDataFile, null));
+          }
+        }
+      }
+    }
+    else {
+      Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+      while (zipEntries.hasMoreElements()) {
+        ZipEntry zipEntry = zipEntries.nextElement();
+        String sdtName = this.getSdtName(zipEntry);
+        String fileName = this.v7Archive + "!" + zipEntry.getName();
+        if (sdtName != null && !checkpoint.isCompleted(fileName)) {
+          dataFiles.add(new DataFile(sdtName, fileName, null, zipEntry));
+        }
+      }
+    }
+    return dataFiles;
+  }
+
+  /**
+   * Reads the version 7 sensor data of the specified data file.
+   * @param unmarshaller the unmarshaller used to read the data file.
+   * @param fileName the name of the data file, which is used in messages.
+   * @param stream the stream containing the data file, which is closed by this
+   * method.
+   * @return the sensor data of the file.
+   * @throws Exception thrown if the file could not be read.
+   */
+  private Sensor readFile(Unmarshaller unmarshaller, String fileName, InputStream stream)
+    throws Exception {
+    this.getController().fireMessage(
+        TstampFormatter.format(System.currentTimeMillis()) + " Processing " + fileName);
+
+    // Only every Nth file is validated if the -validate option samples files.
+    boolean isValidated = this.validationInterval > 0
+        && this.fileCount++ % this.validationInterval == 0;
+    unmarshaller.setSchema(isValidated ? this.schema : null);
+    try {
+      return (Sensor) unmarshaller.unmarshal(stream);
+    }
+    finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Returns the version 8 key-value mapping converted from the specified
+   * version 7 entry.
+   * @param entry the version 7 entry.
+   * @param sdtName the SensorDataType of the entry.
+   * @param tstampSet the set of timestamps used to generate unique timestamps.
+   * @return the key-value mapping sent to the shell.
+   */
+  Map<String, String> convertEntry(Entry entry, String sdtName,
+      UniqueTstampSet tstampSet) {
+    Map<String, String> keyValMap = OptionUtil.createKeyValMap(2 + entry
+        .getOtherAttributes().size());
+    keyValMap.put("SensorDataType", sdtName);
+
+    // Add an entry for each key-value attribute in the data file.
+    for (Map.Entry<QName, String> attribute : entry.getOtherAttributes().entrySet()) {
+      this.addEntry(keyValMap, attribute, tstampSet);
+    }
+
+    // Only an entry without a valid tstamp takes the current tstamp, which keeps
+    // a windowed tstamp set at the entries' own tstamps.
+    if (!keyValMap.containsKey("Timestamp")) {
+      keyValMap.put("Timestamp", TstampFormatter.format(OptionUtil.getCurrentTstamp(true,
+          tstampSet)));
+    }
+    return keyValMap;
+  }
+
+  /**
+   * Adds the specified converted entry to the shell and counts it in the
+   * checkpoint. Its timestamp is recorded in the timestamp index first, if one
+   * is used.
+   * @param shell the shell the entry is added to.
+   * @param checkpoint the checkpoint tracking the progress of the migration.
+   * @param keyValMap the key-value mapping of the entry.
+   * @throws Exception thrown if the shell could not send or the checkpoint
+   * could not be written.
+   */
+  private void sendEntry(ShardedShell shell, Checkpoint checkpoint, Map<String, String> keyValMap)
+    throws Exception {
+    OptionUtil.recordTstamp(this.tstampIndex, keyValMap);
+    shell.add(keyValMap);
+    if (this.getController().isVerboseEntry()) {
+      this.verboseBuilder.setLength(0);
+      this.getController().fireVerboseMessage(OptionUtil.appendMapVerboseString(
+          this.verboseBuilder, keyValMap).toString());
+    }
+    checkpoint.entryAdded();
+  }
+
+  /**
+   * Returns true if the specified file is a zip archive.
+   * @param file the file to test.
+   * @return true if the file is a zip archive, false if not.
+   */
+  private boolean isZipArchive(File file) {
+    try {
+      return file.isFile() && CompressedInput.getFormat(file) == CompressedInput.Format.ZIP;
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns the SensorDataType of the specified archive entry, or null if the
+   * entry is not a version 7 data file. Data files follow the layout of the
+   * version 7 user directory, [v7 account]/data/[sdt]/[file], where the account
+   * and data directories may be omitted from the archive.
+   * @param zipEntry the archive entry.
+   * @return the name of the entry's sdt directory, or null.
+   */
+  private String getSdtName(ZipEntry zipEntry) {
+    if (zipEntry.isDirectory()) {
+      return null;
+    }
+    List<String> names = new ArrayList<String>(Arrays.asList(zipEntry.getName().split("/")));
+    if (names.size() > 2 && names.get(0).equals(this.getParameters().get(1))) {
+      names.remove(0);
+    }
+    if (names.size() > 2 && "data".equals(names.get(0))) {
+      names.remove(0);
+    }
+    return (names.size() == 2) ? names.get(0) : null;
   }
 
   /**
@@ -202,7 +569,7 @@ public class MigrationOption extends AbstractOption {
    * for each entry.
    */
   private void addEntry(Map<String, String> keyValMap, Map.Entry<QName, String> entry,
-      TstampSet tstampSet) {
+      UniqueTstampSet tstampSet) {
     try {
       String entryName = entry.getKey().toString();
       String entryValue = entry.getValue();
@@ -213,7 +580,8 @@ public class MigrationOption extends AbstractOption {
         long timestamp = OptionUtil.getTimestampInMillis(entryValue);
         Boolean isUnique = (Boolean) this.getController().getOptionObject(
             Options.UNIQUE_TSTAMP);
-        entryValue = OptionUtil.massageTimestamp(isUnique, tstampSet, timestamp).toString();
+        entryValue = TstampFormatter.format(OptionUtil.massageTstamp(isUnique, tstampSet,
+            timestamp));
         keyValMap.put(entryName, entryValue);
       }
 
@@ -235,4 +603,104 @@ public class MigrationOption extends AbstractOption {
       this.getController().fireMessage(e.getMessage());
     }
   }
+
+  /**
+   * A version 7 data file to migrate, which is a file of the data directory or
+   * an entry of the archive.
+   * @author aito
+   *
+   */
+  private static class DataFile {
+    /** The SensorDataType of the file's entries. */
+    private String sdtName = null;
+    /** The name of the file, which is used in messages and checkpoints. */
+    private String name = null;
+    /** The file of the data directory, or null. */
+    private File file = null;
+    /** The entry of the archive, or null. */
+    private ZipEntry zipEntry = null;
+
+    /**
+     * Constructs this data file.
+     * @param sdtName the SensorDataType of the file's entries.
+     * @param name the name of the file.
+     * @param file the file of the data directory, or null.
+     * @param zipEntry the entry of the archive, or null.
+     */
+    DataFile(String sdtName, String name, File file, ZipEntry zipEntry) {
+      this.sdtName = sdtName;
+      this.name = name;
+      this.file = file;
+      this.zipEntry = zipEntry;
+    }
+
+    /**
+     * Returns the SensorDataType of the file's entries.
+     * @return the SensorDataType.
+     */
+    String getSdtName() {
+      return this.sdtName;
+    }
+
+    /**
+     * Returns the name of the file.
+     * @return the name.
+     */
+    String getName() {
+      return this.name;
+    }
+
+    /**
+     * Opens the decompressed contents of this file.
+     * @param zipFile the archive containing the file, or null.
+     * @return the stream of the file's contents.
+     * @throws IOException thrown if the file could not be opened.
+     */
+    InputStream open(ZipFile zipFile) throws IOException {
+      if (this.zipEntry == null) {
+        return CompressedInput.open(this.file);
+      }
+      return CompressedInput.open(zipFile.getInputStream(this.zipEntry), this.name);
+    }
+  }
+
+  /**
+   * An item queued by the pipeline, which starts a document if it has a
+   * document name, holds a converted entry if it has a key-value mapping, and
+   * ends the current document if it has neither.
+   * @author aito
+   *
+   */
+  private static class ConvertedItem {
+    /** The name of the document started, or null. */
+    private String document = null;
+    /** The key-value mapping of the converted entry, or null. */
+    private Map<String, String> keyValMap = null;
+
+    /**
+     * Constructs this item.
+     * @param document the name of the document started, or null.
+     * @param keyValMap the key-value mapping of the converted entry, or null.
+     */
+    ConvertedItem(String document, Map<String, String> keyValMap) {
+      this.document = document;
+      this.keyValMap = keyValMap;
+    }
+
+    /**
+     * Returns the name of the document started by this item.
+     * @return the document name, or null.
+     */
+    String getDocument() {
+      return this.document;
+    }
+
+    /**
+     * Returns the converted entry of this item.
+     * @return the key-value mapping, or null.
+     */
+    Map<String, String> getKeyValMap() {
+      return this.keyValMap;
+    }
+  }
 }
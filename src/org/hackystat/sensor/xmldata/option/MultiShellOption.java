@@ -5,13 +5,12 @@ import java.util.List;
 import org.hackystat.sensor.xmldata.XmlDataController;
 
 /**
- * The -multishell option is deprecated and scheduled for removal. The XmlSensor will use whatever
- * setting is present in the SensorShellProperties file. 
- * 
- * The options that is used to notify the data sending Options that a
- * MultiSensorShell instance should be used instead of a single-threaded
- * SensorShell.
- * 
+ * The option used to notify the data sending Options that the entries should
+ * be sent with several sensorshell instances in parallel, instead of a single
+ * SensorShell. The optional parameters are the number of sensorshell instances
+ * and the key whose value chooses the instance of each entry, so that the
+ * entries of one key are sent in order by one instance. The key is Resource
+ * by default.
  * 
  * @author aito
  * 
@@ -19,6 +18,8 @@ import org.hackystat.sensor.xmldata.XmlDataController;
 public class MultiShellOption extends AbstractOption {
   /** This option's name, which is "-multishell". */
   public static final String OPTION_NAME = "-multishell";
+  /** The number of sensorshell instances if no count is specified. */
+  public static final int DEFAULT_SHELL_COUNT = 4;
 
   /**
    * Static factory method that creates an option with the specified controller
@@ -30,26 +31,39 @@ public class MultiShellOption extends AbstractOption {
     super(controller, MultiShellOption.OPTION_NAME, parameters);
   }
 
-  /** Processes this option by setting the multi-shell option to true. */
+  /**
+   * Processes this option by setting the multi-shell option to true, and by
+   * setting the number of sensorshell instances and the shard key.
+   */
   @Override
   public void process() {
     if (this.isValid()) {
+      List<String> parameters = this.getParameters();
+      Integer shellCount = parameters.isEmpty() ? Integer.valueOf(DEFAULT_SHELL_COUNT)
+          : Integer.valueOf(parameters.get(0));
+      String shardKey = (parameters.size() < 2) ? ShardedShell.DEFAULT_SHARD_KEY
+          : parameters.get(1);
       this.getController().addOptionObject(Options.MULTI_SHELL, Boolean.TRUE);
+      this.getController().addOptionObject(Options.SHELL_COUNT, shellCount);
+      this.getController().addOptionObject(Options.SHARD_KEY, shardKey);
     }
   }
 
   /**
-   * Returns true if the list of parameters contains no parameters.
-   * @return true if this option has no parameters, false if not.
+   * Returns true if the list of parameters is empty, or contains a positive
+   * integer optionally followed by the shard key.
+   * @return true if the parameters are valid, false if not.
    */
   @Override
   public boolean isValid() {
-    if (!this.getParameters().isEmpty()) {
-      String msg = "The " + OPTION_NAME + " option does not accept parameters.  ";
-      this.getController().fireMessage(msg);
-      return false;
+    List<String> parameters = this.getParameters();
+    if (parameters.isEmpty() || (parameters.size() <= 2 && OptionUtil
+        .isPositiveInteger(parameters.get(0)))) {
+      return true;
     }
-    this.getController().fireMessage("-multishell option ignored. Using SensorShellProperties.");
-    return true;
+    String msg = "The " + OPTION_NAME + " option accepts the number of shells, optionally "
+        + "followed by the key the entries are sharded by.  Ex: -multishell 4 Resource.";
+    this.getController().fireMessage(msg);
+    return false;
   }
 }
@@ -54,6 +54,48 @@ public class OptionFactory {
     else if (ResourceOption.OPTION_NAME.equals(optionName)) {
       return new ResourceOption(controller, parameters);
     }
+    else if (ThreadsOption.OPTION_NAME.equals(optionName)) {
+      return new ThreadsOption(controller, parameters);
+    }
+    else if (WatchOption.OPTION_NAME.equals(optionName)) {
+      return new WatchOption(controller, parameters);
+    }
+    else if (CheckpointOption.OPTION_NAME.equals(optionName)) {
+      return new CheckpointOption(controller, parameters);
+    }
+    else if (ResumeOption.OPTION_NAME.equals(optionName)) {
+      return new ResumeOption(controller, parameters);
+    }
+    else if (SdtPolicyOption.OPTION_NAME.equals(optionName)) {
+      return new SdtPolicyOption(controller, parameters);
+    }
+    else if (ValidateOption.OPTION_NAME.equals(optionName)) {
+      return new ValidateOption(controller, parameters);
+    }
+    else if (TstampWindowOption.OPTION_NAME.equals(optionName)) {
+      return new TstampWindowOption(controller, parameters);
+    }
+    else if (TstampIndexOption.OPTION_NAME.equals(optionName)) {
+      return new TstampIndexOption(controller, parameters);
+    }
+    else if (VerboseSampleOption.OPTION_NAME.equals(optionName)) {
+      return new VerboseSampleOption(controller, parameters);
+    }
+    else if (PipelineOption.OPTION_NAME.equals(optionName)) {
+      return new PipelineOption(controller, parameters);
+    }
+    else if (SpoolOption.OPTION_NAME.equals(optionName)) {
+      return new SpoolOption(controller, parameters);
+    }
+    else if (ReplayOption.OPTION_NAME.equals(optionName)) {
+      return new ReplayOption(controller, parameters);
+    }
+    else if (SinkOption.OPTION_NAME.equals(optionName)) {
+      return new SinkOption(controller, parameters);
+    }
+    else if (RateLimitOption.OPTION_NAME.equals(optionName)) {
+      return new RateLimitOption(controller, parameters);
+    }
     else {
       controller.fireMessage("The '" + optionName + "' option is not supported.");
     }
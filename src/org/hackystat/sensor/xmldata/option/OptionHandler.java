@@ -76,14 +76,15 @@ public class OptionHandler {
    */
   public boolean hasRequiredOptions() {
     String[] requiredOptionNames = new String[] { FileOption.OPTION_NAME,
-        ArgListOption.OPTION_NAME, MigrationOption.OPTION_NAME };
+        ArgListOption.OPTION_NAME, MigrationOption.OPTION_NAME, WatchOption.OPTION_NAME,
+        ReplayOption.OPTION_NAME };
 
     // Test if more than one required option was used.
     boolean hasRequiredOption = false;
     for (String optionName : requiredOptionNames) {
       if (this.hasOptionWithName(optionName)) {
         if (hasRequiredOption) {
-          String msg = "Only one option, -file, -argList, or -migration, "
+          String msg = "Only one option, -file, -argList, -migration, -watch, or -replay, "
               + "can be used at the same time.";
           this.controller.fireMessage(msg);
           return false;
@@ -1,23 +1,38 @@
 package org.hackystat.sensor.xmldata.option;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.ParsePosition;
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.TimeZone;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.XMLGregorianCalendar;
-import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.util.ConcurrentTstampSet;
+import org.hackystat.sensor.xmldata.util.EntrySink;
+import org.hackystat.sensor.xmldata.util.EntrySpool;
+import org.hackystat.sensor.xmldata.util.JsonLinesEntrySink;
+import org.hackystat.sensor.xmldata.util.NullEntrySink;
+import org.hackystat.sensor.xmldata.util.SendRateLimiter;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensor.xmldata.util.TstampIndex;
+import org.hackystat.sensor.xmldata.util.UniqueTstampSet;
+import org.hackystat.sensor.xmldata.util.WindowedTstampSet;
 import org.hackystat.sensorshell.SensorShellProperties;
 import org.hackystat.sensorshell.SensorShell;
+import org.hackystat.sensorshell.SensorShellException;
 import org.hackystat.sensorshell.Shell;
 import org.hackystat.utilities.tstamp.Tstamp;
 import org.hackystat.utilities.tstamp.TstampSet;
@@ -29,6 +44,23 @@ import org.xml.sax.SAXException;
  * 
  */
 public class OptionUtil {
+  /** The value returned when a timestamp is not in the SimpleDateFormat. */
+  private static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+  /** The separators between the fields of the format MM/dd/yyyy-hh:mm:ss. */
+  private static final String SIMPLE_DATE_SEPARATORS = "//-::";
+  /** The largest number of digits read for a field of a date. */
+  private static final int MAX_FIELD_DIGITS = 9;
+  /** The first year in which every date is in the Gregorian calendar. */
+  private static final long FIRST_GREGORIAN_YEAR = 1583;
+  /** The last year whose dates are computed without a calendar. */
+  private static final long LAST_DIRECT_YEAR = 1000000;
+  /** The number of days from 0000-03-01 to 1970-01-01. */
+  private static final long DAYS_BEFORE_EPOCH = 719468;
+  /** The number of milliseconds in a day. */
+  private static final long MILLIS_PER_DAY = 86400000L;
+  /** The time zone dates are read in, which is safe to share between threads. */
+  private static final TimeZone DEFAULT_ZONE = TimeZone.getDefault();
+
   /** Private constructor that prevents instantiation. */
   private OptionUtil() {
   }
@@ -41,36 +73,69 @@ public class OptionUtil {
    * @return the informative string.
    */
   public static String getMapVerboseString(Map<String, String> keyValMap) {
+    return OptionUtil.appendMapVerboseString(new StringBuilder(), keyValMap).toString();
+  }
+
+  /**
+   * Appends the string returned by getMapVerboseString to the specified
+   * builder, which can be reused for every entry.
+   * @param builder the builder the string is appended to.
+   * @param keyValMap the map used to generate the string.
+   * @return the specified builder.
+   */
+  public static StringBuilder appendMapVerboseString(StringBuilder builder,
+      Map<String, String> keyValMap) {
     if (!keyValMap.isEmpty()) {
-      String verboseString = "[";
+      builder.append('[');
       for (Map.Entry<String, String> entry : keyValMap.entrySet()) {
-        verboseString = verboseString.concat(entry.getKey() + "=" + entry.getValue()) + ", ";
+        builder.append(entry.getKey()).append('=').append(entry.getValue()).append(", ");
       }
 
-      // Remove the last ', ' from the string.
-      verboseString = verboseString.substring(0, verboseString.length() - 2);
-      return verboseString.concat("]");
+      // Replace the last ', ' with the closing bracket.
+      builder.setLength(builder.length() - 2);
+      builder.append(']');
     }
-    return "";
+    return builder;
   }
 
   /**
    * Returns the long value of the specified timestamp string representation.
    * This method expects the timestamp string to be a long or in the
    * SimpleDateFormat: MM/dd/yyyy-hh:mm:ss. If the timestamp does not fit either
-   * specification, a runtime exception is thrown.
+   * specification, a runtime exception is thrown. The timestamp is read in a
+   * single pass without creating any objects, so that the sensor data of large
+   * files is not slowed down by failed parse attempts. A date is read leniently
+   * in the default time zone, as a SimpleDateFormat would read it.
    * @param timestamp the specified string representation of a timestamp.
    * @return the long value of the specified string timestamp.
    * @throws Exception thrown if the specified timestamp string is not in a
    * valid SimpleDateFormat.
    */
   public static long getTimestampInMillis(String timestamp) throws Exception {
-    if (OptionUtil.isTimestampLong(timestamp)) {
-      return Long.valueOf(timestamp);
-    }
-    else if (OptionUtil.isTimestampSimpleDate(timestamp)) {
-      SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy-hh:mm:ss", Locale.US);
-      return format.parse(timestamp, new ParsePosition(0)).getTime();
+    if (timestamp != null && !timestamp.isEmpty()) {
+      int length = timestamp.length();
+      char first = timestamp.charAt(0);
+      boolean isNegative = first == '-';
+      int index = (isNegative || first == '+') ? 1 : 0;
+      // The digits are accumulated as a negative number, as Long.parseLong does,
+      // so that Long.MIN_VALUE can be read without overflowing.
+      long value = 0;
+      boolean isLong = index < length;
+      for (; index < length && isLong; index++) {
+        int digit = timestamp.charAt(index) - '0';
+        isLong = digit >= 0 && digit <= 9 && value >= Long.MIN_VALUE / 10
+            && value * 10 >= Long.MIN_VALUE + digit;
+        value = value * 10 - digit;
+      }
+      if (isLong && (isNegative || value != Long.MIN_VALUE)) {
+        return isNegative ? value : -value;
+      }
+      if (!isNegative) {
+        long millis = OptionUtil.parseSimpleDate(timestamp);
+        if (millis != INVALID_TIMESTAMP) {
+          return millis;
+        }
+      }
     }
     String msg = "The timestamp must either be specified as a "
         + "long or in the format: MM/dd/yyyy-hh:mm:ss";
@@ -78,39 +143,170 @@ public class OptionUtil {
   }
 
   /**
-   * Returns true if the specified timestamp string representation is in long
-   * format.
-   * @param timestamp the string to test.
-   * @return true if the timestamp is a long, false if not.
+   * Returns the time in milliseconds of the specified timestamp in the format
+   * MM/dd/yyyy-hh:mm:ss, or INVALID_TIMESTAMP if it is not in that format. As
+   * with a lenient SimpleDateFormat, each field may have any number of digits,
+   * a field out of its range rolls over into the next larger field, an hour of
+   * 12 is midnight, and any text after the seconds is ignored.
+   * @param timestamp the timestamp to parse.
+   * @return the time in milliseconds, or INVALID_TIMESTAMP.
    */
-  private static boolean isTimestampLong(String timestamp) {
-    try {
-      Long.valueOf(timestamp);
-      return true;
+  private static long parseSimpleDate(String timestamp) {
+    int length = timestamp.length();
+    int field = 0;
+    int digits = 0;
+    long value = 0;
+    long month = 0;
+    long day = 0;
+    long year = 0;
+    long hour = 0;
+    long minute = 0;
+    for (int i = 0; i < length; i++) {
+      char character = timestamp.charAt(i);
+      if (character >= '0' && character <= '9') {
+        if (++digits > MAX_FIELD_DIGITS) {
+          return INVALID_TIMESTAMP;
+        }
+        value = value * 10 + (character - '0');
+      }
+      else if (digits > 0 && field < SIMPLE_DATE_SEPARATORS.length()
+          && character == SIMPLE_DATE_SEPARATORS.charAt(field)) {
+        switch (field) {
+        case 0:
+          month = value;
+          break;
+        case 1:
+          day = value;
+          break;
+        case 2:
+          year = value;
+          break;
+        case 3:
+          hour = value;
+          break;
+        default:
+          minute = value;
+        }
+        field++;
+        digits = 0;
+        value = 0;
+      }
+      else if (digits > 0 || !Character.isWhitespace(character)) {
+        break;
+      }
     }
-    catch (NumberFormatException nfe) {
-      return false;
+    if (field != SIMPLE_DATE_SEPARATORS.length() || digits == 0) {
+      return INVALID_TIMESTAMP;
+    }
+    return OptionUtil.getLocalMillis(year, month - 1, day, (hour == 12) ? 0 : hour, minute,
+        value);
+  }
+  /**
+   * Returns the time in milliseconds of the specified local date and time in the
+   * default time zone. Fields out of their range roll over into the next larger
+   * field. Dates before the Gregorian calendar, or too far in the future to be
+   * computed directly, are left to a GregorianCalendar.
+   * @param year the year.
+   * @param month the month, where 0 is January.
+   * @param day the day of the month.
+   * @param hour the hour of the day.
+   * @param minute the minute.
+   * @param second the second.
+   * @return the time in milliseconds.
+   */
+  private static long getLocalMillis(long year, long month, long day, long hour, long minute,
+      long second) {
+    long normalizedYear = year + month / 12;
+    long normalizedMonth = month % 12 + 1;
+    if (normalizedMonth < 1) {
+      normalizedYear--;
+      normalizedMonth += 12;
+    }
+    if (normalizedYear < FIRST_GREGORIAN_YEAR || normalizedYear > LAST_DIRECT_YEAR) {
+      Calendar calendar = new GregorianCalendar(DEFAULT_ZONE, Locale.US);
+      calendar.clear();
+      calendar.set((int) year, (int) month, (int) day, (int) hour, (int) minute, (int) second);
+      return calendar.getTimeInMillis();
     }
+
+    // The days from 0000-03-01 to 1970-01-01 are subtracted from the days of the
+    // proleptic Gregorian calendar, counting from a year that starts in March.
+    long marchYear = (normalizedMonth > 2) ? normalizedYear : normalizedYear - 1;
+    long marchMonth = (normalizedMonth + 9) % 12;
+    long days = 365 * marchYear + marchYear / 4 - marchYear / 100 + marchYear / 400
+        + (153 * marchMonth + 2) / 5 + day - 1 - DAYS_BEFORE_EPOCH;
+    long localMillis = days * MILLIS_PER_DAY + hour * 3600000L + minute * 60000L
+        + second * 1000L;
+    // A time skipped when daylight saving time starts is read in standard time,
+    // as a calendar reads it.
+    int offset = DEFAULT_ZONE.getOffset(localMillis - DEFAULT_ZONE.getRawOffset());
+    int actualOffset = DEFAULT_ZONE.getOffset(localMillis - offset);
+    return localMillis - actualOffset;
   }
 
   /**
-   * Returns true if the specified timestamp is in the SimpleDateFormat. 
-   * This should be: MM/dd/yyyy-hh:mm:ss.
-   * @param timestamp the timestamp to test.
-   * @return true if the timestamp is in the specified SimpleDateFormat, false
-   * if not.
+   * Returns true if the specified string is an integer greater than zero.
+   * @param value the string to test.
+   * @return true if the string is a positive integer, false if not.
    */
-  private static boolean isTimestampSimpleDate(String timestamp) {
+  public static boolean isPositiveInteger(String value) {
     try {
-      SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy-hh:mm:ss", Locale.US);
-      format.parse(timestamp, new ParsePosition(0)).getTime();
-      return true;
+      return Integer.parseInt(value) > 0;
     }
-    catch (NullPointerException npe) {
+    catch (NumberFormatException e) {
       return false;
     }
   }
 
+  /**
+   * Returns the number of entries, or files, between the ones validated against
+   * their schema, as set by the -validate option. The interval is 1 if every
+   * entry is validated and 0 if none are.
+   * @param controller the controller containing the option objects.
+   * @return the validation interval.
+   */
+  public static int getValidationInterval(XmlDataController controller) {
+    Integer interval = (Integer) controller.getOptionObject(Options.VALIDATE);
+    return (interval == null) ? 1 : interval.intValue();
+  }
+
+  /**
+   * Returns a new set of unique timestamps, which may be shared by several
+   * threads. If the -tstampWindow option is used, the set only remembers the
+   * timestamps within the specified window behind the highest timestamp.
+   * @param controller the controller containing the option objects.
+   * @return the set of unique timestamps.
+   */
+  public static UniqueTstampSet createTstampSet(XmlDataController controller) {
+    Long window = (Long) controller.getOptionObject(Options.TSTAMP_WINDOW);
+    if (window == null) {
+      return new ConcurrentTstampSet();
+    }
+    return new WindowedTstampSet(window.longValue());
+  }
+
+  /**
+   * Returns the timestamp index named by the -tstampIndex option, which is
+   * created if it does not exist, or null if the option is not used.
+   * @param controller the controller containing the option objects.
+   * @return the timestamp index, or null.
+   * @throws IOException thrown if the index could not be opened.
+   */
+  public static TstampIndex openTstampIndex(XmlDataController controller) throws IOException {
+    String indexName = (String) controller.getOptionObject(Options.TSTAMP_INDEX);
+    return (indexName == null) ? null : new TstampIndex(new File(indexName));
+  }
+
+  /**
+   * Returns an empty key-value map that holds the specified number of keys
+   * without being resized.
+   * @param keyCount the number of keys the map will hold.
+   * @return the map instance.
+   */
+  public static Map<String, String> createKeyValMap(int keyCount) {
+    return new HashMap<String, String>(keyCount * 4 / 3 + 1);
+  }
+
   /**
    * Returns the current timestamp based on the specified parameters.
    * @param isUnique if this is true, a unique timestamp, based on the specified
@@ -127,6 +323,22 @@ public class OptionUtil {
     return Tstamp.makeTimestamp();
   }
 
+  /**
+   * Returns the current timestamp, in milliseconds, based on the specified
+   * parameters. The specified set may be shared by several threads.
+   * @param isUnique if this is true, a unique timestamp, based on the specified
+   * tstampSet, is returned.
+   * @param tstampSet the set of timestamps that is managed to ensure that a
+   * unique timestamp is generated.
+   * @return the current timestamp, which can be formatted by TstampFormatter.
+   */
+  public static long getCurrentTstamp(boolean isUnique, UniqueTstampSet tstampSet) {
+    if (isUnique) {
+      return tstampSet.getUniqueTstamp(System.currentTimeMillis());
+    }
+    return System.currentTimeMillis();
+  }
+
   /**
    * "Massages" the specified timestamp by using the specified parameters.
    * @param isUnique if this is true, the specified timestamp is changed to be
@@ -145,11 +357,56 @@ public class OptionUtil {
     return Tstamp.makeTimestamp(timestamp);
   }
 
+  /**
+   * "Massages" the specified timestamp, in milliseconds, by using the specified
+   * parameters. The specified set may be shared by several threads.
+   * @param isUnique if this is true, the specified timestamp is changed to be
+   * unique based on the specified tstampSet.
+   * @param tstampSet the set of timestamps that is managed to ensure that a
+   * unique timestamp is generated.
+   * @param timestamp the timestamp to massage.
+   * @return the massaged timestamp, which can be formatted by TstampFormatter.
+   */
+  public static long massageTstamp(Boolean isUnique, UniqueTstampSet tstampSet,
+      long timestamp) {
+    return isUnique ? tstampSet.getUniqueTstamp(timestamp) : timestamp;
+  }
+
+  /**
+   * Records the timestamp of the specified entry in the specified index, which
+   * is done just before the entry is added to the shell, so that only the
+   * timestamps of the entries that are sent are recorded. If the timestamp is
+   * already recorded for the entry's SensorDataType and resource, by an earlier
+   * run or an earlier entry, the entry is moved to the next unrecorded
+   * millisecond.
+   * @param tstampIndex the index of the timestamps sent by every run, or null.
+   * @param keyValMap the converted entry, whose timestamp may be changed.
+   * @throws IOException thrown if the timestamp index could not be grown.
+   */
+  public static void recordTstamp(TstampIndex tstampIndex, Map<String, String> keyValMap)
+    throws IOException {
+    String timestamp = keyValMap.get("Timestamp");
+    if (tstampIndex == null || timestamp == null) {
+      return;
+    }
+    String sdtName = keyValMap.get("SensorDataType");
+    String resource = keyValMap.get("Resource");
+    long tstamp = TstampFormatter.parse(timestamp);
+    long recordedTstamp = tstamp;
+    while (!tstampIndex.add(sdtName, resource, recordedTstamp)) {
+      recordedTstamp++;
+    }
+    if (recordedTstamp != tstamp) {
+      keyValMap.put("Timestamp", TstampFormatter.format(recordedTstamp));
+    }
+  }
+
   /**
    * The helper method that returns an unmarshaller that is created using the
    * specified JAXB context class and schema file. The schema file name is the
    * name of a file that is relative to the '[top-level dir]/xml/schema/'
-   * directory.
+   * directory. The context and compiled schema are shared with every other
+   * unmarshaller created for the same context class and schema file.
    * @param contextClass the specified context class used to build the
    * unmarshaller.
    * @param schemaFileName the schema file that adds schema validation to the
@@ -164,21 +421,28 @@ public class OptionUtil {
    */
   public static Unmarshaller createUnmarshaller(Class<?> contextClass, String schemaFileName)
     throws JAXBException, SAXException, MalformedURLException {
-    JAXBContext context = JAXBContext.newInstance(contextClass);
-    Unmarshaller unmarshaller = context.createUnmarshaller();
+    return UnmarshallerPool.getInstance(contextClass, schemaFileName).createUnmarshaller();
+  }
 
-    // Retrieves the url of the schema files.
+  /**
+   * Returns the url of the specified schema file. The schema files are found
+   * in the '/xml/schema/' directory of the jar containing this sensor. If this
+   * sensor is not run from a jar, the '[user.dir]/xml/schema/' directory is
+   * used instead.
+   * @param schemaFileName the name of the schema file.
+   * @return the schema file url.
+   * @throws MalformedURLException thrown if there is a problem finding the xsd
+   * schema directory.
+   */
+  public static URL getSchemaUrl(String schemaFileName) throws MalformedURLException {
     String classJar = OptionUtil.class.getResource("").toString();
     int index = classJar.indexOf('!');
+    if (index < 0) {
+      File schemaDir = new File(System.getProperty("user.dir"), "xml/schema");
+      return new File(schemaDir, schemaFileName).toURI().toURL();
+    }
     String jarString = classJar.substring(0, index + 1);
-    URL jarUrl = new URL(jarString + "/xml/schema/" + schemaFileName);
-
-    // Adds schema validation to the unmarshalled file.
-    SchemaFactory schemaFactory = SchemaFactory
-        .newInstance("http://www.w3.org/2001/XMLSchema");
-    Schema schema = schemaFactory.newSchema(jarUrl);
-    unmarshaller.setSchema(schema);
-    return unmarshaller;
+    return new URL(jarString + "/xml/schema/" + schemaFileName);
   }
 
   /**
@@ -186,21 +450,180 @@ public class OptionUtil {
    * the connectivity of the sensorshell to a Hackystat server. If the server
    * exists, a normal message is sent. If the server does not exist, a message
    * informing the user of offline storage is sent. This method should be used
-   * by all options that send data.
+   * by all options that send data. If only some of the shells of the sender
+   * reach the server, both the sent and the offline entries are reported, and
+   * if the sender writes to a spool or another sink, the written entries are
+   * reported. If the send rate adapted to the server, the final rate and batch
+   * size are reported as well.
    * @param controller the controller that the message is fired to.
-   * @param shell the shell used to test the connectivity of the Hackystat
-   * server.
-   * @param entriesAdded the number of entries added to the specified shell.
+   * @param shell the sender whose shells are used to test the connectivity of
+   * the Hackystat server.
+   * @param entriesAdded the number of entries added to the specified sender
+   * since its last message.
    */
-  public static void fireSendMessage(XmlDataController controller, Shell shell,
+  public static void fireSendMessage(XmlDataController controller, ShardedShell shell,
       int entriesAdded) {
-    if (shell.ping()) {
+    if (shell.getSink() instanceof EntrySpool) {
+      controller.fireMessage("Server not available. Spooled " + entriesAdded
+          + " data entries to " + shell.getSink() + ".");
+      return;
+    }
+    if (shell.getSink() != null) {
+      controller.fireMessage(entriesAdded + " entries written to " + shell.getSink() + ".");
+      return;
+    }
+    SendRateLimiter rateLimiter = shell.getRateLimiter();
+    if (rateLimiter != null && rateLimiter.isAdaptive()) {
+      controller.fireMessage(String.format(Locale.US, "The send rate adapted to %.0f "
+          + "entries/sec in batches of %d entries.", rateLimiter.getRate(), rateLimiter
+          .getBatchSize()));
+    }
+    int offlineEntries = Math.min(entriesAdded, shell.countOfflineEntries());
+    boolean isOnline = (entriesAdded > 0) ? offlineEntries < entriesAdded : shell.ping();
+    if (isOnline && offlineEntries == 0) {
       controller.fireMessage(entriesAdded + " entries sent to " + controller.getHost());
     }
-    else {
+    else if (!isOnline) {
       controller.fireMessage("Server not available. Storing " + entriesAdded
           + " data entries offline.");
     }
+    else {
+      controller.fireMessage((entriesAdded - offlineEntries) + " entries sent to "
+          + controller.getHost() + ". Server not available to some shells. Storing "
+          + offlineEntries + " data entries offline.");
+    }
+  }
+
+  /**
+   * Quits the specified sender, which sends its remaining entries and stops
+   * its threads. A failure is fired to the controller instead of thrown, so
+   * this method can be used in the finally block of an option's execution.
+   * @param controller the controller that a failure is fired to.
+   * @param shell the sender to quit, or null if it was not created.
+   */
+  public static void quitShell(XmlDataController controller, ShardedShell shell) {
+    if (shell != null) {
+      try {
+        shell.quit();
+      }
+      catch (SensorShellException e) {
+        controller.fireMessage("The sensorshell could not be quit.", e.toString());
+      }
+    }
+  }
+
+  /**
+   * Creates the sender of the entries as createShardedShell(SensorShellProperties,
+   * XmlDataController) does, with the default sensorshell properties. The
+   * properties are only read if the entries are sent with shells, so a run
+   * with the -sink option does not need them.
+   * @param controller the controller that contains the information used to
+   * determine the sink and the number of shells.
+   * @return the sender instance.
+   * @throws Exception thrown if there is a problem instantiating a shell or
+   * the sink.
+   */
+  public static ShardedShell createShardedShell(XmlDataController controller)
+    throws Exception {
+    EntrySink sink = createSink(controller);
+    if (sink != null) {
+      return new ShardedShell(sink);
+    }
+    return createShardedShell(new SensorShellProperties(), controller);
+  }
+
+  /**
+   * Creates the sender of the entries as createShardedShell(XmlDataController)
+   * does, with the specified properties overriding those of the
+   * sensorshell.properties file.
+   * @param controller the controller that contains the information used to
+   * determine the sink and the number of shells.
+   * @param overrides the sensorshell properties that replace the default ones.
+   * @return the sender instance.
+   * @throws Exception thrown if there is a problem instantiating a shell or
+   * the sink.
+   */
+  public static ShardedShell createShardedShell(XmlDataController controller,
+      Properties overrides) throws Exception {
+    EntrySink sink = createSink(controller);
+    if (sink != null) {
+      return new ShardedShell(sink);
+    }
+    return createShardedShell(new SensorShellProperties(new SensorShellProperties(),
+        overrides), controller);
+  }
+
+  /**
+   * Creates the sender of the entries, which has one Shell instance unless the
+   * -multishell option sets the number of instances and the key the entries
+   * are sharded by. If the -spool option is used and the server cannot be
+   * reached, the sender writes the entries to the spool instead. The -rateLimit
+   * option limits the rate the entries are added to the shells. If the -sink
+   * option selects a sink other than the shell, the sender has no shells and
+   * writes the entries to that sink.
+   * @param properties the properties used to create the shell instances.
+   * @param controller the controller that contains the information used to
+   * determine the number of shells.
+   * @return the sender instance.
+   * @throws Exception thrown if there is a problem instantiating a shell.
+   */
+  public static ShardedShell createShardedShell(SensorShellProperties properties,
+      XmlDataController controller) throws Exception {
+    EntrySink sink = createSink(controller);
+    if (sink != null) {
+      return new ShardedShell(sink);
+    }
+    Integer shellCount = (Integer) controller.getOptionObject(Options.SHELL_COUNT);
+    ShardedShell shell = null;
+    if (shellCount == null || shellCount.intValue() <= 1) {
+      shell = new ShardedShell(createShell(properties, controller));
+    }
+    else {
+      String shardKey = (String) controller.getOptionObject(Options.SHARD_KEY);
+      List<Shell> shells = new ArrayList<Shell>();
+      for (int i = 0; i < shellCount.intValue(); i++) {
+        shells.add(createShell(properties, controller));
+      }
+      controller.fireMessage("Sending with " + shellCount + " shells sharded by " + shardKey
+          + ".");
+      shell = new ShardedShell(shells, shardKey);
+    }
+
+    Integer rateLimit = (Integer) controller.getOptionObject(Options.RATE_LIMIT);
+    if (rateLimit != null) {
+      Long latency = (Long) controller.getOptionObject(Options.SEND_LATENCY);
+      shell.setRateLimiter(new SendRateLimiter(rateLimit.doubleValue(), (latency == null) ? 0
+          : latency.longValue()));
+    }
+
+    String spoolName = (String) controller.getOptionObject(Options.SPOOL);
+    if (spoolName != null && !shell.ping()) {
+      shell.setSink(new EntrySpool(new File(spoolName)));
+      controller.fireMessage("Server not available. Spooling entries to " + spoolName + ".");
+    }
+    return shell;
+  }
+
+  /**
+   * Creates the sink selected by the -sink option.
+   * @param controller the controller that contains the sink's name and file.
+   * @return the sink, or null if the entries are sent with shells.
+   * @throws IOException thrown if the sink's file could not be created.
+   */
+  private static EntrySink createSink(XmlDataController controller) throws IOException {
+    String sinkName = (String) controller.getOptionObject(Options.SINK);
+    EntrySink sink = null;
+    if (SinkOption.NULL_SINK.equals(sinkName)) {
+      sink = new NullEntrySink();
+    }
+    else if (SinkOption.JSONL_SINK.equals(sinkName)) {
+      String fileName = (String) controller.getOptionObject(Options.SINK_FILE);
+      sink = new JsonLinesEntrySink(new File(fileName));
+    }
+    if (sink != null) {
+      controller.fireMessage("Writing the converted entries to " + sink + ".");
+    }
+    return sink;
   }
 
   /**
@@ -227,6 +650,6 @@ public class OptionUtil {
         multi);
     SensorShellProperties newProps = new SensorShellProperties(properties, preferMultiShell);
     */
-    return new SensorShell(new SensorShellProperties(), false, "XmlData");
+    return new SensorShell(properties, false, "XmlData");
   }
 }
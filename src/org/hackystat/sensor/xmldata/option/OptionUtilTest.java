@@ -1,12 +1,21 @@
 package org.hackystat.sensor.xmldata.option;
 
+import java.io.File;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.hackystat.sensor.xmldata.XmlDataController;
-import org.hackystat.sensorshell.MultiSensorShell;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensor.xmldata.util.TstampIndex;
 import org.hackystat.sensorshell.SensorShellProperties;
 import org.hackystat.sensorshell.SensorShell;
 import org.hackystat.sensorshell.Shell;
@@ -59,6 +68,40 @@ public class OptionUtilTest {
     }
   }
 
+  /**
+   * Tests if timestamps are read as Long.valueOf and a lenient SimpleDateFormat
+   * would read them, and if invalid timestamps keep the same error message.
+   * @throws Exception if a valid timestamp is rejected.
+   */
+  @Test
+  public void testGetTimestampInMillisLenient() throws Exception {
+    String[] timestamps = { "12/31/1999-12:59:59", "13/32/2001-25:61:61", "0/0/2000-0:0:0",
+        "02/29/2001-01:00:00", "1/1/1970-12:00:00.123", "10/10/1500-01:00:00" };
+    for (String timestamp : timestamps) {
+      SimpleDateFormat format = new SimpleDateFormat("MM/dd/yyyy-hh:mm:ss", Locale.US);
+      Assert.assertEquals("The timestamp " + timestamp + " was read incorrectly.", format
+          .parse(timestamp, new ParsePosition(0)).getTime(), OptionUtil
+          .getTimestampInMillis(timestamp));
+    }
+    Assert.assertEquals("A signed long was read incorrectly.", -123L, OptionUtil
+        .getTimestampInMillis("-123"));
+    Assert.assertEquals("The smallest long was read incorrectly.", Long.MIN_VALUE, OptionUtil
+        .getTimestampInMillis(String.valueOf(Long.MIN_VALUE)));
+
+    String[] invalidTimestamps = { null, "", "-", "9223372036854775808", "07/07/1977",
+        "07/07/1977 07:07:07", "07-07-1977-07:07:07" };
+    for (String timestamp : invalidTimestamps) {
+      try {
+        OptionUtil.getTimestampInMillis(timestamp);
+        Assert.fail("The timestamp " + timestamp + " should not be valid.");
+      }
+      catch (Exception e) {
+        Assert.assertEquals("The error message has changed.", "The timestamp must either be "
+            + "specified as a long or in the format: MM/dd/yyyy-hh:mm:ss", e.getMessage());
+      }
+    }
+  }
+
   /** Tests if the correct current timestamp is returned. */
   @Test
   public void testGetCurrentTimestamp() {
@@ -84,25 +127,104 @@ public class OptionUtilTest {
         .getUniqueTstamp(timestamp), OptionUtil.massageTimestamp(true, tstampSet, timestamp));
   }
 
-  /** Tests if the correct sensorshell instance is returned. */
+  /**
+   * Tests if a recorded timestamp is moved to the next unrecorded one for the
+   * same SensorDataType and resource only.
+   * @throws Exception if the timestamp index could not be written.
+   */
+  @Test
+  public void testRecordTstamp() throws Exception {
+    File file = File.createTempFile("xmldata", ".index");
+    file.delete();
+    TstampIndex tstampIndex = new TstampIndex(file);
+    try {
+      Map<String, String> keyValMap = this.createEntry("file1", 1000L);
+      OptionUtil.recordTstamp(null, keyValMap);
+      OptionUtil.recordTstamp(tstampIndex, keyValMap);
+      Assert.assertEquals("An unrecorded timestamp should be kept.", TstampFormatter
+          .format(1000L), keyValMap.get("Timestamp"));
+      Assert.assertTrue("The timestamp was not recorded.", tstampIndex.contains("Build",
+          "file1", 1000L));
+
+      keyValMap = this.createEntry("file1", 1000L);
+      OptionUtil.recordTstamp(tstampIndex, keyValMap);
+      Assert.assertEquals("A recorded timestamp should be moved.", TstampFormatter
+          .format(1001L), keyValMap.get("Timestamp"));
+      keyValMap = this.createEntry("file2", 1000L);
+      OptionUtil.recordTstamp(tstampIndex, keyValMap);
+      Assert.assertEquals("Another resource should keep the timestamp.", TstampFormatter
+          .format(1000L), keyValMap.get("Timestamp"));
+    }
+    finally {
+      tstampIndex.close();
+      file.delete();
+    }
+  }
+
+  /**
+   * Returns a converted entry with the specified resource and timestamp.
+   * @param resource the resource of the entry.
+   * @param tstamp the timestamp of the entry.
+   * @return the key-value mapping of the entry.
+   */
+  private Map<String, String> createEntry(String resource, long tstamp) {
+    Map<String, String> keyValMap = new HashMap<String, String>();
+    keyValMap.put("SensorDataType", "Build");
+    keyValMap.put("Resource", resource);
+    keyValMap.put("Timestamp", TstampFormatter.format(tstamp));
+    return keyValMap;
+  }
+
+  /** Tests if the verbose string of a key-value map is rendered correctly. */
+  @Test
+  public void testGetMapVerboseString() {
+    Map<String, String> keyValMap = new LinkedHashMap<String, String>();
+    Assert.assertEquals("An empty map should be an empty string.", "", OptionUtil
+        .getMapVerboseString(keyValMap));
+    keyValMap.put("Tool", "Ant");
+    keyValMap.put("Resource", null);
+    keyValMap.put("SensorDataType", "Build");
+    Assert.assertEquals("The verbose string is incorrect.",
+        "[Tool=Ant, Resource=null, SensorDataType=Build]", OptionUtil
+            .getMapVerboseString(keyValMap));
+
+    // The string should be appended after the builder's contents.
+    StringBuilder builder = new StringBuilder("Entry ");
+    Assert.assertEquals("The appended string is incorrect.",
+        "Entry [Tool=Ant, Resource=null, SensorDataType=Build]", OptionUtil
+            .appendMapVerboseString(builder, keyValMap).toString());
+  }
+
+  /**
+   * Tests if a SensorShell instance is returned, and if the sender has one
+   * shell unless the -multishell option sets the number of shells.
+   */
   @Test
   public void testCreateShell() {
     try {
-      // First, create the controller used to determine which shell to use.
+      // First, create the controller used to determine the number of shells.
       XmlDataController controller = new XmlDataController();
+      List<String> parameters = new ArrayList<String>();
+      parameters.add("3");
       Option option = OptionFactory.getInstance(controller, MultiShellOption.OPTION_NAME,
-          new ArrayList<String>());
+          parameters);
 
-      // Tests if a normal SensorShell is used.
+      // Tests if a normal SensorShell is used, and only one without the option.
       Shell shell = OptionUtil.createShell(new SensorShellProperties(), controller);
       Assert.assertTrue("The returned shell is not a SensorShell instance.",
           shell instanceof SensorShell);
+      ShardedShell shardedShell = OptionUtil.createShardedShell(new SensorShellProperties(),
+          controller);
+      Assert.assertEquals("The sender should have one shell.", 1, shardedShell
+          .getShellCount());
+      shardedShell.quit();
 
-      // Tests if a MultiSensorShell is used when the option is set.
+      // Tests if the number of shells set by the option is used.
       option.process();
-      shell = OptionUtil.createShell(new SensorShellProperties(), controller);
-      Assert.assertTrue("The returned shell is not a MultiSensorShell instance.",
-          shell instanceof MultiSensorShell);
+      shardedShell = OptionUtil.createShardedShell(new SensorShellProperties(), controller);
+      Assert.assertEquals("The sender should have the shells of the option.", 3,
+          shardedShell.getShellCount());
+      shardedShell.quit();
     }
     catch (Exception e) {
       e.printStackTrace();
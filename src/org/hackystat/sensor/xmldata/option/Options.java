@@ -28,6 +28,16 @@ public enum Options {
    * sensorshell instances. This allows speedier data sending.
    */
   MULTI_SHELL,
+  /**
+   * The option set with MULTI_SHELL. The object associated with this option is
+   * an Integer, which is the number of sensorshell instances.
+   */
+  SHELL_COUNT,
+  /**
+   * The option set with MULTI_SHELL. The object associated with this option is
+   * the key whose value chooses the sensorshell instance of an entry.
+   */
+  SHARD_KEY,
   /**
    * The option set when the user requests to send data as a batch, which means
    * that all data instances have the same runtime.
@@ -37,5 +47,88 @@ public enum Options {
    * The option set when all entries sent by this sensor belongs to the same
    * specified resource.
    */
-  RESOURCE;
+  RESOURCE,
+  /**
+   * The option set when files are parsed and converted by multiple worker
+   * threads. The object associated with this option is an Integer.
+   */
+  THREADS,
+  /**
+   * The option set when the progress of a run is recorded in a checkpoint
+   * journal. The object associated with this option is the journal's file name.
+   */
+  CHECKPOINT,
+  /**
+   * The option set when a run resumes from its checkpoint journal. The object
+   * associated with this option is a boolean.
+   */
+  RESUME,
+  /**
+   * The option set when specifying what happens to entries without a
+   * SensorDataType. The object associated with this option is a String.
+   */
+  SDT_POLICY,
+  /**
+   * The option set when entries without a SensorDataType are written to a
+   * file. The object associated with this option is the file's name.
+   */
+  SDT_QUARANTINE,
+  /**
+   * The option set when only some or none of the data is validated against its
+   * schema. The object associated with this option is an Integer, which is the
+   * number of entries between validated entries, or 0 if none are validated.
+   */
+  VALIDATE,
+  /**
+   * The option set when unique timestamps are only tracked within a window
+   * behind the highest timestamp. The object associated with this option is a
+   * Long, which is the window in milliseconds.
+   */
+  TSTAMP_WINDOW,
+  /**
+   * The option set when timestamps are kept unique across runs by an index
+   * file. The object associated with this option is the index's file name.
+   */
+  TSTAMP_INDEX,
+  /**
+   * The option set when only the verbose message of every Nth entry is
+   * displayed. The object associated with this option is an Integer, which is
+   * the number N.
+   */
+  VERBOSE_SAMPLE,
+  /**
+   * The option set when entries are converted on a separate thread from the
+   * one sending them. The object associated with this option is an Integer,
+   * which is the depth of the queues between the threads.
+   */
+  PIPELINE,
+  /**
+   * The option set when entries are spooled while the server cannot be
+   * reached. The object associated with this option is the name of the spool
+   * directory.
+   */
+  SPOOL,
+  /**
+   * The option set when the converted entries are written to a sink instead
+   * of being sent. The object associated with this option is the name of the
+   * sink, which is "null", "jsonl" or "shell".
+   */
+  SINK,
+  /**
+   * The option set when the sink writes to a file. The object associated with
+   * this option is the file's name.
+   */
+  SINK_FILE,
+  /**
+   * The option set when the rate that entries are sent is limited. The object
+   * associated with this option is an Integer, which is the maximum number of
+   * entries per second.
+   */
+  RATE_LIMIT,
+  /**
+   * The option set when the limited rate adapts to the latency of the sends.
+   * The object associated with this option is a Long, which is the target
+   * latency of a send in milliseconds.
+   */
+  SEND_LATENCY;
 }
@@ -0,0 +1,59 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to read and convert sensor data on a separate thread from
+ * the one that adds it to the shell, so that time spent sending, or storing
+ * data offline, does not stop the parsing, and time spent parsing does not
+ * leave the network idle. The threads are joined by bounded queues of
+ * converted entries, whose depth is the optional parameter of this option.
+ * A full queue makes the converting thread wait, which bounds the memory used
+ * when the sensorbase is slow.
+ * @author aito
+ *
+ */
+public class PipelineOption extends AbstractOption {
+  /** This option's name, which is "-pipeline". */
+  public static final String OPTION_NAME = "-pipeline";
+  /** The number of entries queued ahead of the shell if no depth is specified. */
+  public static final int DEFAULT_DEPTH = 1024;
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public PipelineOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the depth of the queues. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      Integer depth = this.getParameters().isEmpty() ? Integer.valueOf(DEFAULT_DEPTH)
+          : Integer.valueOf(this.getParameters().get(0));
+      this.getController().addOptionObject(Options.PIPELINE, depth);
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters is empty, or contains only one
+   * element, which is a positive integer.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().isEmpty() || (this.getParameters().size() == 1 && OptionUtil
+        .isPositiveInteger(this.getParameters().get(0)))) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME
+        + " option accepts one positive integer argument, the queue depth.  Ex: -pipeline 4096.";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
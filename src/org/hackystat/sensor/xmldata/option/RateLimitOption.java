@@ -0,0 +1,77 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to limit the rate that entries are sent, so a large run
+ * does not flood a sensorbase shared with other sensors. It follows the
+ * convention:
+ *
+ * <pre>
+ * -rateLimit &lt;entries per second&gt; [adaptive [latency]]
+ * </pre>
+ *
+ * Without adaptive, the entries are sent no faster than the specified rate.
+ * With adaptive, the rate starts at the specified rate, which it never
+ * exceeds, and the rate and the size of the batches sent are tuned from the
+ * time the shells take to add and send each batch, so that a batch takes no
+ * longer than the target latency in milliseconds, which is DEFAULT_LATENCY if
+ * none is specified.
+ * @author aito
+ *
+ */
+public class RateLimitOption extends AbstractOption {
+  /** This option's name, which is "-rateLimit". */
+  public static final String OPTION_NAME = "-rateLimit";
+  /** The parameter that makes the rate adapt to the latency of the sends. */
+  public static final String ADAPTIVE = "adaptive";
+  /** The target latency of a send in milliseconds if none is specified. */
+  public static final long DEFAULT_LATENCY = 1000;
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public RateLimitOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the rate and the target latency of the sends. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      List<String> parameters = this.getParameters();
+      this.getController().addOptionObject(Options.RATE_LIMIT, Integer.valueOf(parameters
+          .get(0)));
+      if (parameters.size() > 1) {
+        Long latency = (parameters.size() > 2) ? Long.valueOf(parameters.get(2)) : Long
+            .valueOf(DEFAULT_LATENCY);
+        this.getController().addOptionObject(Options.SEND_LATENCY, latency);
+      }
+    }
+  }
+
+  /**
+   * Returns true if the parameters are a positive rate, optionally followed by
+   * adaptive and a positive target latency.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    List<String> parameters = this.getParameters();
+    if (!parameters.isEmpty() && parameters.size() <= 3
+        && OptionUtil.isPositiveInteger(parameters.get(0))
+        && (parameters.size() < 2 || ADAPTIVE.equals(parameters.get(1)))
+        && (parameters.size() < 3 || OptionUtil.isPositiveInteger(parameters.get(2)))) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME + " option must be a positive number of entries per "
+        + "second, optionally followed by adaptive and a latency in milliseconds.  "
+        + "Ex: -rateLimit 5000 adaptive 500";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
@@ -0,0 +1,169 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.util.EntrySpool;
+import org.hackystat.sensor.xmldata.util.EntrySpoolReader;
+import org.hackystat.sensor.xmldata.util.NullEntrySink;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensorshell.SensorShellProperties;
+
+/**
+ * The option used to send the entries spooled by the -spool option. The
+ * segments of the spool are sent in the order they were written, and each
+ * segment is deleted once the shells report every one of its entries as sent
+ * and none as stored offline. The shells do not send on their own, so every
+ * entry is sent, and counted, by the replay's sends. The entries are sent with
+ * several shells in parallel, which are set by the -multishell option or else
+ * its defaults. The replay stops, keeping the remaining segments, if the
+ * server cannot be reached, a segment is not fully sent, or a segment is
+ * damaged. A kept segment is sent again by the next replay, which only
+ * overwrites the entries the sensorbase already has. With the -sink option,
+ * the spooled entries are written to the sink instead, and the segments are
+ * kept if the sink discards the entries.
+ * @author aito
+ *
+ */
+public class ReplayOption extends AbstractOption {
+  /** This option's name, which is "-replay". */
+  public static final String OPTION_NAME = "-replay";
+  /** The number of entries added between sends, which bounds what the shells buffer. */
+  private static final int SEND_BATCH_SIZE = 1000;
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public ReplayOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option, which uses several shells unless -multishell sets them. */
+  @Override
+  public void process() {
+    if (this.isValid() && this.getController().getOptionObject(Options.SHELL_COUNT) == null) {
+      this.getController().addOptionObject(Options.MULTI_SHELL, Boolean.TRUE);
+      this.getController().addOptionObject(Options.SHELL_COUNT,
+          Integer.valueOf(MultiShellOption.DEFAULT_SHELL_COUNT));
+      this.getController().addOptionObject(Options.SHARD_KEY, ShardedShell.DEFAULT_SHARD_KEY);
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * a directory.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() != 1) {
+      String msg = "The " + OPTION_NAME
+          + " option must have only one argument.  Ex: -replay spool";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    if (!new File(this.getParameters().get(0)).isDirectory()) {
+      String msg = "The spool directory '" + this.getParameters().get(0)
+          + "' does not exist.";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Executes this option by sending the spooled entries and deleting their
+   * segments. The entries of a segment are sent in batches, and the segment is
+   * only deleted if the sends report them all.
+   */
+  @Override
+  public void execute() {
+    File directory = new File(this.getParameters().get(0));
+    int entriesReplayed = 0;
+    ShardedShell shell = null;
+    try {
+      shell = OptionUtil.createShardedShell(this.getController(), createShellProperties());
+      StringBuilder verboseBuilder = new StringBuilder();
+      for (File segment : EntrySpool.getSegments(directory)) {
+        if (shell.getShellCount() > 0 && !shell.ping()) {
+          this.getController().fireMessage(
+              "Server not available. The remaining spool segments are kept.");
+          break;
+        }
+        this.getController().fireMessage(
+            TstampFormatter.format(System.currentTimeMillis()) + " Replaying " + segment);
+        int sentCount = shell.getSentCount();
+        int segmentEntries = 0;
+        EntrySpoolReader reader = null;
+        try {
+          reader = new EntrySpoolReader(segment);
+          for (Map<String, String> keyValMap = reader.next(); keyValMap != null;
+              keyValMap = reader.next()) {
+            shell.add(keyValMap);
+            if (this.getController().isVerboseEntry()) {
+              verboseBuilder.setLength(0);
+              this.getController().fireVerboseMessage(OptionUtil.appendMapVerboseString(
+                  verboseBuilder, keyValMap).toString());
+            }
+            if (++segmentEntries % SEND_BATCH_SIZE == 0) {
+              shell.send();
+            }
+          }
+        }
+        catch (IOException e) {
+          this.getController().fireMessage("The segment " + segment + " could not be read. "
+              + "It and the remaining spool segments are kept.", e.toString());
+          break;
+        }
+        finally {
+          if (reader != null) {
+            reader.close();
+          }
+        }
+        shell.send();
+        if (shell.getSink() == null) {
+          int sentEntries = shell.getSentCount() - sentCount;
+          if (sentEntries != segmentEntries || shell.countOfflineEntries() > 0) {
+            this.getController().fireMessage("The segment " + segment + " was not fully "
+                + "sent, " + sentEntries + " of its " + segmentEntries + " entries were sent. "
+                + "It and the remaining spool segments are kept.");
+            break;
+          }
+        }
+        entriesReplayed += segmentEntries;
+        if (!(shell.getSink() instanceof NullEntrySink) && !segment.delete()) {
+          this.getController().fireMessage("The replayed segment " + segment
+              + " could not be deleted.");
+        }
+      }
+      OptionUtil.fireSendMessage(this.getController(), shell, entriesReplayed);
+    }
+    catch (Exception e) {
+      String msg = "The spool " + directory + " could not be replayed.";
+      this.getController().fireMessage(msg, e.toString());
+    }
+    finally {
+      OptionUtil.quitShell(this.getController(), shell);
+    }
+  }
+
+  /**
+   * Returns the sensorshell properties of the replay's shells, which turn off
+   * sending when a shell's buffer fills or its timer fires. The entries a
+   * shell sends on its own are not counted, so the replay could not tell if a
+   * segment was fully sent.
+   * @return the properties that replace the default ones.
+   */
+  private static Properties createShellProperties() {
+    Properties properties = new Properties();
+    properties.setProperty(SensorShellProperties.SENSORSHELL_AUTOSEND_TIMEINTERVAL_KEY, "0");
+    properties.setProperty(SensorShellProperties.SENSORSHELL_AUTOSEND_MAXBUFFER_KEY, "0");
+    return properties;
+  }
+}
@@ -0,0 +1,49 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to resume a run from the journal specified by the
+ * -checkpoint option. The files recorded as sent are skipped, as are the
+ * entries already sent from the file the earlier run stopped in.
+ * @author aito
+ *
+ */
+public class ResumeOption extends AbstractOption {
+  /** The option name, which is "-resume". */
+  public static final String OPTION_NAME = "-resume";
+
+  /**
+   * Creates this option with the specified controller and the specified list of
+   * parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified list of parameters.
+   */
+  public ResumeOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the resume mode to true. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.RESUME, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains no parameters.
+   * @return true if this option has no parameters, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (!this.getParameters().isEmpty()) {
+      String msg = "The " + OPTION_NAME + " option does not accept parameters.  ";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,76 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to specify what happens to an entry without a
+ * SensorDataType attribute when the -sdt option is not used. It follows the
+ * convention:
+ *
+ * <pre>
+ * -sdtPolicy abort|skip|quarantine [file]
+ *
+ * abort      - stops sending at the entry, which is the default.
+ * skip       - leaves the entry out and keeps sending.
+ * quarantine - writes the entry to the specified xmldata file and keeps sending.
+ * </pre>
+ *
+ * @author aito
+ *
+ */
+public class SdtPolicyOption extends AbstractOption {
+  /** This option's name, which is "-sdtPolicy". */
+  public static final String OPTION_NAME = "-sdtPolicy";
+  /** The policy that stops sending at an entry without a SensorDataType. */
+  public static final String ABORT = "abort";
+  /** The policy that leaves out entries without a SensorDataType. */
+  public static final String SKIP = "skip";
+  /** The policy that writes entries without a SensorDataType to a file. */
+  public static final String QUARANTINE = "quarantine";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public SdtPolicyOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the policy and the quarantine file. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.SDT_POLICY, this.getParameters().get(0));
+      if (QUARANTINE.equals(this.getParameters().get(0))) {
+        this.getController().addOptionObject(Options.SDT_QUARANTINE,
+            this.getParameters().get(1));
+      }
+    }
+  }
+
+  /**
+   * Returns true if the parameters are abort, skip, or quarantine followed by
+   * the name of a file that is not a directory.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    List<String> parameters = this.getParameters();
+    if (parameters.size() == 1
+        && (ABORT.equals(parameters.get(0)) || SKIP.equals(parameters.get(0)))) {
+      return true;
+    }
+    if (parameters.size() == 2 && QUARANTINE.equals(parameters.get(0))
+        && !new File(parameters.get(1)).isDirectory()) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME + " option must be abort, skip, or quarantine "
+        + "followed by a file.  Ex: -sdtPolicy quarantine rejected.xml";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
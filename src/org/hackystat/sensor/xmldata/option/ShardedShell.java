@@ -0,0 +1,550 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import org.hackystat.sensor.xmldata.util.EntrySink;
+import org.hackystat.sensor.xmldata.util.SendRateLimiter;
+import org.hackystat.sensorshell.SensorShellException;
+import org.hackystat.sensorshell.Shell;
+
+/**
+ * The sender of entries over one or more Shell instances. Each entry is given
+ * to the shell of its shard, which is chosen by the value of the shard key, so
+ * the entries of one key are always added, and sent, in order by the same
+ * shell. With more than one shell, each shell is driven by its own thread
+ * through a bounded queue, so the shells send to the sensorbase in parallel
+ * and a slow send of one shell does not stop the others. With a single shell,
+ * entries are added on the calling thread.
+ * <p>
+ * Send, quit, and the counts of entries stored offline cover every shell, so
+ * the callers see one sender whatever the number of shells. If a sink, such as
+ * a spool or a file, is set, the entries are written to the sink instead of the
+ * shells, and send writes them out. A sender that only writes to a sink has no
+ * shells.
+ * <p>
+ * If a rate limiter is set, the entries are added to the shells no faster
+ * than its rate, and an adaptive limiter also sends them in batches and is
+ * told how long the shells took to add and send each batch.
+ * @author aito
+ *
+ */
+public class ShardedShell {
+  /** The key whose value chooses the shard of an entry if none is specified. */
+  public static final String DEFAULT_SHARD_KEY = "Resource";
+  /** The number of entries each shard queues ahead of its shell. */
+  private static final int SHARD_QUEUE_SIZE = 1024;
+
+  /** The shell of each shard. */
+  private List<Shell> shells = null;
+  /** The key whose value chooses the shard of an entry. */
+  private String shardKey = null;
+  /** The thread driving each shard's shell, or null if there is one shell. */
+  private List<ShardWorker> workers = null;
+  /** The number of entries added to each shard since the last count. */
+  private int[] entryCounts = null;
+  /** The sink the entries are written to instead of the shells, or null. */
+  private EntrySink sink = null;
+  /** The limiter of the rate the entries are added to the shells, or null. */
+  private SendRateLimiter rateLimiter = null;
+  /** The number of entries added to the shells since the last send. */
+  private int unsentEntries = 0;
+  /** The nanoseconds spent adding entries to the shells since the last send. */
+  private long addTime = 0;
+  /** The number of entries the shells reported as sent by every send. */
+  private int sentCount = 0;
+
+  /**
+   * Constructs a sender over the specified shells, which starts a thread for
+   * each shell if there is more than one.
+   * @param shells the shells the entries are sent with.
+   * @param shardKey the key whose value chooses the shard of an entry.
+   */
+  public ShardedShell(List<Shell> shells, String shardKey) {
+    this.shells = new ArrayList<Shell>(shells);
+    this.shardKey = shardKey;
+    this.entryCounts = new int[shells.size()];
+    if (shells.size() > 1) {
+      this.workers = new ArrayList<ShardWorker>();
+      for (int i = 0; i < shells.size(); i++) {
+        ShardWorker worker = new ShardWorker(shells.get(i), "xmldata-shell-" + i);
+        this.workers.add(worker);
+        worker.start();
+      }
+    }
+  }
+
+  /**
+   * Constructs a sender over the specified single shell.
+   * @param shell the shell the entries are sent with.
+   */
+  public ShardedShell(Shell shell) {
+    this(Collections.singletonList(shell), DEFAULT_SHARD_KEY);
+  }
+
+  /**
+   * Constructs a sender without shells that writes the entries to the
+   * specified sink.
+   * @param sink the sink the entries are written to.
+   */
+  public ShardedShell(EntrySink sink) {
+    this(new ArrayList<Shell>(), DEFAULT_SHARD_KEY);
+    this.sink = sink;
+  }
+
+  /**
+   * Returns the number of shells the entries are sent with.
+   * @return the number of shells.
+   */
+  public int getShellCount() {
+    return this.shells.size();
+  }
+
+  /**
+   * Sets the sink the entries are written to instead of the shells.
+   * @param sink the sink, or null to add the entries to the shells.
+   */
+  public void setSink(EntrySink sink) {
+    this.sink = sink;
+  }
+
+  /**
+   * Returns the sink the entries are written to instead of the shells.
+   * @return the sink, or null if the entries are added to the shells.
+   */
+  public EntrySink getSink() {
+    return this.sink;
+  }
+
+  /**
+   * Sets the limiter of the rate the entries are added to the shells, which
+   * does not limit the entries written to a sink.
+   * @param rateLimiter the limiter, or null to add the entries at any rate.
+   */
+  public void setRateLimiter(SendRateLimiter rateLimiter) {
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Returns the limiter of the rate the entries are added to the shells.
+   * @return the limiter, or null if the rate is not limited.
+   */
+  public SendRateLimiter getRateLimiter() {
+    return this.rateLimiter;
+  }
+
+  /**
+   * Returns the shard of the specified entry, which is the same for every
+   * entry with the same value of the shard key.
+   * @param keyValMap the key-value mapping of the entry.
+   * @return the index of the shard's shell.
+   */
+  int getShard(Map<String, String> keyValMap) {
+    String value = keyValMap.get(this.shardKey);
+    if (value == null) {
+      return 0;
+    }
+    return (value.hashCode() & Integer.MAX_VALUE) % this.shells.size();
+  }
+
+  /**
+   * Adds the specified entry to the shell of its shard. With more than one
+   * shell, the entry is queued, and this method waits while the shard's queue
+   * is full. With a rate limiter, this method also waits for the entry's
+   * permit, and sends the entries when an adaptive limiter's batch is full.
+   * @param keyValMap the key-value mapping of the entry.
+   * @throws SensorShellException thrown if the shard's shell failed.
+   */
+  public void add(Map<String, String> keyValMap) throws SensorShellException {
+    if (this.sink != null) {
+      try {
+        this.sink.write(keyValMap);
+      }
+      catch (IOException e) {
+        throw new SensorShellException("The entry could not be written to " + this.sink
+            + ".", e);
+      }
+    }
+    else {
+      if (this.rateLimiter != null) {
+        try {
+          this.rateLimiter.acquire();
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SensorShellException("Interrupted while limiting the send rate.", e);
+        }
+      }
+      long start = (this.rateLimiter == null) ? 0 : System.nanoTime();
+      if (this.workers == null) {
+        this.shells.get(0).add(keyValMap);
+        this.entryCounts[0]++;
+      }
+      else {
+        int shard = this.getShard(keyValMap);
+        this.workers.get(shard).put(keyValMap);
+        this.entryCounts[shard]++;
+      }
+      this.unsentEntries++;
+      if (this.rateLimiter != null) {
+        this.addTime += System.nanoTime() - start;
+        if (this.rateLimiter.isBatchFull(this.unsentEntries)) {
+          this.send();
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends the entries added to every shell, and waits until they are sent.
+   * With more than one shell, the shells send in parallel. With a sink, the
+   * entries written to the sink are written out instead. The rate limiter, if
+   * any, is given the time the shells took to add and send the entries, which
+   * includes the sends a shell starts on its own when its buffer is full, and
+   * the waits for a full shard queue.
+   * @return the number of entries sent.
+   * @throws SensorShellException thrown if a shell failed.
+   */
+  public int send() throws SensorShellException {
+    if (this.sink != null) {
+      try {
+        this.sink.sync();
+      }
+      catch (IOException e) {
+        throw new SensorShellException(this.sink + " could not be written.", e);
+      }
+      return 0;
+    }
+    long start = System.nanoTime();
+    int sentEntries = this.sendShells();
+    this.sentCount += sentEntries;
+    if (this.rateLimiter != null) {
+      this.rateLimiter.recordSend(this.unsentEntries, this.addTime + System.nanoTime()
+          - start);
+    }
+    this.unsentEntries = 0;
+    this.addTime = 0;
+    return sentEntries;
+  }
+
+  /**
+   * Returns the number of entries the shells reported as sent by every send of
+   * this sender, including those of an adaptive rate limiter's batches. The
+   * entries a shell sends on its own, when its buffer is full, are not
+   * included.
+   * @return the number of entries sent.
+   */
+  public int getSentCount() {
+    return this.sentCount;
+  }
+
+  /**
+   * Sends the entries added to every shell, in parallel if there is more than
+   * one, and waits until they are sent.
+   * @return the number of entries sent.
+   * @throws SensorShellException thrown if a shell failed.
+   */
+  private int sendShells() throws SensorShellException {
+    if (this.workers == null) {
+      return this.shells.get(0).send();
+    }
+    List<ShardRequest> requests = new ArrayList<ShardRequest>();
+    for (ShardWorker worker : this.workers) {
+      ShardRequest request = new ShardRequest(false);
+      worker.put(request);
+      requests.add(request);
+    }
+    int sentEntries = 0;
+    for (ShardRequest request : requests) {
+      sentEntries += request.await();
+    }
+    return sentEntries;
+  }
+
+  /**
+   * Quits every shell, which sends their remaining entries, and stops the
+   * threads driving them, even those of shells that failed. The sink, if any,
+   * is closed.
+   * @throws SensorShellException thrown if a shell failed, after every thread
+   * is stopped.
+   */
+  public void quit() throws SensorShellException {
+    if (this.sink != null) {
+      try {
+        this.sink.close();
+      }
+      catch (IOException e) {
+        throw new SensorShellException(this.sink + " could not be closed.", e);
+      }
+    }
+    if (this.workers == null) {
+      for (Shell shell : this.shells) {
+        shell.quit();
+      }
+      return;
+    }
+    List<ShardRequest> requests = new ArrayList<ShardRequest>();
+    for (ShardWorker worker : this.workers) {
+      ShardRequest request = new ShardRequest(true);
+      worker.put(request);
+      requests.add(request);
+    }
+    SensorShellException error = null;
+    for (ShardRequest request : requests) {
+      try {
+        request.await();
+      }
+      catch (SensorShellException e) {
+        if (error == null) {
+          error = e;
+        }
+      }
+    }
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Returns true if the sensorbase can be reached.
+   * @return true if the first shell can ping the sensorbase, false if not or
+   * if there are no shells.
+   */
+  public boolean ping() {
+    return !this.shells.isEmpty() && this.shells.get(0).ping();
+  }
+
+  /**
+   * Returns the number of entries that were added, since the last call, to
+   * the shells that cannot reach the sensorbase, and which are stored offline
+   * by those shells. The counts of every shell are then started again.
+   * @return the number of entries stored offline.
+   */
+  public int countOfflineEntries() {
+    int offlineEntries = 0;
+    for (int i = 0; i < this.shells.size(); i++) {
+      if (this.entryCounts[i] > 0 && !this.shells.get(i).ping()) {
+        offlineEntries += this.entryCounts[i];
+      }
+      this.entryCounts[i] = 0;
+    }
+    return offlineEntries;
+  }
+
+  /**
+   * A request queued to a shard after its entries, which sends the entries or
+   * quits the shell, and is waited on by the caller.
+   * @author aito
+   *
+   */
+  private static class ShardRequest {
+    /** True if the shell quits, false if it only sends. */
+    private boolean isQuit = false;
+    /** The latch released when the request is done. */
+    private CountDownLatch done = new CountDownLatch(1);
+    /** The number of entries sent. */
+    private int sentEntries = 0;
+    /** The failure of the shell, or null. */
+    private SensorShellException error = null;
+
+    /**
+     * Constructs this request.
+     * @param isQuit true if the shell quits, false if it only sends.
+     */
+    ShardRequest(boolean isQuit) {
+      this.isQuit = isQuit;
+    }
+
+    /**
+     * Records the result of this request and releases its caller.
+     * @param sentEntries the number of entries sent.
+     * @param error the failure of the shell, or null.
+     */
+    void finish(int sentEntries, SensorShellException error) {
+      this.sentEntries = sentEntries;
+      this.error = error;
+      this.done.countDown();
+    }
+
+    /**
+     * Waits until this request is done.
+     * @return the number of entries sent.
+     * @throws SensorShellException thrown if the shell failed, or if the
+     * waiting thread was interrupted.
+     */
+    int await() throws SensorShellException {
+      try {
+        this.done.await();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SensorShellException("Interrupted while waiting for the shells.", e);
+      }
+      if (this.error != null) {
+        throw this.error;
+      }
+      return this.sentEntries;
+    }
+  }
+
+  /**
+   * The thread that adds the queued entries of one shard to its shell, and
+   * carries out the queued requests. After the shell fails, the queued items
+   * are discarded and every later call reports the failure. Any throwable of
+   * the shell, including an Error, is recorded as its failure, and if this
+   * thread stops, the requests still queued are answered with the failure.
+   * @author aito
+   *
+   */
+  private static class ShardWorker extends Thread {
+    /** The shell of the shard. */
+    private Shell shell = null;
+    /** The queued entries and requests. */
+    private BlockingQueue<Object> items = new ArrayBlockingQueue<Object>(SHARD_QUEUE_SIZE);
+    /** The failure of the shell, or null. */
+    private volatile SensorShellException error = null;
+    /** True once this thread no longer takes the queued items. */
+    private volatile boolean isStopped = false;
+
+    /**
+     * Constructs the daemon thread driving the specified shell.
+     * @param shell the shell of the shard.
+     * @param name the name of the thread.
+     */
+    ShardWorker(Shell shell, String name) {
+      super(name);
+      this.shell = shell;
+      this.setDaemon(true);
+    }
+
+    /**
+     * Queues the specified entry or request, and waits while the queue is
+     * full. A request is queued even after the shell failed, so that it is
+     * answered with the failure and a quit still stops this thread. A request
+     * queued after this thread stopped is answered here.
+     * @param item the key-value mapping of an entry, or a ShardRequest.
+     * @throws SensorShellException thrown if an entry is queued after the shell
+     * failed or quit, or if the calling thread was interrupted.
+     */
+    void put(Object item) throws SensorShellException {
+      if (!(item instanceof ShardRequest)) {
+        if (this.error != null) {
+          throw this.error;
+        }
+        if (this.isStopped) {
+          throw new SensorShellException("The shell " + this.getName() + " has quit.");
+        }
+      }
+      try {
+        this.items.put(item);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SensorShellException("Interrupted while queueing an entry.", e);
+      }
+      if (this.isStopped) {
+        this.finishQueued();
+      }
+    }
+
+    /**
+     * Answers the requests still queued with the failure of the shell, and
+     * discards the queued entries.
+     */
+    private void finishQueued() {
+      for (Object item = this.items.poll(); item != null; item = this.items.poll()) {
+        if (item instanceof ShardRequest) {
+          ((ShardRequest) item).finish(0, this.error);
+        }
+      }
+    }
+
+    /**
+     * Records the specified throwable of the shell as its failure, unless it
+     * already failed.
+     * @param throwable the throwable of the shell.
+     */
+    private void fail(Throwable throwable) {
+      if (this.error != null) {
+        return;
+      }
+      if (throwable instanceof SensorShellException) {
+        this.error = (SensorShellException) throwable;
+      }
+      else {
+        this.error = new SensorShellException("The shell " + this.getName() + " failed.",
+            throwable);
+      }
+    }
+
+    /**
+     * Adds the queued entries and carries out the requests until the shell
+     * quits, and then answers the requests still queued.
+     */
+    @Override
+    public void run() {
+      try {
+        this.process();
+      }
+      catch (Throwable t) { //NOPMD
+        // The failure is reported to the requests answered below.
+        this.fail(t);
+      }
+      finally {
+        this.isStopped = true;
+        this.finishQueued();
+      }
+    }
+
+    /** Adds the queued entries and carries out the requests until the shell quits. */
+    @SuppressWarnings("unchecked")
+    private void process() {
+      while (true) {
+        Object item;
+        try {
+          item = this.items.take();
+        }
+        catch (InterruptedException e) { //NOPMD
+          continue;
+        }
+        if (item instanceof ShardRequest) {
+          ShardRequest request = (ShardRequest) item;
+          int sentEntries = 0;
+          if (this.error == null) {
+            try {
+              if (request.isQuit) {
+                this.shell.quit();
+              }
+              else {
+                sentEntries = this.shell.send();
+              }
+            }
+            catch (Throwable t) { //NOPMD
+              // The failure is reported to this request and every later call.
+              this.fail(t);
+            }
+          }
+          request.finish(sentEntries, this.error);
+          if (request.isQuit) {
+            return;
+          }
+        }
+        else if (this.error == null) {
+          try {
+            this.shell.add((Map<String, String>) item);
+          }
+          catch (Throwable t) { //NOPMD
+            // The failure is reported to the next request and every later call.
+            this.fail(t);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to specify where the converted entries are written. It
+ * follows the convention:
+ *
+ * <pre>
+ * -sink null|jsonl [file]|shell
+ *
+ * null  - discards the entries, which measures reading and converting alone.
+ * jsonl - writes each entry as a line of JSON to the specified file.
+ * shell - sends the entries to the sensorbase, which is the default.
+ * </pre>
+ *
+ * @author aito
+ *
+ */
+public class SinkOption extends AbstractOption {
+  /** This option's name, which is "-sink". */
+  public static final String OPTION_NAME = "-sink";
+  /** The sink that discards the entries. */
+  public static final String NULL_SINK = "null";
+  /** The sink that writes the entries to a JSON-lines file. */
+  public static final String JSONL_SINK = "jsonl";
+  /** The sink that sends the entries with shells. */
+  public static final String SHELL_SINK = "shell";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public SinkOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the sink and its file. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.SINK, this.getParameters().get(0));
+      if (JSONL_SINK.equals(this.getParameters().get(0))) {
+        this.getController().addOptionObject(Options.SINK_FILE, this.getParameters().get(1));
+      }
+    }
+  }
+
+  /**
+   * Returns true if the parameters are null, shell, or jsonl followed by the
+   * name of a file that is not a directory.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    List<String> parameters = this.getParameters();
+    if (parameters.size() == 1
+        && (NULL_SINK.equals(parameters.get(0)) || SHELL_SINK.equals(parameters.get(0)))) {
+      return true;
+    }
+    if (parameters.size() == 2 && JSONL_SINK.equals(parameters.get(0))
+        && !new File(parameters.get(1)).isDirectory()) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME + " option must be null, shell, or jsonl "
+        + "followed by a file.  Ex: -sink jsonl entries.jsonl";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
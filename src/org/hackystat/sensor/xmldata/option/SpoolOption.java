@@ -0,0 +1,56 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to specify the directory that a -file, -migration or -watch
+ * run spools its converted entries to if the server cannot be reached when
+ * the run starts. The spooled entries are sent later with the -replay option.
+ * @author aito
+ *
+ */
+public class SpoolOption extends AbstractOption {
+  /** This option's name, which is "-spool". */
+  public static final String OPTION_NAME = "-spool";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public SpoolOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the name of the spool directory. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.SPOOL, this.getParameters().get(0));
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * not a file.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() != 1) {
+      String msg = "The " + OPTION_NAME
+          + " option must have only one argument.  Ex: -spool spool";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    if (new File(this.getParameters().get(0)).isFile()) {
+      String msg = "The spool directory '" + this.getParameters().get(0) + "' is a file.";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,60 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the checkpoint and resume options accept and process the correct
+ * arguments.
+ * @author aito
+ *
+ */
+public class TestCheckpointOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    List<String> arguments = new ArrayList<String>();
+    arguments.add("migration.journal");
+    Option checkpointOption = OptionFactory.getInstance(controller,
+        CheckpointOption.OPTION_NAME, arguments);
+    Assert.assertTrue("A journal file should be valid.", checkpointOption.isValid());
+
+    arguments = new ArrayList<String>();
+    arguments.add(System.getProperty("user.dir"));
+    checkpointOption = new CheckpointOption(controller, arguments);
+    Assert.assertFalse("A directory should be invalid.", checkpointOption.isValid());
+
+    checkpointOption = new CheckpointOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The checkpoint option must have 1 argument.", checkpointOption
+        .isValid());
+
+    Option resumeOption = OptionFactory.getInstance(controller, ResumeOption.OPTION_NAME,
+        new ArrayList<String>());
+    Assert.assertTrue("The resume option has no arguments.", resumeOption.isValid());
+    resumeOption = new ResumeOption(controller, arguments);
+    Assert.assertFalse("The resume option does not accept arguments.", resumeOption
+        .isValid());
+  }
+
+  /** Tests if the process methods set the journal and resume mode. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    List<String> arguments = new ArrayList<String>();
+    arguments.add("migration.journal");
+    new CheckpointOption(controller, arguments).process();
+    new ResumeOption(controller, new ArrayList<String>()).process();
+    Assert.assertEquals("The journal was not set.", "migration.journal", controller
+        .getOptionObject(Options.CHECKPOINT));
+    Assert.assertEquals("The resume mode was not set.", Boolean.TRUE, controller
+        .getOptionObject(Options.RESUME));
+  }
+}
@@ -35,11 +35,25 @@ public class TestMultiShellOption {
     this.option.process();
     Assert.assertEquals("The MultiShell option object was not set to true.", Boolean.TRUE,
         this.controller.getOptionObject(Options.MULTI_SHELL));
+    Assert.assertEquals("The default shell count was not set.", Integer
+        .valueOf(MultiShellOption.DEFAULT_SHELL_COUNT), this.controller
+        .getOptionObject(Options.SHELL_COUNT));
+    Assert.assertEquals("The default shard key was not set.", ShardedShell.DEFAULT_SHARD_KEY,
+        this.controller.getOptionObject(Options.SHARD_KEY));
+
+    List<String> parameters = new ArrayList<String>();
+    parameters.add("8");
+    parameters.add("SensorDataType");
+    new MultiShellOption(this.controller, parameters).process();
+    Assert.assertEquals("The shell count was not set.", Integer.valueOf(8), this.controller
+        .getOptionObject(Options.SHELL_COUNT));
+    Assert.assertEquals("The shard key was not set.", "SensorDataType", this.controller
+        .getOptionObject(Options.SHARD_KEY));
   }
 
   /**
-   * Tests if the isValid method always returns true when no arguments are
-   * specified or false if any arguments are specified.
+   * Tests if the isValid method returns true when no arguments, or a positive
+   * count optionally followed by a key, are specified, and false if not.
    */
   @Test
   public void testIsValid() {
@@ -49,5 +63,19 @@ public class TestMultiShellOption {
     Assert.assertFalse("The incorrect option is not valid.", incorrectOption.isValid());
     Assert.assertTrue("The correct option with no arguments returned false.", this.option
         .isValid());
+
+    parameters.clear();
+    parameters.add("0");
+    Assert.assertFalse("A count of zero is not valid.", new MultiShellOption(
+        this.controller, parameters).isValid());
+    parameters.set(0, "2");
+    Assert.assertTrue("A positive count is valid.", new MultiShellOption(this.controller,
+        parameters).isValid());
+    parameters.add("Resource");
+    Assert.assertTrue("A count and key are valid.", new MultiShellOption(this.controller,
+        parameters).isValid());
+    parameters.add("extra");
+    Assert.assertFalse("More than two arguments are not valid.", new MultiShellOption(
+        this.controller, parameters).isValid());
   }
 }
@@ -0,0 +1,46 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the pipeline option accepts and processes the correct arguments.
+ * @author aito
+ *
+ */
+public class TestPipelineOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option pipelineOption = OptionFactory.getInstance(controller, PipelineOption.OPTION_NAME,
+        new ArrayList<String>());
+    Assert.assertTrue("The depth should be optional.", pipelineOption.isValid());
+    pipelineOption = new PipelineOption(controller, Arrays.asList("64"));
+    Assert.assertTrue("A positive depth should be valid.", pipelineOption.isValid());
+
+    pipelineOption = new PipelineOption(controller, Arrays.asList("0"));
+    Assert.assertFalse("A zero depth should be invalid.", pipelineOption.isValid());
+    pipelineOption = new PipelineOption(controller, Arrays.asList("64", "2"));
+    Assert.assertFalse("Only one depth should be accepted.", pipelineOption.isValid());
+  }
+
+  /** Tests if the process method sets the specified or the default depth. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    new PipelineOption(controller, new ArrayList<String>()).process();
+    Assert.assertEquals("The default depth was not set.", Integer
+        .valueOf(PipelineOption.DEFAULT_DEPTH), controller.getOptionObject(Options.PIPELINE));
+    new PipelineOption(controller, Arrays.asList("64")).process();
+    Assert.assertEquals("The depth was not set.", Integer.valueOf(64), controller
+        .getOptionObject(Options.PIPELINE));
+  }
+}
@@ -0,0 +1,59 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the rate limit option accepts and processes the correct arguments.
+ * @author aito
+ *
+ */
+public class TestRateLimitOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option rateOption = OptionFactory.getInstance(controller, RateLimitOption.OPTION_NAME,
+        new ArrayList<String>());
+    Assert.assertFalse("The rate is required.", rateOption.isValid());
+    rateOption = new RateLimitOption(controller, Arrays.asList("0"));
+    Assert.assertFalse("A zero rate should be invalid.", rateOption.isValid());
+    rateOption = new RateLimitOption(controller, Arrays.asList("100", "fast"));
+    Assert.assertFalse("Only adaptive should follow the rate.", rateOption.isValid());
+    rateOption = new RateLimitOption(controller, Arrays.asList("100", "adaptive", "-5"));
+    Assert.assertFalse("A negative latency should be invalid.", rateOption.isValid());
+
+    Assert.assertTrue("A rate should be valid.", new RateLimitOption(controller, Arrays
+        .asList("100")).isValid());
+    Assert.assertTrue("An adaptive rate should be valid.", new RateLimitOption(controller,
+        Arrays.asList("100", "adaptive")).isValid());
+    Assert.assertTrue("A latency should be valid.", new RateLimitOption(controller, Arrays
+        .asList("100", "adaptive", "250")).isValid());
+  }
+
+  /** Tests if the process method sets the rate and the target latency. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    new RateLimitOption(controller, Arrays.asList("100")).process();
+    Assert.assertEquals("The rate was not set.", Integer.valueOf(100), controller
+        .getOptionObject(Options.RATE_LIMIT));
+    Assert.assertNull("A fixed rate has no latency.", controller
+        .getOptionObject(Options.SEND_LATENCY));
+
+    new RateLimitOption(controller, Arrays.asList("200", "adaptive")).process();
+    Assert.assertEquals("The default latency was not set.", Long
+        .valueOf(RateLimitOption.DEFAULT_LATENCY), controller
+        .getOptionObject(Options.SEND_LATENCY));
+    new RateLimitOption(controller, Arrays.asList("200", "adaptive", "250")).process();
+    Assert.assertEquals("The latency was not set.", Long.valueOf(250), controller
+        .getOptionObject(Options.SEND_LATENCY));
+  }
+}
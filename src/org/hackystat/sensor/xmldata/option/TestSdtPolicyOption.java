@@ -0,0 +1,52 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the sdt policy option accepts and processes the correct arguments.
+ * @author aito
+ *
+ */
+public class TestSdtPolicyOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option policyOption = OptionFactory.getInstance(controller, SdtPolicyOption.OPTION_NAME,
+        Arrays.asList("skip"));
+    Assert.assertTrue("The skip policy should be valid.", policyOption.isValid());
+    policyOption = new SdtPolicyOption(controller, Arrays.asList("abort"));
+    Assert.assertTrue("The abort policy should be valid.", policyOption.isValid());
+    policyOption = new SdtPolicyOption(controller, Arrays.asList("quarantine", "bad.xml"));
+    Assert.assertTrue("The quarantine policy with a file should be valid.", policyOption
+        .isValid());
+
+    policyOption = new SdtPolicyOption(controller, Arrays.asList("quarantine"));
+    Assert.assertFalse("The quarantine policy requires a file.", policyOption.isValid());
+    policyOption = new SdtPolicyOption(controller, Arrays.asList("skip", "bad.xml"));
+    Assert.assertFalse("The skip policy does not accept a file.", policyOption.isValid());
+    policyOption = new SdtPolicyOption(controller, Arrays.asList("ignore"));
+    Assert.assertFalse("An unknown policy should be invalid.", policyOption.isValid());
+    policyOption = new SdtPolicyOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The policy is required.", policyOption.isValid());
+  }
+
+  /** Tests if the process method sets the policy and quarantine file. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    new SdtPolicyOption(controller, Arrays.asList("quarantine", "bad.xml")).process();
+    Assert.assertEquals("The policy was not set.", SdtPolicyOption.QUARANTINE, controller
+        .getOptionObject(Options.SDT_POLICY));
+    Assert.assertEquals("The quarantine file was not set.", "bad.xml", controller
+        .getOptionObject(Options.SDT_QUARANTINE));
+  }
+}
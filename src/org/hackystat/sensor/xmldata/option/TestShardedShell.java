@@ -0,0 +1,227 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.benchmark.StubSensorBase;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensorshell.SensorShell;
+import org.hackystat.sensorshell.SensorShellException;
+import org.hackystat.sensorshell.SensorShellProperties;
+import org.hackystat.sensorshell.Shell;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the ShardedShell gives the entries of each key to one stable shard,
+ * and if its shells send them to a stub sensorbase in parallel.
+ * @author aito
+ *
+ */
+public class TestShardedShell {
+  /** The number of shells sending to the stub sensorbase. */
+  private static final int SHELL_COUNT = 4;
+  /** The number of shard keys of the entries sent. */
+  private static final int KEY_COUNT = 8;
+  /** The number of entries sent, which is less than a shell buffers. */
+  private static final int ENTRY_COUNT = 200;
+  /** The stub sensorbase the shells send to. */
+  private StubSensorBase sensorBase = null;
+
+  /**
+   * Starts the stub sensorbase, which keeps the resources it receives.
+   * @throws Exception thrown if the stub could not be started.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.sensorBase = new StubSensorBase(0);
+    this.sensorBase.setResourcesKept(true);
+    this.sensorBase.start();
+  }
+
+  /** Stops the stub sensorbase. */
+  @After
+  public void tearDown() {
+    this.sensorBase.stop();
+  }
+  /**
+   * Tests if the shard of an entry depends only on the value of its shard key.
+   * @throws Exception thrown if the shells could not be created or quit.
+   */
+  @Test
+  public void testGetShard() throws Exception {
+    XmlDataController controller = new XmlDataController();
+    List<Shell> shells = new ArrayList<Shell>();
+    for (int i = 0; i < 4; i++) {
+      shells.add(OptionUtil.createShell(new SensorShellProperties(), controller));
+    }
+    ShardedShell shell = new ShardedShell(shells, "Resource");
+    try {
+      Assert.assertEquals("The shell count is incorrect.", 4, shell.getShellCount());
+      boolean[] isUsed = new boolean[4];
+      for (int i = 0; i < 100; i++) {
+        Map<String, String> keyValMap = new HashMap<String, String>();
+        keyValMap.put("Resource", "file" + i);
+        int shard = shell.getShard(keyValMap);
+        Assert.assertTrue("The shard is out of range.", shard >= 0 && shard < 4);
+        keyValMap.put("Tool", "Ant");
+        Assert.assertEquals("The shard depends on another key.", shard, shell
+            .getShard(keyValMap));
+        isUsed[shard] = true;
+      }
+      for (boolean isShardUsed : isUsed) {
+        Assert.assertTrue("The resources were not spread over every shard.", isShardUsed);
+      }
+      Assert.assertEquals("An entry without the key should use the first shard.", 0, shell
+          .getShard(new HashMap<String, String>()));
+    }
+    finally {
+      shell.quit();
+    }
+  }
+
+  /**
+   * Tests if several shells send every entry, in the order the entries of each
+   * key were added, and if send returns the number of entries sent. The tool
+   * is the shard key, and the resource is the position of the entry.
+   * @throws Exception thrown if the shells could not send.
+   */
+  @Test
+  public void testSend() throws Exception {
+    ShardedShell shell = this.createShell();
+    try {
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        shell.add(createEntry(i));
+      }
+      Assert.assertEquals("The sent count is incorrect.", ENTRY_COUNT, shell.send());
+      Assert.assertEquals("The sensorbase did not receive every entry.", ENTRY_COUNT,
+          this.sensorBase.getEntryCount());
+    }
+    finally {
+      shell.quit();
+    }
+    List<String> resources = this.sensorBase.getResources();
+    Assert.assertEquals("The resources are incorrect.", ENTRY_COUNT, resources.size());
+    int[] lastPositions = new int[KEY_COUNT];
+    Arrays.fill(lastPositions, -1);
+    for (String resource : resources) {
+      int position = Integer.parseInt(resource);
+      Assert.assertTrue("The entries of a key were sent out of order.",
+          position > lastPositions[position % KEY_COUNT]);
+      lastPositions[position % KEY_COUNT] = position;
+    }
+  }
+
+  /**
+   * Tests if the failure of one shell's thread is thrown to the caller, and if
+   * quit still stops every thread.
+   * @throws Exception thrown if the shells could not be created.
+   */
+  @Test
+  public void testShellFailure() throws Exception {
+    ShardedShell shell = this.createShell();
+    try {
+      for (int i = 0; i < ENTRY_COUNT; i++) {
+        Map<String, String> keyValMap = createEntry(i);
+        if (i == ENTRY_COUNT / 2) {
+          keyValMap.put("Timestamp", "not a timestamp");
+        }
+        shell.add(keyValMap);
+      }
+      shell.send();
+      Assert.fail("The failure of a shell should be thrown.");
+    }
+    catch (SensorShellException e) { //NOPMD
+      // The failed shell's thread reported its failure.
+    }
+    try {
+      shell.quit();
+      Assert.fail("Quit should throw the failure of the shell.");
+    }
+    catch (SensorShellException e) { //NOPMD
+      // Every thread is stopped before the failure is thrown.
+    }
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().startsWith("xmldata-shell-")) {
+        thread.join(10000);
+        Assert.assertFalse("The thread " + thread.getName() + " was not stopped.", thread
+            .isAlive());
+      }
+    }
+  }
+
+  /**
+   * Tests if an Error of one shell is thrown to the caller as the shell's
+   * failure, instead of leaving send and quit waiting for its thread.
+   * @throws Exception thrown if the shells could not be created.
+   */
+  @Test(timeout = 30000)
+  public void testShellError() throws Exception {
+    SensorShellProperties properties = new SensorShellProperties(this.sensorBase.getHost(),
+        "xmldata@hackystat.org", "xmldata@hackystat.org");
+    List<Shell> shells = new ArrayList<Shell>();
+    shells.add(new SensorShell(properties, false, "XmlData"));
+    shells.add(new SensorShell(properties, false, "XmlData") {
+      @Override
+      public void add(Map<String, String> keyValMap) {
+        throw new StackOverflowError("A failing shell.");
+      }
+    });
+    ShardedShell shell = new ShardedShell(shells, "Tool");
+    for (int i = 0; i < KEY_COUNT; i++) {
+      shell.add(createEntry(i));
+    }
+    try {
+      shell.send();
+      Assert.fail("The Error of a shell should be thrown as its failure.");
+    }
+    catch (SensorShellException e) {
+      Assert.assertTrue("The Error should be the cause.",
+          e.getCause() instanceof StackOverflowError);
+    }
+    try {
+      shell.quit();
+      Assert.fail("Quit should throw the failure of the shell.");
+    }
+    catch (SensorShellException e) { //NOPMD
+      // Every thread is stopped before the failure is thrown.
+    }
+  }
+
+  /**
+   * Creates a sender with SHELL_COUNT shells that send to the stub sensorbase,
+   * and uses the tool as the shard key.
+   * @return the sender.
+   * @throws Exception thrown if the shells could not be created.
+   */
+  private ShardedShell createShell() throws Exception {
+    SensorShellProperties properties = new SensorShellProperties(this.sensorBase.getHost(),
+        "xmldata@hackystat.org", "xmldata@hackystat.org");
+    List<Shell> shells = new ArrayList<Shell>();
+    for (int i = 0; i < SHELL_COUNT; i++) {
+      shells.add(new SensorShell(properties, false, "XmlData"));
+    }
+    return new ShardedShell(shells, "Tool");
+  }
+
+  /**
+   * Returns the entry at the specified position, whose tool is one of KEY_COUNT
+   * tools, and whose resource is the position.
+   * @param position the position of the entry.
+   * @return the key-value mapping of the entry.
+   */
+  private static Map<String, String> createEntry(int position) {
+    Map<String, String> keyValMap = new HashMap<String, String>();
+    keyValMap.put("Tool", "Tool" + (position % KEY_COUNT));
+    keyValMap.put("SensorDataType", "Build");
+    keyValMap.put("Resource", String.valueOf(position));
+    keyValMap.put("Timestamp", TstampFormatter.format(1170000000000L + position));
+    return keyValMap;
+  }
+}
@@ -0,0 +1,66 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.util.NullEntrySink;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the sink option accepts the correct arguments and selects the sink
+ * the entries are written to.
+ * @author aito
+ *
+ */
+public class TestSinkOption {
+  /** Tests if the sink option accepts null, shell, or jsonl with a file. */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option sinkOption = OptionFactory.getInstance(controller, SinkOption.OPTION_NAME,
+        new ArrayList<String>());
+    Assert.assertFalse("The sink is required.", sinkOption.isValid());
+    sinkOption = new SinkOption(controller, Arrays.asList("jsonl"));
+    Assert.assertFalse("The jsonl sink requires a file.", sinkOption.isValid());
+    sinkOption = new SinkOption(controller, Arrays.asList("jsonl", "src"));
+    Assert.assertFalse("A directory should not be valid.", sinkOption.isValid());
+    sinkOption = new SinkOption(controller, Arrays.asList("file"));
+    Assert.assertFalse("An unknown sink should not be valid.", sinkOption.isValid());
+
+    Assert.assertTrue("The null sink should be valid.", new SinkOption(controller, Arrays
+        .asList("null")).isValid());
+    Assert.assertTrue("The shell sink should be valid.", new SinkOption(controller, Arrays
+        .asList("shell")).isValid());
+    sinkOption = new SinkOption(controller, Arrays.asList("jsonl", "entries.jsonl"));
+    Assert.assertTrue("The jsonl sink should be valid.", sinkOption.isValid());
+    sinkOption.process();
+    Assert.assertEquals("The sink was not set.", "jsonl", controller
+        .getOptionObject(Options.SINK));
+    Assert.assertEquals("The sink file was not set.", "entries.jsonl", controller
+        .getOptionObject(Options.SINK_FILE));
+  }
+
+  /**
+   * Tests if the null sink is used without shells.
+   * @throws Exception if the sender could not be created or written.
+   */
+  @Test
+  public void testNullSink() throws Exception {
+    XmlDataController controller = new XmlDataController();
+    new SinkOption(controller, Arrays.asList("null")).process();
+    ShardedShell shell = OptionUtil.createShardedShell(controller);
+    Assert.assertTrue("The null sink was not used.", shell.getSink() instanceof NullEntrySink);
+    Assert.assertEquals("The null sink should not have shells.", 0, shell.getShellCount());
+    Assert.assertFalse("There is no server to ping.", shell.ping());
+
+    Map<String, String> keyValMap = new HashMap<String, String>();
+    keyValMap.put("Tool", "Ant");
+    shell.add(keyValMap);
+    Assert.assertEquals("Nothing should be sent.", 0, shell.send());
+    shell.quit();
+  }
+}
@@ -0,0 +1,127 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.benchmark.StubSensorBase;
+import org.hackystat.sensor.xmldata.util.EntrySpool;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensorshell.SensorShellProperties;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the spool and replay options accept and process the correct
+ * arguments, and if a replay keeps the segments that were not sent.
+ * @author aito
+ *
+ */
+public class TestSpoolOption {
+  /** The number of entries in each spooled segment. */
+  private static final int SEGMENT_ENTRIES = 50;
+  /** The account the shells use with the stub sensorbase. */
+  private static final String ACCOUNT = "xmldata@hackystat.org";
+  /** Tests if the spool option accepts one directory name. */
+  @Test
+  public void testSpoolOption() {
+    XmlDataController controller = new XmlDataController();
+    Option spoolOption = OptionFactory.getInstance(controller, SpoolOption.OPTION_NAME,
+        new ArrayList<String>());
+    Assert.assertFalse("The directory is required.", spoolOption.isValid());
+    String file = new File("build.xml").getAbsolutePath();
+    spoolOption = new SpoolOption(controller, Arrays.asList(file));
+    Assert.assertFalse("A file should not be valid.", spoolOption.isValid());
+
+    spoolOption = new SpoolOption(controller, Arrays.asList("spool"));
+    Assert.assertTrue("A new directory should be valid.", spoolOption.isValid());
+    spoolOption.process();
+    Assert.assertEquals("The spool directory was not set.", "spool", controller
+        .getOptionObject(Options.SPOOL));
+  }
+
+  /** Tests if the replay option requires an existing directory and sets its shells. */
+  @Test
+  public void testReplayOption() {
+    XmlDataController controller = new XmlDataController();
+    Option replayOption = OptionFactory.getInstance(controller, ReplayOption.OPTION_NAME,
+        Arrays.asList("doesNotExist"));
+    Assert.assertFalse("A missing directory should not be valid.", replayOption.isValid());
+
+    String directory = new File("src").getAbsolutePath();
+    replayOption = new ReplayOption(controller, Arrays.asList(directory));
+    Assert.assertTrue("An existing directory should be valid.", replayOption.isValid());
+    replayOption.process();
+    Assert.assertEquals("The default shell count was not set.", Integer
+        .valueOf(MultiShellOption.DEFAULT_SHELL_COUNT), controller
+        .getOptionObject(Options.SHELL_COUNT));
+  }
+
+  /**
+   * Tests if a replay deletes the segment that was sent, and keeps the segment
+   * the sensorbase failed partway through and the segment after it.
+   * @throws Exception thrown if the spool could not be written.
+   */
+  @Test
+  public void testReplayKeepsUnsentSegments() throws Exception {
+    File directory = File.createTempFile("xmldata-spool", "");
+    directory.delete();
+    StubSensorBase sensorBase = new StubSensorBase(0);
+    sensorBase.setEntryLimit(SEGMENT_ENTRIES + SEGMENT_ENTRIES / 2);
+    sensorBase.start();
+    Properties systemProperties = (Properties) System.getProperties().clone();
+    try {
+      EntrySpool spool = new EntrySpool(directory);
+      for (int i = 0; i < 3 * SEGMENT_ENTRIES; i++) {
+        spool.write(createEntry(i));
+        if (i % SEGMENT_ENTRIES == SEGMENT_ENTRIES - 1) {
+          spool.close();
+        }
+      }
+      List<File> segments = EntrySpool.getSegments(directory);
+      Assert.assertEquals("The spool should have three segments.", 3, segments.size());
+
+      System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_HOST_KEY, sensorBase
+          .getHost());
+      System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_USER_KEY, ACCOUNT);
+      System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_PASSWORD_KEY, ACCOUNT);
+      XmlDataController controller = new XmlDataController();
+      controller.processArguments(Arrays.asList(ReplayOption.OPTION_NAME, directory
+          .toString()));
+      controller.execute();
+      Assert.assertFalse("The sent segment should be deleted.", segments.get(0).exists());
+      Assert.assertTrue("The segment that was not fully sent should be kept.", segments
+          .get(1).exists());
+      Assert.assertTrue("The segment after it should be kept.", segments.get(2).exists());
+      Assert.assertTrue("The sensorbase should have refused some entries.", sensorBase
+          .getEntryCount() < 2 * SEGMENT_ENTRIES);
+    }
+    finally {
+      System.setProperties(systemProperties);
+      sensorBase.stop();
+      for (File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  /**
+   * Returns the spooled entry at the specified position.
+   * @param position the position of the entry.
+   * @return the key-value mapping of the entry.
+   */
+  private static Map<String, String> createEntry(int position) {
+    Map<String, String> keyValMap = new HashMap<String, String>();
+    keyValMap.put("Tool", "Ant");
+    keyValMap.put("SensorDataType", "Build");
+    keyValMap.put("Resource", "file" + position);
+    keyValMap.put("Timestamp", TstampFormatter.format(1170000000000L + position));
+    return keyValMap;
+  }
+}
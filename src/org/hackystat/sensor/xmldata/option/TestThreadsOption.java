@@ -0,0 +1,48 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the threads option accepts and processes the correct arguments.
+ * @author aito
+ *
+ */
+public class TestThreadsOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    List<String> arguments = new ArrayList<String>();
+    arguments.add("4");
+    Option threadsOption = OptionFactory.getInstance(controller, ThreadsOption.OPTION_NAME,
+        arguments);
+    Assert.assertTrue("A positive thread count should be valid.", threadsOption.isValid());
+
+    arguments = new ArrayList<String>();
+    arguments.add("0");
+    threadsOption = new ThreadsOption(controller, arguments);
+    Assert.assertFalse("A zero thread count should be invalid.", threadsOption.isValid());
+
+    threadsOption = new ThreadsOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The threads option must have 1 argument.", threadsOption.isValid());
+  }
+
+  /** Tests if the process method sets the thread count. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    List<String> arguments = new ArrayList<String>();
+    arguments.add("8");
+    new ThreadsOption(controller, arguments).process();
+    Assert.assertEquals("The thread count was not set.", Integer.valueOf(8), controller
+        .getOptionObject(Options.THREADS));
+  }
+}
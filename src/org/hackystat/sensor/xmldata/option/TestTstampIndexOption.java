@@ -0,0 +1,45 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the timestamp index option accepts and processes the correct
+ * arguments.
+ * @author aito
+ *
+ */
+public class TestTstampIndexOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option indexOption = OptionFactory.getInstance(controller, TstampIndexOption.OPTION_NAME,
+        Arrays.asList("tstamps.index"));
+    Assert.assertTrue("An index file should be valid.", indexOption.isValid());
+
+    indexOption = new TstampIndexOption(controller, Arrays.asList(System
+        .getProperty("user.dir")));
+    Assert.assertFalse("A directory should be invalid.", indexOption.isValid());
+    indexOption = new TstampIndexOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The index file is required.", indexOption.isValid());
+  }
+
+  /** Tests if the process method sets the index file and unique timestamps. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    new TstampIndexOption(controller, Arrays.asList("tstamps.index")).process();
+    Assert.assertEquals("The index file was not set.", "tstamps.index", controller
+        .getOptionObject(Options.TSTAMP_INDEX));
+    Assert.assertEquals("Unique timestamps should be turned on.", Boolean.TRUE, controller
+        .getOptionObject(Options.UNIQUE_TSTAMP));
+  }
+}
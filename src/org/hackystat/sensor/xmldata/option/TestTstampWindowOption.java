@@ -0,0 +1,114 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.jaxb.Entry;
+import org.hackystat.sensor.xmldata.util.AttributeNameTable;
+import org.hackystat.sensor.xmldata.util.ConcurrentTstampSet;
+import org.hackystat.sensor.xmldata.util.UniqueTstampSet;
+import org.hackystat.sensor.xmldata.util.WindowedTstampSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the timestamp window option accepts and processes the correct
+ * arguments.
+ * @author aito
+ *
+ */
+public class TestTstampWindowOption {
+  /** A timestamp long before the current time, as in migrated data. */
+  private static final long HISTORICAL_TSTAMP = 1170000000000L;
+
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option windowOption = OptionFactory.getInstance(controller, TstampWindowOption.OPTION_NAME,
+        Arrays.asList("3600000"));
+    Assert.assertTrue("A window of an hour should be valid.", windowOption.isValid());
+
+    windowOption = new TstampWindowOption(controller, Arrays.asList("0"));
+    Assert.assertFalse("An empty window should be invalid.", windowOption.isValid());
+    windowOption = new TstampWindowOption(controller, Arrays.asList("2000000000"));
+    Assert.assertFalse("A window over 2^30 should be invalid.", windowOption.isValid());
+    windowOption = new TstampWindowOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The window is required.", windowOption.isValid());
+  }
+
+  /** Tests if the process method sets the window used by new timestamp sets. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    Assert.assertTrue("The set should not be windowed by default.", OptionUtil
+        .createTstampSet(controller) instanceof ConcurrentTstampSet);
+    new TstampWindowOption(controller, Arrays.asList("60000")).process();
+    Assert.assertEquals("The window was not set.", Long.valueOf(60000), controller
+        .getOptionObject(Options.TSTAMP_WINDOW));
+    Assert.assertTrue("The set should be windowed.", OptionUtil
+        .createTstampSet(controller) instanceof WindowedTstampSet);
+  }
+
+  /**
+   * Tests if duplicate historical timestamps of xmldata entries are made
+   * unique by a windowed set.
+   * @throws Exception if an entry could not be converted.
+   */
+  @Test
+  public void testFileEntries() throws Exception {
+    XmlDataController controller = this.createController();
+    FileOption fileOption = new FileOption(controller, new ArrayList<String>());
+    UniqueTstampSet tstampSet = OptionUtil.createTstampSet(controller);
+    AttributeNameTable nameTable = new AttributeNameTable();
+    Set<String> tstamps = new HashSet<String>();
+    for (int i = 0; i < 3; i++) {
+      Entry entry = new Entry();
+      entry.setTool("Ant");
+      entry.setResource("file://Foo.java");
+      entry.getOtherAttributes().put(new QName("Timestamp"), String.valueOf(HISTORICAL_TSTAMP));
+      tstamps.add(fileOption.createKeyValMap(entry, "Build", "runtime", tstampSet, nameTable)
+          .get("Timestamp"));
+    }
+    Assert.assertEquals("The duplicate timestamps were not made unique.", 3, tstamps.size());
+  }
+
+  /**
+   * Tests if duplicate historical timestamps of version 7 entries are made
+   * unique by a windowed set.
+   */
+  @Test
+  public void testMigrationEntries() {
+    XmlDataController controller = this.createController();
+    MigrationOption migrationOption = new MigrationOption(controller, new ArrayList<String>());
+    UniqueTstampSet tstampSet = OptionUtil.createTstampSet(controller);
+    Set<String> tstamps = new HashSet<String>();
+    for (int i = 0; i < 3; i++) {
+      org.hackystat.sensor.xmldata.jaxb.v7.Entry entry =
+          new org.hackystat.sensor.xmldata.jaxb.v7.Entry();
+      entry.getOtherAttributes().put(new QName("tstamp"), String.valueOf(HISTORICAL_TSTAMP));
+      entry.getOtherAttributes().put(new QName("file"), "file://Foo.java");
+      tstamps.add(migrationOption.convertEntry(entry, "Build", tstampSet).get("Timestamp"));
+    }
+    Assert.assertEquals("The duplicate timestamps were not made unique.", 3, tstamps.size());
+  }
+
+  /**
+   * Returns a controller with unique timestamps in a window of a minute.
+   * @return the controller.
+   */
+  private XmlDataController createController() {
+    XmlDataController controller = new XmlDataController();
+    controller.addOptionObject(Options.UNIQUE_TSTAMP, Boolean.TRUE);
+    new TstampWindowOption(controller, Arrays.asList("60000")).process();
+    return controller;
+  }
+}
@@ -0,0 +1,47 @@
+package org.hackystat.sensor.xmldata.option;
+
+import javax.xml.bind.Unmarshaller;
+
+import org.hackystat.sensor.xmldata.jaxb.ObjectFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the UnmarshallerPool caches and lends unmarshallers as intended.
+ * @author aito
+ *
+ */
+public class TestUnmarshallerPool {
+  /**
+   * Tests if the same pool is returned for the same context class and schema
+   * file, and a different pool for a different schema file.
+   * @throws Exception if the pools could not be created.
+   */
+  @Test
+  public void testGetInstance() throws Exception {
+    UnmarshallerPool pool = UnmarshallerPool.getInstance(ObjectFactory.class, "xmldata.xsd");
+    Assert.assertSame("The cached pool was not returned.", pool, UnmarshallerPool
+        .getInstance(ObjectFactory.class, "xmldata.xsd"));
+    Assert.assertNotSame("A different schema should use a different pool.", pool,
+        UnmarshallerPool.getInstance(
+            org.hackystat.sensor.xmldata.jaxb.v7.ObjectFactory.class, "v7data.xsd"));
+  }
+
+  /**
+   * Tests if borrowed unmarshallers validate with the cached schema and are
+   * reused once released.
+   * @throws Exception if the pool could not be created.
+   */
+  @Test
+  public void testBorrowAndRelease() throws Exception {
+    UnmarshallerPool pool = UnmarshallerPool.getInstance(ObjectFactory.class, "xmldata.xsd");
+    Unmarshaller unmarshaller = pool.borrow();
+    Assert.assertSame("The unmarshaller does not use the cached schema.", pool.getSchema(),
+        unmarshaller.getSchema());
+    Assert.assertNotSame("A borrowed unmarshaller was lent twice.", unmarshaller, pool
+        .borrow());
+    pool.release(unmarshaller);
+    Assert.assertSame("The released unmarshaller was not reused.", unmarshaller, pool
+        .borrow());
+  }
+}
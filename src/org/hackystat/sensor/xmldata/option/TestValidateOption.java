@@ -0,0 +1,57 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the validate option accepts and processes the correct arguments.
+ * @author aito
+ *
+ */
+public class TestValidateOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option validateOption = OptionFactory.getInstance(controller, ValidateOption.OPTION_NAME,
+        Arrays.asList("full"));
+    Assert.assertTrue("Full validation should be valid.", validateOption.isValid());
+    validateOption = new ValidateOption(controller, Arrays.asList("off"));
+    Assert.assertTrue("No validation should be valid.", validateOption.isValid());
+    validateOption = new ValidateOption(controller, Arrays.asList("sample:100"));
+    Assert.assertTrue("Sampled validation should be valid.", validateOption.isValid());
+
+    validateOption = new ValidateOption(controller, Arrays.asList("sample:0"));
+    Assert.assertFalse("The sample interval must be positive.", validateOption.isValid());
+    validateOption = new ValidateOption(controller, Arrays.asList("sample:x"));
+    Assert.assertFalse("The sample interval must be a number.", validateOption.isValid());
+    validateOption = new ValidateOption(controller, Arrays.asList("full", "off"));
+    Assert.assertFalse("Only one mode is accepted.", validateOption.isValid());
+    validateOption = new ValidateOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The mode is required.", validateOption.isValid());
+  }
+
+  /** Tests if the process method sets the validation interval of each mode. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    Assert.assertEquals("Every entry should be validated by default.", 1, OptionUtil
+        .getValidationInterval(controller));
+    new ValidateOption(controller, Arrays.asList("sample:50")).process();
+    Assert.assertEquals("The sample interval was not set.", 50, OptionUtil
+        .getValidationInterval(controller));
+    new ValidateOption(controller, Arrays.asList("off")).process();
+    Assert.assertEquals("The interval should be 0 when off.", 0, OptionUtil
+        .getValidationInterval(controller));
+    new ValidateOption(controller, Arrays.asList("full")).process();
+    Assert.assertEquals("The interval should be 1 when full.", 1, OptionUtil
+        .getValidationInterval(controller));
+  }
+}
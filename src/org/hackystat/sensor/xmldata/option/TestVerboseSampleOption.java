@@ -0,0 +1,48 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the verbose sample option accepts and processes the correct
+ * arguments.
+ * @author aito
+ *
+ */
+public class TestVerboseSampleOption {
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    Option sampleOption = OptionFactory.getInstance(controller,
+        VerboseSampleOption.OPTION_NAME, Arrays.asList("100"));
+    Assert.assertTrue("A positive interval should be valid.", sampleOption.isValid());
+
+    sampleOption = new VerboseSampleOption(controller, Arrays.asList("0"));
+    Assert.assertFalse("A zero interval should be invalid.", sampleOption.isValid());
+    sampleOption = new VerboseSampleOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The interval is required.", sampleOption.isValid());
+  }
+
+  /** Tests if the process method turns on verbose mode for every Nth entry. */
+  @Test
+  public void testProcess() {
+    XmlDataController controller = new XmlDataController();
+    Assert.assertFalse("Entries should not be verbose by default.", controller
+        .isVerboseEntry());
+    new VerboseSampleOption(controller, Arrays.asList("3")).process();
+    Assert.assertTrue("Verbose mode should be on.", controller.isVerbose());
+    boolean[] expected = { true, false, false, true, false, false, true };
+    for (int i = 0; i < expected.length; i++) {
+      Assert.assertEquals("Entry " + i + " was sampled incorrectly.", expected[i], controller
+          .isVerboseEntry());
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.benchmark.StubSensorBase;
+import org.hackystat.sensorshell.SensorShellProperties;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the watch option accepts the correct arguments, and if it sends the
+ * files already in the directory and only the new entries of a changed file.
+ * @author aito
+ *
+ */
+public class TestWatchOption {
+  /** The account the shell uses with the stub sensorbase. */
+  private static final String ACCOUNT = "xmldata@hackystat.org";
+  /** The longest time the test waits for the entries to be sent. */
+  private static final long TIMEOUT_MILLIS = 30000;
+
+  /**
+   * Tests if isValid returns the correct value depending on the specified
+   * parameters.
+   */
+  @Test
+  public void testIsValid() {
+    XmlDataController controller = new XmlDataController();
+    String directory = System.getProperty("user.dir");
+    List<String> arguments = new ArrayList<String>();
+    arguments.add(directory);
+    Option watchOption = OptionFactory.getInstance(controller, WatchOption.OPTION_NAME,
+        arguments);
+    Assert.assertTrue("An existing directory should be valid.", watchOption.isValid());
+
+    arguments.add("10");
+    watchOption = new WatchOption(controller, arguments);
+    Assert.assertTrue("A positive flush interval should be valid.", watchOption.isValid());
+
+    arguments.set(1, "0");
+    watchOption = new WatchOption(controller, arguments);
+    Assert.assertFalse("A zero flush interval should be invalid.", watchOption.isValid());
+
+    arguments = new ArrayList<String>();
+    arguments.add(directory + "/nonexistant");
+    watchOption = new WatchOption(controller, arguments);
+    Assert.assertFalse("A missing directory should be invalid.", watchOption.isValid());
+
+    watchOption = new WatchOption(controller, new ArrayList<String>());
+    Assert.assertFalse("The watch option must have a directory.", watchOption.isValid());
+  }
+
+  /** Tests if the watch option is accepted in place of the -file option. */
+  @Test
+  public void testRequiredOption() {
+    XmlDataController controller = new XmlDataController();
+    OptionHandler handler = new OptionHandler(controller);
+    List<String> arguments = new ArrayList<String>();
+    arguments.add(System.getProperty("user.dir"));
+    handler.addOption(new WatchOption(controller, arguments));
+    Assert.assertTrue("The watch option should be a required option.", handler
+        .hasRequiredOptions());
+  }
+
+  /**
+   * Tests if a file in the directory when watching starts is sent, and if only
+   * the entries appended to it afterwards are sent when it changes.
+   * @throws Exception thrown if the files could not be written or watched.
+   */
+  @Test
+  public void testChangedFile() throws Exception {
+    File directory = File.createTempFile("xmldata-watch", "");
+    directory.delete();
+    directory.mkdir();
+    File file = new File(directory, "entries.xml");
+    StubSensorBase sensorBase = new StubSensorBase(0);
+    sensorBase.start();
+    Properties systemProperties = (Properties) System.getProperties().clone();
+    try {
+      writeEntries(file, 3);
+      System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_HOST_KEY, sensorBase
+          .getHost());
+      System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_USER_KEY, ACCOUNT);
+      System.setProperty(SensorShellProperties.SENSORSHELL_SENSORBASE_PASSWORD_KEY, ACCOUNT);
+      XmlDataController controller = new XmlDataController();
+      controller.addOptionObject(Options.SDT, "DevEvent");
+      final WatchOption watchOption = new WatchOption(controller, Arrays.asList(directory
+          .toString(), "1"));
+      watchOption.process();
+      Thread watchThread = new Thread(new Runnable() {
+        public void run() {
+          watchOption.execute();
+        }
+      });
+      watchThread.start();
+      try {
+        waitForEntries(sensorBase, 3);
+        Assert.assertEquals("The existing file should be sent.", 3, sensorBase
+            .getEntryCount());
+        writeEntries(file, 5);
+        waitForEntries(sensorBase, 5);
+      }
+      finally {
+        watchOption.stop();
+        watchThread.join(TIMEOUT_MILLIS);
+      }
+      Assert.assertEquals("Only the new entries of the changed file should be sent.", 5,
+          sensorBase.getEntryCount());
+    }
+    finally {
+      System.setProperties(systemProperties);
+      sensorBase.stop();
+      file.delete();
+      directory.delete();
+    }
+  }
+
+  /**
+   * Writes an xmldata file with the specified number of entries.
+   * @param file the file to write.
+   * @param entries the number of entries.
+   * @throws Exception thrown if the file could not be written.
+   */
+  private static void writeEntries(File file, int entries) throws Exception {
+    StringBuilder builder = new StringBuilder("<XmlData>\n  <Entries>\n");
+    for (int i = 0; i < entries; i++) {
+      builder.append("    <Entry Tool=\"Eclipse\" Resource=\"file://Stuff" + i
+          + ".java\" DevEventType=\"Compile\" />\n");
+    }
+    builder.append("  </Entries>\n</XmlData>\n");
+    OutputStream stream = new FileOutputStream(file);
+    try {
+      stream.write(builder.toString().getBytes("UTF-8"));
+    }
+    finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Waits until the specified sensorbase has received at least the specified
+   * number of entries, or the timeout passes.
+   * @param sensorBase the stub sensorbase.
+   * @param entries the number of entries to wait for.
+   * @throws InterruptedException thrown if the wait is interrupted.
+   */
+  private static void waitForEntries(StubSensorBase sensorBase, long entries)
+    throws InterruptedException {
+    long timeout = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (sensorBase.getEntryCount() < entries && System.currentTimeMillis() < timeout) {
+      Thread.sleep(100);
+    }
+  }
+}
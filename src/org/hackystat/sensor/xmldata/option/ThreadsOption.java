@@ -0,0 +1,54 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to specify the number of worker threads that parse and
+ * convert sensor data files. Large files are memory-mapped and split at Entry
+ * boundaries so that their parts are converted in parallel as well. The
+ * converted data is still handed to the shell by a single thread, in the order
+ * the entries appear in the specified files.
+ * @author aito
+ *
+ */
+public class ThreadsOption extends AbstractOption {
+  /** This option's name, which is "-threads". */
+  public static final String OPTION_NAME = "-threads";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public ThreadsOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the number of worker threads. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.THREADS,
+          Integer.valueOf(this.getParameters().get(0)));
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * a positive integer.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() == 1 && OptionUtil.isPositiveInteger(this.getParameters()
+        .get(0))) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME
+        + " option must have one positive integer argument.  Ex: -threads 4.";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
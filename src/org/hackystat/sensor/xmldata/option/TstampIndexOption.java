@@ -0,0 +1,63 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.io.File;
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to keep timestamps unique across runs. The timestamps given
+ * to the entries of each SensorDataType and resource are recorded in the
+ * specified index file, which is created if it does not exist, and a later run
+ * that sends an entry with a recorded timestamp moves it to the next
+ * unrecorded one, so the sensorbase does not overwrite the earlier entry. This
+ * option also turns on the -uniqueTimestamps option.
+ * <p>
+ * A timestamp is recorded just before its entry is added to the shell, so the
+ * entries that are converted but not sent, such as those a resumed run skips
+ * or those still queued when a run is aborted, do not take timestamps from
+ * later runs. The index is not synced with the -checkpoint journal, so the
+ * entries sent after the last checkpoint of an aborted run are recorded, and
+ * resuming sends them again with the next unrecorded timestamps.
+ * @author aito
+ *
+ */
+public class TstampIndexOption extends AbstractOption {
+  /** This option's name, which is "-tstampIndex". */
+  public static final String OPTION_NAME = "-tstampIndex";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public TstampIndexOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the index file and unique timestamps. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.TSTAMP_INDEX, this.getParameters().get(0));
+      this.getController().addOptionObject(Options.UNIQUE_TSTAMP, Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * the name of a file that is not a directory.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() == 1
+        && !new File(this.getParameters().get(0)).isDirectory()) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME + " option must have one file argument.  "
+        + "Ex: -tstampIndex tstamps.index";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
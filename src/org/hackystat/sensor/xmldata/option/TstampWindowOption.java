@@ -0,0 +1,56 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to bound the memory used to make timestamps unique. Instead
+ * of every timestamp given out during a run, only the timestamps within the
+ * specified number of milliseconds behind the highest timestamp are
+ * remembered. Timestamps are unique within the window, which should be larger
+ * than the distance between out of order entries in the sent data.
+ * @author aito
+ *
+ */
+public class TstampWindowOption extends AbstractOption {
+  /** This option's name, which is "-tstampWindow". */
+  public static final String OPTION_NAME = "-tstampWindow";
+  /** The largest window, in milliseconds, which is about 12 days. */
+  private static final long MAX_WINDOW = 1L << 30;
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public TstampWindowOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by setting the window in milliseconds. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.TSTAMP_WINDOW,
+          Long.valueOf(this.getParameters().get(0)));
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * a positive integer no larger than MAX_WINDOW.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() == 1 && OptionUtil.isPositiveInteger(this.getParameters()
+        .get(0)) && Long.parseLong(this.getParameters().get(0)) <= MAX_WINDOW) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME + " option must be a number of milliseconds from 1 to "
+        + MAX_WINDOW + ".  Ex: -tstampWindow 3600000";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
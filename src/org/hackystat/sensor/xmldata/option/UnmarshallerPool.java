@@ -0,0 +1,126 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import org.xml.sax.SAXException;
+
+/**
+ * The process-wide cache of the JAXB and schema objects used to read sensor
+ * data files. The JAXBContext and the compiled Schema are thread-safe, so each
+ * is created only once per context class and schema file. Unmarshallers are
+ * not thread-safe, so they are borrowed from a bounded pool of idle instances
+ * and released back to it when a file has been read.
+ * @author aito
+ *
+ */
+public class UnmarshallerPool {
+  /** The maximum number of idle unmarshallers kept by each pool. */
+  private static final int MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+  /** The mapping of context class and schema file name -> pool instance. */
+  private static final Map<String, UnmarshallerPool> POOLS =
+    new HashMap<String, UnmarshallerPool>();
+
+  /** The thread-safe context used to create unmarshallers. */
+  private JAXBContext context = null;
+  /** The thread-safe compiled schema used to validate unmarshalled data. */
+  private Schema schema = null;
+  /** The idle unmarshallers that can be borrowed. */
+  private BlockingQueue<Unmarshaller> idleUnmarshallers =
+    new ArrayBlockingQueue<Unmarshaller>(MAX_IDLE);
+
+  /**
+   * Constructs this pool with the specified context and schema.
+   * @param context the specified JAXB context.
+   * @param schema the specified compiled schema.
+   */
+  private UnmarshallerPool(JAXBContext context, Schema schema) {
+    this.context = context;
+    this.schema = schema;
+  }
+
+  /**
+   * Returns the pool for the specified JAXB context class and schema file. The
+   * context and schema are created the first time a pool is requested. The
+   * schema file name is the name of a file that is relative to the
+   * '[top-level dir]/xml/schema/' directory.
+   * @param contextClass the specified context class used to build the
+   * unmarshallers.
+   * @param schemaFileName the schema file that adds schema validation to the
+   * unmarshallers.
+   * @return the shared pool instance.
+   * @throws JAXBException thrown if there is a problem creating the context
+   * with the specified context class.
+   * @throws SAXException thrown if there is a problem compiling the specified
+   * schema file.
+   * @throws MalformedURLException thrown if there is a problem finding the xsd
+   * schema directory.
+   */
+  public static synchronized UnmarshallerPool getInstance(Class<?> contextClass,
+      String schemaFileName) throws JAXBException, SAXException, MalformedURLException {
+    String key = contextClass.getName() + "|" + schemaFileName;
+    UnmarshallerPool pool = POOLS.get(key);
+    if (pool == null) {
+      JAXBContext context = JAXBContext.newInstance(contextClass);
+      SchemaFactory schemaFactory = SchemaFactory
+          .newInstance("http://www.w3.org/2001/XMLSchema");
+      Schema schema = schemaFactory.newSchema(OptionUtil.getSchemaUrl(schemaFileName));
+      pool = new UnmarshallerPool(context, schema);
+      POOLS.put(key, pool);
+    }
+    return pool;
+  }
+
+  /**
+   * Returns an unmarshaller with schema validation enabled. An idle instance is
+   * returned if one exists, otherwise a new instance is created. The returned
+   * instance should only be used by one thread until it is released.
+   * @return the unmarshaller instance.
+   * @throws JAXBException thrown if a new unmarshaller could not be created.
+   */
+  public Unmarshaller borrow() throws JAXBException {
+    Unmarshaller unmarshaller = this.idleUnmarshallers.poll();
+    if (unmarshaller == null) {
+      unmarshaller = this.createUnmarshaller();
+    }
+    return unmarshaller;
+  }
+
+  /**
+   * Returns the specified unmarshaller to this pool. If the pool already holds
+   * its maximum number of idle instances, the unmarshaller is discarded.
+   * @param unmarshaller the unmarshaller that was borrowed from this pool.
+   */
+  public void release(Unmarshaller unmarshaller) {
+    this.idleUnmarshallers.offer(unmarshaller);
+  }
+
+  /**
+   * Returns a new unmarshaller, with schema validation enabled, that is not
+   * managed by this pool.
+   * @return the unmarshaller instance.
+   * @throws JAXBException thrown if the unmarshaller could not be created.
+   */
+  public Unmarshaller createUnmarshaller() throws JAXBException {
+    Unmarshaller unmarshaller = this.context.createUnmarshaller();
+    unmarshaller.setSchema(this.schema);
+    return unmarshaller;
+  }
+
+  /**
+   * Returns the compiled schema shared by all unmarshallers of this pool.
+   * @return the schema instance.
+   */
+  public Schema getSchema() {
+    return this.schema;
+  }
+}
@@ -0,0 +1,82 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to specify how much of the sensor data is validated against
+ * its schema. It follows the convention:
+ *
+ * <pre>
+ * -validate full|sample:N|off
+ *
+ * full     - validates every entry, which is the default.
+ * sample:N - validates the first entry of each file and every Nth entry after
+ *            it, or every Nth file when migrating v7 data.
+ * off      - validates nothing, for files from trusted producers.
+ * </pre>
+ *
+ * Entries that are not validated are still rejected if they lack the required
+ * Tool or Resource attribute.
+ * @author aito
+ *
+ */
+public class ValidateOption extends AbstractOption {
+  /** This option's name, which is "-validate". */
+  public static final String OPTION_NAME = "-validate";
+  /** The mode that validates every entry. */
+  private static final String FULL = "full";
+  /** The mode that validates nothing. */
+  private static final String OFF = "off";
+  /** The prefix of the mode that validates a sample of the entries. */
+  private static final String SAMPLE = "sample:";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public ValidateOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /**
+   * Processes this option by setting the validation interval, which is the
+   * number of entries between validated entries, or 0 if none are validated.
+   */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      String mode = this.getParameters().get(0);
+      Integer interval = Integer.valueOf(1);
+      if (OFF.equals(mode)) {
+        interval = Integer.valueOf(0);
+      }
+      else if (mode.startsWith(SAMPLE)) {
+        interval = Integer.valueOf(mode.substring(SAMPLE.length()));
+      }
+      this.getController().addOptionObject(Options.VALIDATE, interval);
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * full, off, or sample: followed by a positive integer.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() == 1) {
+      String mode = this.getParameters().get(0);
+      if (FULL.equals(mode) || OFF.equals(mode) || (mode.startsWith(SAMPLE)
+          && OptionUtil.isPositiveInteger(mode.substring(SAMPLE.length())))) {
+        return true;
+      }
+    }
+    String msg = "The " + OPTION_NAME
+        + " option must be full, sample:N, or off.  Ex: -validate sample:100";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
@@ -0,0 +1,54 @@
+package org.hackystat.sensor.xmldata.option;
+
+import java.util.List;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+
+/**
+ * The option used to display the verbose message of only every Nth entry sent,
+ * which keeps the output of verbose mode readable and cheap for large runs.
+ * The other verbose messages are all displayed. This option turns on verbose
+ * mode.
+ * @author aito
+ *
+ */
+public class VerboseSampleOption extends AbstractOption {
+  /** This option's name, which is "-verboseSample". */
+  public static final String OPTION_NAME = "-verboseSample";
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public VerboseSampleOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /** Processes this option by turning on verbose mode with the sampling interval. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.getController().addOptionObject(Options.VERBOSE, Boolean.TRUE);
+      this.getController().addOptionObject(Options.VERBOSE_SAMPLE,
+          Integer.valueOf(this.getParameters().get(0)));
+    }
+  }
+
+  /**
+   * Returns true if the list of parameters contains only one element, which is
+   * a positive integer.
+   * @return true if the parameters are valid, false if not.
+   */
+  @Override
+  public boolean isValid() {
+    if (this.getParameters().size() == 1 && OptionUtil.isPositiveInteger(this.getParameters()
+        .get(0))) {
+      return true;
+    }
+    String msg = "The " + OPTION_NAME
+        + " option must have one positive integer argument.  Ex: -verboseSample 1000.";
+    this.getController().fireMessage(msg);
+    return false;
+  }
+}
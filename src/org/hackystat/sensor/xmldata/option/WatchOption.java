@@ -0,0 +1,428 @@
+package org.hackystat.sensor.xmldata.option;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hackystat.sensor.xmldata.XmlDataController;
+import org.hackystat.sensor.xmldata.util.InputFileWalker;
+import org.hackystat.sensor.xmldata.util.TstampFormatter;
+import org.hackystat.sensorshell.SensorShellException;
+
+/**
+ * The option used to keep sending the sensor data files that appear in a
+ * directory, which follows the convention:
+ *
+ * <pre>
+ * -watch [directory] [flush seconds]
+ * Ex: -watch /var/spool/xmldata 5
+ * </pre>
+ *
+ * One shell and the parsers stay alive while the directory is watched, so each
+ * new file is sent without the cost of starting the sensor again. A file named
+ * *.xml, *.gz or *.zip is sent once its size and modification time have
+ * stopped changing, and the entries added since the last flush are sent to the
+ * sensorbase every flush interval, which is 5 seconds by default. The files
+ * already in the directory when watching starts are sent as well, except the
+ * documents a resumed -checkpoint journal records as completed. A file that
+ * changes after it was sent is assumed to have grown, and only the entries
+ * after those already sent are sent; a file that shrinks is sent again in
+ * full. Subdirectories are not sent. The directory is watched until the sensor
+ * is stopped, and the entries not yet flushed are sent before it exits.
+ * @author aito
+ *
+ */
+public class WatchOption extends FileOption {
+  /** The name of this option, which is "-watch". */
+  public static final String OPTION_NAME = "-watch";
+  /** The number of seconds between flushes if none is specified. */
+  private static final int DEFAULT_FLUSH_SECONDS = 5;
+  /** The time a file must stay unchanged before it is considered complete. */
+  private static final long QUIET_MILLIS = 1000;
+  /** The longest time the watcher waits for an event before checking files. */
+  private static final long POLL_MILLIS = 250;
+  /** The longest time the shutdown hook waits for the last flush. */
+  private static final long SHUTDOWN_MILLIS = 30000;
+
+  /** The directory that is watched. */
+  private File directory = null;
+  /** The time between flushes to the sensorbase. */
+  private long flushMillis = DEFAULT_FLUSH_SECONDS * 1000L;
+  /** True once the watch has been asked to stop. */
+  private volatile boolean isStopped = false;
+
+  /**
+   * Creates this option with the specified controller and parameters.
+   * @param controller the specified controller.
+   * @param parameters the specified parameters.
+   */
+  public WatchOption(XmlDataController controller, List<String> parameters) {
+    super(controller, OPTION_NAME, parameters);
+  }
+
+  /**
+   * Returns true if the parameters contain a directory that exists, optionally
+   * followed by the positive number of seconds between flushes.
+   * @return true if this option's parameters are valid.
+   */
+  @Override
+  public boolean isValid() {
+    List<String> parameters = this.getParameters();
+    if (parameters.isEmpty() || parameters.size() > 2) {
+      String msg = "The " + OPTION_NAME + " option accepts a directory and an optional "
+          + "flush interval in seconds.  Ex: -watch /var/spool/xmldata 5";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    if (!new File(parameters.get(0)).isDirectory()) {
+      String msg = "The directory '" + parameters.get(0) + "' does not exist.";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    if (parameters.size() == 2 && !OptionUtil.isPositiveInteger(parameters.get(1))) {
+      String msg = "The flush interval '" + parameters.get(1)
+          + "' must be a positive number of seconds.";
+      this.getController().fireMessage(msg);
+      return false;
+    }
+    return true;
+  }
+
+  /** Sets the directory and flush interval used by the execute method. */
+  @Override
+  public void process() {
+    if (this.isValid()) {
+      this.directory = new File(this.getParameters().get(0));
+      if (this.getParameters().size() == 2) {
+        this.flushMillis = Long.parseLong(this.getParameters().get(1)) * 1000L;
+      }
+    }
+  }
+
+  /**
+   * Executes this option by watching the directory and sending each new file
+   * until the sensor is stopped. A file that fails to load is reported and
+   * skipped, and does not stop the watch.
+   */
+  @Override
+  public void execute() {
+    ShardedShell shell = null;
+    try {
+      shell = OptionUtil.createShardedShell(this.getController());
+      String sdtName = (String) this.getController().getOptionObject(Options.SDT);
+      Checkpoint checkpoint = this.startCheckpoint(shell);
+      checkpoint.keepRunEntries();
+      this.openTstampIndex();
+      WatchService watcher = FileSystems.getDefault().newWatchService();
+      Thread shutdownHook = this.createShutdownHook(Thread.currentThread());
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+      try {
+        Path directoryPath = this.directory.toPath();
+        directoryPath.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        this.getController().fireMessage("Watching " + this.directory + " for new files.");
+        this.watch(shell, checkpoint, watcher, directoryPath, sdtName);
+      }
+      finally {
+        watcher.close();
+        this.removeShutdownHook(shutdownHook);
+        this.closeTstampIndex();
+      }
+      checkpoint.close();
+      this.closeRejectedEntries();
+    }
+    catch (SensorShellException e) {
+      String msg = "The sensorshell.properties file in your userdir/.hackystat "
+          + "directory is invalid or does not exist.";
+      this.getController().fireMessage(msg);
+    }
+    catch (Exception e) {
+      String msg = "The directory " + this.directory + " could not be watched.";
+      this.getController().fireMessage(msg, e.toString());
+    }
+    finally {
+      OptionUtil.quitShell(this.getController(), shell);
+    }
+  }
+
+  /** Stops the watch, which flushes the entries that have not been sent. */
+  void stop() {
+    this.isStopped = true;
+  }
+
+  /**
+   * Sends each file in the specified directory, and each file that appears or
+   * changes later, once it is complete, and flushes the shell every flush
+   * interval, until this watch is stopped or the directory can no longer be
+   * watched. A file is only kept as sent while it exists.
+   * @param shell the shell the entries are sent with.
+   * @param checkpoint the checkpoint that flushes the shell.
+   * @param watcher the service the directory is registered with.
+   * @param directoryPath the watched directory.
+   * @param sdtName the SensorDataType specified by the -sdt option, or null.
+   * @throws Exception thrown if the shell could not send the entries.
+   */
+  private void watch(ShardedShell shell, Checkpoint checkpoint, WatchService watcher,
+      Path directoryPath, String sdtName) throws Exception {
+    Map<Path, FileState> pendingFiles = new LinkedHashMap<Path, FileState>();
+    Map<Path, FileState> sentFiles = new HashMap<Path, FileState>();
+    int unflushedEntries = 0;
+    long nextFlush = System.currentTimeMillis() + this.flushMillis;
+    this.addChangedFiles(checkpoint, directoryPath, pendingFiles, sentFiles);
+    while (!this.isStopped) {
+      // First, collect the files that were created or changed.
+      WatchKey key = null;
+      try {
+        key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+        this.isStopped = true;
+      }
+      if (key != null) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW) {
+            this.addChangedFiles(checkpoint, directoryPath, pendingFiles, sentFiles);
+            continue;
+          }
+          Path file = directoryPath.resolve((Path) event.context());
+          if (event.kind() == ENTRY_DELETE) {
+            pendingFiles.remove(file);
+            if (sentFiles.remove(file) != null) {
+              checkpoint.forgetDocuments(file.toFile().getPath());
+            }
+          }
+          else if (InputFileWalker.isDataFile(file) && !pendingFiles.containsKey(file)) {
+            pendingFiles.put(file, new FileState(file));
+          }
+        }
+        if (!key.reset()) {
+          this.getController().fireMessage(
+              "The directory " + this.directory + " can no longer be watched.");
+          this.isStopped = true;
+        }
+      }
+
+      // Then, send the files that have stopped changing.
+      long now = System.currentTimeMillis();
+      for (Iterator<Map.Entry<Path, FileState>> i = pendingFiles.entrySet().iterator(); i
+          .hasNext();) {
+        Map.Entry<Path, FileState> pendingFile = i.next();
+        Path file = pendingFile.getKey();
+        FileState state = pendingFile.getValue();
+        if (!Files.isRegularFile(file) || state.equals(sentFiles.get(file))) {
+          i.remove();
+        }
+        else if (state.isComplete(now)) {
+          i.remove();
+          FileState sentState = sentFiles.put(file, state);
+          if (sentState != null && state.size < sentState.size) {
+            // The file was rewritten, so none of its entries count as sent.
+            checkpoint.forgetDocuments(file.toFile().getPath());
+          }
+          unflushedEntries += this.sendWatchedFile(shell, checkpoint, file, sdtName);
+        }
+      }
+
+      // Finally, flush the entries added since the last flush.
+      if (now >= nextFlush || this.isStopped) {
+        if (unflushedEntries > 0) {
+          checkpoint.flush();
+          OptionUtil.fireSendMessage(this.getController(), shell, unflushedEntries);
+          unflushedEntries = 0;
+        }
+        nextFlush = now + this.flushMillis;
+      }
+    }
+  }
+
+  /**
+   * Sends the entries of the specified file that have not been sent, reporting
+   * instead of throwing any failure. The entries sent before a failure are
+   * kept as sent, so that only the entries after them are sent if the file
+   * changes.
+   * @param shell the shell the entries are added to.
+   * @param checkpoint the checkpoint that keeps how far each file was sent.
+   * @param file the completed file.
+   * @param sdtName the SensorDataType specified by the -sdt option, or null.
+   * @return the number of entries added to the shell, including those added
+   * before a failure.
+   */
+  private int sendWatchedFile(ShardedShell shell, Checkpoint checkpoint, Path file,
+      String sdtName) {
+    int entriesBefore = this.getEntriesAdded();
+    try {
+      this.sendFile(shell, file.toFile(), sdtName,
+          TstampFormatter.format(System.currentTimeMillis()));
+    }
+    catch (Exception e) {
+      checkpoint.failDocument();
+      this.getController().fireMessage("The file " + file + " failed to load.", e.toString());
+    }
+    return this.getEntriesAdded() - entriesBefore;
+  }
+
+  /**
+   * Adds every data file in the specified directory that is not already pending
+   * or sent unchanged, and forgets the sent files that no longer exist. This
+   * finds the files that exist when watching starts, and recovers the events
+   * lost when the watcher's queue overflows.
+   * @param checkpoint the checkpoint that keeps how far each file was sent.
+   * @param directoryPath the watched directory.
+   * @param pendingFiles the files waiting to be sent.
+   * @param sentFiles the state of each file when it was sent.
+   * @throws IOException thrown if the directory could not be read.
+   */
+  private void addChangedFiles(Checkpoint checkpoint, Path directoryPath,
+      Map<Path, FileState> pendingFiles, Map<Path, FileState> sentFiles) throws IOException {
+    for (Iterator<Path> i = sentFiles.keySet().iterator(); i.hasNext();) {
+      Path file = i.next();
+      if (!Files.exists(file)) {
+        i.remove();
+        checkpoint.forgetDocuments(file.toFile().getPath());
+      }
+    }
+    DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath);
+    try {
+      for (Path file : stream) {
+        if (InputFileWalker.isDataFile(file) && !pendingFiles.containsKey(file)) {
+          FileState state = new FileState(file);
+          if (!state.equals(sentFiles.get(file))) {
+            pendingFiles.put(file, state);
+          }
+        }
+      }
+    }
+    finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Returns the hook that stops the watch when the sensor is shut down and
+   * waits for the specified thread to flush the remaining entries.
+   * @param watchThread the thread running the watch.
+   * @return the unstarted hook thread.
+   */
+  private Thread createShutdownHook(final Thread watchThread) {
+    return new Thread(new Runnable() {
+      public void run() {
+        stop();
+        try {
+          watchThread.join(SHUTDOWN_MILLIS);
+        }
+        catch (InterruptedException e) { //NOPMD
+          // The sensor exits without waiting for the last flush.
+        }
+      }
+    }, "WatchOption shutdown");
+  }
+
+  /**
+   * Removes the specified shutdown hook, unless the sensor is already shutting
+   * down and running it.
+   * @param shutdownHook the hook to remove.
+   */
+  private void removeShutdownHook(Thread shutdownHook) {
+    try {
+      Runtime.getRuntime().removeShutdownHook(shutdownHook);
+    }
+    catch (IllegalStateException e) { //NOPMD
+      // The hook is running and waits for this thread to finish.
+    }
+  }
+
+  /**
+   * The size and modification time of a watched file, which are used to tell
+   * when a file has been completely written and whether it changed after it
+   * was sent.
+   */
+  private static class FileState {
+    /** The watched file. */
+    private Path file = null;
+    /** The size of the file in bytes. */
+    private long size = -1;
+    /** The last modification time of the file. */
+    private long lastModified = -1;
+    /** The time the size or modification time was last seen to change. */
+    private long lastChange = 0;
+
+    /**
+     * Constructs this state with the current size and modification time of the
+     * specified file.
+     * @param file the watched file.
+     */
+    FileState(Path file) {
+      this.file = file;
+      this.lastChange = System.currentTimeMillis();
+      this.update(this.lastChange);
+    }
+
+    /**
+     * Returns true if the file has not changed for QUIET_MILLIS.
+     * @param now the current time.
+     * @return true if the file is complete, false if it may still be written.
+     */
+    boolean isComplete(long now) {
+      return !this.update(now) && now - this.lastChange >= QUIET_MILLIS;
+    }
+
+    /**
+     * Reads the size and modification time of the file.
+     * @param now the current time, which is recorded if the file changed.
+     * @return true if the file changed since it was last read, false if not.
+     */
+    private boolean update(long now) {
+      File ioFile = this.file.toFile();
+      long currentSize = ioFile.length();
+      long currentLastModified = ioFile.lastModified();
+      if (currentSize == this.size && currentLastModified == this.lastModified) {
+        return false;
+      }
+      this.size = currentSize;
+      this.lastModified = currentLastModified;
+      this.lastChange = now;
+      return true;
+    }
+
+    /**
+     * Returns true if the specified object is the state of the same file with
+     * the same size and modification time.
+     * @param object the object to compare.
+     * @return true if the states are equal, false if not.
+     */
+    @Override
+    public boolean equals(Object object) {
+      if (!(object instanceof FileState)) {
+        return false;
+      }
+      FileState state = (FileState) object;
+      return this.file.equals(state.file) && this.size == state.size
+          && this.lastModified == state.lastModified;
+    }
+
+    /**
+     * Returns the hash code of this state.
+     * @return the hash code.
+     */
+    @Override
+    public int hashCode() {
+      return this.file.hashCode() ^ (int) this.size ^ (int) this.lastModified;
+    }
+  }
+}
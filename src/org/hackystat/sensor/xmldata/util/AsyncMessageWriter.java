@@ -0,0 +1,158 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The writer of messages that hands each message to a background thread, so
+ * the thread firing a message does not wait for the console. Messages are
+ * queued in a bounded queue and written, in order, through a buffer that is
+ * flushed whenever the queue runs empty. A thread firing messages faster than
+ * they can be written waits for room in the queue, so no message is dropped.
+ * <p>
+ * The background thread is a daemon started with the first message. The
+ * queued messages are written when flush is called, and when the virtual
+ * machine shuts down.
+ * @author aito
+ *
+ */
+public class AsyncMessageWriter {
+  /** The number of messages that can wait to be written. */
+  private static final int QUEUE_SIZE = 4096;
+  /** The size of the output buffer in characters. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+  /** The separator written after each message. */
+  private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+  /** The queued messages, and the latches of the flushes waiting for them. */
+  private BlockingQueue<Object> messages = new ArrayBlockingQueue<Object>(QUEUE_SIZE);
+  /** The buffered output of the messages. */
+  private Writer output = null;
+  /** The background thread, or null if it has not been started. */
+  private Thread writerThread = null;
+
+  /**
+   * Creates a writer of messages to the specified stream.
+   * @param stream the stream the messages are written to, one per line.
+   */
+  public AsyncMessageWriter(OutputStream stream) {
+    this.output = new BufferedWriter(new OutputStreamWriter(stream), BUFFER_SIZE);
+  }
+
+  /**
+   * Queues the specified message to be written on its own line, and waits if
+   * the queue is full.
+   * @param message the message to write, where null is written as "null".
+   */
+  public void write(String message) {
+    this.start();
+    this.enqueue(String.valueOf(message));
+  }
+
+  /**
+   * Waits until every message queued before this call is written and the
+   * output is flushed.
+   */
+  public void flush() {
+    synchronized (this) {
+      if (this.writerThread == null) {
+        return;
+      }
+    }
+    CountDownLatch latch = new CountDownLatch(1);
+    this.enqueue(latch);
+    try {
+      latch.await();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Queues the specified message or latch, and keeps waiting for room in the
+   * queue if the waiting thread is interrupted.
+   * @param message the message or latch to queue.
+   */
+  private void enqueue(Object message) {
+    boolean isInterrupted = false;
+    while (true) {
+      try {
+        this.messages.put(message);
+        break;
+      }
+      catch (InterruptedException e) {
+        isInterrupted = true;
+      }
+    }
+    if (isInterrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Starts the background thread and the shutdown hook that flushes it, unless
+   * they have already been started.
+   */
+  private synchronized void start() {
+    if (this.writerThread != null) {
+      return;
+    }
+    this.writerThread = new Thread("xmldata-messages") {
+      @Override
+      public void run() {
+        writeMessages();
+      }
+    };
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+    Runtime.getRuntime().addShutdownHook(new Thread() {
+      @Override
+      public void run() {
+        flush();
+      }
+    });
+  }
+
+  /**
+   * Writes the queued messages until the virtual machine exits. The output is
+   * flushed when the queue is empty or a flush is waiting.
+   */
+  private void writeMessages() {
+    while (true) {
+      Object message;
+      try {
+        message = this.messages.take();
+      }
+      catch (InterruptedException e) { //NOPMD
+        continue;
+      }
+      try {
+        if (message instanceof CountDownLatch) {
+          this.output.flush();
+        }
+        else {
+          this.output.write((String) message);
+          this.output.write(LINE_SEPARATOR);
+          if (this.messages.isEmpty()) {
+            this.output.flush();
+          }
+        }
+      }
+      catch (IOException e) { //NOPMD
+        // A console that fails to write has no other place to report it.
+      }
+      finally {
+        if (message instanceof CountDownLatch) {
+          ((CountDownLatch) message).countDown();
+        }
+      }
+    }
+  }
+}
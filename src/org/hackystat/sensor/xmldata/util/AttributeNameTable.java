@@ -0,0 +1,52 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+/**
+ * The table of the attribute names seen in one xmldata file, which maps each
+ * name to one canonical QName and one canonical String key. Since the entries
+ * of a file share a small set of attribute names, the names of every entry
+ * then share the same few objects instead of each entry creating its own.
+ * A table is used by one thread at a time.
+ * @author aito
+ *
+ */
+public class AttributeNameTable {
+  /** The canonical QName of each attribute name without a namespace. */
+  private Map<String, QName> names = new HashMap<String, QName>();
+  /** The canonical String key of each attribute name. */
+  private Map<QName, String> keys = new HashMap<QName, String>();
+
+  /**
+   * Returns the canonical QName of the specified attribute name, which has no
+   * namespace.
+   * @param localName the local name of the attribute.
+   * @return the QName instance.
+   */
+  public QName getName(String localName) {
+    QName name = this.names.get(localName);
+    if (name == null) {
+      name = new QName(localName);
+      this.names.put(localName, name);
+    }
+    return name;
+  }
+
+  /**
+   * Returns the canonical key of the specified attribute name, which is the
+   * string form of the QName.
+   * @param name the attribute name.
+   * @return the key of the attribute in the key-value map sent to the shell.
+   */
+  public String getKey(QName name) {
+    String key = this.keys.get(name);
+    if (key == null) {
+      key = name.toString();
+      this.keys.put(name, key);
+    }
+    return key;
+  }
+}
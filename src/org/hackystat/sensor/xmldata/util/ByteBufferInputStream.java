@@ -0,0 +1,50 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * The input stream that reads the remaining bytes of a byte buffer, such as a
+ * memory-mapped range of a file. This stream is not thread-safe.
+ * @author aito
+ *
+ */
+public class ByteBufferInputStream extends InputStream {
+  /** The buffer read by this stream. */
+  private ByteBuffer buffer = null;
+
+  /**
+   * Constructs this stream with the specified buffer, which is read from its
+   * current position to its limit.
+   * @param buffer the specified buffer.
+   */
+  public ByteBufferInputStream(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int read() {
+    return this.buffer.hasRemaining() ? (this.buffer.get() & 0xFF) : -1;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (!this.buffer.hasRemaining()) {
+      return -1;
+    }
+    int count = Math.min(length, this.buffer.remaining());
+    this.buffer.get(bytes, offset, count);
+    return count;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int available() {
+    return this.buffer.remaining();
+  }
+}
@@ -0,0 +1,205 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The append-only journal that records how far a run has sent its documents,
+ * so that a later run can resume where it stopped. Each line is one record:
+ *
+ * <pre>
+ * F [tab] [count] [tab] [document] - every entry of the document was sent.
+ * E [tab] [count] [tab] [document] - the first count entries were sent.
+ * </pre>
+ *
+ * The count of a completed document is its number of entries, which a run
+ * that sends changed documents again uses to send only the entries after
+ * them. Completed records without a count, written by older versions, are
+ * still read.
+ *
+ * Only the records of earlier runs are used to answer queries, so a document
+ * can be sent again within one run. Records are buffered and only reach the
+ * disk when the journal is synced, which the caller does after the shell has
+ * sent the recorded entries. A line cut short by a crash names no known
+ * document and is ignored.
+ * @author aito
+ *
+ */
+public class CheckpointJournal {
+  /** The type of the record of a completed document. */
+  private static final String COMPLETED = "F";
+  /** The type of the record of the entries sent from a document. */
+  private static final String ENTRIES = "E";
+
+  /** The mapping of completed document name -> number of entries, or -1. */
+  private Map<String, Integer> completedDocuments = new HashMap<String, Integer>();
+  /** The mapping of document name -> number of entries sent. */
+  private Map<String, Integer> sentEntries = new HashMap<String, Integer>();
+  /** The stream the records are appended to. */
+  private FileOutputStream stream = null;
+  /** The buffered writer of the records. */
+  private Writer writer = null;
+
+  /**
+   * Opens the specified journal. A resumed journal is read and appended to,
+   * and any other journal is started again.
+   * @param file the journal file.
+   * @param isResumed true if the records of an earlier run are kept.
+   * @throws IOException thrown if the journal could not be read or opened.
+   */
+  public CheckpointJournal(File file, boolean isResumed) throws IOException {
+    boolean isLineCut = false;
+    if (isResumed && file.exists()) {
+      isLineCut = this.read(file);
+    }
+    this.stream = new FileOutputStream(file, isResumed);
+    this.writer = new BufferedWriter(new OutputStreamWriter(this.stream, "UTF-8"));
+    if (isLineCut) {
+      // Ends the line cut short by a crash so that it stays a separate record.
+      this.writer.write("\n");
+    }
+  }
+
+  /**
+   * Returns true if every entry of the specified document was sent by an
+   * earlier run.
+   * @param document the name of the document.
+   * @return true if the document is complete, false if not.
+   */
+  public boolean isCompleted(String document) {
+    return this.completedDocuments.containsKey(document);
+  }
+
+  /**
+   * Returns the number of entries of the specified document, which an earlier
+   * run sent all of.
+   * @param document the name of the document.
+   * @return the number of entries, or 0 if the document is not completed or
+   * its number of entries is not recorded.
+   */
+  public int getCompletedEntries(String document) {
+    Integer count = this.completedDocuments.get(document);
+    return (count == null || count.intValue() < 0) ? 0 : count.intValue();
+  }
+
+  /**
+   * Returns the number of leading entries of the specified document that were
+   * sent by an earlier run.
+   * @param document the name of the document.
+   * @return the number of entries sent, which is 0 if none are recorded.
+   */
+  public int getSentEntries(String document) {
+    Integer count = this.sentEntries.get(document);
+    return (count == null) ? 0 : count.intValue();
+  }
+
+  /**
+   * Records that the first count entries of the specified document were sent.
+   * @param document the name of the document.
+   * @param count the number of entries sent.
+   * @throws IOException thrown if the record could not be written.
+   */
+  public void recordEntries(String document, int count) throws IOException {
+    this.writer.write(ENTRIES + "\t" + count + "\t" + document + "\n");
+  }
+
+  /**
+   * Records that every entry of the specified document was sent.
+   * @param document the name of the document.
+   * @param count the number of entries of the document.
+   * @throws IOException thrown if the record could not be written.
+   */
+  public void recordCompleted(String document, int count) throws IOException {
+    this.writer.write(COMPLETED + "\t" + count + "\t" + document + "\n");
+  }
+
+  /**
+   * Writes the buffered records and forces them to the disk.
+   * @throws IOException thrown if the records could not be written.
+   */
+  public void sync() throws IOException {
+    this.writer.flush();
+    this.stream.getFD().sync();
+  }
+
+  /**
+   * Writes the buffered records and closes this journal.
+   * @throws IOException thrown if the records could not be written.
+   */
+  public void close() throws IOException {
+    this.writer.close();
+  }
+
+  /**
+   * Reads the records of the specified journal.
+   * @param file the journal file.
+   * @return true if the last line of the journal is not ended.
+   * @throws IOException thrown if the journal could not be read.
+   */
+  private boolean read(File file) throws IOException {
+    RandomAccessFile lastByte = new RandomAccessFile(file, "r");
+    boolean isLineCut = false;
+    try {
+      if (lastByte.length() > 0) {
+        lastByte.seek(lastByte.length() - 1);
+        isLineCut = lastByte.read() != '\n';
+      }
+    }
+    finally {
+      lastByte.close();
+    }
+
+    BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(file), "UTF-8"));
+    try {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        String[] fields = line.split("\t", 3);
+        if (fields.length == 3 && COMPLETED.equals(fields[0]) && this.isCount(fields[1])) {
+          this.completedDocuments.put(fields[2], Integer.valueOf(fields[1]));
+          this.sentEntries.remove(fields[2]);
+        }
+        else if (fields.length >= 2 && COMPLETED.equals(fields[0])) {
+          String document = line.substring(COMPLETED.length() + 1);
+          this.completedDocuments.put(document, Integer.valueOf(-1));
+          this.sentEntries.remove(document);
+        }
+        else if (fields.length == 3 && ENTRIES.equals(fields[0])
+            && this.isCount(fields[1])) {
+          this.sentEntries.put(fields[2], Integer.valueOf(fields[1]));
+        }
+      }
+    }
+    finally {
+      reader.close();
+    }
+    return isLineCut;
+  }
+
+  /**
+   * Returns true if the specified string is a non-negative int, which a record
+   * cut short by a crash may not be.
+   * @param value the string to test.
+   * @return true if the string is a count, false if not.
+   */
+  private boolean isCount(String value) {
+    if (value.length() == 0 || value.length() > 9) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (!Character.isDigit(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
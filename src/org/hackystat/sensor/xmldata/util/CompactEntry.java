@@ -0,0 +1,112 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The compact form of the key-value mapping of an entry, which is used while
+ * converted entries are buffered. The Tool, Resource, SensorDataType and
+ * Runtime values, and the names of the other attributes, are kept as ids of a
+ * StringDictionary shared by the run, and the values of the other attributes
+ * are kept in an array parallel to their names. An entry then holds a few
+ * small arrays instead of a HashMap with a node per attribute.
+ * @author aito
+ *
+ */
+public class CompactEntry {
+  /** The id of a value that is not in the mapping. */
+  private static final int ABSENT = -1;
+  /** The key of the tool. */
+  private static final String TOOL = "Tool";
+  /** The key of the resource. */
+  private static final String RESOURCE = "Resource";
+  /** The key of the SensorDataType. */
+  private static final String SDT = "SensorDataType";
+  /** The key of the runtime. */
+  private static final String RUNTIME = "Runtime";
+  /** The keys whose values are kept as ids. */
+  private static final String[] ENCODED_KEYS = { TOOL, RESOURCE, SDT, RUNTIME };
+
+  /** The id of the tool, or ABSENT. */
+  private int tool = ABSENT;
+  /** The id of the resource, or ABSENT. */
+  private int resource = ABSENT;
+  /** The id of the SensorDataType, or ABSENT. */
+  private int sdt = ABSENT;
+  /** The id of the runtime, or ABSENT. */
+  private int runtime = ABSENT;
+  /** The ids of the names of the other attributes. */
+  private int[] keys = null;
+  /** The values of the other attributes, in the order of their names. */
+  private String[] values = null;
+
+  /**
+   * Constructs the compact form of the specified key-value mapping.
+   * @param keyValMap the key-value mapping of an entry.
+   * @param dictionary the dictionary of the run's repeated strings.
+   */
+  public CompactEntry(Map<String, String> keyValMap, StringDictionary dictionary) {
+    int otherCount = keyValMap.size();
+    for (String key : ENCODED_KEYS) {
+      if (keyValMap.containsKey(key)) {
+        otherCount--;
+      }
+    }
+    this.keys = new int[otherCount];
+    this.values = new String[otherCount];
+    int index = 0;
+    for (Map.Entry<String, String> keyVal : keyValMap.entrySet()) {
+      String key = keyVal.getKey();
+      if (TOOL.equals(key)) {
+        this.tool = dictionary.getId(keyVal.getValue());
+      }
+      else if (RESOURCE.equals(key)) {
+        this.resource = dictionary.getId(keyVal.getValue());
+      }
+      else if (SDT.equals(key)) {
+        this.sdt = dictionary.getId(keyVal.getValue());
+      }
+      else if (RUNTIME.equals(key)) {
+        this.runtime = dictionary.getId(keyVal.getValue());
+      }
+      else {
+        this.keys[index] = dictionary.getId(key);
+        this.values[index++] = keyVal.getValue();
+      }
+    }
+  }
+
+  /**
+   * Returns a new key-value mapping equal to the one this entry was created
+   * from.
+   * @param dictionary the dictionary this entry was created with.
+   * @return the key-value mapping.
+   */
+  public Map<String, String> toKeyValMap(StringDictionary dictionary) {
+    Map<String, String> keyValMap = new HashMap<String, String>(
+        (this.keys.length + ENCODED_KEYS.length) * 4 / 3 + 1);
+    putValue(keyValMap, TOOL, this.tool, dictionary);
+    putValue(keyValMap, RESOURCE, this.resource, dictionary);
+    putValue(keyValMap, SDT, this.sdt, dictionary);
+    putValue(keyValMap, RUNTIME, this.runtime, dictionary);
+    for (int i = 0; i < this.keys.length; i++) {
+      keyValMap.put(dictionary.getString(this.keys[i]), this.values[i]);
+    }
+    return keyValMap;
+  }
+
+  /**
+   * Puts the string of the specified id under the specified key, unless the id
+   * is ABSENT.
+   * @param keyValMap the map to put the value in.
+   * @param key the key of the value.
+   * @param id the id of the value, or ABSENT.
+   * @param dictionary the dictionary holding the value.
+   */
+  private static void putValue(Map<String, String> keyValMap, String key, int id,
+      StringDictionary dictionary) {
+    if (id != ABSENT) {
+      keyValMap.put(key, dictionary.getString(id));
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The utility class that detects compressed sensor data files by their magic
+ * bytes, so that gzip files and zip archives can be read without unpacking
+ * them to disk first. The file name extension is never used to detect the
+ * format.
+ * @author aito
+ *
+ */
+public class CompressedInput {
+  /** The size of the buffer used when reading files. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The formats of the files that can be read. */
+  public enum Format {
+    /** An uncompressed file. */
+    PLAIN,
+    /** A gzip compressed file, which contains one document. */
+    GZIP,
+    /** A zip archive, which can contain many documents. */
+    ZIP;
+  }
+
+  /** Private constructor that prevents instantiation. */
+  private CompressedInput() {
+  }
+
+  /**
+   * Returns the format of the specified file based on its first bytes.
+   * @param file the file to test.
+   * @return the format of the file.
+   * @throws IOException thrown if the file could not be read.
+   */
+  public static Format getFormat(File file) throws IOException {
+    InputStream stream = new FileInputStream(file);
+    try {
+      return getFormat(stream.read(), stream.read(), stream.read(), stream.read());
+    }
+    finally {
+      stream.close();
+    }
+  }
+
+  /**
+   * Returns a buffered stream over the decompressed contents of the specified
+   * file. Plain files are read as they are and gzip files are decompressed
+   * while they are read.
+   * @param file the plain or gzip compressed file.
+   * @return the stream instance.
+   * @throws IOException thrown if the file could not be read or is a zip
+   * archive, which must be read one archive entry at a time.
+   */
+  public static InputStream open(File file) throws IOException {
+    return open(new FileInputStream(file), file.toString());
+  }
+
+  /**
+   * Returns a buffered stream over the decompressed contents of the specified
+   * stream, such as a zip archive entry that is itself a gzip file.
+   * @param input the stream over a plain or gzip compressed document, which is
+   * closed when the returned stream is closed.
+   * @param name the name of the document, which is used in error messages.
+   * @return the stream instance.
+   * @throws IOException thrown if the stream could not be read or contains a
+   * zip archive.
+   */
+  public static InputStream open(InputStream input, String name) throws IOException {
+    InputStream stream = new BufferedInputStream(input, BUFFER_SIZE);
+    stream.mark(4);
+    Format format = getFormat(stream.read(), stream.read(), stream.read(), stream.read());
+    stream.reset();
+    if (format == Format.GZIP) {
+      return new BufferedInputStream(new GZIPInputStream(stream, BUFFER_SIZE), BUFFER_SIZE);
+    }
+    else if (format == Format.ZIP) {
+      stream.close();
+      throw new IOException("The zip archive, " + name + ", must be read by archive entry.");
+    }
+    return stream;
+  }
+
+  /**
+   * Returns the format identified by the specified first four bytes of a file.
+   * @param byte1 the first byte, or -1 if the file is empty.
+   * @param byte2 the second byte, or -1.
+   * @param byte3 the third byte, or -1.
+   * @param byte4 the fourth byte, or -1.
+   * @return the format of the file.
+   */
+  private static Format getFormat(int byte1, int byte2, int byte3, int byte4) {
+    if (byte1 == 0x1F && byte2 == 0x8B) {
+      return Format.GZIP;
+    }
+    if (byte1 == 'P' && byte2 == 'K' && byte3 == 0x03 && byte4 == 0x04) {
+      return Format.ZIP;
+    }
+    return Format.PLAIN;
+  }
+}
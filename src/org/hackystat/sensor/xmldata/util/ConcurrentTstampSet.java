@@ -0,0 +1,227 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Arrays;
+
+/**
+ * The set of timestamps used to make the timestamps of sensor data unique,
+ * which can be shared by every thread sending a document. Like a TstampSet, it
+ * returns the specified timestamp if it is not in the set, or else the next
+ * larger timestamp that is not, and adds the returned timestamp to the set.
+ * <p>
+ * The timestamps are kept as primitive longs in open addressing tables. The set
+ * is split into stripes by the hash of the timestamp, each with its own lock,
+ * so threads only wait for each other when they use the same stripe, and the
+ * consecutive timestamps tried for one entry fall into different stripes.
+ * Each timestamp also keeps a hint, a larger timestamp below which every
+ * timestamp is taken. The search for a free timestamp follows the hints and
+ * then moves them to the timestamp it found, so the many entries given the
+ * current time in the same millisecond do not each probe every taken one.
+ * @author aito
+ *
+ */
+public class ConcurrentTstampSet implements UniqueTstampSet {
+  /** The number of stripes, which must be a power of two. */
+  private static final int STRIPE_COUNT = 64;
+  /** The number of bits the hash is shifted by to select a stripe. */
+  private static final int STRIPE_SHIFT = 64 - Integer.numberOfTrailingZeros(STRIPE_COUNT);
+  /** The initial number of slots in each stripe, which must be a power of two. */
+  private static final int INITIAL_CAPACITY = 16;
+  /** The odd multiplier that spreads timestamps over the stripes and slots. */
+  private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+  /** The value of a slot that holds no timestamp. */
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  /** The stripes, which are selected by the top bits of a timestamp's hash. */
+  private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+  /** Creates an empty set. */
+  public ConcurrentTstampSet() {
+    for (int i = 0; i < STRIPE_COUNT; i++) {
+      this.stripes[i] = new Stripe();
+    }
+  }
+
+  /**
+   * Returns the specified timestamp if it is not in this set, or else the next
+   * larger timestamp that is not. The returned timestamp is added to this set,
+   * so no other call, from any thread, returns it again.
+   * @param tstamp the timestamp to make unique.
+   * @return the unique timestamp.
+   */
+  public long getUniqueTstamp(long tstamp) {
+    long uniqueTstamp = tstamp;
+    long hint = this.stripeOf(uniqueTstamp).addOrGetHint(uniqueTstamp);
+    while (hint != uniqueTstamp) {
+      uniqueTstamp = hint;
+      hint = this.stripeOf(uniqueTstamp).addOrGetHint(uniqueTstamp);
+    }
+
+    // Every timestamp from the specified one up to the unique one is now taken,
+    // so the hints passed on the way can point past the unique timestamp.
+    for (long taken = tstamp; taken < uniqueTstamp;) {
+      taken = this.stripeOf(taken).raiseHint(taken, uniqueTstamp + 1);
+    }
+    return uniqueTstamp;
+  }
+
+  /**
+   * Adds the specified timestamp to this set.
+   * @param tstamp the timestamp to add.
+   * @return true if the timestamp was added, false if it was already in this
+   * set.
+   */
+  public boolean add(long tstamp) {
+    return this.stripeOf(tstamp).addOrGetHint(tstamp) == tstamp;
+  }
+
+  /**
+   * Returns true if the specified timestamp is in this set.
+   * @param tstamp the timestamp to find.
+   * @return true if the timestamp is in this set, false if not.
+   */
+  public boolean contains(long tstamp) {
+    return this.stripeOf(tstamp).contains(tstamp);
+  }
+
+  /**
+   * Returns the number of timestamps in this set.
+   * @return the number of timestamps.
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : this.stripes) {
+      size += stripe.size();
+    }
+    return size;
+  }
+
+  /**
+   * Returns the stripe that holds the specified timestamp.
+   * @param tstamp the timestamp.
+   * @return the stripe.
+   */
+  private Stripe stripeOf(long tstamp) {
+    return this.stripes[(int) ((tstamp * HASH_MULTIPLIER) >>> STRIPE_SHIFT)];
+  }
+
+  /**
+   * The stripe of the set, which is an open addressing table of timestamps and
+   * their hints with linear probing that is doubled when it is half full.
+   * @author aito
+   *
+   */
+  private static class Stripe {
+    /** The slots, which hold a timestamp or EMPTY. */
+    private long[] slots = new long[INITIAL_CAPACITY];
+    /** The hint of the timestamp in the slot with the same index. */
+    private long[] hints = new long[INITIAL_CAPACITY];
+    /** The number of timestamps in the slots. */
+    private int size = 0;
+    /** True if the timestamp equal to EMPTY, which has no slot, is in the set. */
+    private boolean hasEmptyValue = false;
+    /** The hint of the timestamp equal to EMPTY. */
+    private long emptyValueHint = EMPTY + 1;
+
+    /** Creates an empty stripe. */
+    Stripe() {
+      Arrays.fill(this.slots, EMPTY);
+    }
+
+    /**
+     * Adds the specified timestamp to this stripe if it is not present.
+     * @param tstamp the timestamp to add.
+     * @return the timestamp if it was added, or else its hint, which is larger.
+     */
+    synchronized long addOrGetHint(long tstamp) {
+      if (tstamp == EMPTY) {
+        if (this.hasEmptyValue) {
+          return this.emptyValueHint;
+        }
+        this.hasEmptyValue = true;
+        return tstamp;
+      }
+      int index = this.indexOf(tstamp);
+      if (this.slots[index] == tstamp) {
+        return this.hints[index];
+      }
+      this.slots[index] = tstamp;
+      this.hints[index] = tstamp + 1;
+      if (++this.size > this.slots.length / 2) {
+        this.grow();
+      }
+      return tstamp;
+    }
+
+    /**
+     * Raises the hint of the specified timestamp, which must be present, to the
+     * specified hint if it is lower.
+     * @param tstamp the timestamp.
+     * @param hint the new hint.
+     * @return the hint the timestamp had before it was raised.
+     */
+    synchronized long raiseHint(long tstamp, long hint) {
+      long oldHint;
+      if (tstamp == EMPTY) {
+        oldHint = this.emptyValueHint;
+        this.emptyValueHint = Math.max(oldHint, hint);
+      }
+      else {
+        int index = this.indexOf(tstamp);
+        oldHint = this.hints[index];
+        this.hints[index] = Math.max(oldHint, hint);
+      }
+      return oldHint;
+    }
+
+    /**
+     * Returns true if the specified timestamp is in this stripe.
+     * @param tstamp the timestamp to find.
+     * @return true if the timestamp is present, false if not.
+     */
+    synchronized boolean contains(long tstamp) {
+      if (tstamp == EMPTY) {
+        return this.hasEmptyValue;
+      }
+      return this.slots[this.indexOf(tstamp)] == tstamp;
+    }
+
+    /**
+     * Returns the number of timestamps in this stripe.
+     * @return the number of timestamps.
+     */
+    synchronized int size() {
+      return this.hasEmptyValue ? this.size + 1 : this.size;
+    }
+
+    /**
+     * Returns the index of the slot holding the specified timestamp, or of the
+     * empty slot where it would be added.
+     * @param tstamp the timestamp to find.
+     * @return the slot index.
+     */
+    private int indexOf(long tstamp) {
+      int mask = this.slots.length - 1;
+      int index = (int) (tstamp * HASH_MULTIPLIER) & mask;
+      while (this.slots[index] != EMPTY && this.slots[index] != tstamp) {
+        index = (index + 1) & mask;
+      }
+      return index;
+    }
+
+    /** Doubles the number of slots and adds every timestamp to the new slots. */
+    private void grow() {
+      long[] oldSlots = this.slots;
+      long[] oldHints = this.hints;
+      this.slots = new long[oldSlots.length * 2];
+      this.hints = new long[oldSlots.length * 2];
+      Arrays.fill(this.slots, EMPTY);
+      for (int i = 0; i < oldSlots.length; i++) {
+        if (oldSlots[i] != EMPTY) {
+          int index = this.indexOf(oldSlots[i]);
+          this.slots[index] = oldSlots[i];
+          this.hints[index] = oldHints[i];
+        }
+      }
+    }
+  }
+}
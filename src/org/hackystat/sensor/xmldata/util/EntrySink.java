@@ -0,0 +1,33 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The destination that converted entries are written to instead of being sent
+ * to a sensorbase, such as a file or a spool. The entries of a sink are written
+ * by one thread at a time.
+ * @author aito
+ *
+ */
+public interface EntrySink {
+  /**
+   * Writes the specified entry.
+   * @param keyValMap the key-value mapping of the entry.
+   * @throws IOException thrown if the entry could not be written.
+   */
+  public void write(Map<String, String> keyValMap) throws IOException;
+
+  /**
+   * Writes the buffered entries out, which is done whenever the entries would
+   * be sent to a sensorbase.
+   * @throws IOException thrown if the entries could not be written.
+   */
+  public void sync() throws IOException;
+
+  /**
+   * Writes the remaining entries out and releases the resources of this sink.
+   * @throws IOException thrown if the sink could not be closed.
+   */
+  public void close() throws IOException;
+}
@@ -0,0 +1,276 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The append-only spool of converted entries, which keeps the entries that
+ * could not be sent in a directory until they are replayed. The spool is a
+ * sequence of gzip compressed segment files that are written one after the
+ * other, and each segment holds up to ENTRIES_PER_SEGMENT entries. A segment
+ * being written ends in ".open" and is renamed to end in ".spool" when it is
+ * complete, so only complete segments are replayed.
+ * <p>
+ * Each entry is one record: the number of key-value pairs, followed by each
+ * key and value as a length and its UTF-8 bytes, where a length of -1 is null.
+ * Sync writes the buffered records through to the disk, so a crash loses no
+ * synced entry. A segment left open by a crash is renamed to end in ".cut"
+ * when the spool is opened again, and is replayed up to its last complete
+ * entry, while a complete segment that ends early is reported as damaged. A
+ * spool directory is written by one run at a time.
+ * @author aito
+ *
+ */
+public class EntrySpool implements EntrySink {
+  /** The number of entries written to a segment before the next is started. */
+  public static final int ENTRIES_PER_SEGMENT = 100000;
+  /** The prefix of the segment file names, which is followed by their index. */
+  private static final String PREFIX = "segment-";
+  /** The suffix of a complete segment. */
+  private static final String SUFFIX = ".spool";
+  /** The suffix of the segment being written. */
+  private static final String OPEN_SUFFIX = ".open";
+  /** The suffix of a segment left open by a crash, which may end early. */
+  private static final String CUT_SUFFIX = ".cut";
+  /** The size of the compression and output buffers in bytes. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The directory of the segments. */
+  private File directory = null;
+  /** The index of the next segment. */
+  private long nextIndex = 0;
+  /** The segment being written, or null. */
+  private File segment = null;
+  /** The file stream of the segment being written. */
+  private FileOutputStream stream = null;
+  /** The record output of the segment being written. */
+  private DataOutputStream output = null;
+  /** The number of entries written to the current segment. */
+  private int segmentEntries = 0;
+  /** The number of entries written to this spool. */
+  private int entryCount = 0;
+
+  /**
+   * Opens the spool in the specified directory, which is created if needed.
+   * New segments follow the segments already in the directory.
+   * @param directory the directory of the segments.
+   * @throws IOException thrown if the directory could not be created, or a
+   * segment left open could not be completed.
+   */
+  public EntrySpool(File directory) throws IOException {
+    this.directory = directory;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("The spool directory " + directory + " could not be created.");
+    }
+    for (File file : listFiles(directory)) {
+      long index = getIndex(file);
+      this.nextIndex = Math.max(this.nextIndex, index + 1);
+      if (file.getName().endsWith(OPEN_SUFFIX)
+          && !file.renameTo(getFile(directory, index, CUT_SUFFIX))) {
+        throw new IOException("The open segment " + file + " could not be completed.");
+      }
+    }
+  }
+
+  /**
+   * Returns the directory of this spool.
+   * @return the directory.
+   */
+  public File getDirectory() {
+    return this.directory;
+  }
+
+  /**
+   * Returns the description of this spool used in messages.
+   * @return the name of the directory.
+   */
+  @Override
+  public String toString() {
+    return this.directory.toString();
+  }
+
+  /**
+   * Returns the number of entries written to this spool.
+   * @return the number of entries.
+   */
+  public synchronized int getEntryCount() {
+    return this.entryCount;
+  }
+
+  /**
+   * Appends the specified entry to the current segment, which is started if
+   * needed, and completes the segment when it is full.
+   * @param keyValMap the key-value mapping of the entry.
+   * @throws IOException thrown if the entry could not be written.
+   */
+  public synchronized void write(Map<String, String> keyValMap) throws IOException {
+    if (this.output == null) {
+      this.segment = new File(this.directory, PREFIX + this.nextIndex++ + OPEN_SUFFIX);
+      this.stream = new FileOutputStream(this.segment);
+      this.output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+          this.stream, BUFFER_SIZE, true), BUFFER_SIZE));
+      this.segmentEntries = 0;
+    }
+    this.output.writeInt(keyValMap.size());
+    for (Map.Entry<String, String> keyVal : keyValMap.entrySet()) {
+      writeString(this.output, keyVal.getKey());
+      writeString(this.output, keyVal.getValue());
+    }
+    this.entryCount++;
+    if (++this.segmentEntries >= ENTRIES_PER_SEGMENT) {
+      this.closeSegment();
+    }
+  }
+
+  /**
+   * Writes the buffered entries through to the disk.
+   * @throws IOException thrown if the entries could not be written.
+   */
+  public synchronized void sync() throws IOException {
+    if (this.output != null) {
+      this.output.flush();
+      this.stream.getFD().sync();
+    }
+  }
+
+  /**
+   * Completes the current segment, after which the spool can still be written.
+   * @throws IOException thrown if the segment could not be completed.
+   */
+  public synchronized void close() throws IOException {
+    if (this.output != null) {
+      this.closeSegment();
+    }
+  }
+
+  /**
+   * Returns true if the specified segment was left open by a crash, so it may
+   * end in the middle of an entry.
+   * @param segment the segment file.
+   * @return true if the segment was cut short, false if it was completed.
+   */
+  public static boolean isCut(File segment) {
+    return segment.getName().endsWith(CUT_SUFFIX);
+  }
+
+  /**
+   * Returns the complete segments of the spool in the specified directory,
+   * including those left open by a crash, in the order they were written.
+   * @param directory the directory of the segments.
+   * @return the list of segment files, which is empty if there are none.
+   */
+  public static List<File> getSegments(File directory) {
+    List<File> segments = new ArrayList<File>();
+    for (File file : listFiles(directory)) {
+      if (!file.getName().endsWith(OPEN_SUFFIX)) {
+        segments.add(file);
+      }
+    }
+    Collections.sort(segments, new Comparator<File>() {
+      public int compare(File file1, File file2) {
+        long index1 = getIndex(file1);
+        long index2 = getIndex(file2);
+        return (index1 < index2) ? -1 : ((index1 == index2) ? 0 : 1);
+      }
+    });
+    return segments;
+  }
+
+  /**
+   * Finishes the compressed data of the current segment, forces it to the
+   * disk, and renames the segment to mark it complete.
+   * @throws IOException thrown if the segment could not be completed.
+   */
+  private void closeSegment() throws IOException {
+    this.output.flush();
+    this.stream.getFD().sync();
+    this.output.close();
+    File completedSegment = getFile(this.directory, getIndex(this.segment), SUFFIX);
+    if (!this.segment.renameTo(completedSegment)) {
+      throw new IOException("The segment " + this.segment + " could not be completed.");
+    }
+    this.output = null;
+    this.stream = null;
+    this.segment = null;
+  }
+
+  /**
+   * Writes the specified string as its length and UTF-8 bytes.
+   * @param output the record output.
+   * @param string the string, or null.
+   * @throws IOException thrown if the string could not be written.
+   */
+  private static void writeString(DataOutputStream output, String string) throws IOException {
+    if (string == null) {
+      output.writeInt(-1);
+    }
+    else {
+      byte[] bytes = string.getBytes("UTF-8");
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+  /**
+   * Returns the segment files, complete, cut or open, in the specified
+   * directory.
+   * @param directory the directory of the segments.
+   * @return the segment files.
+   */
+  private static List<File> listFiles(File directory) {
+    List<File> files = new ArrayList<File>();
+    File[] children = directory.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (getIndex(child) >= 0) {
+          files.add(child);
+        }
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Returns the index of the specified segment file.
+   * @param file the file.
+   * @return the index, or -1 if the file is not a segment.
+   */
+  private static long getIndex(File file) {
+    String name = file.getName();
+    int end = -1;
+    for (String suffix : new String[] {SUFFIX, OPEN_SUFFIX, CUT_SUFFIX}) {
+      if (name.endsWith(suffix)) {
+        end = name.length() - suffix.length();
+      }
+    }
+    if (!name.startsWith(PREFIX) || end <= PREFIX.length()) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(name.substring(PREFIX.length(), end));
+    }
+    catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns the segment file of the specified index and suffix.
+   * @param directory the directory of the segments.
+   * @param index the index of the segment.
+   * @param suffix the suffix of the segment's state.
+   * @return the segment file.
+   */
+  private static File getFile(File directory, long index, String suffix) {
+    return new File(directory, PREFIX + index + suffix);
+  }
+}
@@ -0,0 +1,133 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * The reader of the entries of one segment of an EntrySpool, in the order they
+ * were written. A segment cut short by a crash is read up to its last complete
+ * entry. A completed segment that ends early or fails its checks is damaged,
+ * and reading it throws an IOException instead of losing the entries after
+ * the damage.
+ * @author aito
+ *
+ */
+public class EntrySpoolReader {
+  /** The size of the decompression and input buffers in bytes. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** The segment file. */
+  private File segment = null;
+  /** True if the segment was left open by a crash, so it may end early. */
+  private boolean isCut = false;
+  /** The file stream of the segment. */
+  private InputStream stream = null;
+  /** The record input of the segment, or null if the segment has ended. */
+  private DataInputStream input = null;
+
+  /**
+   * Opens the specified segment.
+   * @param segment the segment file.
+   * @throws IOException thrown if the segment could not be opened, or is
+   * damaged.
+   */
+  public EntrySpoolReader(File segment) throws IOException {
+    this.segment = segment;
+    this.isCut = EntrySpool.isCut(segment);
+    this.stream = new FileInputStream(segment);
+    try {
+      this.input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+          this.stream, BUFFER_SIZE), BUFFER_SIZE));
+    }
+    catch (IOException e) {
+      if (!this.isCut || !(e instanceof EOFException)) {
+        this.stream.close();
+        throw this.createDamagedException(e);
+      }
+      // A segment cut short before its header holds no entries.
+    }
+  }
+
+  /**
+   * Returns the next entry of the segment.
+   * @return the key-value mapping of the entry, or null if the segment has no
+   * more complete entries.
+   * @throws IOException thrown if the segment could not be read, is not a
+   * segment, or is damaged.
+   */
+  public Map<String, String> next() throws IOException {
+    if (this.input == null) {
+      return null;
+    }
+    try {
+      // A completed segment only ends after its last entry.
+      this.input.mark(1);
+      if (this.input.read() < 0) {
+        this.input = null;
+        return null;
+      }
+      this.input.reset();
+      int size = this.input.readInt();
+      if (size < 0) {
+        throw new IOException("The spool segment is corrupt.");
+      }
+      Map<String, String> keyValMap = new HashMap<String, String>(size * 4 / 3 + 1);
+      for (int i = 0; i < size; i++) {
+        String key = this.readString();
+        keyValMap.put(key, this.readString());
+      }
+      return keyValMap;
+    }
+    catch (EOFException e) {
+      if (!this.isCut) {
+        throw this.createDamagedException(e);
+      }
+      this.input = null;
+      return null;
+    }
+    catch (ZipException e) {
+      throw this.createDamagedException(e);
+    }
+  }
+
+  /**
+   * Closes the segment.
+   * @throws IOException thrown if the segment could not be closed.
+   */
+  public void close() throws IOException {
+    this.stream.close();
+  }
+
+  /**
+   * Returns the exception reporting that the segment is damaged.
+   * @param cause the exception thrown while reading the segment.
+   * @return the exception to throw.
+   */
+  private IOException createDamagedException(IOException cause) {
+    return new IOException("The spool segment " + this.segment + " is damaged.", cause);
+  }
+
+  /**
+   * Reads a string written as its length and UTF-8 bytes.
+   * @return the string, or null.
+   * @throws IOException thrown if the string could not be read.
+   */
+  private String readString() throws IOException {
+    int length = this.input.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    this.input.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+}
@@ -0,0 +1,274 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The lazy walker that turns a list of file, directory and glob pattern
+ * parameters into the files they name. The walk runs on a background thread and
+ * hands each file found to the reader through a small bounded queue, so files
+ * can be read while the walk continues and the file tree is never listed
+ * up-front. Parameters are walked in order:
+ *
+ * <pre>
+ * 1. A file that exists is returned as it is, whatever its name.
+ * 2. A directory is walked recursively for files named *.xml, *.gz or *.zip.
+ * 3. Any other parameter containing *, ?, [ or { is a glob pattern, such as
+ *    reports/**&#47;*.xml, that is walked from its longest literal directory.
+ *    A /**&#47; in a pattern also matches a single /, as in most shells.
+ * </pre>
+ *
+ * Hidden files are included, but symbolic links to directories are not
+ * followed, so a link cycle can not stall the walk.
+ * @author aito
+ *
+ */
+public class InputFileWalker {
+  /** The number of files the walker may find ahead of the reader. */
+  private static final int QUEUE_SIZE = 256;
+  /** The matcher of the names of the files found in a directory parameter. */
+  private static final PathMatcher DATA_FILE_MATCHER = FileSystems.getDefault()
+      .getPathMatcher("glob:*.{xml,gz,zip}");
+  /** The characters that make a parameter a glob pattern. */
+  private static final String GLOB_CHARACTERS = "*?[{";
+  /** The marker queued after the last file, or after a failure. */
+  private static final File END_OF_WALK = new File("");
+
+  /** The files found, followed by END_OF_WALK. */
+  private BlockingQueue<File> files = new ArrayBlockingQueue<File>(QUEUE_SIZE);
+  /** The exception that stopped the walk, if any. */
+  private volatile IOException error = null;
+  /** The background thread walking the parameters. */
+  private Thread walkerThread = null;
+  /** True once END_OF_WALK has been returned. */
+  private boolean isDone = false;
+
+  /**
+   * Constructs this walker and starts walking the specified parameters.
+   * @param parameters the file, directory and glob pattern parameters.
+   */
+  public InputFileWalker(final List<String> parameters) {
+    this.walkerThread = new Thread(new Runnable() {
+      public void run() {
+        walk(new ArrayList<String>(parameters));
+      }
+    }, "InputFileWalker");
+    this.walkerThread.setDaemon(true);
+    this.walkerThread.start();
+  }
+
+  /**
+   * Returns true if the specified parameter is a glob pattern rather than the
+   * name of a file or directory.
+   * @param parameter the file, directory or glob pattern parameter.
+   * @return true if the parameter is a glob pattern, false if not.
+   */
+  public static boolean isGlob(String parameter) {
+    if (new File(parameter).exists()) {
+      return false;
+    }
+    for (int i = 0; i < parameter.length(); i++) {
+      if (GLOB_CHARACTERS.indexOf(parameter.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns true if the specified file has the name of a data file that is
+   * found when its directory is walked, which is *.xml, *.gz or *.zip.
+   * @param file the file to test.
+   * @return true if the file name is a data file name, false if not.
+   */
+  public static boolean isDataFile(Path file) {
+    return DATA_FILE_MATCHER.matches(file.getFileName());
+  }
+
+  /**
+   * Returns the directory the specified glob pattern is walked from, which is
+   * the directory made of the pattern's leading literal names.
+   * @param pattern the glob pattern.
+   * @return the base directory, which is "." for a pattern such as *.xml.
+   */
+  public static File getBaseDirectory(String pattern) {
+    String normalized = pattern.replace(File.separatorChar, '/');
+    int slash = getBaseLength(normalized);
+    if (slash < 0) {
+      return new File(".");
+    }
+    return new File((slash == 0) ? "/" : normalized.substring(0, slash));
+  }
+
+  /**
+   * Returns the index of the slash that ends the leading literal directory
+   * names of the specified pattern.
+   * @param pattern the glob pattern, which uses '/' as the separator.
+   * @return the index of the slash, or -1 if the pattern has no literal
+   * directory.
+   */
+  private static int getBaseLength(String pattern) {
+    int end = pattern.length();
+    for (int i = 0; i < pattern.length(); i++) {
+      if (GLOB_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+        end = i;
+        break;
+      }
+    }
+    return pattern.lastIndexOf('/', end);
+  }
+
+  /**
+   * Returns the next file found, waiting for the walk if necessary.
+   * @return the next file, or null if all parameters have been walked.
+   * @throws IOException thrown if a directory could not be read or a pattern
+   * or directory matched no files.
+   * @throws InterruptedException thrown if the calling thread is interrupted.
+   */
+  public File nextFile() throws IOException, InterruptedException {
+    if (this.isDone) {
+      return null;
+    }
+    File file = this.files.take();
+    if (file == END_OF_WALK) {
+      this.isDone = true;
+      if (this.error != null) {
+        throw this.error;
+      }
+      return null;
+    }
+    return file;
+  }
+
+  /** Stops the walk if it has not finished. */
+  public void close() {
+    this.walkerThread.interrupt();
+  }
+
+  /**
+   * Walks each of the specified parameters in order and queues the files
+   * found, followed by END_OF_WALK.
+   * @param parameters the file, directory and glob pattern parameters.
+   */
+  private void walk(List<String> parameters) {
+    try {
+      for (String parameter : parameters) {
+        File file = new File(parameter);
+        int found = 0;
+        if (file.isDirectory()) {
+          found = this.walkDirectory(file.toPath(), DATA_FILE_MATCHER, null, true,
+              Integer.MAX_VALUE);
+        }
+        else if (isGlob(parameter)) {
+          found = this.walkPattern(parameter);
+        }
+        else {
+          this.files.put(file);
+          found = 1;
+        }
+        if (found == 0) {
+          throw new IOException("No files match '" + parameter + "'.");
+        }
+      }
+    }
+    catch (IOException e) {
+      this.error = e;
+    }
+    catch (InterruptedException e) {
+      return;
+    }
+    try {
+      this.files.put(END_OF_WALK);
+    }
+    catch (InterruptedException e) { //NOPMD
+      // The reader has closed this walker and no longer reads the queue.
+    }
+  }
+
+  /**
+   * Walks the base directory of the specified glob pattern and queues each file
+   * matching the pattern. The walk only descends as deep as the pattern can
+   * match, unless the pattern contains **.
+   * @param pattern the glob pattern.
+   * @return the number of files found.
+   * @throws IOException thrown if a directory could not be read.
+   * @throws InterruptedException thrown if the walk is stopped.
+   */
+  private int walkPattern(String pattern) throws IOException, InterruptedException {
+    String glob = pattern.replace(File.separatorChar, '/');
+    File baseDirectory = getBaseDirectory(glob);
+    if (!baseDirectory.isDirectory()) {
+      throw new IOException("The directory '" + baseDirectory + "' does not exist.");
+    }
+    if (getBaseLength(glob) < 0) {
+      glob = "./" + glob;
+    }
+
+    String remainder = glob.substring(getBaseLength(glob) + 1);
+    int maxDepth = Integer.MAX_VALUE;
+    if (!remainder.contains("**")) {
+      maxDepth = remainder.split("/").length;
+    }
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    PathMatcher shallowMatcher = null;
+    if (glob.contains("/**/")) {
+      shallowMatcher = FileSystems.getDefault().getPathMatcher(
+          "glob:" + glob.replace("/**/", "/"));
+    }
+    return this.walkDirectory(Paths.get(baseDirectory.getPath()), matcher, shallowMatcher,
+        false, maxDepth);
+  }
+
+  /**
+   * Walks the specified directory and its subdirectories, one directory stream
+   * at a time, and queues each regular file matching either matcher.
+   * @param directory the directory to walk.
+   * @param matcher the matcher the files are tested with.
+   * @param shallowMatcher a second matcher, or null.
+   * @param isNameMatch true if the matchers test file names, false if they test
+   * whole paths.
+   * @param maxDepth the depth of the deepest files that are tested, where the
+   * files in the specified directory are at depth 1.
+   * @return the number of files found.
+   * @throws IOException thrown if a directory could not be read.
+   * @throws InterruptedException thrown if the walk is stopped.
+   */
+  private int walkDirectory(Path directory, PathMatcher matcher, PathMatcher shallowMatcher,
+      boolean isNameMatch, int maxDepth) throws IOException, InterruptedException {
+    int found = 0;
+    DirectoryStream<Path> stream = Files.newDirectoryStream(directory);
+    try {
+      for (Path path : stream) {
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+          if (maxDepth > 1) {
+            found += this.walkDirectory(path, matcher, shallowMatcher, isNameMatch,
+                maxDepth - 1);
+          }
+        }
+        else if (Files.isRegularFile(path)) {
+          Path matched = isNameMatch ? path.getFileName() : path;
+          if (matcher.matches(matched)
+              || (shallowMatcher != null && shallowMatcher.matches(matched))) {
+            this.files.put(path.toFile());
+            found++;
+          }
+        }
+      }
+    }
+    finally {
+      stream.close();
+    }
+    return found;
+  }
+}
@@ -0,0 +1,129 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * The sink that writes each entry as one line of a JSON-lines file, so the
+ * converted data can be bulk loaded elsewhere. Each line is a JSON object with
+ * a string member for each key of the entry, in the order of the entry's
+ * mapping, and null values are written as JSON nulls. The file is written in
+ * UTF-8 through a large buffer, which is flushed at each sync.
+ * @author aito
+ *
+ */
+public class JsonLinesEntrySink implements EntrySink {
+  /** The size of the output buffer in characters. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+  /** The hexadecimal digits used to escape control characters. */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /** The file the entries are written to. */
+  private File file = null;
+  /** The writer of the file. */
+  private Writer writer = null;
+
+  /**
+   * Creates the specified file, replacing any file of the same name.
+   * @param file the file the entries are written to.
+   * @throws IOException thrown if the file could not be created.
+   */
+  public JsonLinesEntrySink(File file) throws IOException {
+    this.file = file;
+    this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+        "UTF-8"), BUFFER_SIZE);
+  }
+
+  /**
+   * Writes the specified entry as one line.
+   * @param keyValMap the key-value mapping of the entry.
+   * @throws IOException thrown if the entry could not be written.
+   */
+  public void write(Map<String, String> keyValMap) throws IOException {
+    this.writer.write('{');
+    boolean isFirst = true;
+    for (Map.Entry<String, String> keyVal : keyValMap.entrySet()) {
+      if (!isFirst) {
+        this.writer.write(',');
+      }
+      isFirst = false;
+      this.writeString(keyVal.getKey());
+      this.writer.write(':');
+      this.writeString(keyVal.getValue());
+    }
+    this.writer.write("}\n");
+  }
+
+  /**
+   * Flushes the buffered lines to the file.
+   * @throws IOException thrown if the lines could not be written.
+   */
+  public void sync() throws IOException {
+    this.writer.flush();
+  }
+
+  /**
+   * Flushes the buffered lines and closes the file.
+   * @throws IOException thrown if the file could not be closed.
+   */
+  public void close() throws IOException {
+    this.writer.close();
+  }
+
+  /**
+   * Returns the description of this sink used in messages.
+   * @return the name of the file.
+   */
+  @Override
+  public String toString() {
+    return this.file.toString();
+  }
+
+  /**
+   * Writes the specified string as a quoted JSON string. Runs of characters
+   * that need no escaping are written at once.
+   * @param string the string, or null.
+   * @throws IOException thrown if the string could not be written.
+   */
+  private void writeString(String string) throws IOException {
+    if (string == null) {
+      this.writer.write("null");
+      return;
+    }
+    this.writer.write('"');
+    int start = 0;
+    for (int i = 0; i < string.length(); i++) {
+      char character = string.charAt(i);
+      if (character >= 0x20 && character != '"' && character != '\\') {
+        continue;
+      }
+      this.writer.write(string, start, i - start);
+      start = i + 1;
+      this.writer.write('\\');
+      if (character == '"' || character == '\\') {
+        this.writer.write(character);
+      }
+      else if (character == '\n') {
+        this.writer.write('n');
+      }
+      else if (character == '\r') {
+        this.writer.write('r');
+      }
+      else if (character == '\t') {
+        this.writer.write('t');
+      }
+      else {
+        this.writer.write("u00");
+        this.writer.write(HEX_DIGITS[character >> 4]);
+        this.writer.write(HEX_DIGITS[character & 0xf]);
+      }
+    }
+    this.writer.write(string, start, string.length() - start);
+    this.writer.write('"');
+  }
+}
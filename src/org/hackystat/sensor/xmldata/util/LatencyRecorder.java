@@ -0,0 +1,61 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Arrays;
+
+/**
+ * The recorder of latencies, such as the time taken by each send to the
+ * sensorbase, which reports their percentiles. Every latency is kept, so the
+ * percentiles are exact. The recorder can be shared by many threads.
+ * @author aito
+ *
+ */
+public class LatencyRecorder {
+  /** The initial length of the array of latencies. */
+  private static final int INITIAL_CAPACITY = 256;
+
+  /** The recorded latencies in nanoseconds, in the order they were recorded. */
+  private long[] latencies = new long[INITIAL_CAPACITY];
+  /** The number of recorded latencies. */
+  private int count = 0;
+
+  /**
+   * Records the specified latency.
+   * @param nanos the latency in nanoseconds.
+   */
+  public synchronized void record(long nanos) {
+    if (this.count == this.latencies.length) {
+      this.latencies = Arrays.copyOf(this.latencies, this.count * 2);
+    }
+    this.latencies[this.count++] = nanos;
+  }
+
+  /**
+   * Returns the number of recorded latencies.
+   * @return the number of latencies.
+   */
+  public synchronized int getCount() {
+    return this.count;
+  }
+
+  /**
+   * Returns the specified percentile of the recorded latencies, which is the
+   * smallest latency that is not exceeded by the given percent of them.
+   * @param percent the percentile, from 0 to 100.
+   * @return the latency in nanoseconds, or 0 if none were recorded.
+   */
+  public synchronized long getPercentile(double percent) {
+    if (this.count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(this.latencies, this.count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percent / 100 * this.count);
+    return sorted[Math.min(Math.max(rank, 1), this.count) - 1];
+  }
+
+  /** Removes every recorded latency. */
+  public synchronized void clear() {
+    this.latencies = new long[INITIAL_CAPACITY];
+    this.count = 0;
+  }
+}
@@ -0,0 +1,331 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The memory-mapped view of a single xmldata file that can be cut into byte
+ * ranges at Entry element boundaries. Because the xmldata format is a flat run
+ * of Entry elements, each range can be wrapped in synthetic XmlData and Entries
+ * elements and parsed on its own, which allows one large file to be parsed by
+ * several threads at once. Split points are found by scanning the mapped bytes
+ * forward from the previous split point to each evenly spaced offset, and
+ * taking the next '&lt;Entry' tag. The scan skips comments, CDATA sections and
+ * processing instructions, whose text may contain what looks like a tag, so a
+ * file is scanned once up to its last split point, and never parsed
+ * up-front.
+ * <p>
+ * Only files in an ASCII-compatible encoding (UTF-8, US-ASCII or ISO-8859-1)
+ * without a document type declaration are split. Other files are returned as
+ * a single range, which is the whole file.
+ * @author aito
+ *
+ */
+public class MappedXmlDataFile {
+  /** The largest range that is mapped at once, which must fit in an int. */
+  private static final long MAX_RANGE_SIZE = 1L << 30;
+  /** The size of each window mapped while searching for a split point. */
+  private static final int SEARCH_WINDOW_SIZE = 1 << 20;
+  /** The bytes that start each Entry element. */
+  private static final byte[] ENTRY_TAG = { '<', 'E', 'n', 't', 'r', 'y' };
+  /** The bytes that start a comment. */
+  private static final byte[] COMMENT_START = { '<', '!', '-', '-' };
+  /** The bytes that end a comment. */
+  private static final byte[] COMMENT_END = { '-', '-', '>' };
+  /** The bytes that start a CDATA section. */
+  private static final byte[] CDATA_START = { '<', '!', '[', 'C', 'D', 'A', 'T', 'A', '[' };
+  /** The bytes that end a CDATA section. */
+  private static final byte[] CDATA_END = { ']', ']', '>' };
+  /** The bytes that start a processing instruction. */
+  private static final byte[] PI_START = { '<', '?' };
+  /** The bytes that end a processing instruction. */
+  private static final byte[] PI_END = { '?', '>' };
+  /** The longest run of bytes that is matched at once while scanning. */
+  private static final int MAX_MATCH_LENGTH = CDATA_START.length;
+  /** The encodings whose markup bytes are plain ASCII. */
+  private static final String[] SPLITTABLE_ENCODINGS = { "UTF-8", "US-ASCII", "ASCII",
+      "ISO-8859-1" };
+
+  /** The mapped file. */
+  private File file = null;
+  /** The channel used to map the file. */
+  private FileChannel channel = null;
+  /** The file used to open the channel. */
+  private RandomAccessFile randomAccessFile = null;
+  /** The size of the file in bytes. */
+  private long size = 0;
+  /** The sorted start offsets of each range; the first range starts at 0. */
+  private List<Long> rangeStarts = new ArrayList<Long>();
+  /** The encoding declared by the file, which is used by the synthetic wrappers. */
+  private String encoding = "UTF-8";
+
+  /**
+   * Constructs this instance with the specified file, which is treated as a
+   * single range until it is split.
+   * @param file the specified xmldata file.
+   * @throws IOException thrown if the file could not be opened.
+   */
+  public MappedXmlDataFile(File file) throws IOException {
+    this.file = file;
+    this.randomAccessFile = new RandomAccessFile(file, "r");
+    this.channel = this.randomAccessFile.getChannel();
+    this.size = this.channel.size();
+    this.rangeStarts.add(Long.valueOf(0));
+  }
+
+  /**
+   * Cuts this file into the specified number of ranges, or more if a range
+   * would otherwise be too large to map. Fewer ranges are created if the file
+   * does not contain enough entries, and a single range is kept if the file
+   * cannot be split safely or a range would still be too large to map. Every
+   * range of a file cut into more than one range can be opened.
+   * @param count the requested number of ranges.
+   * @return the number of ranges the file was cut into.
+   * @throws IOException thrown if the file could not be mapped.
+   */
+  public int split(int count) throws IOException {
+    this.rangeStarts.clear();
+    this.rangeStarts.add(Long.valueOf(0));
+    long firstEntry = this.findEntryTag(0, 0);
+    if (firstEntry < 0 || !this.isSplittable(firstEntry)) {
+      return 1;
+    }
+
+    long rangeCount = Math.max(count, (this.size + MAX_RANGE_SIZE - 1) / MAX_RANGE_SIZE);
+    long previousStart = firstEntry;
+    for (long i = 1; i < rangeCount; i++) {
+      long start = this.findEntryTag(previousStart + 1, this.size * i / rangeCount);
+      if (start < 0) {
+        break;
+      }
+      this.rangeStarts.add(Long.valueOf(start));
+      previousStart = start;
+    }
+    for (int i = 0; i < this.rangeStarts.size(); i++) {
+      if (this.getRangeEnd(i) - this.rangeStarts.get(i).longValue() > MAX_RANGE_SIZE) {
+        this.rangeStarts.subList(1, this.rangeStarts.size()).clear();
+        return 1;
+      }
+    }
+    return this.rangeStarts.size();
+  }
+
+  /**
+   * Returns the number of ranges this file is cut into.
+   * @return the number of ranges.
+   */
+  public int getRangeCount() {
+    return this.rangeStarts.size();
+  }
+
+  /**
+   * Returns the file mapped by this instance.
+   * @return the file.
+   */
+  public File getFile() {
+    return this.file;
+  }
+
+  /**
+   * Returns a stream over the specified range that is a complete xmldata
+   * document. The first range keeps the file's own prolog and the last range
+   * keeps the file's own closing elements; the missing ends of all other
+   * ranges are synthesized.
+   * @param index the index of the range.
+   * @return the stream containing the range as an xmldata document.
+   * @throws IOException thrown if the range could not be mapped, or is larger
+   * than MAX_RANGE_SIZE, which is only possible for a file that was not split.
+   */
+  public InputStream openRange(int index) throws IOException {
+    long start = this.rangeStarts.get(index).longValue();
+    long end = this.getRangeEnd(index);
+    if (end - start > MAX_RANGE_SIZE) {
+      throw new IOException("The range " + index + " of " + this.file
+          + " is too large to map.");
+    }
+    InputStream stream = new ByteBufferInputStream(this.channel.map(
+        FileChannel.MapMode.READ_ONLY, start, end - start));
+    if (index > 0) {
+      String prefix = "<?xml version=\"1.0\" encoding=\"" + this.encoding
+          + "\"?><XmlData><Entries>";
+      stream = new SequenceInputStream(new ByteArrayInputStream(prefix.getBytes("US-ASCII")),
+          stream);
+    }
+    if (index + 1 < this.rangeStarts.size()) {
+      byte[] suffix = "</Entries></XmlData>".getBytes("US-ASCII");
+      stream = new SequenceInputStream(stream, new ByteArrayInputStream(suffix));
+    }
+    return stream;
+  }
+
+  /**
+   * Returns the offset that ends the specified range.
+   * @param index the index of the range.
+   * @return the start of the next range, or the size of the file.
+   */
+  private long getRangeEnd(int index) {
+    return (index + 1 < this.rangeStarts.size()) ? this.rangeStarts.get(index + 1)
+        .longValue() : this.size;
+  }
+
+  /** Closes the channel of this file. Mapped ranges remain readable. */
+  public void close() {
+    try {
+      this.randomAccessFile.close();
+    }
+    catch (IOException e) { //NOPMD
+      // Nothing else can be done with a file that fails to close.
+    }
+  }
+
+  /**
+   * Returns true if the prolog of this file, which ends at the specified
+   * offset, declares an encoding that can be split and has no document type
+   * declaration. The declared encoding is stored for the synthetic prologs.
+   * @param prologEnd the offset of the first Entry element.
+   * @return true if this file can be split, false if not.
+   * @throws IOException thrown if the prolog could not be mapped.
+   */
+  private boolean isSplittable(long prologEnd) throws IOException {
+    if (prologEnd > SEARCH_WINDOW_SIZE) {
+      return false;
+    }
+    ByteBuffer prolog = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, prologEnd);
+    byte[] bytes = new byte[(int) prologEnd];
+    prolog.get(bytes);
+    if (new String(bytes, "ISO-8859-1").contains("<!DOCTYPE")) {
+      return false;
+    }
+    try {
+      XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(
+          new ByteArrayInputStream(bytes));
+      String declaredEncoding = reader.getCharacterEncodingScheme();
+      reader.close();
+      if (declaredEncoding == null) {
+        return !(bytes.length >= 2 && (bytes[0] == (byte) 0xFE || bytes[0] == (byte) 0xFF));
+      }
+      for (String splittableEncoding : SPLITTABLE_ENCODINGS) {
+        if (splittableEncoding.equalsIgnoreCase(declaredEncoding)) {
+          this.encoding = declaredEncoding;
+          return true;
+        }
+      }
+    }
+    catch (XMLStreamException e) { //NOPMD
+      // An unreadable prolog is reported when the single range is parsed.
+    }
+    return false;
+  }
+
+  /**
+   * Returns the offset of the first Entry start tag at or after the specified
+   * target offset, or -1 if no more Entry elements exist. The scan starts at an
+   * offset outside any comment, CDATA section or processing instruction, and
+   * skips those it passes, so a tag inside one is never taken.
+   * @param from the offset to start scanning from.
+   * @param target the offset the tag must start at or after.
+   * @return the offset of the '&lt;' starting the tag, or -1 if none is found.
+   * @throws IOException thrown if part of the file could not be mapped.
+   */
+  private long findEntryTag(long from, long target) throws IOException {
+    long position = from;
+    byte[] end = null;
+    while (position < this.size) {
+      int length = (int) Math.min(SEARCH_WINDOW_SIZE, this.size - position);
+      boolean isLastWindow = position + length >= this.size;
+      MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, position,
+          length);
+      // Leaves the bytes of a match crossing the boundary to the next window.
+      int limit = isLastWindow ? length : length - MAX_MATCH_LENGTH;
+      int i = 0;
+      while (i < limit) {
+        if (end != null) {
+          if (startsWith(window, i, length, end)) {
+            i += end.length;
+            end = null;
+          }
+          else {
+            i++;
+          }
+        }
+        else if (window.get(i) != '<') {
+          i++;
+        }
+        else if (startsWith(window, i, length, COMMENT_START)) {
+          i += COMMENT_START.length;
+          end = COMMENT_END;
+        }
+        else if (startsWith(window, i, length, CDATA_START)) {
+          i += CDATA_START.length;
+          end = CDATA_END;
+        }
+        else if (startsWith(window, i, length, PI_START)) {
+          i += PI_START.length;
+          end = PI_END;
+        }
+        else if (position + i >= target && isEntryTag(window, i, length)) {
+          return position + i;
+        }
+        else {
+          i++;
+        }
+      }
+      if (isLastWindow) {
+        break;
+      }
+      position += i;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns true if the specified buffer contains an Entry start tag at the
+   * specified index, which excludes elements that only start with 'Entry'.
+   * @param buffer the buffer to test.
+   * @param index the index of the possible '&lt;'.
+   * @param length the number of bytes in the buffer.
+   * @return true if the tag starts at the index, false if not.
+   */
+  private static boolean isEntryTag(ByteBuffer buffer, int index, int length) {
+    if (index + ENTRY_TAG.length >= length || !startsWith(buffer, index, length, ENTRY_TAG)) {
+      return false;
+    }
+    byte next = buffer.get(index + ENTRY_TAG.length);
+    return next == '/' || next == '>' || next == ' ' || next == '\t' || next == '\n'
+        || next == '\r';
+  }
+
+  /**
+   * Returns true if the specified buffer contains the specified bytes at the
+   * specified index.
+   * @param buffer the buffer to test.
+   * @param index the index of the first byte.
+   * @param length the number of bytes in the buffer.
+   * @param bytes the bytes to match.
+   * @return true if the bytes start at the index, false if not.
+   */
+  private static boolean startsWith(ByteBuffer buffer, int index, int length, byte[] bytes) {
+    if (index + bytes.length > length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (buffer.get(index + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,38 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Map;
+
+/**
+ * The sink that discards every entry, which is used to measure the speed of
+ * reading and converting the data without the cost of sending or writing it.
+ * @author aito
+ *
+ */
+public class NullEntrySink implements EntrySink {
+  /**
+   * Discards the specified entry.
+   * @param keyValMap the key-value mapping of the entry.
+   */
+  public void write(Map<String, String> keyValMap) {
+    // The entry is discarded.
+  }
+
+  /** Does nothing, since no entry is kept. */
+  public void sync() {
+    // There is nothing to write.
+  }
+
+  /** Does nothing, since no resource is held. */
+  public void close() {
+    // There is nothing to release.
+  }
+
+  /**
+   * Returns the description of this sink used in messages.
+   * @return the description.
+   */
+  @Override
+  public String toString() {
+    return "the null sink";
+  }
+}
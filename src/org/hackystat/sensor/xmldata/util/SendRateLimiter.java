@@ -0,0 +1,138 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The limiter of the rate that entries are handed to the shells, so a large
+ * run does not flood a sensorbase shared with other sensors. Each entry takes
+ * a permit from a TokenBucket.
+ * <p>
+ * In the adaptive mode, the entries are also sent in batches, and the latency
+ * of each batch, which is the time the shells took to add and send its
+ * entries, tunes the rate and the batch size. A batch slower than the target
+ * latency halves the rate, and every other batch raises it by a twentieth of
+ * the maximum rate, which the rate never exceeds. The batch size is scaled so
+ * a full batch takes about half the target latency, by at most a factor of two
+ * per batch, while the smaller sends of checkpoints and of the end of the data
+ * leave it as it is. The rate thus settles near the highest rate the
+ * sensorbase sustains within the target, and backs off as soon as the
+ * sensorbase slows down.
+ * @author aito
+ *
+ */
+public class SendRateLimiter {
+  /** The number of entries in the first batch of the adaptive mode. */
+  public static final int INITIAL_BATCH_SIZE = 500;
+  /** The smallest batch of the adaptive mode. */
+  static final int MIN_BATCH_SIZE = 50;
+  /** The largest batch of the adaptive mode. */
+  static final int MAX_BATCH_SIZE = 10000;
+  /** The fraction of the maximum rate added after a batch within the target. */
+  private static final double INCREASE_FRACTION = 0.05;
+  /** The factor the rate is multiplied by after a batch over the target. */
+  private static final double DECREASE_FACTOR = 0.5;
+  /** The fraction of the maximum rate that the rate is not lowered below. */
+  private static final double MIN_RATE_FRACTION = 0.01;
+
+  /** The bucket the permits of the entries are taken from. */
+  private TokenBucket bucket = null;
+  /** The entries per second that the rate never exceeds. */
+  private double maxRate = 0;
+  /** The target latency of a send in nanoseconds, or 0 if the rate is fixed. */
+  private long targetLatency = 0;
+  /** The number of entries sent in each batch of the adaptive mode. */
+  private int batchSize = INITIAL_BATCH_SIZE;
+
+  /**
+   * Creates a limiter with a fixed rate.
+   * @param rate the entries per second.
+   */
+  public SendRateLimiter(double rate) {
+    this(rate, 0);
+  }
+
+  /**
+   * Creates a limiter that starts at the specified rate, and adapts it to the
+   * latency of the sends if a target latency is specified.
+   * @param maxRate the entries per second that the rate starts at and never
+   * exceeds.
+   * @param targetLatencyMillis the target latency of a send in milliseconds,
+   * or 0 if the rate is fixed.
+   */
+  public SendRateLimiter(double maxRate, long targetLatencyMillis) {
+    this.bucket = new TokenBucket(maxRate);
+    this.maxRate = maxRate;
+    this.targetLatency = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+  }
+
+  /**
+   * Waits until the next entry can be handed to the shells.
+   * @throws InterruptedException thrown if the waiting thread is interrupted.
+   */
+  public void acquire() throws InterruptedException {
+    this.bucket.acquire(1);
+  }
+
+  /**
+   * Returns true if the rate and the batch size adapt to the latency of the
+   * sends.
+   * @return true if adaptive, false if the rate is fixed.
+   */
+  public boolean isAdaptive() {
+    return this.targetLatency > 0;
+  }
+
+  /**
+   * Returns the current entries per second.
+   * @return the rate.
+   */
+  public double getRate() {
+    return this.bucket.getRate();
+  }
+
+  /**
+   * Returns the number of entries sent in each batch of the adaptive mode.
+   * @return the batch size.
+   */
+  public synchronized int getBatchSize() {
+    return this.batchSize;
+  }
+
+  /**
+   * Returns true if the specified number of unsent entries fills a batch,
+   * which is never the case if the rate is fixed.
+   * @param unsentEntries the number of entries added since the last send.
+   * @return true if the entries should be sent.
+   */
+  public boolean isBatchFull(int unsentEntries) {
+    return this.isAdaptive() && unsentEntries >= this.getBatchSize();
+  }
+
+  /**
+   * Tunes the rate and the batch size from the latency of a batch in the
+   * adaptive mode.
+   * @param entries the number of entries sent.
+   * @param latency the nanoseconds the shells took to add and send the
+   * entries.
+   */
+  public synchronized void recordSend(int entries, long latency) {
+    if (!this.isAdaptive() || entries == 0) {
+      return;
+    }
+    double rate = this.bucket.getRate();
+    if (latency > this.targetLatency) {
+      rate = Math.max(this.maxRate * MIN_RATE_FRACTION, rate * DECREASE_FACTOR);
+    }
+    else {
+      rate = Math.min(this.maxRate, rate + this.maxRate * INCREASE_FRACTION);
+    }
+    this.bucket.setRate(rate);
+
+    if (entries >= this.batchSize) {
+      double scale = (this.targetLatency / 2.0) / Math.max(1, latency);
+      scale = Math.max(0.5, Math.min(2, scale));
+      this.batchSize = (int) Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, Math
+          .round(this.batchSize * scale)));
+    }
+  }
+}
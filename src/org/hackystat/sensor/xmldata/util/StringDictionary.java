@@ -0,0 +1,82 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The dictionary of the strings that repeat across the entries of a run, such
+ * as tools, resources, and attribute names, which gives each string an int id.
+ * An entry can then keep the id of such a string instead of its own copy.
+ * <p>
+ * The dictionary can be shared by many threads. Finding the id of a known
+ * string and finding the string of an id take no lock, and only adding a new
+ * string does. The id of null is NULL_ID, and strings are never removed.
+ * @author aito
+ *
+ */
+public class StringDictionary {
+  /** The id of null. */
+  public static final int NULL_ID = 0;
+  /** The initial length of the array of strings. */
+  private static final int INITIAL_CAPACITY = 64;
+
+  /** The id of each string. */
+  private ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+  /** The strings indexed by their ids, which is replaced when it is full. */
+  private volatile String[] strings = new String[INITIAL_CAPACITY];
+  /** The number of ids given, including NULL_ID. */
+  private int size = 1;
+
+  /**
+   * Returns the id of the specified string, which is added to this dictionary
+   * if it is new.
+   * @param string the string, or null.
+   * @return the id of the string.
+   */
+  public int getId(String string) {
+    if (string == null) {
+      return NULL_ID;
+    }
+    Integer id = this.ids.get(string);
+    return (id == null) ? this.add(string) : id.intValue();
+  }
+
+  /**
+   * Returns the string of the specified id, which was returned by getId.
+   * @param id the id of the string.
+   * @return the string, or null if the id is NULL_ID.
+   */
+  public String getString(int id) {
+    return this.strings[id];
+  }
+
+  /**
+   * Returns the number of strings in this dictionary.
+   * @return the number of strings, which does not count null.
+   */
+  public synchronized int size() {
+    return this.size - 1;
+  }
+
+  /**
+   * Adds the specified string unless another thread has just added it. The
+   * string is stored before its id is published, so any thread given the id
+   * finds the string.
+   * @param string the string to add.
+   * @return the id of the string.
+   */
+  private synchronized int add(String string) {
+    Integer id = this.ids.get(string);
+    if (id != null) {
+      return id.intValue();
+    }
+    String[] newStrings = this.strings;
+    if (this.size == newStrings.length) {
+      newStrings = Arrays.copyOf(newStrings, newStrings.length * 2);
+    }
+    newStrings[this.size] = string;
+    this.strings = newStrings;
+    this.ids.put(string, Integer.valueOf(this.size));
+    return this.size++;
+  }
+}
@@ -0,0 +1,34 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the AsyncMessageWriter writes every message in order once it is
+ * flushed.
+ * @author aito
+ *
+ */
+public class TestAsyncMessageWriter {
+  /** Tests if more messages than the queue holds are all written in order. */
+  @Test
+  public void testFlush() {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    AsyncMessageWriter writer = new AsyncMessageWriter(stream);
+    writer.flush();
+    Assert.assertEquals("Nothing should be written before a message.", 0, stream.size());
+
+    StringBuilder expected = new StringBuilder();
+    String separator = System.getProperty("line.separator");
+    for (int i = 0; i < 10000; i++) {
+      writer.write("Message " + i);
+      expected.append("Message ").append(i).append(separator);
+    }
+    writer.write(null);
+    expected.append("null").append(separator);
+    writer.flush();
+    Assert.assertEquals("The messages are incorrect.", expected.toString(), stream.toString());
+  }
+}
@@ -0,0 +1,31 @@
+package org.hackystat.sensor.xmldata.util;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the AttributeNameTable returns one canonical name and key for each
+ * attribute name.
+ * @author aito
+ *
+ */
+public class TestAttributeNameTable {
+  /** Tests if equal names share the same QName and key instances. */
+  @Test
+  public void testCanonicalNames() {
+    AttributeNameTable table = new AttributeNameTable();
+    QName name = table.getName(new String("Timestamp"));
+    Assert.assertEquals("The name is incorrect.", new QName("Timestamp"), name);
+    Assert.assertSame("Equal names should share a QName.", name, table.getName(new String(
+        "Timestamp")));
+    Assert.assertEquals("The key is incorrect.", "Timestamp", table.getKey(name));
+
+    QName namespaced = new QName("http://example.org", "Size");
+    String key = table.getKey(namespaced);
+    Assert.assertEquals("The key is incorrect.", "{http://example.org}Size", key);
+    Assert.assertSame("Equal names should share a key.", key, table.getKey(new QName(
+        "http://example.org", "Size")));
+  }
+}
@@ -0,0 +1,96 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the CheckpointJournal records and restores progress as intended.
+ * @author aito
+ *
+ */
+public class TestCheckpointJournal {
+  /** The temporary journal file. */
+  private File file = null;
+
+  /**
+   * Creates the temporary journal file.
+   * @throws Exception if the file could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.file = File.createTempFile("xmldata", ".journal");
+  }
+
+  /** Deletes the temporary journal file. */
+  @After
+  public void tearDown() {
+    this.file.delete();
+  }
+
+  /**
+   * Tests if a resumed journal returns the progress of the earlier run, and if
+   * a journal that is not resumed starts again.
+   * @throws Exception if the journal could not be written or read.
+   */
+  @Test
+  public void testResume() throws Exception {
+    CheckpointJournal journal = new CheckpointJournal(this.file, false);
+    journal.recordEntries("a.xml", 10);
+    journal.recordCompleted("a.xml", 15);
+    journal.recordEntries("b.xml", 20);
+    journal.sync();
+    Assert.assertFalse("Records of the same run should not be used.", journal
+        .isCompleted("a.xml"));
+    journal.close();
+
+    journal = new CheckpointJournal(this.file, true);
+    Assert.assertTrue("The completed file was not restored.", journal.isCompleted("a.xml"));
+    Assert.assertEquals("A completed file has no partial progress.", 0, journal
+        .getSentEntries("a.xml"));
+    Assert.assertEquals("The entries of the completed file were not restored.", 15, journal
+        .getCompletedEntries("a.xml"));
+    Assert.assertFalse("An incomplete file should not be completed.", journal
+        .isCompleted("b.xml"));
+    Assert.assertEquals("The partial progress was not restored.", 20, journal
+        .getSentEntries("b.xml"));
+    journal.close();
+
+    journal = new CheckpointJournal(this.file, false);
+    Assert.assertFalse("A journal that is not resumed should start again.", journal
+        .isCompleted("a.xml"));
+    journal.close();
+    Assert.assertEquals("A journal that is not resumed should be emptied.", 0, this.file
+        .length());
+  }
+
+  /**
+   * Tests if a record cut short by a crash is ignored and does not corrupt the
+   * records appended after it.
+   * @throws Exception if the journal could not be written or read.
+   */
+  @Test
+  public void testCutRecord() throws Exception {
+    OutputStream stream = new FileOutputStream(this.file);
+    stream.write("F\ta.xml\nE\t5\tb.xml\nE\t12".getBytes("UTF-8"));
+    stream.close();
+
+    CheckpointJournal journal = new CheckpointJournal(this.file, true);
+    Assert.assertTrue("The first record was not restored.", journal.isCompleted("a.xml"));
+    Assert.assertEquals("The cut record should be ignored.", 5, journal.getSentEntries("b.xml"));
+    Assert.assertEquals("A completed record without a count has no entries.", 0, journal
+        .getCompletedEntries("a.xml"));
+    journal.recordCompleted("b.xml", 8);
+    journal.close();
+
+    journal = new CheckpointJournal(this.file, true);
+    Assert.assertTrue("The record after the cut record was lost.", journal
+        .isCompleted("b.xml"));
+    journal.close();
+  }
+}
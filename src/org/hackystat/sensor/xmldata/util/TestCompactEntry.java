@@ -0,0 +1,35 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if a CompactEntry restores the key-value mapping it was created from.
+ * @author aito
+ *
+ */
+public class TestCompactEntry {
+  /** Tests if a mapping with and without the encoded keys is restored. */
+  @Test
+  public void testToKeyValMap() {
+    StringDictionary dictionary = new StringDictionary();
+    Map<String, String> keyValMap = new HashMap<String, String>();
+    keyValMap.put("Tool", "Ant");
+    keyValMap.put("Resource", null);
+    keyValMap.put("SensorDataType", "Build");
+    keyValMap.put("Timestamp", "2007-03-05T17:13:43.290-10:00");
+    keyValMap.put("Result", "Success");
+    Assert.assertEquals("The mapping should be restored.", keyValMap, new CompactEntry(
+        keyValMap, dictionary).toKeyValMap(dictionary));
+
+    Map<String, String> otherMap = new HashMap<String, String>();
+    otherMap.put("Runtime", "2007-03-05T17:13:43.290-10:00");
+    otherMap.put("Result", "Failure");
+    Assert.assertEquals("The mapping should be restored.", otherMap, new CompactEntry(otherMap,
+        dictionary).toKeyValMap(dictionary));
+    Assert.assertEquals("The repeated strings should be added once.", 5, dictionary.size());
+  }
+}
@@ -0,0 +1,108 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the CompressedInput detects and reads compressed files as intended.
+ * @author aito
+ *
+ */
+public class TestCompressedInput {
+  /** The contents written to each test file. */
+  private static final String CONTENTS = "<XmlData><Entries></Entries></XmlData>";
+  /** The temporary test file. */
+  private File file = null;
+
+  /**
+   * Creates the temporary test file.
+   * @throws Exception if the file could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.file = File.createTempFile("xmldata", ".dat");
+  }
+
+  /** Deletes the temporary test file. */
+  @After
+  public void tearDown() {
+    this.file.delete();
+  }
+
+  /**
+   * Tests if plain files are detected and read as they are.
+   * @throws Exception if the file could not be written or read.
+   */
+  @Test
+  public void testPlain() throws Exception {
+    OutputStream stream = new FileOutputStream(this.file);
+    stream.write(CONTENTS.getBytes("UTF-8"));
+    stream.close();
+    Assert.assertEquals("The format is incorrect.", CompressedInput.Format.PLAIN,
+        CompressedInput.getFormat(this.file));
+    Assert.assertEquals("The contents are incorrect.", CONTENTS, this.readLine());
+  }
+
+  /**
+   * Tests if gzip files are detected and decompressed while they are read.
+   * @throws Exception if the file could not be written or read.
+   */
+  @Test
+  public void testGzip() throws Exception {
+    OutputStream stream = new GZIPOutputStream(new FileOutputStream(this.file));
+    stream.write(CONTENTS.getBytes("UTF-8"));
+    stream.close();
+    Assert.assertEquals("The format is incorrect.", CompressedInput.Format.GZIP,
+        CompressedInput.getFormat(this.file));
+    Assert.assertEquals("The contents are incorrect.", CONTENTS, this.readLine());
+  }
+
+  /**
+   * Tests if zip archives are detected and can not be opened as one document.
+   * @throws Exception if the file could not be written.
+   */
+  @Test
+  public void testZip() throws Exception {
+    ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(this.file));
+    stream.putNextEntry(new ZipEntry("testdata.xml"));
+    stream.write(CONTENTS.getBytes("UTF-8"));
+    stream.close();
+    Assert.assertEquals("The format is incorrect.", CompressedInput.Format.ZIP,
+        CompressedInput.getFormat(this.file));
+    try {
+      CompressedInput.open(this.file);
+      Assert.fail("A zip archive should not be opened as a single document.");
+    }
+    catch (IOException e) {
+      System.out.println("Opening a zip archive threw an exception.");
+    }
+  }
+
+  /**
+   * Returns the first line of the test file, read through the CompressedInput.
+   * @return the first line.
+   * @throws IOException if the file could not be read.
+   */
+  private String readLine() throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(CompressedInput
+        .open(this.file), "UTF-8"));
+    try {
+      return reader.readLine();
+    }
+    finally {
+      reader.close();
+    }
+  }
+}
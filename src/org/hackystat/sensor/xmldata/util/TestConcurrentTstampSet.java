@@ -0,0 +1,90 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the ConcurrentTstampSet returns unique timestamps, from one thread
+ * and from many.
+ * @author aito
+ *
+ */
+public class TestConcurrentTstampSet {
+  /** Tests if taken timestamps are moved to the next free timestamp. */
+  @Test
+  public void testGetUniqueTstamp() {
+    ConcurrentTstampSet tstampSet = new ConcurrentTstampSet();
+    Assert.assertEquals("A new timestamp should not change.", 1000L, tstampSet
+        .getUniqueTstamp(1000L));
+    Assert.assertEquals("A taken timestamp should be incremented.", 1001L, tstampSet
+        .getUniqueTstamp(1000L));
+    Assert.assertEquals("Every taken timestamp should be skipped.", 1002L, tstampSet
+        .getUniqueTstamp(1000L));
+    Assert.assertEquals("A free timestamp after taken ones should not change.", 1003L,
+        tstampSet.getUniqueTstamp(1003L));
+    Assert.assertEquals("The smallest long should be accepted.", Long.MIN_VALUE, tstampSet
+        .getUniqueTstamp(Long.MIN_VALUE));
+    Assert.assertEquals("The smallest long should be taken.", Long.MIN_VALUE + 1, tstampSet
+        .getUniqueTstamp(Long.MIN_VALUE));
+    Assert.assertEquals("The size is incorrect.", 6, tstampSet.size());
+    Assert.assertEquals("A taken timestamp should skip the ones taken after it.", 1004L,
+        tstampSet.getUniqueTstamp(1000L));
+    Assert.assertEquals("A timestamp in a taken run should skip the run.", 1005L, tstampSet
+        .getUniqueTstamp(1002L));
+    Assert.assertEquals("A free timestamp below a run should not change.", 999L, tstampSet
+        .getUniqueTstamp(999L));
+
+    for (long i = 0; i < 100000; i++) {
+      Assert.assertTrue("The timestamp " + i + " was not added.", tstampSet.add(2000000 + i * 7));
+    }
+    for (long i = 0; i < 100000; i++) {
+      Assert.assertTrue("The timestamp " + i + " is missing.", tstampSet.contains(2000000 + i * 7));
+    }
+    Assert.assertFalse("A timestamp should not be added twice.", tstampSet.add(2007000L));
+    Assert.assertEquals("The size is incorrect.", 100009, tstampSet.size());
+  }
+
+  /**
+   * Tests if threads asking for the same timestamp at once are each given a
+   * different timestamp, and if no timestamp is skipped.
+   * @throws Exception if a thread is interrupted.
+   */
+  @Test
+  public void testConcurrentTstamps() throws Exception {
+    final ConcurrentTstampSet tstampSet = new ConcurrentTstampSet();
+    final int threadCount = 8;
+    final int tstampCount = 20000;
+    final boolean[] isTaken = new boolean[threadCount * tstampCount];
+    final List<String> errors = new ArrayList<String>();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < threadCount; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < tstampCount; j++) {
+            int offset = (int) (tstampSet.getUniqueTstamp(5000L) - 5000L);
+            synchronized (isTaken) {
+              if (offset < 0 || offset >= isTaken.length || isTaken[offset]) {
+                errors.add("The timestamp offset " + offset + " was returned twice.");
+              }
+              else {
+                isTaken[offset] = true;
+              }
+            }
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertTrue(errors.toString(), errors.isEmpty());
+    Assert.assertEquals("Every timestamp should be taken once.", isTaken.length, tstampSet
+        .size());
+  }
+}
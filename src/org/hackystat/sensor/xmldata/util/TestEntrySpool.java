@@ -0,0 +1,198 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the EntrySpool writes segments that the EntrySpoolReader reads back,
+ * if a segment cut short by a crash is still read, and if a damaged segment is
+ * reported.
+ * @author aito
+ *
+ */
+public class TestEntrySpool {
+  /** The spool directory used by each test. */
+  private File directory = null;
+
+  /**
+   * Creates an empty spool directory.
+   * @throws IOException if the directory could not be created.
+   */
+  @Before
+  public void setUp() throws IOException {
+    this.directory = File.createTempFile("TestEntrySpool", "");
+    this.directory.delete();
+  }
+
+  /** Deletes the spool directory. */
+  @After
+  public void tearDown() {
+    File[] files = this.directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    this.directory.delete();
+  }
+
+  /**
+   * Tests if spooled entries are read back in order from the completed
+   * segments.
+   * @throws IOException if the spool could not be written or read.
+   */
+  @Test
+  public void testWriteAndRead() throws IOException {
+    EntrySpool spool = new EntrySpool(this.directory);
+    spool.write(this.createEntry("r1"));
+    spool.write(this.createEntry(null));
+    spool.sync();
+    Assert.assertTrue("An open segment should not be replayed.", EntrySpool.getSegments(
+        this.directory).isEmpty());
+    spool.close();
+    spool.write(this.createEntry("r3"));
+    spool.close();
+    Assert.assertEquals("The entry count is incorrect.", 3, spool.getEntryCount());
+
+    List<File> segments = EntrySpool.getSegments(this.directory);
+    Assert.assertEquals("There should be two segments.", 2, segments.size());
+    EntrySpoolReader reader = new EntrySpoolReader(segments.get(0));
+    Assert.assertEquals("The first entry is incorrect.", this.createEntry("r1"), reader
+        .next());
+    Assert.assertEquals("The null value was not kept.", this.createEntry(null), reader.next());
+    Assert.assertNull("The first segment has two entries.", reader.next());
+    reader.close();
+    reader = new EntrySpoolReader(segments.get(1));
+    Assert.assertEquals("The second segment is out of order.", this.createEntry("r3"), reader
+        .next());
+    reader.close();
+  }
+
+  /**
+   * Tests if a segment left open by a crash is completed when the spool is
+   * opened again, and read up to its last complete entry.
+   * @throws IOException if the spool could not be written or read.
+   */
+  @Test
+  public void testCrashedSegment() throws IOException {
+    EntrySpool spool = new EntrySpool(this.directory);
+    spool.write(this.createEntry("r1"));
+    spool.sync();
+    File openSegment = this.directory.listFiles()[0];
+    int firstLength = (int) openSegment.length();
+    spool.write(this.createEntry("r2"));
+    spool.sync();
+
+    // Cuts the synced segment short in the middle of its last entry.
+    byte[] bytes = new byte[(int) openSegment.length()];
+    FileInputStream input = new FileInputStream(openSegment);
+    input.read(bytes);
+    input.close();
+    FileOutputStream output = new FileOutputStream(openSegment);
+    output.write(bytes, 0, firstLength + (bytes.length - firstLength) / 2);
+    output.close();
+
+    new EntrySpool(this.directory).close();
+    List<File> segments = EntrySpool.getSegments(this.directory);
+    Assert.assertEquals("The open segment was not completed.", 1, segments.size());
+    Assert.assertTrue("The open segment should be marked as cut.", EntrySpool.isCut(segments
+        .get(0)));
+    EntrySpoolReader reader = new EntrySpoolReader(segments.get(0));
+    Assert.assertEquals("The first entry is incorrect.", this.createEntry("r1"), reader
+        .next());
+    Assert.assertNull("The cut entry should not be read.", reader.next());
+    reader.close();
+  }
+
+  /**
+   * Tests if a completed segment that fails its checksum or ends early throws
+   * an IOException instead of ending quietly.
+   * @throws IOException if the spool could not be written.
+   */
+  @Test
+  public void testDamagedSegment() throws IOException {
+    EntrySpool spool = new EntrySpool(this.directory);
+    spool.write(this.createEntry("r1"));
+    spool.write(this.createEntry("r2"));
+    spool.close();
+    File segment = EntrySpool.getSegments(this.directory).get(0);
+    Assert.assertFalse("A completed segment is not cut.", EntrySpool.isCut(segment));
+    byte[] bytes = new byte[(int) segment.length()];
+    FileInputStream input = new FileInputStream(segment);
+    input.read(bytes);
+    input.close();
+
+    // Damages the checksum in the gzip trailer, which precedes the 4 byte size.
+    bytes[bytes.length - 8] ^= 0xff;
+    this.writeBytes(segment, bytes, bytes.length);
+    this.assertDamaged(segment, 2);
+
+    // Cuts the completed segment short in the middle of its compressed data.
+    bytes[bytes.length - 8] ^= 0xff;
+    this.writeBytes(segment, bytes, bytes.length / 2);
+    this.assertDamaged(segment, 0);
+  }
+
+  /**
+   * Asserts that reading the specified segment throws an IOException after the
+   * specified number of entries at most.
+   * @param segment the damaged segment.
+   * @param maxEntries the number of entries that may be read before the damage.
+   * @throws IOException if the segment could not be opened.
+   */
+  private void assertDamaged(File segment, int maxEntries) throws IOException {
+    EntrySpoolReader reader = null;
+    int entries = 0;
+    try {
+      reader = new EntrySpoolReader(segment);
+      while (reader.next() != null) {
+        entries++;
+      }
+      Assert.fail("The damaged segment should not end quietly.");
+    }
+    catch (IOException e) {
+      Assert.assertTrue("Too many entries were read.", entries <= maxEntries);
+    }
+    finally {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Writes the first length bytes of the specified array to the specified file.
+   * @param file the file.
+   * @param bytes the bytes.
+   * @param length the number of bytes to write.
+   * @throws IOException if the file could not be written.
+   */
+  private void writeBytes(File file, byte[] bytes, int length) throws IOException {
+    FileOutputStream output = new FileOutputStream(file);
+    output.write(bytes, 0, length);
+    output.close();
+  }
+
+  /**
+   * Returns an entry with the specified resource.
+   * @param resource the resource, or null.
+   * @return the key-value mapping of the entry.
+   */
+  private Map<String, String> createEntry(String resource) {
+    Map<String, String> keyValMap = new HashMap<String, String>();
+    keyValMap.put("Tool", "Ant");
+    keyValMap.put("Resource", resource);
+    keyValMap.put("SensorDataType", "Build");
+    return keyValMap;
+  }
+}
@@ -0,0 +1,136 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the InputFileWalker finds the files named by its parameters.
+ * @author aito
+ *
+ */
+public class TestInputFileWalker {
+  /** The temporary directory containing the test file tree. */
+  private File root = null;
+
+  /**
+   * Creates the temporary file tree.
+   * @throws Exception if the tree could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.root = File.createTempFile("xmldata", "");
+    this.root.delete();
+    this.createFile("a.xml");
+    this.createFile("notes.txt");
+    this.createFile("reports/b.xml");
+    this.createFile("reports/2007/c.xml");
+    this.createFile("reports/2007/d.xml.gz");
+  }
+
+  /** Deletes the temporary file tree. */
+  @After
+  public void tearDown() {
+    this.delete(this.root);
+  }
+
+  /**
+   * Tests if a directory is walked recursively for data files.
+   * @throws Exception if the walk fails.
+   */
+  @Test
+  public void testDirectory() throws Exception {
+    Assert.assertEquals("The files found are incorrect.", Arrays.asList("a.xml",
+        "reports/2007/c.xml", "reports/2007/d.xml.gz", "reports/b.xml"), this.walk(this.root
+        .getPath()));
+  }
+
+  /**
+   * Tests if glob patterns match files at the intended depths.
+   * @throws Exception if the walk fails.
+   */
+  @Test
+  public void testGlob() throws Exception {
+    Assert.assertEquals("The files found by ** are incorrect.", Arrays.asList(
+        "reports/2007/c.xml", "reports/b.xml"), this.walk(this.root + "/reports/**/*.xml"));
+    Assert.assertEquals("The files found by * are incorrect.", Arrays.asList("a.xml"), this
+        .walk(this.root + "/*.xml"));
+    Assert.assertEquals("The files found by */* are incorrect.", Arrays.asList(
+        "reports/2007/c.xml"), this.walk(this.root + "/reports/*/?.xml"));
+  }
+
+  /**
+   * Tests if a pattern that matches no files fails the walk.
+   * @throws Exception if the walk fails unexpectedly.
+   */
+  @Test
+  public void testNoMatches() throws Exception {
+    Assert.assertTrue("The pattern should be a glob.", InputFileWalker.isGlob(this.root
+        + "/*.json"));
+    Assert.assertEquals("The base directory is incorrect.", this.root, InputFileWalker
+        .getBaseDirectory(this.root + "/*.json"));
+    try {
+      this.walk(this.root + "/*.json");
+      Assert.fail("A pattern without matches should fail.");
+    }
+    catch (IOException e) {
+      System.out.println("A pattern without matches threw an exception.");
+    }
+  }
+
+  /**
+   * Returns the sorted paths, relative to the test root, of the files found by
+   * the specified parameter.
+   * @param parameter the file, directory or glob pattern parameter.
+   * @return the list of relative paths.
+   * @throws Exception if the walk fails.
+   */
+  private List<String> walk(String parameter) throws Exception {
+    List<String> paths = new ArrayList<String>();
+    InputFileWalker walker = new InputFileWalker(Arrays.asList(parameter));
+    try {
+      for (File file = walker.nextFile(); file != null; file = walker.nextFile()) {
+        String path = file.getPath().substring(this.root.getPath().length() + 1);
+        paths.add(path.replace(File.separatorChar, '/'));
+      }
+    }
+    finally {
+      walker.close();
+    }
+    Collections.sort(paths);
+    return paths;
+  }
+
+  /**
+   * Creates an empty file, and its directories, under the test root.
+   * @param path the relative path of the file.
+   * @throws IOException if the file could not be created.
+   */
+  private void createFile(String path) throws IOException {
+    File file = new File(this.root, path);
+    file.getParentFile().mkdirs();
+    file.createNewFile();
+  }
+
+  /**
+   * Deletes the specified file or directory tree.
+   * @param file the file or directory to delete.
+   */
+  private void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        this.delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -0,0 +1,58 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the JsonLinesEntrySink writes each entry as one line of escaped
+ * JSON.
+ * @author aito
+ *
+ */
+public class TestJsonLinesEntrySink {
+  /**
+   * Tests if entries with special characters and null values are written as
+   * valid JSON lines.
+   * @throws IOException if the file could not be written or read.
+   */
+  @Test
+  public void testWrite() throws IOException {
+    File file = File.createTempFile("TestJsonLinesEntrySink", ".jsonl");
+    try {
+      JsonLinesEntrySink sink = new JsonLinesEntrySink(file);
+      Map<String, String> keyValMap = new LinkedHashMap<String, String>();
+      keyValMap.put("Tool", "Ant");
+      keyValMap.put("Resource", "C:\\src\\\"Foo\".java");
+      keyValMap.put("Log", "line1\nline2\t\u0001\u00e9");
+      keyValMap.put("Result", null);
+      sink.write(keyValMap);
+      keyValMap.clear();
+      sink.write(keyValMap);
+      sink.close();
+
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(
+          file), "UTF-8"));
+      try {
+        Assert.assertEquals("The first line is incorrect.", "{\"Tool\":\"Ant\","
+            + "\"Resource\":\"C:\\\\src\\\\\\\"Foo\\\".java\","
+            + "\"Log\":\"line1\\nline2\\t\\u0001\u00e9\",\"Result\":null}", reader.readLine());
+        Assert.assertEquals("The empty entry is incorrect.", "{}", reader.readLine());
+        Assert.assertNull("There should be two lines.", reader.readLine());
+      }
+      finally {
+        reader.close();
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package org.hackystat.sensor.xmldata.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the LatencyRecorder reports the nearest-rank percentiles of the
+ * recorded latencies.
+ * @author aito
+ *
+ */
+public class TestLatencyRecorder {
+  /** Tests the percentiles of latencies recorded out of order. */
+  @Test
+  public void testGetPercentile() {
+    LatencyRecorder recorder = new LatencyRecorder();
+    Assert.assertEquals("An empty recorder should report 0.", 0, recorder.getPercentile(50));
+    for (int i = 1000; i >= 1; i--) {
+      recorder.record(i);
+    }
+    Assert.assertEquals("The count is incorrect.", 1000, recorder.getCount());
+    Assert.assertEquals("The median is incorrect.", 500, recorder.getPercentile(50));
+    Assert.assertEquals("The 99th percentile is incorrect.", 990, recorder.getPercentile(99));
+    Assert.assertEquals("The maximum is incorrect.", 1000, recorder.getPercentile(100));
+    Assert.assertEquals("The minimum is incorrect.", 1, recorder.getPercentile(0));
+
+    recorder.clear();
+    Assert.assertEquals("The recorder was not cleared.", 0, recorder.getCount());
+  }
+}
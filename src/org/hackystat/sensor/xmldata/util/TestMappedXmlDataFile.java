@@ -0,0 +1,190 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+
+import org.hackystat.sensor.xmldata.jaxb.Entry;
+import org.hackystat.sensor.xmldata.jaxb.ObjectFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the MappedXmlDataFile splits files at Entry boundaries as intended.
+ * @author aito
+ *
+ */
+public class TestMappedXmlDataFile {
+  /** The number of entries written to the test file. */
+  private static final int ENTRY_COUNT = 1000;
+  /** The temporary xmldata file. */
+  private File file = null;
+
+  /**
+   * Creates the temporary xmldata file.
+   * @throws Exception if the file could not be written.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.file = File.createTempFile("xmldata", ".xml");
+    this.write("UTF-8", "");
+  }
+
+  /** Deletes the temporary xmldata file. */
+  @After
+  public void tearDown() {
+    this.file.delete();
+  }
+
+  /**
+   * Tests if the ranges of a split file contain every entry exactly once and in
+   * file order.
+   * @throws Exception if the file could not be split or parsed.
+   */
+  @Test
+  public void testSplit() throws Exception {
+    MappedXmlDataFile mappedFile = new MappedXmlDataFile(this.file);
+    Assert.assertEquals("The file was not split into 4 ranges.", 4, mappedFile.split(4));
+    this.assertEntries(mappedFile);
+  }
+
+  /**
+   * Tests if a file whose comments and processing instructions contain Entry
+   * tags is only split at its real entries.
+   * @throws Exception if the file could not be split or parsed.
+   */
+  @Test
+  public void testSplitSkipsComments() throws Exception {
+    this.write("UTF-8", "<!-- <Entry Resource=\"comment\"/> --><?pi <Entry ?>");
+    MappedXmlDataFile mappedFile = new MappedXmlDataFile(this.file);
+    Assert.assertEquals("The file was not split into 16 ranges.", 16, mappedFile.split(16));
+    this.assertRangeStarts(mappedFile);
+    this.assertEntries(mappedFile);
+  }
+
+  /**
+   * Tests if a file whose CDATA sections contain Entry tags is only split at
+   * its real entries.
+   * @throws Exception if the file could not be split or read.
+   */
+  @Test
+  public void testSplitSkipsCdata() throws Exception {
+    this.write("UTF-8", "<![CDATA[ <Entry Resource=\"cdata\"/> ]]>");
+    MappedXmlDataFile mappedFile = new MappedXmlDataFile(this.file);
+    Assert.assertEquals("The file was not split into 16 ranges.", 16, mappedFile.split(16));
+    this.assertRangeStarts(mappedFile);
+    mappedFile.close();
+  }
+
+  /**
+   * Asserts that the ranges of the specified file contain every entry exactly
+   * once and in file order, and closes the file.
+   * @param mappedFile the split file.
+   * @throws Exception if the file could not be parsed.
+   */
+  private void assertEntries(MappedXmlDataFile mappedFile) throws Exception {
+    Unmarshaller unmarshaller = JAXBContext.newInstance(ObjectFactory.class)
+        .createUnmarshaller();
+    int index = 0;
+    for (int i = 0; i < mappedFile.getRangeCount(); i++) {
+      XmlDataEntryReader reader = new XmlDataEntryReader(mappedFile.openRange(i), unmarshaller);
+      for (Entry entry = reader.nextEntry(); entry != null; entry = reader.nextEntry()) {
+        Assert.assertEquals("An entry is missing or out of order.", "r" + index, entry
+            .getResource());
+        index++;
+      }
+      reader.close();
+    }
+    mappedFile.close();
+    Assert.assertEquals("The number of entries is incorrect.", ENTRY_COUNT, index);
+  }
+
+  /**
+   * Asserts that every range of the specified file after the first starts
+   * with a real entry.
+   * @param mappedFile the split file.
+   * @throws Exception if a range could not be read.
+   */
+  private void assertRangeStarts(MappedXmlDataFile mappedFile) throws Exception {
+    String prefix = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><XmlData><Entries>";
+    for (int i = 1; i < mappedFile.getRangeCount(); i++) {
+      InputStream stream = mappedFile.openRange(i);
+      byte[] bytes = new byte[prefix.length() + 12];
+      new DataInputStream(stream).readFully(bytes);
+      stream.close();
+      Assert.assertEquals("A range does not start at an entry.", prefix + "<Entry Tool=",
+          new String(bytes, "UTF-8"));
+    }
+  }
+
+  /**
+   * Tests if a file in an encoding that is not ASCII-compatible is kept as a
+   * single range.
+   * @throws Exception if the file could not be written or mapped.
+   */
+  @Test
+  public void testUnsplittableEncoding() throws Exception {
+    this.write("UTF-16", "");
+    MappedXmlDataFile mappedFile = new MappedXmlDataFile(this.file);
+    Assert.assertEquals("A UTF-16 file should not be split.", 1, mappedFile.split(4));
+    mappedFile.close();
+  }
+
+  /**
+   * Tests if a file that cannot be split, and is too large to map as one
+   * range, is refused by openRange instead of being mapped. The file is sparse,
+   * so it takes no disk space.
+   * @throws Exception if the file could not be written or mapped.
+   */
+  @Test
+  public void testUnsplittableLargeFile() throws Exception {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(this.file), "UTF-8");
+    writer.write("<?xml version=\"1.0\"?>\n<!DOCTYPE XmlData>\n<XmlData>\n<Entries>\n"
+        + "<Entry Tool=\"Ant\"/>\n");
+    writer.close();
+    RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+    randomAccessFile.setLength(3L << 30);
+    randomAccessFile.close();
+    MappedXmlDataFile mappedFile = new MappedXmlDataFile(this.file);
+    try {
+      Assert.assertEquals("A file with a DOCTYPE should not be split.", 1, mappedFile.split(4));
+      mappedFile.openRange(0);
+      Assert.fail("A range larger than can be mapped should be refused.");
+    }
+    catch (IOException e) {
+      Assert.assertTrue("The message should name the file.", e.getMessage().contains(
+          this.file.getName()));
+    }
+    finally {
+      mappedFile.close();
+    }
+  }
+
+  /**
+   * Writes the test entries to the temporary file in the specified encoding,
+   * each preceded by the specified markup.
+   * @param encoding the specified encoding.
+   * @param markup the markup written before each entry.
+   * @throws Exception if the file could not be written.
+   */
+  private void write(String encoding, String markup) throws Exception {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(this.file), encoding);
+    writer.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>\n<XmlData>\n<Entries>\n");
+    for (int i = 0; i < ENTRY_COUNT; i++) {
+      writer.write("  " + markup + "<Entry Tool=\"Ant\" Resource=\"r" + i
+          + "\" SensorDataType=\"Build\"/>\n");
+    }
+    writer.write("</Entries>\n</XmlData>\n");
+    writer.close();
+  }
+}
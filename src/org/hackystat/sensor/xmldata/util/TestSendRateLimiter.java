@@ -0,0 +1,59 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the SendRateLimiter tunes its rate and batch size from the latency
+ * of the sends.
+ * @author aito
+ *
+ */
+public class TestSendRateLimiter {
+  /** Tests if a fixed limiter neither batches nor adapts. */
+  @Test
+  public void testFixedRate() {
+    SendRateLimiter limiter = new SendRateLimiter(1000);
+    Assert.assertFalse("The limiter should not be adaptive.", limiter.isAdaptive());
+    Assert.assertFalse("A fixed limiter should not batch.", limiter.isBatchFull(1000000));
+    limiter.recordSend(1000, TimeUnit.SECONDS.toNanos(10));
+    Assert.assertEquals("A fixed rate should not change.", 1000, limiter.getRate(), 0);
+  }
+
+  /** Tests if slow sends back off and fast sends recover up to the maximum. */
+  @Test
+  public void testAdaptiveRate() {
+    SendRateLimiter limiter = new SendRateLimiter(1000, 100);
+    int batchSize = limiter.getBatchSize();
+    Assert.assertTrue("The first batch should be full.", limiter.isBatchFull(batchSize));
+    limiter.recordSend(batchSize, TimeUnit.MILLISECONDS.toNanos(400));
+    Assert.assertEquals("A slow send should halve the rate.", 500, limiter.getRate(), 0.001);
+    Assert.assertEquals("A slow send should halve the batch.", batchSize / 2, limiter
+        .getBatchSize());
+
+    limiter.recordSend(limiter.getBatchSize(), TimeUnit.MILLISECONDS.toNanos(50));
+    Assert.assertEquals("A fast send should raise the rate.", 550, limiter.getRate(), 0.001);
+    Assert.assertEquals("A send at half the target should keep the batch.", batchSize / 2,
+        limiter.getBatchSize());
+    limiter.recordSend(10, TimeUnit.MILLISECONDS.toNanos(1));
+    Assert.assertEquals("A partial batch should keep the batch.", batchSize / 2, limiter
+        .getBatchSize());
+
+    for (int i = 0; i < 100; i++) {
+      limiter.recordSend(limiter.getBatchSize(), TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    Assert.assertEquals("The rate should not exceed the maximum.", 1000, limiter.getRate(),
+        0.001);
+    Assert.assertEquals("The batch should not exceed the maximum.",
+        SendRateLimiter.MAX_BATCH_SIZE, limiter.getBatchSize());
+    for (int i = 0; i < 100; i++) {
+      limiter.recordSend(limiter.getBatchSize(), TimeUnit.SECONDS.toNanos(1));
+    }
+    Assert.assertEquals("The rate should not fall below the minimum.", 10, limiter.getRate(),
+        0.001);
+    Assert.assertEquals("The batch should not fall below the minimum.",
+        SendRateLimiter.MIN_BATCH_SIZE, limiter.getBatchSize());
+  }
+}
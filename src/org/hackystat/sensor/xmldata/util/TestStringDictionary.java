@@ -0,0 +1,68 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the StringDictionary gives each string one id, from one thread and
+ * from many.
+ * @author aito
+ *
+ */
+public class TestStringDictionary {
+  /** Tests if equal strings share an id and ids return their strings. */
+  @Test
+  public void testGetId() {
+    StringDictionary dictionary = new StringDictionary();
+    Assert.assertEquals("Null should have the null id.", StringDictionary.NULL_ID, dictionary
+        .getId(null));
+    Assert.assertNull("The null id should return null.", dictionary
+        .getString(StringDictionary.NULL_ID));
+    int id = dictionary.getId("Ant");
+    Assert.assertEquals("Equal strings should share an id.", id, dictionary.getId(new String(
+        "Ant")));
+    Assert.assertEquals("The string is incorrect.", "Ant", dictionary.getString(id));
+    for (int i = 0; i < 1000; i++) {
+      Assert.assertEquals("The string is incorrect.", "r" + i, dictionary.getString(dictionary
+          .getId("r" + i)));
+    }
+    Assert.assertEquals("The size is incorrect.", 1001, dictionary.size());
+  }
+
+  /**
+   * Tests if threads adding the same strings at once are given the same ids.
+   * @throws Exception if a thread is interrupted.
+   */
+  @Test
+  public void testConcurrentIds() throws Exception {
+    final StringDictionary dictionary = new StringDictionary();
+    final int[][] ids = new int[4][5000];
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < ids.length; i++) {
+      final int[] threadIds = ids[i];
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < threadIds.length; j++) {
+            threadIds[j] = dictionary.getId("s" + j);
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (int j = 0; j < ids[0].length; j++) {
+      for (int[] threadIds : ids) {
+        Assert.assertEquals("The ids of a string should be equal.", ids[0][j], threadIds[j]);
+      }
+      Assert.assertEquals("The string is incorrect.", "s" + j, dictionary.getString(ids[0][j]));
+    }
+    Assert.assertEquals("The size is incorrect.", ids[0].length, dictionary.size());
+  }
+}
@@ -0,0 +1,39 @@
+package org.hackystat.sensor.xmldata.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the TokenBucket allows a short burst and then paces the permits at
+ * its rate.
+ * @author aito
+ *
+ */
+public class TestTokenBucket {
+  /** The nanoseconds in a second. */
+  private static final long SECOND = 1000000000L;
+
+  /** Tests if permits beyond the burst wait for the rate. */
+  @Test
+  public void testReserve() {
+    TokenBucket bucket = new TokenBucket(1000, 0);
+    Assert.assertEquals("The burst should not wait.", 0, bucket.reserve(100, 0));
+    Assert.assertEquals("The debt should wait for the rate.", SECOND / 10, bucket.reserve(
+        100, 0));
+    Assert.assertEquals("The paid debt should not wait.", 0, bucket.reserve(50, SECOND / 5));
+
+    // Idle time only saves up to the burst.
+    Assert.assertEquals("The burst should not grow while idle.", SECOND / 10, bucket.reserve(
+        200, 10 * SECOND));
+  }
+
+  /** Tests if a lower rate keeps the permits within the smaller burst. */
+  @Test
+  public void testSetRate() {
+    TokenBucket bucket = new TokenBucket(1000, System.nanoTime());
+    bucket.setRate(10);
+    Assert.assertEquals("The rate was not set.", 10, bucket.getRate(), 0);
+    Assert.assertTrue("The burst should shrink with the rate.", bucket.reserve(2, System
+        .nanoTime()) > 0);
+  }
+}
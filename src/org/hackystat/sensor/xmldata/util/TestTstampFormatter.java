@@ -0,0 +1,67 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Random;
+
+import org.hackystat.utilities.tstamp.Tstamp;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the TstampFormatter formats timestamps exactly as the
+ * XMLGregorianCalendar made by Tstamp, and parses them back.
+ * @author aito
+ *
+ */
+public class TestTstampFormatter {
+  /** Tests timestamps around day, year, and formatting boundaries. */
+  @Test
+  public void testFormat() {
+    long[] tstamps = { 0L, -1L, 1L, 999L, 1000L, 86399999L, 86400000L, 951782400000L,
+        1700000000000L, 1709164800000L, -12219292800000L, -12219292800001L,
+        -62135596800000L, 253402300799999L, 253402300800000L };
+    for (long tstamp : tstamps) {
+      Assert.assertEquals("The timestamp " + tstamp + " is formatted incorrectly.", Tstamp
+          .makeTimestamp(tstamp).toString(), TstampFormatter.format(tstamp));
+    }
+  }
+
+  /** Tests if formatted timestamps, in the cached form or not, are parsed back. */
+  @Test
+  public void testParse() {
+    long[] tstamps = { 0L, -1L, 999L, 86399999L, 951782400000L, 1709164800000L,
+        253402300799999L, 253402300800000L, 2000000000000000L };
+    for (long tstamp : tstamps) {
+      Assert.assertEquals("The timestamp " + tstamp + " is parsed incorrectly.", tstamp,
+          TstampFormatter.parse(TstampFormatter.format(tstamp)));
+    }
+    Assert.assertEquals("A UTC timestamp is parsed incorrectly.", 1000L, TstampFormatter
+        .parse("1970-01-01T00:00:01.000Z"));
+    Assert.assertEquals("An offset timestamp is parsed incorrectly.", 1000L, TstampFormatter
+        .parse("1970-01-01T05:30:01.000+05:30"));
+    Assert.assertEquals("A Julian date is parsed incorrectly.", -12219292800000L,
+        TstampFormatter.parse("1582-10-15T00:00:00.000Z"));
+    Assert.assertEquals("A Julian date is parsed incorrectly.", -12219379200000L,
+        TstampFormatter.parse("1582-10-04T00:00:00Z"));
+
+    // Days since 1973 have whole-minute offsets in every time zone.
+    Random random = new Random(0);
+    for (int i = 0; i < 20000; i++) {
+      long tstamp = 94694400000L + Math.abs(random.nextLong() % 253307606400000L);
+      Assert.assertEquals("The timestamp " + tstamp + " is parsed incorrectly.", tstamp,
+          TstampFormatter.parse(TstampFormatter.format(tstamp)));
+    }
+  }
+
+  /** Tests nearby and distant random timestamps, which use and replace the cached day. */
+  @Test
+  public void testRandomTstamps() {
+    Random random = new Random(0);
+    long tstamp = 1700000000000L;
+    for (int i = 0; i < 20000; i++) {
+      tstamp = (i % 10 == 0) ? random.nextLong() % 253402300800000L : tstamp
+          + random.nextInt(10000000);
+      Assert.assertEquals("The timestamp " + tstamp + " is formatted incorrectly.", Tstamp
+          .makeTimestamp(tstamp).toString(), TstampFormatter.format(tstamp));
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the TstampIndex records timestamps per SensorDataType and resource,
+ * and keeps them across runs.
+ * @author aito
+ *
+ */
+public class TestTstampIndex {
+  /** The temporary index file. */
+  private File file = null;
+
+  /**
+   * Creates the name of the temporary index file.
+   * @throws Exception if the file could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.file = File.createTempFile("xmldata", ".index");
+    this.file.delete();
+  }
+
+  /** Deletes the temporary index file. */
+  @After
+  public void tearDown() {
+    this.file.delete();
+  }
+
+  /**
+   * Tests if timestamps are keyed by SensorDataType and resource, and if they
+   * are still present after the index is reopened.
+   * @throws Exception if the index could not be written or read.
+   */
+  @Test
+  public void testAddAndReopen() throws Exception {
+    TstampIndex index = new TstampIndex(this.file);
+    Assert.assertTrue("A new timestamp should be added.", index.add("Build", "a.java", 1000L));
+    Assert.assertFalse("A timestamp should only be added once.", index.add("Build", "a.java",
+        1000L));
+    Assert.assertTrue("Another resource has its own timestamps.", index.add("Build",
+        "b.java", 1000L));
+    Assert.assertTrue("Another SensorDataType has its own timestamps.", index.add("Commit",
+        "a.java", 1000L));
+    Assert.assertFalse("The timestamp should not be found.", index.contains("Build", "a.java",
+        1001L));
+    index.close();
+
+    index = new TstampIndex(this.file);
+    Assert.assertEquals("The size was not kept.", 3, index.size());
+    Assert.assertTrue("The timestamp was not kept.", index.contains("Build", "a.java", 1000L));
+    Assert.assertFalse("A kept timestamp should not be added.", index.add("Commit", "a.java",
+        1000L));
+    index.close();
+  }
+
+  /**
+   * Tests if the index keeps every timestamp when it grows into a larger file.
+   * @throws Exception if the index could not be written or read.
+   */
+  @Test
+  public void testGrow() throws Exception {
+    TstampIndex index = new TstampIndex(this.file);
+    long initialLength = this.file.length();
+    for (long i = 0; i < 200000; i++) {
+      Assert.assertTrue("The timestamp " + i + " was not added.", index.add("Build", "a.java",
+          i));
+    }
+    index.close();
+    Assert.assertTrue("The index file should have grown.", this.file.length() > initialLength);
+    index = new TstampIndex(this.file);
+    for (long i = 0; i < 200000; i++) {
+      Assert.assertTrue("The timestamp " + i + " is missing.", index.contains("Build",
+          "a.java", i));
+    }
+    Assert.assertEquals("The size is incorrect.", 200000, index.size());
+    index.close();
+  }
+
+  /**
+   * Tests if an index that a killed run left growing, after its file was
+   * extended but before it was rehashed, is rehashed when it is opened.
+   * @throws Exception if the index could not be written or read.
+   */
+  @Test
+  public void testOpenGrowing() throws Exception {
+    TstampIndex index = new TstampIndex(this.file);
+    for (long i = 0; i < 1000; i++) {
+      index.add("Build", "a.java", i);
+    }
+    index.close();
+    long length = this.file.length();
+    RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+    randomAccessFile.writeLong(0x58445447524F5731L);
+    randomAccessFile.setLength(length * 2 - 24);
+    randomAccessFile.close();
+
+    index = new TstampIndex(this.file);
+    Assert.assertEquals("The size is incorrect.", 1000, index.size());
+    for (long i = 0; i < 1000; i++) {
+      Assert.assertTrue("The timestamp " + i + " is missing.", index.contains("Build",
+          "a.java", i));
+    }
+    Assert.assertTrue("A new timestamp should be added.", index.add("Build", "a.java", 1000L));
+    index.close();
+    index = new TstampIndex(this.file);
+    Assert.assertEquals("The rehashed index was not kept.", 1001, index.size());
+    index.close();
+  }
+
+  /**
+   * Tests if a file that is not an index is rejected.
+   * @throws Exception if the file could not be written.
+   */
+  @Test
+  public void testInvalidFile() throws Exception {
+    FileOutputStream stream = new FileOutputStream(this.file);
+    stream.write("<XmlData></XmlData>".getBytes("UTF-8"));
+    stream.close();
+    try {
+      new TstampIndex(this.file);
+      Assert.fail("A file that is not an index should be rejected.");
+    }
+    catch (IOException e) {
+      Assert.assertTrue("The message should name the file.", e.getMessage().contains(
+          this.file.getName()));
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the WindowedTstampSet keeps timestamps unique within its window and
+ * forgets the timestamps older than the window.
+ * @author aito
+ *
+ */
+public class TestWindowedTstampSet {
+  /** Tests if taken timestamps within the window are moved to the next free one. */
+  @Test
+  public void testGetUniqueTstamp() {
+    WindowedTstampSet tstampSet = new WindowedTstampSet(100);
+    Assert.assertEquals("A new timestamp should not change.", 1000L, tstampSet
+        .getUniqueTstamp(1000L));
+    Assert.assertEquals("A taken timestamp should be incremented.", 1001L, tstampSet
+        .getUniqueTstamp(1000L));
+    Assert.assertEquals("A free timestamp in the window should not change.", 950L, tstampSet
+        .getUniqueTstamp(950L));
+    Assert.assertEquals("A taken timestamp should be incremented.", 951L, tstampSet
+        .getUniqueTstamp(950L));
+    Assert.assertEquals("The size is incorrect.", 4, tstampSet.size());
+
+    // Advancing the window forgets the timestamps that fall out of it.
+    Assert.assertEquals("A new highest timestamp should not change.", 1060L, tstampSet
+        .getUniqueTstamp(1060L));
+    Assert.assertFalse("The timestamp 950 should be out of the window.", tstampSet
+        .contains(950L));
+    Assert.assertTrue("The timestamp 1000 should be in the window.", tstampSet.contains(1000L));
+    Assert.assertEquals("The size is incorrect.", 3, tstampSet.size());
+    Assert.assertEquals("A timestamp older than the window should not change.", 950L,
+        tstampSet.getUniqueTstamp(950L));
+    Assert.assertEquals("A large jump should empty the window.", 5000L, tstampSet
+        .getUniqueTstamp(5000L));
+    Assert.assertEquals("The size is incorrect.", 1, tstampSet.size());
+  }
+
+  /** Tests if a run of taken timestamps is skipped without missing a free one. */
+  @Test
+  public void testTakenRun() {
+    WindowedTstampSet tstampSet = new WindowedTstampSet(10000);
+    for (long i = 0; i < 1000; i++) {
+      Assert.assertEquals("The burst should take consecutive timestamps.", 2000L + i,
+          tstampSet.getUniqueTstamp(2000L));
+    }
+    Assert.assertTrue("A free timestamp after the run should be added.", tstampSet
+        .add(3001L));
+    Assert.assertEquals("A timestamp in the run should skip it.", 3000L, tstampSet
+        .getUniqueTstamp(2500L));
+    Assert.assertEquals("Every taken timestamp should be skipped.", 3002L, tstampSet
+        .getUniqueTstamp(2000L));
+    Assert.assertEquals("A free timestamp below the run should not change.", 1999L, tstampSet
+        .getUniqueTstamp(1999L));
+    Assert.assertEquals("A timestamp before the run should skip it.", 3003L, tstampSet
+        .getUniqueTstamp(1999L));
+  }
+
+  /**
+   * Tests if a long run of timestamps stays unique within the window while the
+   * ring is reused many times.
+   */
+  @Test
+  public void testRingReuse() {
+    int window = 1000;
+    WindowedTstampSet tstampSet = new WindowedTstampSet(window);
+    for (int i = 0; i < 100000; i++) {
+      // Two entries share each even millisecond, so every other one is moved.
+      Assert.assertEquals("The timestamp is incorrect.", i, tstampSet.getUniqueTstamp(i - i
+          % 2));
+    }
+    Assert.assertEquals("The set should only hold the window.", window, tstampSet.size());
+  }
+
+  /**
+   * Tests if the timestamps within the window and the size stay those of a
+   * sorted set while the window advances by gaps of every length.
+   */
+  @Test
+  public void testAdvance() {
+    int window = 1000;
+    WindowedTstampSet tstampSet = new WindowedTstampSet(window);
+    TreeSet<Long> expected = new TreeSet<Long>();
+    Random random = new Random(42);
+    long highest = -5000;
+    for (int i = 0; i < 20000; i++) {
+      long tstamp = highest + random.nextInt(window / 2) - window / 4;
+      if (random.nextInt(50) == 0) {
+        tstamp = highest + 1 + random.nextInt(3 * window);
+      }
+      boolean isTracked = tstamp > highest - window;
+      Assert.assertEquals("The timestamp was added incorrectly.", !isTracked
+          || !expected.contains(tstamp), tstampSet.add(tstamp));
+      if (isTracked) {
+        expected.add(tstamp);
+      }
+      highest = Math.max(highest, tstamp);
+      expected.headSet(highest - window + 1).clear();
+      Assert.assertEquals("The size is incorrect.", expected.size(), tstampSet.size());
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.validation.SchemaFactory;
+
+import org.hackystat.sensor.xmldata.jaxb.Entry;
+import org.hackystat.sensor.xmldata.jaxb.ObjectFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests if the XmlDataEntryReader streams entries as intended.
+ * @author aito
+ *
+ */
+public class TestXmlDataEntryReader {
+  /** The unmarshaller, with schema validation, used by the tested readers. */
+  private Unmarshaller unmarshaller = null;
+
+  /**
+   * Sets up each test case.
+   * @throws Exception if the unmarshaller could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.unmarshaller = JAXBContext.newInstance(ObjectFactory.class).createUnmarshaller();
+    File schemaFile = new File(System.getProperty("user.dir"), "xml/schema/xmldata.xsd");
+    this.unmarshaller.setSchema(SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema")
+        .newSchema(schemaFile));
+  }
+
+  /**
+   * Tests if each entry in a valid file is returned in order.
+   * @throws Exception if the test file could not be read.
+   */
+  @Test
+  public void testReadEntries() throws Exception {
+    String testPackage = "src/org/hackystat/sensor/xmldata/testdataset/";
+    File testFile = new File(System.getProperty("user.dir"), testPackage + "testdata.xml");
+    XmlDataEntryReader reader = new XmlDataEntryReader(new FileInputStream(testFile),
+        this.unmarshaller);
+    try {
+      Entry entry = reader.nextEntry();
+      Assert.assertEquals("The first tool is incorrect.", "Eclipse", entry.getTool());
+      Assert.assertEquals("The first resource is incorrect.",
+          "file://c:/svn-google/Stuff.java", entry.getResource());
+      Assert.assertNotNull("The second entry is missing.", reader.nextEntry());
+      Assert.assertNotNull("The third entry is missing.", reader.nextEntry());
+      Assert.assertNull("Only three entries should exist.", reader.nextEntry());
+      Assert.assertEquals("The entry count is incorrect.", 3, reader.getEntryCount());
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Tests if an entry without the required Tool attribute fails schema
+   * validation.
+   * @throws Exception if the reader could not be created.
+   */
+  @Test
+  public void testInvalidEntry() throws Exception {
+    String xml = "<XmlData><Entries><Entry Resource=\"foo\"/></Entries></XmlData>";
+    XmlDataEntryReader reader = this.createReader(xml);
+    try {
+      reader.nextEntry();
+      Assert.fail("An entry without a Tool attribute should not be valid.");
+    }
+    catch (JAXBException e) {
+      reader.close();
+    }
+  }
+
+  /**
+   * Tests if entries that are not validated are read from their attributes,
+   * and if an entry without the required Tool attribute is still rejected.
+   * @throws Exception if the reader could not be created.
+   */
+  @Test
+  public void testUnvalidatedEntries() throws Exception {
+    String xml = "<XmlData><Entries><Entry Tool=\"a\" Resource=\"b\" Foo=\"c\"/>"
+        + "<Entry Resource=\"d\"/></Entries></XmlData>";
+    XmlDataEntryReader reader = this.createReader(xml);
+    reader.setValidationInterval(0);
+    try {
+      Entry entry = reader.nextEntry();
+      Assert.assertEquals("The tool is incorrect.", "a", entry.getTool());
+      Assert.assertEquals("The resource is incorrect.", "b", entry.getResource());
+      Assert.assertEquals("The other attribute is incorrect.", "c", entry
+          .getOtherAttributes().get(new QName("Foo")));
+      reader.nextEntry();
+      Assert.fail("An entry without a Tool attribute should not be accepted.");
+    }
+    catch (JAXBException e) {
+      Assert.assertEquals("The failing entry was not counted.", 1, reader.getEntryCount());
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Tests if documents that do not follow the XmlData/Entries/Entry structure
+   * are rejected.
+   * @throws Exception if an unexpected error occurs.
+   */
+  @Test
+  public void testInvalidStructure() throws Exception {
+    try {
+      this.createReader("<Entries><Entry Tool=\"a\" Resource=\"b\"/></Entries>");
+      Assert.fail("A document without the XmlData element should not be valid.");
+    }
+    catch (XMLStreamException e) {
+      System.out.println("A missing XmlData element threw an exception.");
+    }
+
+    XmlDataEntryReader reader = this.createReader("<XmlData><Entries></Entries></XmlData>");
+    try {
+      reader.nextEntry();
+      Assert.fail("An Entries element without entries should not be valid.");
+    }
+    catch (XMLStreamException e) {
+      reader.close();
+    }
+  }
+
+  /**
+   * Returns a reader over the specified xml string.
+   * @param xml the xml document.
+   * @return the reader instance.
+   * @throws XMLStreamException if the start of the document is invalid.
+   */
+  private XmlDataEntryReader createReader(String xml) throws XMLStreamException {
+    return new XmlDataEntryReader(new ByteArrayInputStream(xml.getBytes()), this.unmarshaller);
+  }
+}
@@ -0,0 +1,57 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+
+import org.hackystat.sensor.xmldata.jaxb.Entry;
+import org.hackystat.sensor.xmldata.jaxb.ObjectFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests if the XmlDataEntryWriter writes entries that can be read again.
+ * @author aito
+ *
+ */
+public class TestXmlDataEntryWriter {
+  /**
+   * Tests if written entries are read back with all of their attributes.
+   * @throws Exception if the entries could not be written or read.
+   */
+  @Test
+  public void testWriteEntries() throws Exception {
+    Entry entry = new Entry();
+    entry.setTool("Ant");
+    entry.setResource("file://foo <&> \"bar\".java");
+    entry.getOtherAttributes().put(new QName("Result"), "Success");
+
+    ByteArrayOutputStream stream = new ByteArrayOutputStream();
+    XmlDataEntryWriter writer = new XmlDataEntryWriter(stream);
+    writer.write(entry);
+    writer.write(entry);
+    Assert.assertEquals("The entry count is incorrect.", 2, writer.getEntryCount());
+    writer.close();
+
+    Unmarshaller unmarshaller = JAXBContext.newInstance(ObjectFactory.class)
+        .createUnmarshaller();
+    XmlDataEntryReader reader = new XmlDataEntryReader(new ByteArrayInputStream(stream
+        .toByteArray()), unmarshaller);
+    try {
+      Entry readEntry = reader.nextEntry();
+      Assert.assertEquals("The tool is incorrect.", "Ant", readEntry.getTool());
+      Assert.assertEquals("The resource is incorrect.", entry.getResource(), readEntry
+          .getResource());
+      Assert.assertEquals("The other attribute is incorrect.", "Success", readEntry
+          .getOtherAttributes().get(new QName("Result")));
+      Assert.assertNotNull("The second entry is missing.", reader.nextEntry());
+      Assert.assertNull("Only two entries should exist.", reader.nextEntry());
+    }
+    finally {
+      reader.close();
+    }
+  }
+}
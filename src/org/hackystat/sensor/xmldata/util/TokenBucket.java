@@ -0,0 +1,107 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The token bucket that limits the rate of an operation to a number of permits
+ * per second. The bucket holds up to a tenth of a second of permits, so a short
+ * burst can use permits saved while the operation was idle. A caller that takes
+ * more permits than the bucket holds goes into debt, and the debt is paid by
+ * waiting. Waits shorter than MIN_SLEEP are deferred until the debt adds up, so
+ * a high rate is not paced by the precision of the sleeps.
+ * @author aito
+ *
+ */
+public class TokenBucket {
+  /** The seconds of permits the bucket can hold. */
+  private static final double BURST_SECONDS = 0.1;
+  /** The shortest wait in nanoseconds that is slept. */
+  private static final long MIN_SLEEP = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /** The permits added per second. */
+  private double rate = 0;
+  /** The permits in the bucket, which is negative while in debt. */
+  private double tokens = 0;
+  /** The time in nanoseconds the permits were last added. */
+  private long refillTime = 0;
+
+  /**
+   * Creates a full bucket with the specified rate.
+   * @param rate the permits added per second, which must be positive.
+   */
+  public TokenBucket(double rate) {
+    this(rate, System.nanoTime());
+  }
+
+  /**
+   * Creates a full bucket with the specified rate at the specified time.
+   * @param rate the permits added per second, which must be positive.
+   * @param now the current time in nanoseconds.
+   */
+  TokenBucket(double rate, long now) {
+    this.rate = rate;
+    this.tokens = this.getCapacity();
+    this.refillTime = now;
+  }
+
+  /**
+   * Returns the permits added per second.
+   * @return the rate.
+   */
+  public synchronized double getRate() {
+    return this.rate;
+  }
+
+  /**
+   * Sets the permits added per second from now on.
+   * @param rate the rate, which must be positive.
+   */
+  public synchronized void setRate(double rate) {
+    this.refill(System.nanoTime());
+    this.rate = rate;
+    this.tokens = Math.min(this.tokens, this.getCapacity());
+  }
+
+  /**
+   * Takes the specified number of permits, and waits until they are paid for.
+   * @param permits the number of permits.
+   * @throws InterruptedException thrown if the waiting thread is interrupted.
+   */
+  public void acquire(int permits) throws InterruptedException {
+    long wait = this.reserve(permits, System.nanoTime());
+    if (wait >= MIN_SLEEP) {
+      TimeUnit.NANOSECONDS.sleep(wait);
+    }
+  }
+
+  /**
+   * Takes the specified number of permits at the specified time.
+   * @param permits the number of permits.
+   * @param now the current time in nanoseconds.
+   * @return the nanoseconds until the debt of the bucket is paid, or 0 if the
+   * bucket is not in debt.
+   */
+  synchronized long reserve(int permits, long now) {
+    this.refill(now);
+    this.tokens -= permits;
+    return (this.tokens >= 0) ? 0 : (long) (-this.tokens / this.rate * 1e9);
+  }
+
+  /**
+   * Adds the permits earned since the last refill, up to the capacity.
+   * @param now the current time in nanoseconds.
+   */
+  private void refill(long now) {
+    this.tokens = Math.min(this.getCapacity(), this.tokens + (now - this.refillTime)
+        * this.rate / 1e9);
+    this.refillTime = now;
+  }
+
+  /**
+   * Returns the number of permits the bucket can hold.
+   * @return the capacity, which is at least one permit.
+   */
+  private double getCapacity() {
+    return Math.max(1, this.rate * BURST_SECONDS);
+  }
+}
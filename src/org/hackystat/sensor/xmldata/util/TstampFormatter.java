@@ -0,0 +1,304 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+import org.hackystat.utilities.tstamp.Tstamp;
+
+/**
+ * The formatter of timestamps, kept as milliseconds since the epoch, into the
+ * string of an XMLGregorianCalendar made by Tstamp.makeTimestamp(), such as
+ * 2007-03-05T17:13:43.290-10:00. The date, the 'T', and the time zone offset
+ * of the last day formatted are kept, so that a timestamp on the same day in
+ * the default time zone only needs its time of day written.
+ * <p>
+ * Only days from 1583 to 9999 with one whole-minute offset are cached, and the
+ * timestamps of any other day, such as the day of a daylight saving change,
+ * are formatted by Tstamp. The formatted timestamps can be parsed back, and
+ * those in the cached form are parsed without creating any objects. The
+ * formatter is safe to use from many threads.
+ * @author aito
+ *
+ */
+public class TstampFormatter {
+  /** The number of milliseconds in a day. */
+  private static final long MILLIS_PER_DAY = 86400000L;
+  /** The number of days from 0000-03-01 to 1970-01-01. */
+  private static final long DAYS_BEFORE_EPOCH = 719468;
+  /** The first year formatted without Tstamp, which is after the Julian calendar. */
+  private static final long FIRST_YEAR = 1583;
+  /** The last year formatted without Tstamp, which has four digits. */
+  private static final long LAST_YEAR = 9999;
+  /** The number of characters of the time of day, HH:mm:ss.SSS. */
+  private static final int TIME_LENGTH = 12;
+  /** The number of characters of the date, 'T' and time of day. */
+  private static final int DATE_TIME_LENGTH = 11 + TIME_LENGTH;
+  /** The pattern of an XMLGregorianCalendar with a year, date and time. */
+  private static final Pattern CALENDAR_PATTERN = Pattern.compile(
+      "(-?\\d{4,})-(\\d\\d)-(\\d\\d)T(\\d\\d):(\\d\\d):(\\d\\d)(?:\\.(\\d+))?"
+          + "(?:Z|([+-])(\\d\\d):(\\d\\d))?");
+  /** The time zone of the formatted timestamps. */
+  private static final TimeZone DEFAULT_ZONE = TimeZone.getDefault();
+
+  /** The last day formatted, which is replaced when another day is formatted. */
+  private static volatile Day lastDay = null;
+
+  /** Prevents the creation of a formatter, which only has static methods. */
+  private TstampFormatter() {
+    // Not instantiated.
+  }
+
+  /**
+   * Returns the specified timestamp in the format of an XMLGregorianCalendar in
+   * the default time zone.
+   * @param tstamp the milliseconds since the epoch.
+   * @return the formatted timestamp.
+   */
+  public static String format(long tstamp) {
+    Day day = lastDay;
+    if (day == null || tstamp < day.start || tstamp >= day.end) {
+      day = Day.create(tstamp);
+      if (day == null) {
+        return Tstamp.makeTimestamp(tstamp).toString();
+      }
+      lastDay = day;
+    }
+    char[] chars = new char[day.prefix.length + TIME_LENGTH + day.suffix.length];
+    System.arraycopy(day.prefix, 0, chars, 0, day.prefix.length);
+    int millis = (int) (tstamp - day.start);
+    int index = day.prefix.length;
+    index = putDigits(chars, index, millis / 3600000, 2);
+    chars[index++] = ':';
+    index = putDigits(chars, index, millis / 60000 % 60, 2);
+    chars[index++] = ':';
+    index = putDigits(chars, index, millis / 1000 % 60, 2);
+    chars[index++] = '.';
+    index = putDigits(chars, index, millis % 1000, 3);
+    System.arraycopy(day.suffix, 0, chars, index, day.suffix.length);
+    return new String(chars);
+  }
+
+  /**
+   * Returns the milliseconds since the epoch of the specified timestamp, which
+   * is in the format of an XMLGregorianCalendar.
+   * @param timestamp the formatted timestamp.
+   * @return the milliseconds since the epoch.
+   * @throws IllegalArgumentException thrown if the timestamp is not in the
+   * format of an XMLGregorianCalendar.
+   */
+  public static long parse(String timestamp) {
+    int length = timestamp.length();
+    int offset = -1;
+    if (length == DATE_TIME_LENGTH + 1 && timestamp.charAt(DATE_TIME_LENGTH) == 'Z') {
+      offset = 0;
+    }
+    else if (length == DATE_TIME_LENGTH + 6 && timestamp.charAt(DATE_TIME_LENGTH + 3) == ':') {
+      int hours = getDigits(timestamp, DATE_TIME_LENGTH + 1, 2);
+      int minutes = getDigits(timestamp, DATE_TIME_LENGTH + 4, 2);
+      char sign = timestamp.charAt(DATE_TIME_LENGTH);
+      if (hours >= 0 && minutes >= 0 && (sign == '+' || sign == '-')) {
+        offset = (hours * 60 + minutes) * 60000 * (sign == '-' ? -1 : 1);
+      }
+    }
+    int year = getDigits(timestamp, 0, 4);
+    int month = getDigits(timestamp, 5, 2);
+    int day = getDigits(timestamp, 8, 2);
+    int hour = getDigits(timestamp, 11, 2);
+    int minute = getDigits(timestamp, 14, 2);
+    int second = getDigits(timestamp, 17, 2);
+    int millis = getDigits(timestamp, 20, 3);
+    if (offset == -1 || year < FIRST_YEAR || month < 1 || month > 12 || day < 1
+        || hour < 0 || minute < 0 || second < 0 || millis < 0
+        || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-'
+        || timestamp.charAt(10) != 'T' || timestamp.charAt(13) != ':'
+        || timestamp.charAt(16) != ':' || timestamp.charAt(19) != '.') {
+      return parseCalendar(timestamp);
+    }
+
+    // Converts the date to a day, with years starting in March.
+    long marchYear = (month <= 2) ? year - 1 : year;
+    long era = marchYear / 400;
+    long yearOfEra = marchYear - era * 400;
+    long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    long epochDay = era * 146097 + dayOfEra - DAYS_BEFORE_EPOCH;
+    return epochDay * MILLIS_PER_DAY + ((hour * 60L + minute) * 60 + second) * 1000 + millis
+        - offset;
+  }
+
+  /**
+   * Returns the milliseconds of the specified timestamp that is not in the
+   * cached form, such as one with a year outside 1583 to 9999. The fields are
+   * combined by a default GregorianCalendar, which uses the Julian calendar
+   * before 1582 as the calendar that Tstamp formats with does.
+   * @param timestamp the formatted timestamp.
+   * @return the milliseconds since the epoch.
+   * @throws IllegalArgumentException thrown if the timestamp is not in the
+   * format of an XMLGregorianCalendar.
+   */
+  private static long parseCalendar(String timestamp) {
+    Matcher matcher = CALENDAR_PATTERN.matcher(timestamp);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException("The timestamp " + timestamp
+          + " could not be parsed.");
+    }
+    long year = Long.parseLong(matcher.group(1));
+    GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+    calendar.clear();
+    calendar.set(Calendar.ERA, (year > 0) ? GregorianCalendar.AD : GregorianCalendar.BC);
+    calendar.set(Calendar.YEAR, (int) Math.abs(year));
+    calendar.set(Calendar.MONTH, Integer.parseInt(matcher.group(2)) - 1);
+    calendar.set(Calendar.DAY_OF_MONTH, Integer.parseInt(matcher.group(3)));
+    calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(matcher.group(4)));
+    calendar.set(Calendar.MINUTE, Integer.parseInt(matcher.group(5)));
+    calendar.set(Calendar.SECOND, Integer.parseInt(matcher.group(6)));
+    if (matcher.group(7) != null) {
+      String fraction = (matcher.group(7) + "00").substring(0, 3);
+      calendar.set(Calendar.MILLISECOND, Integer.parseInt(fraction));
+    }
+    long offset = 0;
+    if (matcher.group(9) != null) {
+      offset = (Long.parseLong(matcher.group(9)) * 60 + Long.parseLong(matcher.group(10)))
+          * 60000 * ("-".equals(matcher.group(8)) ? -1 : 1);
+    }
+    return calendar.getTimeInMillis() - offset;
+  }
+
+  /**
+   * Returns the value of the specified number of decimal digits.
+   * @param string the string containing the digits.
+   * @param index the index of the first digit.
+   * @param digits the number of digits.
+   * @return the value, or -1 if the string does not have the digits.
+   */
+  private static int getDigits(String string, int index, int digits) {
+    if (index + digits > string.length()) {
+      return -1;
+    }
+    int value = 0;
+    for (int i = index; i < index + digits; i++) {
+      int digit = string.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Writes the specified non-negative value as the specified number of
+   * digits, padded with leading zeros.
+   * @param chars the characters written to.
+   * @param index the index of the first digit.
+   * @param value the value to write.
+   * @param digits the number of digits.
+   * @return the index after the last digit.
+   */
+  private static int putDigits(char[] chars, int index, int value, int digits) {
+    int remaining = value;
+    for (int i = index + digits - 1; i >= index; i--) {
+      chars[i] = (char) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    return index + digits;
+  }
+
+  /**
+   * The cached day, which holds the formatted date and time zone offset shared
+   * by the timestamps from its start up to its end.
+   * @author aito
+   *
+   */
+  private static final class Day {
+    /** The first timestamp of the day. */
+    private final long start;
+    /** The first timestamp after the day. */
+    private final long end;
+    /** The date followed by 'T', such as 2007-03-05T. */
+    private final char[] prefix;
+    /** The time zone offset, such as -10:00, or Z if the offset is zero. */
+    private final char[] suffix;
+
+    /**
+     * Constructs a day.
+     * @param start the first timestamp of the day.
+     * @param prefix the date followed by 'T'.
+     * @param suffix the time zone offset.
+     */
+    private Day(long start, char[] prefix, char[] suffix) {
+      this.start = start;
+      this.end = start + MILLIS_PER_DAY;
+      this.prefix = prefix;
+      this.suffix = suffix;
+    }
+
+    /**
+     * Returns the day containing the specified timestamp in the default time
+     * zone, or null if the day must be formatted by Tstamp.
+     * @param tstamp the timestamp.
+     * @return the day, or null.
+     */
+    static Day create(long tstamp) {
+      int offset = DEFAULT_ZONE.getOffset(tstamp);
+      if (offset % 60000 != 0) {
+        return null;
+      }
+      long localMillis = tstamp + offset;
+      long epochDay = localMillis / MILLIS_PER_DAY;
+      if (localMillis % MILLIS_PER_DAY < 0) {
+        epochDay--;
+      }
+      long start = epochDay * MILLIS_PER_DAY - offset;
+      if (DEFAULT_ZONE.getOffset(start) != offset
+          || DEFAULT_ZONE.getOffset(start + MILLIS_PER_DAY - 1) != offset) {
+        return null;
+      }
+
+      // Converts the day to a date, with years starting in March.
+      long days = epochDay + DAYS_BEFORE_EPOCH;
+      long era = (days >= 0 ? days : days - 146096) / 146097;
+      long dayOfEra = days - era * 146097;
+      long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+      long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+      long marchMonth = (5 * dayOfYear + 2) / 153;
+      int day = (int) (dayOfYear - (153 * marchMonth + 2) / 5 + 1);
+      int month = (int) (marchMonth < 10 ? marchMonth + 3 : marchMonth - 9);
+      long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+      if (year < FIRST_YEAR || year > LAST_YEAR) {
+        return null;
+      }
+
+      char[] prefix = new char[11];
+      putDigits(prefix, 0, (int) year, 4);
+      prefix[4] = '-';
+      putDigits(prefix, 5, month, 2);
+      prefix[7] = '-';
+      putDigits(prefix, 8, day, 2);
+      prefix[10] = 'T';
+      return new Day(start, prefix, createSuffix(offset));
+    }
+
+    /**
+     * Returns the specified time zone offset as it ends an XMLGregorianCalendar.
+     * @param offset the offset in milliseconds, which is in whole minutes.
+     * @return the offset, such as -10:00, or Z if the offset is zero.
+     */
+    private static char[] createSuffix(int offset) {
+      if (offset == 0) {
+        return new char[] { 'Z' };
+      }
+      int minutes = Math.abs(offset) / 60000;
+      char[] suffix = new char[6];
+      suffix[0] = (offset < 0) ? '-' : '+';
+      putDigits(suffix, 1, minutes / 60, 2);
+      suffix[3] = ':';
+      putDigits(suffix, 4, minutes % 60, 2);
+      return suffix;
+    }
+  }
+}
@@ -0,0 +1,328 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+/**
+ * The on-disk index of the timestamps given to the entries of each
+ * SensorDataType and resource, which keeps timestamps unique across runs. A
+ * timestamp is added when its entry is converted, not when it is sent. The
+ * index is a memory mapped open addressing table of 64-bit fingerprints, each
+ * the hash of a SensorDataType, resource, and timestamp, so a lookup reads one
+ * or two slots of the mapped file and creates no objects. Two keys sharing a
+ * fingerprint is unlikely enough that its only effect, moving a timestamp that
+ * was free, is accepted.
+ * <p>
+ * The file starts with a header of three longs, the magic number, the number
+ * of slots, and the number of fingerprints, followed by the slots. When the
+ * table is half full the file is extended to twice the slots, remapped, and
+ * rehashed in place, because a mapped file cannot be replaced on every
+ * platform. The magic number marks the file as growing while it is rehashed,
+ * and a file left growing by a run that was killed is rehashed again when it
+ * is opened, which loses at most the one fingerprint being moved. Writes reach
+ * the file through the mapping, and are forced to the disk when the index is
+ * closed. A mapping is only released when it is garbage collected, since Java
+ * cannot unmap a file. The index file should only be used by one run at a
+ * time.
+ * @author aito
+ *
+ */
+public class TstampIndex {
+  /** The number that identifies an index file, which is "XDTNDEX1" in ASCII. */
+  private static final long MAGIC = 0x5844544E44455831L;
+  /** The number that marks an index file being grown, which is "XDTGROW1". */
+  private static final long GROWING_MAGIC = 0x58445447524F5731L;
+  /** The number of longs in the header. */
+  private static final int HEADER_LONGS = 3;
+  /** The position of the number of slots in the header. */
+  private static final int CAPACITY_INDEX = 1;
+  /** The position of the number of fingerprints in the header. */
+  private static final int SIZE_INDEX = 2;
+  /** The number of slots in a new index, which must be a power of two. */
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  /** The largest number of slots that can be mapped. */
+  private static final long MAX_CAPACITY = 1L << 27;
+  /** The value of a slot that holds no fingerprint. */
+  private static final long EMPTY = 0L;
+
+  /** The index file. */
+  private File file = null;
+  /** The slots of the index, preceded by the header. */
+  private LongBuffer slots = null;
+  /** The latest mapping of the index file, which is forced to disk on close. */
+  private MappedByteBuffer mapping = null;
+  /** The number of slots. */
+  private int capacity = 0;
+  /** The number of fingerprints in the slots. */
+  private long size = 0;
+
+  /**
+   * Opens the specified index, or creates it if the file does not exist. An
+   * index that was left growing is rehashed.
+   * @param file the index file.
+   * @throws IOException thrown if the file could not be mapped or is not an
+   * index.
+   */
+  public TstampIndex(File file) throws IOException {
+    this.file = file;
+    if (file.exists() && file.length() > 0) {
+      this.map(file);
+      boolean isGrowing = file.length() >= HEADER_LONGS * 8
+          && this.slots.get(0) == GROWING_MAGIC;
+      if (isGrowing) {
+        // The file may have been extended before its number of slots was set.
+        this.slots.put(CAPACITY_INDEX, file.length() / 8 - HEADER_LONGS);
+      }
+      if (file.length() < HEADER_LONGS * 8 || (this.slots.get(0) != MAGIC && !isGrowing)
+          || file.length() != (HEADER_LONGS + this.slots.get(CAPACITY_INDEX)) * 8
+          || Long.bitCount(this.slots.get(CAPACITY_INDEX)) != 1) {
+        throw new IOException("The file, " + file + ", is not a timestamp index.");
+      }
+      this.capacity = (int) this.slots.get(CAPACITY_INDEX);
+      this.size = this.slots.get(SIZE_INDEX);
+      if (isGrowing) {
+        this.rehash(this.capacity);
+      }
+    }
+    else {
+      this.create(file, INITIAL_CAPACITY);
+    }
+  }
+
+  /**
+   * Adds the specified timestamp to this index for the specified SensorDataType
+   * and resource.
+   * @param sdtName the SensorDataType of the entry.
+   * @param resource the resource of the entry.
+   * @param tstamp the timestamp to add.
+   * @return true if the timestamp was added, false if it was already present.
+   * @throws IOException thrown if the index could not be grown.
+   */
+  public synchronized boolean add(String sdtName, String resource, long tstamp)
+    throws IOException {
+    return this.addFingerprint(fingerprint(hash(sdtName, resource), tstamp));
+  }
+
+  /**
+   * Returns true if the specified timestamp is in this index for the specified
+   * SensorDataType and resource.
+   * @param sdtName the SensorDataType of the entry.
+   * @param resource the resource of the entry.
+   * @param tstamp the timestamp to find.
+   * @return true if the timestamp is in the index, false if not.
+   */
+  public synchronized boolean contains(String sdtName, String resource, long tstamp) {
+    long fingerprint = fingerprint(hash(sdtName, resource), tstamp);
+    int mask = this.capacity - 1;
+    for (int i = (int) fingerprint & mask;; i = (i + 1) & mask) {
+      long slot = this.slots.get(HEADER_LONGS + i);
+      if (slot == EMPTY) {
+        return false;
+      }
+      if (slot == fingerprint) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of timestamps in this index.
+   * @return the number of timestamps.
+   */
+  public synchronized long size() {
+    return this.size;
+  }
+
+  /**
+   * Forces the index to the disk and drops its mapping, which is unmapped once
+   * it is garbage collected. The index should not be used afterwards.
+   */
+  public synchronized void close() {
+    if (this.mapping != null) {
+      this.mapping.force();
+      this.mapping = null;
+      this.slots = null;
+    }
+  }
+
+  /**
+   * Adds the specified fingerprint to the slots, and grows the table if it is
+   * then half full.
+   * @param fingerprint the fingerprint to add.
+   * @return true if the fingerprint was added, false if it was already present.
+   * @throws IOException thrown if the index could not be grown.
+   */
+  private boolean addFingerprint(long fingerprint) throws IOException {
+    int mask = this.capacity - 1;
+    int i = (int) fingerprint & mask;
+    for (long slot = this.slots.get(HEADER_LONGS + i); slot != EMPTY; slot = this.slots
+        .get(HEADER_LONGS + i)) {
+      if (slot == fingerprint) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    this.slots.put(HEADER_LONGS + i, fingerprint);
+    this.slots.put(SIZE_INDEX, ++this.size);
+    if (this.size > this.capacity / 2) {
+      this.grow();
+    }
+    return true;
+  }
+
+  /**
+   * Extends the index file to twice the slots, remaps it, and rehashes the
+   * fingerprints in place. The file is marked as growing until the rehash is
+   * done.
+   * @throws IOException thrown if the file could not be extended or remapped.
+   */
+  private void grow() throws IOException {
+    if (this.capacity * 2L > MAX_CAPACITY) {
+      throw new IOException("The timestamp index, " + this.file + ", is full.");
+    }
+    int oldCapacity = this.capacity;
+    this.slots.put(0, GROWING_MAGIC);
+    this.mapping.force();
+    RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+    try {
+      randomAccessFile.setLength((HEADER_LONGS + oldCapacity * 2L) * 8);
+    }
+    finally {
+      randomAccessFile.close();
+    }
+    this.map(this.file);
+    this.capacity = oldCapacity * 2;
+    this.slots.put(CAPACITY_INDEX, this.capacity);
+    this.rehash(oldCapacity);
+  }
+
+  /**
+   * Moves each fingerprint in the specified number of leading slots to a slot
+   * it probes to at the current capacity, and then marks the file as an index.
+   * A placed fingerprint is never moved again, so a probe only passes over
+   * placed fingerprints, and a fingerprint found in the slot a probe ends at
+   * is taken out and placed next. At most one fingerprint is out of the slots
+   * at a time.
+   * @param unplacedSlots the number of leading slots that may hold fingerprints
+   * that are not placed, where every later slot is empty.
+   */
+  private void rehash(int unplacedSlots) {
+    BitSet placed = new BitSet(this.capacity);
+    int mask = this.capacity - 1;
+    long placedCount = 0;
+    for (int i = 0; i < unplacedSlots; i++) {
+      long fingerprint = this.slots.get(HEADER_LONGS + i);
+      if (fingerprint == EMPTY || placed.get(i)) {
+        continue;
+      }
+      this.slots.put(HEADER_LONGS + i, EMPTY);
+      while (fingerprint != EMPTY) {
+        int j = (int) fingerprint & mask;
+        while (placed.get(j)) {
+          j = (j + 1) & mask;
+        }
+        long displaced = this.slots.get(HEADER_LONGS + j);
+        this.slots.put(HEADER_LONGS + j, fingerprint);
+        placed.set(j);
+        placedCount++;
+        fingerprint = displaced;
+      }
+    }
+    this.size = placedCount;
+    this.slots.put(SIZE_INDEX, this.size);
+    this.slots.put(0, MAGIC);
+  }
+
+  /**
+   * Creates and maps an empty index file with the specified number of slots.
+   * @param newFile the file to create.
+   * @param newCapacity the number of slots, which must be a power of two.
+   * @throws IOException thrown if the file could not be created or mapped.
+   */
+  private void create(File newFile, int newCapacity) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(newFile, "rw");
+    try {
+      randomAccessFile.setLength(0);
+      randomAccessFile.setLength((HEADER_LONGS + (long) newCapacity) * 8);
+    }
+    finally {
+      randomAccessFile.close();
+    }
+    this.map(newFile);
+    this.slots.put(0, MAGIC);
+    this.slots.put(CAPACITY_INDEX, newCapacity);
+    this.slots.put(SIZE_INDEX, 0);
+    this.capacity = newCapacity;
+    this.size = 0;
+  }
+
+  /**
+   * Maps the whole of the specified file. The mapping stays valid after the
+   * file is closed.
+   * @param mappedFile the file to map.
+   * @throws IOException thrown if the file could not be mapped.
+   */
+  private void map(File mappedFile) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(mappedFile, "rw");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      this.mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+      this.mapping.order(ByteOrder.BIG_ENDIAN);
+      this.slots = this.mapping.asLongBuffer();
+    }
+    finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * Returns the 64-bit FNV-1a hash of the specified SensorDataType and
+   * resource, separated by a character that is in neither.
+   * @param sdtName the SensorDataType, or null.
+   * @param resource the resource, or null.
+   * @return the hash.
+   */
+  private static long hash(String sdtName, String resource) {
+    long hash = hash(0xCBF29CE484222325L, sdtName);
+    hash = (hash ^ 0xFFFF) * 0x100000001B3L;
+    return hash(hash, resource);
+  }
+
+  /**
+   * Returns the specified FNV-1a hash continued with the characters of the
+   * specified string.
+   * @param hash the hash so far.
+   * @param value the string to hash, where null hashes as the empty string.
+   * @return the hash.
+   */
+  private static long hash(long hash, String value) {
+    long result = hash;
+    if (value != null) {
+      for (int i = 0; i < value.length(); i++) {
+        result = (result ^ value.charAt(i)) * 0x100000001B3L;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the fingerprint of the specified key hash and timestamp, which is
+   * mixed so that its low bits select a slot evenly, and is never EMPTY.
+   * @param keyHash the hash of the SensorDataType and resource.
+   * @param tstamp the timestamp.
+   * @return the fingerprint.
+   */
+  private static long fingerprint(long keyHash, long tstamp) {
+    long fingerprint = keyHash ^ (tstamp * 0x9E3779B97F4A7C15L);
+    fingerprint = (fingerprint ^ (fingerprint >>> 33)) * 0xFF51AFD7ED558CCDL;
+    fingerprint = (fingerprint ^ (fingerprint >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    fingerprint ^= fingerprint >>> 33;
+    return (fingerprint == EMPTY) ? 1L : fingerprint;
+  }
+}
@@ -0,0 +1,39 @@
+package org.hackystat.sensor.xmldata.util;
+
+/**
+ * The set of timestamps used to make the timestamps of sensor data unique. A
+ * set returns the specified timestamp if it is not taken, or else another one
+ * that is not, and takes the returned timestamp so no later call returns it.
+ * @author aito
+ *
+ */
+public interface UniqueTstampSet {
+  /**
+   * Returns the specified timestamp if it is not in this set, or a larger one
+   * that is not. The returned timestamp is added to this set.
+   * @param tstamp the timestamp to make unique.
+   * @return the unique timestamp.
+   */
+  public long getUniqueTstamp(long tstamp);
+
+  /**
+   * Adds the specified timestamp to this set.
+   * @param tstamp the timestamp to add.
+   * @return true if the timestamp was added, false if it was already in this
+   * set.
+   */
+  public boolean add(long tstamp);
+
+  /**
+   * Returns true if the specified timestamp is in this set.
+   * @param tstamp the timestamp to find.
+   * @return true if the timestamp is in this set, false if not.
+   */
+  public boolean contains(long tstamp);
+
+  /**
+   * Returns the number of timestamps in this set.
+   * @return the number of timestamps.
+   */
+  public int size();
+}
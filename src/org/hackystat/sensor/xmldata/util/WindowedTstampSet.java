@@ -0,0 +1,180 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.util.Arrays;
+
+/**
+ * The set of timestamps that only remembers the timestamps within a window
+ * behind the highest timestamp seen, so that its memory depends on the window
+ * and not on the amount of sensor data. The timestamps are kept as bits in a
+ * ring, with one bit per millisecond of the window, and the bits of timestamps
+ * that fall out of the window are cleared as the highest timestamp advances.
+ * <p>
+ * Timestamps within the window are unique. A timestamp older than the window
+ * is returned unchanged, since whether it was taken is no longer known. The
+ * search for a free timestamp skips 64 taken timestamps at a time, and starts
+ * after the run of taken timestamps found by the last search when it begins
+ * inside that run, as the entries given the current time do.
+ * @author aito
+ *
+ */
+public class WindowedTstampSet implements UniqueTstampSet {
+  /** The number of milliseconds behind the highest timestamp that are tracked. */
+  private final long window;
+  /** The ring of bits, where a set bit marks a taken timestamp. */
+  private final long[] words;
+  /** The mask that maps a timestamp to its bit in the ring. */
+  private final long bitMask;
+  /** The highest timestamp seen, which is only valid if isEmpty is false. */
+  private long highestTstamp = 0;
+  /** True if no timestamp has been added yet. */
+  private boolean isEmpty = true;
+  /** The number of taken timestamps within the window. */
+  private int size = 0;
+  /** The first timestamp of a run of taken timestamps. */
+  private long runStart = 0;
+  /** The last timestamp of the run of taken timestamps, which is empty if less. */
+  private long runEnd = -1;
+
+  /**
+   * Creates an empty set that tracks the specified window of timestamps.
+   * @param window the number of milliseconds behind the highest timestamp that
+   * are tracked, which must be between 1 and 2^30.
+   */
+  public WindowedTstampSet(long window) {
+    if (window < 1 || window > (1L << 30)) {
+      throw new IllegalArgumentException("The window must be between 1 and 2^30: " + window);
+    }
+    this.window = window;
+    long bitCount = Math.max(Long.SIZE, Long.highestOneBit(window - 1) << 1);
+    this.words = new long[(int) (bitCount / Long.SIZE)];
+    this.bitMask = bitCount - 1;
+  }
+
+  /**
+   * Returns the specified timestamp if it is not in this set, or else the next
+   * larger timestamp that is not. The returned timestamp is added to this set.
+   * @param tstamp the timestamp to make unique.
+   * @return the unique timestamp.
+   */
+  public synchronized long getUniqueTstamp(long tstamp) {
+    if (this.add(tstamp)) {
+      return tstamp;
+    }
+    // Every timestamp of the run is taken and still within the window.
+    boolean isInRun = this.runStart <= tstamp && tstamp <= this.runEnd;
+    long uniqueTstamp = this.findFree(isInRun ? this.runEnd + 1 : tstamp);
+    this.add(uniqueTstamp);
+    if (!isInRun) {
+      this.runStart = tstamp;
+    }
+    this.runEnd = uniqueTstamp;
+    return uniqueTstamp;
+  }
+
+  /**
+   * Returns the first timestamp from the specified one that is not taken,
+   * which is at most one more than the highest timestamp.
+   * @param tstamp the taken timestamp, within the window, to search from.
+   * @return the free timestamp.
+   */
+  private long findFree(long tstamp) {
+    for (long position = tstamp; position <= this.highestTstamp; position = (position | 63) + 1) {
+      long freeBits = ~this.words[(int) ((position & this.bitMask) >>> 6)] & (-1L << position);
+      if (freeBits != 0) {
+        long freeTstamp = (position & ~63L) + Long.numberOfTrailingZeros(freeBits);
+        return Math.min(freeTstamp, this.highestTstamp + 1);
+      }
+    }
+    return this.highestTstamp + 1;
+  }
+
+  /**
+   * Adds the specified timestamp to this set. A timestamp older than the window
+   * is not tracked and is always added.
+   * @param tstamp the timestamp to add.
+   * @return true if the timestamp was added, false if it was already in this
+   * set.
+   */
+  public synchronized boolean add(long tstamp) {
+    if (this.isEmpty) {
+      this.isEmpty = false;
+      this.highestTstamp = tstamp;
+    }
+    else if (tstamp > this.highestTstamp) {
+      this.advance(tstamp);
+    }
+    else if (this.highestTstamp - tstamp >= this.window) {
+      return true;
+    }
+    int wordIndex = (int) ((tstamp & this.bitMask) >>> 6);
+    long bit = 1L << tstamp;
+    if ((this.words[wordIndex] & bit) != 0) {
+      return false;
+    }
+    this.words[wordIndex] |= bit;
+    this.size++;
+    return true;
+  }
+
+  /**
+   * Returns true if the specified timestamp is within the window and taken.
+   * @param tstamp the timestamp to find.
+   * @return true if the timestamp is in this set, false if not.
+   */
+  public synchronized boolean contains(long tstamp) {
+    if (this.isEmpty || tstamp > this.highestTstamp
+        || this.highestTstamp - tstamp >= this.window) {
+      return false;
+    }
+    return (this.words[(int) ((tstamp & this.bitMask) >>> 6)] & (1L << tstamp)) != 0;
+  }
+
+  /**
+   * Returns the number of taken timestamps within the window.
+   * @return the number of timestamps.
+   */
+  public synchronized int size() {
+    return this.size;
+  }
+
+  /**
+   * Makes the specified timestamp the highest one seen, and clears the bits of
+   * the timestamps that fall out of the window. Since the ring is at least as
+   * large as the window, the bits of the timestamps up to the new highest one
+   * are then clear as well. A jump of the whole window or more clears the ring
+   * at once.
+   * @param tstamp the new highest timestamp.
+   */
+  private void advance(long tstamp) {
+    long distance = tstamp - this.highestTstamp;
+    if (distance < 0 || distance >= this.window) {
+      Arrays.fill(this.words, 0L);
+      this.size = 0;
+    }
+    else if (this.size > 0) {
+      long firstExpired = this.highestTstamp - this.window + 1;
+      this.clear(firstExpired, firstExpired + distance);
+    }
+    this.highestTstamp = tstamp;
+  }
+
+  /**
+   * Clears the bits of the specified range of timestamps, which is shorter
+   * than the ring, a whole word at a time. Only the words at either end of the
+   * range are masked.
+   * @param from the first timestamp of the range.
+   * @param to the timestamp after the last one of the range.
+   */
+  private void clear(long from, long to) {
+    long position = from;
+    while (position < to && this.size > 0) {
+      long wordEnd = Math.min((position | 63) + 1, to);
+      long count = wordEnd - position;
+      long mask = (count == Long.SIZE) ? -1L : ((1L << count) - 1) << position;
+      int wordIndex = (int) ((position & this.bitMask) >>> 6);
+      this.size -= Long.bitCount(this.words[wordIndex] & mask);
+      this.words[wordIndex] &= ~mask;
+      position = wordEnd;
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.UnmarshalException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.hackystat.sensor.xmldata.jaxb.Entry;
+
+/**
+ * The streaming reader of xmldata files, which returns one JAXB Entry at a
+ * time instead of unmarshalling the whole XmlData document. The enclosing
+ * XmlData and Entries elements are checked by this class, while each Entry
+ * element is unmarshalled, and validated if the specified unmarshaller has a
+ * schema, on its own. This keeps the memory used by this reader constant no
+ * matter how many entries the file contains.
+ * <p>
+ * Entries that do not need to be validated can instead be read directly from
+ * the element's attributes, which skips the unmarshaller and its schema. Those
+ * entries are only checked for the required Tool and Resource attributes, and
+ * share the attribute names of this reader's AttributeNameTable.
+ * @author aito
+ *
+ */
+public class XmlDataEntryReader {
+  /** The name of the root element of an xmldata file. */
+  private static final String XMLDATA = "XmlData";
+  /** The name of the element that wraps all entries. */
+  private static final String ENTRIES = "Entries";
+  /** The name of each entry element. */
+  private static final String ENTRY = "Entry";
+  /** The name of the required attribute containing the tool. */
+  private static final String TOOL = "Tool";
+  /** The name of the required attribute containing the resource. */
+  private static final String RESOURCE = "Resource";
+  /** The factory used to create stream readers, which is thread-safe once configured. */
+  private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+
+  /** The stream containing the xmldata document. */
+  private InputStream stream = null;
+  /** The StAX reader wrapping the stream. */
+  private XMLStreamReader reader = null;
+  /** The unmarshaller used to create an Entry from each Entry element. */
+  private Unmarshaller unmarshaller = null;
+  /** The number of entries read so far. */
+  private int entryCount = 0;
+  /** True if the closing Entries element has been read. */
+  private boolean isFinished = false;
+  /** The number of entries between unmarshalled entries, or 0 if none are. */
+  private int validationInterval = 1;
+  /** The canonical attribute names of the entries read from the attributes. */
+  private AttributeNameTable nameTable = new AttributeNameTable();
+
+  /**
+   * Constructs this reader with the stream containing an xmldata document and
+   * the unmarshaller used to create each entry. The stream is closed when this
+   * reader is closed.
+   * @param stream the stream containing the xmldata document.
+   * @param unmarshaller the unmarshaller created with the xmldata JAXB context.
+   * @throws XMLStreamException thrown if the start of the document could not
+   * be parsed or is not an XmlData element containing an Entries element.
+   */
+  public XmlDataEntryReader(InputStream stream, Unmarshaller unmarshaller)
+    throws XMLStreamException {
+    this.stream = stream;
+    this.unmarshaller = unmarshaller;
+    this.reader = FACTORY.createXMLStreamReader(stream);
+    this.requireStartElement(XMLDATA);
+    this.reader.next();
+    this.requireStartElement(ENTRIES);
+    this.reader.next();
+  }
+
+  /**
+   * Returns the next entry found in the document, or null if all entries have
+   * been read.
+   * @return the next entry or null if no entries remain.
+   * @throws XMLStreamException thrown if the document is not well-formed or
+   * does not follow the XmlData/Entries/Entry structure.
+   * @throws JAXBException thrown if an Entry element could not be
+   * unmarshalled or does not conform to the schema.
+   */
+  public Entry nextEntry() throws XMLStreamException, JAXBException {
+    if (this.isFinished) {
+      return null;
+    }
+    int event = this.nextTag();
+    if (event == XMLStreamConstants.START_ELEMENT) {
+      if (!ENTRY.equals(this.reader.getLocalName())) {
+        throw this.createException("Unexpected element '" + this.reader.getLocalName() + "'");
+      }
+      Entry entry = null;
+      if (this.validationInterval > 0 && this.entryCount % this.validationInterval == 0) {
+        // The unmarshaller leaves the reader on the event after the Entry end tag.
+        entry = this.unmarshaller.unmarshal(this.reader, Entry.class).getValue();
+      }
+      else {
+        entry = this.readAttributes();
+      }
+      this.entryCount++;
+      return entry;
+    }
+
+    // Otherwise, this is the closing Entries element, which requires 1 entry.
+    if (this.entryCount == 0) {
+      throw this.createException("The Entries element must contain at least one Entry");
+    }
+    this.reader.next();
+    if (this.nextTag() != XMLStreamConstants.END_ELEMENT
+        || !XMLDATA.equals(this.reader.getLocalName())) {
+      throw this.createException("Expected the closing XmlData element");
+    }
+    this.isFinished = true;
+    return null;
+  }
+
+  /**
+   * Sets which entries are unmarshalled, and validated if the unmarshaller has
+   * a schema. An interval of 1, which is the default, unmarshals every entry,
+   * an interval of N unmarshals the first entry and every Nth entry after it,
+   * and an interval of 0 reads every entry directly from its attributes.
+   * @param validationInterval the number of entries between unmarshalled
+   * entries, or 0.
+   */
+  public void setValidationInterval(int validationInterval) {
+    this.validationInterval = validationInterval;
+  }
+
+  /**
+   * Returns the table of the attribute names of the entries read by this
+   * reader, which can also provide their keys.
+   * @return the table instance.
+   */
+  public AttributeNameTable getNameTable() {
+    return this.nameTable;
+  }
+
+  /**
+   * Returns the number of entries read so far.
+   * @return the number of entries.
+   */
+  public int getEntryCount() {
+    return this.entryCount;
+  }
+
+  /** Closes this reader and the stream it reads from. */
+  public void close() {
+    try {
+      this.reader.close();
+    }
+    catch (XMLStreamException e) { //NOPMD
+      // The stream is closed below regardless.
+    }
+    try {
+      this.stream.close();
+    }
+    catch (IOException e) { //NOPMD
+      // Nothing else can be done with a stream that fails to close.
+    }
+  }
+
+  /**
+   * Returns the entry created from the attributes of the Entry element the
+   * reader is positioned on, and leaves the reader on the event after the
+   * element's end tag.
+   * @return the entry instance.
+   * @throws XMLStreamException thrown if the element is not empty.
+   * @throws JAXBException thrown if the Tool or Resource attribute is missing.
+   */
+  private Entry readAttributes() throws XMLStreamException, JAXBException {
+    Entry entry = new Entry();
+    for (int i = 0; i < this.reader.getAttributeCount(); i++) {
+      String namespace = this.reader.getAttributeNamespace(i);
+      String localName = this.reader.getAttributeLocalName(i);
+      String value = this.reader.getAttributeValue(i);
+      if (namespace != null && namespace.length() > 0) {
+        entry.getOtherAttributes().put(this.reader.getAttributeName(i), value);
+      }
+      else if (TOOL.equals(localName)) {
+        entry.setTool(value);
+      }
+      else if (RESOURCE.equals(localName)) {
+        entry.setResource(value);
+      }
+      else {
+        entry.getOtherAttributes().put(this.nameTable.getName(localName), value);
+      }
+    }
+    if (entry.getTool() == null || entry.getResource() == null) {
+      String attribute = (entry.getTool() == null) ? TOOL : RESOURCE;
+      XMLStreamException cause = this.createException("The Entry is missing the required '"
+          + attribute + "' attribute");
+      throw new UnmarshalException(cause.getMessage(), cause);
+    }
+
+    this.reader.next();
+    if (this.nextTag() != XMLStreamConstants.END_ELEMENT) {
+      throw this.createException("The Entry element must be empty");
+    }
+    this.reader.next();
+    return entry;
+  }
+
+  /**
+   * Skips whitespace, comments and processing instructions until a start or
+   * end tag is found and returns that tag's event type.
+   * @return the START_ELEMENT or END_ELEMENT event type.
+   * @throws XMLStreamException thrown if text or the end of the document is
+   * found before a tag.
+   */
+  private int nextTag() throws XMLStreamException {
+    int event = this.reader.getEventType();
+    while (event != XMLStreamConstants.START_ELEMENT
+        && event != XMLStreamConstants.END_ELEMENT) {
+      if (event == XMLStreamConstants.END_DOCUMENT
+          || ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+              && !this.reader.isWhiteSpace())) {
+        throw this.createException("Unexpected content");
+      }
+      event = this.reader.next();
+    }
+    return event;
+  }
+
+  /**
+   * Advances to the next tag and verifies that it opens the specified element.
+   * @param name the expected element name.
+   * @throws XMLStreamException thrown if the next tag is not the start of the
+   * specified element.
+   */
+  private void requireStartElement(String name) throws XMLStreamException {
+    if (this.nextTag() != XMLStreamConstants.START_ELEMENT
+        || !name.equals(this.reader.getLocalName())) {
+      throw this.createException("Expected the '" + name + "' element");
+    }
+  }
+
+  /**
+   * Returns an exception containing the specified message and the current
+   * location of the reader.
+   * @param message the specified message.
+   * @return the exception instance.
+   */
+  private XMLStreamException createException(String message) {
+    return new XMLStreamException(message + " after " + this.entryCount + " entries.",
+        this.reader.getLocation());
+  }
+}
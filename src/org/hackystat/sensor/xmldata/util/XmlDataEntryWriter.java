@@ -0,0 +1,95 @@
+package org.hackystat.sensor.xmldata.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.hackystat.sensor.xmldata.jaxb.Entry;
+
+/**
+ * The streaming writer of xmldata files, which appends one JAXB Entry at a time
+ * to an XmlData document. It is used to set aside entries that could not be
+ * sent, in a file that can be corrected and sent again with the -file option.
+ * The writer is safe to use from several threads.
+ * @author aito
+ *
+ */
+public class XmlDataEntryWriter {
+  /** The factory used to create stream writers, which is thread-safe once configured. */
+  private static final XMLOutputFactory FACTORY = XMLOutputFactory.newInstance();
+
+  /** The stream the document is written to. */
+  private OutputStream stream = null;
+  /** The StAX writer wrapping the stream. */
+  private XMLStreamWriter writer = null;
+  /** The number of entries written so far. */
+  private int entryCount = 0;
+
+  /**
+   * Constructs this writer and writes the start of the document to the
+   * specified stream, which is closed when this writer is closed.
+   * @param stream the stream the document is written to.
+   * @throws XMLStreamException thrown if the start of the document could not be
+   * written.
+   */
+  public XmlDataEntryWriter(OutputStream stream) throws XMLStreamException {
+    this.stream = stream;
+    this.writer = FACTORY.createXMLStreamWriter(stream, "UTF-8");
+    this.writer.writeStartDocument("UTF-8", "1.0");
+    this.writer.writeCharacters("\n");
+    this.writer.writeStartElement("XmlData");
+    this.writer.writeCharacters("\n");
+    this.writer.writeStartElement("Entries");
+    this.writer.writeCharacters("\n");
+  }
+
+  /**
+   * Appends the specified entry, with all of its attributes, to the document.
+   * @param entry the entry to write.
+   * @throws XMLStreamException thrown if the entry could not be written.
+   */
+  public synchronized void write(Entry entry) throws XMLStreamException {
+    this.writer.writeCharacters("  ");
+    this.writer.writeEmptyElement("Entry");
+    if (entry.getTool() != null) {
+      this.writer.writeAttribute("Tool", entry.getTool());
+    }
+    if (entry.getResource() != null) {
+      this.writer.writeAttribute("Resource", entry.getResource());
+    }
+    for (Map.Entry<QName, String> attribute : entry.getOtherAttributes().entrySet()) {
+      this.writer.writeAttribute(attribute.getKey().getLocalPart(), attribute.getValue());
+    }
+    this.writer.writeCharacters("\n");
+    this.entryCount++;
+  }
+
+  /**
+   * Returns the number of entries written so far.
+   * @return the number of entries.
+   */
+  public synchronized int getEntryCount() {
+    return this.entryCount;
+  }
+
+  /**
+   * Ends the document and closes the stream.
+   * @throws XMLStreamException thrown if the end of the document could not be
+   * written.
+   * @throws IOException thrown if the stream could not be closed.
+   */
+  public synchronized void close() throws XMLStreamException, IOException {
+    this.writer.writeEndElement();
+    this.writer.writeCharacters("\n");
+    this.writer.writeEndElement();
+    this.writer.writeCharacters("\n");
+    this.writer.writeEndDocument();
+    this.writer.close();
+    this.stream.close();
+  }
+}